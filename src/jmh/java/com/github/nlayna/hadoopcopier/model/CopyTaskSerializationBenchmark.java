@@ -0,0 +1,64 @@
+package com.github.nlayna.hadoopcopier.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of the status response ({@code GET /api/v1/copy/{requestId}}) for tasks with many items,
+ * using a mapper configured like Spring Boot's default one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CopyTaskSerializationBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int itemCount;
+
+    private ObjectMapper objectMapper;
+    private CopyTask task;
+
+    @Setup
+    public void setUp() {
+        objectMapper = JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        List<CopyItemTask> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            CopyItemTask item = new CopyItemTask("/data/warehouse/table/part-" + i + ".parquet", "/mnt/data/part-" + i);
+            item.setStatus(i % 10 == 0 ? CopyItemStatus.IN_PROGRESS : CopyItemStatus.COMPLETED);
+            item.setBytesCopied(128L * 1024 * 1024);
+            item.setDurationMs(1_000 + i % 500);
+            item.setChecksumVerified(true);
+            items.add(item);
+        }
+        task = new CopyTask("benchmark", "ns1", 100, items);
+        task.setStatus(CopyTaskStatus.IN_PROGRESS);
+    }
+
+    @Benchmark
+    public byte[] serializeStatus() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(task);
+    }
+}
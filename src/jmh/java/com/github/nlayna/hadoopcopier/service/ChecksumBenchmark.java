@@ -0,0 +1,64 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Cost of checksumming 16 MiB in chunks of the given buffer size. MD5 is what downloads verify with today;
+ * SHA-256 and CRC32C show what switching the algorithm would buy or cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChecksumBenchmark {
+
+    private static final int DATA_SIZE = 16 * 1024 * 1024;
+
+    @Param({"MD5", "SHA-256", "CRC32C"})
+    public String algorithm;
+
+    @Param({"8192", "65536", "1048576"})
+    public int bufferSize;
+
+    private byte[] buffer;
+
+    @Setup
+    public void setUp() {
+        buffer = new byte[bufferSize];
+        new Random(42).nextBytes(buffer);
+    }
+
+    @Benchmark
+    public Object checksum() throws NoSuchAlgorithmException {
+        if ("CRC32C".equals(algorithm)) {
+            CRC32C crc = new CRC32C();
+            for (int done = 0; done < DATA_SIZE; done += bufferSize) {
+                crc.update(buffer, 0, bufferSize);
+            }
+            return crc.getValue();
+        }
+        MessageDigest digest = MessageDigest.getInstance(algorithm);
+        for (int done = 0; done < DATA_SIZE; done += bufferSize) {
+            digest.update(buffer, 0, bufferSize);
+        }
+        return digest.digest();
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import com.github.nlayna.hadoopcopier.model.CopyResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end single file download through {@link HdfsCopyService#copyPath} against {@code LocalFileSystem}:
+ * read loop, optional throttling wrapper, local writer and MD5 verification re-read. Throttling runs with a limit
+ * far above disk speed, so the difference to the unthrottled run is the wrapper's overhead, not pacing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CopyBenchmark {
+
+    private static final int FILE_SIZE = 64 * 1024 * 1024;
+    private static final int UNLIMITED_MB_PER_SEC = 1_000_000;
+
+    @Param({"8192", "65536", "1048576"})
+    public int bufferSize;
+
+    @Param({"true", "false"})
+    public boolean checksum;
+
+    @Param({"false", "true"})
+    public boolean throttled;
+
+    private Path workDir;
+    private Path source;
+    private Path target;
+    private FileSystem fs;
+    private ExecutorService transformExecutor;
+    private HdfsCopyService copyService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("copy-benchmark");
+        source = workDir.resolve("source.bin");
+        target = workDir.resolve("target.bin");
+        writeRandomFile(source, FILE_SIZE);
+
+        CopyProperties copyProperties = new CopyProperties();
+        copyProperties.setBufferSize(bufferSize);
+        copyProperties.setChecksumEnabled(checksum);
+        copyProperties.setSyncStateFile(workDir.resolve("sync-state.properties").toString());
+        transformExecutor = Executors.newSingleThreadExecutor();
+        HdfsMetadataClient metadataClient = new HdfsMetadataClient(copyProperties, new SimpleMeterRegistry());
+        copyService = new HdfsCopyService(copyProperties, new LocalDiskSelector(copyProperties), transformExecutor,
+                new SyncStateStore(copyProperties), new DataNodeScheduler(copyProperties, metadataClient),
+                new LocalContentCache(copyProperties, new SimpleMeterRegistry()),
+                new AdaptiveConcurrencyLimiter(copyProperties, new SimpleMeterRegistry()), metadataClient,
+                new PriorityLanes(Runnable::run, new CopyProperties(), new SimpleMeterRegistry()),
+                new BandwidthCalendar(copyProperties, new SimpleMeterRegistry()));
+        fs = FileSystem.getLocal(new Configuration());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        transformExecutor.shutdownNow();
+        fs.close();
+        try (Stream<Path> paths = Files.walk(workDir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public CopyResult copyFile() throws IOException {
+        return copyService.copyPath(fs, source.toString(), target.toString(), throttled ? UNLIMITED_MB_PER_SEC : null);
+    }
+
+    static void writeRandomFile(Path path, int size) throws IOException {
+        byte[] chunk = new byte[1024 * 1024];
+        new Random(42).nextBytes(chunk);
+        try (OutputStream out = Files.newOutputStream(path)) {
+            for (int written = 0; written < size; written += chunk.length) {
+                out.write(chunk, 0, Math.min(chunk.length, size - written));
+            }
+        }
+    }
+}
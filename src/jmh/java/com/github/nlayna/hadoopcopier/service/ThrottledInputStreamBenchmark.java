@@ -0,0 +1,61 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pacing accuracy of {@link ThrottledInputStream}: each run reads three seconds' worth of data at the given
+ * limit. The first window is not throttled, so an exact limiter takes 2000 ms; the reported time minus 2000 ms
+ * is the pacing error.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ThrottledInputStreamBenchmark {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Param({"1048576", "104857600"})
+    public long bytesPerSecond;
+
+    @Benchmark
+    public long readThreeWindows() throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long target = 3 * bytesPerSecond;
+        long total = 0;
+        try (InputStream in = new ThrottledInputStream(new EndlessInputStream(), bytesPerSecond)) {
+            while (total < target) {
+                total += in.read(buffer, 0, (int) Math.min(buffer.length, target - total));
+            }
+        }
+        return total;
+    }
+
+    private static final class EndlessInputStream extends InputStream {
+
+        @Override
+        public int read() {
+            return 0;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return len;
+        }
+    }
+}
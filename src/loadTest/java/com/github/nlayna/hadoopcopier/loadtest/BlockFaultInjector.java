@@ -0,0 +1,41 @@
+package com.github.nlayna.hadoopcopier.loadtest;
+
+import org.apache.hadoop.hdfs.server.datanode.DataNodeFaultInjector;
+
+import java.io.FileNotFoundException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Slows down or fails a share of block reads. DataNodes in a mini cluster share one injector, and its only
+ * read-path hook runs when a block sender is opened, so faults hit individual block reads across all nodes
+ * rather than one node's every byte. A failed open makes the DFS client retry on another replica.
+ */
+class BlockFaultInjector extends DataNodeFaultInjector {
+
+    private final long delayMs;
+    private final double delayFraction;
+    private final double failureFraction;
+
+    BlockFaultInjector(LoadTestSettings settings) {
+        this.delayMs = settings.blockDelayMs();
+        this.delayFraction = settings.blockDelayFraction();
+        this.failureFraction = settings.blockFailureFraction();
+    }
+
+    boolean isActive() {
+        return failureFraction > 0 || (delayMs > 0 && delayFraction > 0);
+    }
+
+    @Override
+    public void throwTooManyOpenFiles() throws FileNotFoundException {
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < failureFraction) {
+            throw new FileNotFoundException("Injected block read failure");
+        }
+        if (roll < failureFraction + delayFraction) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(delayMs));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.nlayna.hadoopcopier.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the synthetic source tree: files are dealt round-robin into {@code /loadtest/part-N} directories,
+ * one per request item, and each part is written by its own thread.
+ */
+@Slf4j
+class DatasetGenerator {
+
+    static final Path ROOT = new Path("/loadtest");
+
+    private static final int FILES_PER_DIRECTORY = 1000;
+    private static final long MIXED_LARGE_FILE_SIZE = 64L * 1024 * 1024;
+    private static final int WRITER_THREADS = 8;
+
+    private final FileSystem fs;
+    private final LoadTestSettings settings;
+    private final byte[] chunk = new byte[1024 * 1024];
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    DatasetGenerator(FileSystem fs, LoadTestSettings settings) {
+        this.fs = fs;
+        this.settings = settings;
+        new Random(42).nextBytes(chunk);
+    }
+
+    static Path partPath(int part) {
+        return new Path(ROOT, "part-" + part);
+    }
+
+    /**
+     * @return total bytes written
+     */
+    long generate() throws IOException {
+        long startTime = System.currentTimeMillis();
+        ExecutorService writers = Executors.newFixedThreadPool(WRITER_THREADS);
+        try {
+            List<Future<?>> parts = new ArrayList<>();
+            for (int part = 0; part < settings.parts(); part++) {
+                int partIndex = part;
+                parts.add(writers.submit(() -> writePart(partIndex)));
+            }
+            for (Future<?> part : parts) {
+                part.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating dataset", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Dataset generation failed", e.getCause());
+        } finally {
+            writers.shutdownNow();
+        }
+        log.info("Generated {} dataset: {} files, {} bytes in {} ms", settings.dataset(), settings.files(),
+                totalBytes.get(), System.currentTimeMillis() - startTime);
+        return totalBytes.get();
+    }
+
+    private void writePart(int part) {
+        try {
+            for (int file = part; file < settings.files(); file += settings.parts()) {
+                writeFile(new Path(partPath(part), relativePath(file)), sizeOf(file));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String relativePath(int file) {
+        String name = "file-" + file;
+        return switch (settings.dataset()) {
+            case HUGE -> name;
+            case TINY -> "dir-" + file / FILES_PER_DIRECTORY + "/" + name;
+            case DEEP -> deepDirectory(file % Math.max(1, settings.depth()) + 1) + name;
+            case MIXED -> "a-" + file % 10 + "/b-" + file / FILES_PER_DIRECTORY + "/" + name;
+        };
+    }
+
+    private static String deepDirectory(int levels) {
+        StringBuilder dir = new StringBuilder();
+        for (int level = 0; level < levels; level++) {
+            dir.append("level-").append(level).append('/');
+        }
+        return dir.toString();
+    }
+
+    private long sizeOf(int file) {
+        if (settings.dataset() == LoadTestSettings.Dataset.MIXED && file % 100 == 0) {
+            return MIXED_LARGE_FILE_SIZE;
+        }
+        return settings.fileSize();
+    }
+
+    private void writeFile(Path path, long size) throws IOException {
+        try (FSDataOutputStream out = fs.create(path, true)) {
+            for (long written = 0; written < size; written += chunk.length) {
+                out.write(chunk, 0, (int) Math.min(chunk.length, size - written));
+            }
+        }
+        totalBytes.addAndGet(size);
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.nlayna.hadoopcopier.loadtest;
+
+import java.util.List;
+
+/**
+ * Outcome of one load test run. Heap and GC figures cover the whole JVM, mini cluster included.
+ */
+public record LoadReport(String dataset, int files, long datasetBytes, int requests, int concurrency,
+                         long wallTimeMs, long bytesCopied, double throughputMbPerSec,
+                         int items, int failedItems, long itemLatencyP50Ms, long itemLatencyP99Ms,
+                         long requestLatencyP50Ms, long requestLatencyP99Ms,
+                         long heapPeakBytes, long gcTimeMs, long gcCount) {
+
+    /**
+     * Nearest-rank percentile of an ascending list.
+     */
+    static long percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    String toText() {
+        return String.format("""
+                        dataset            %s (%d files, %d MB)
+                        requests           %d, %d in flight
+                        wall time          %d ms
+                        throughput         %.2f MB/s (%d MB copied)
+                        items              %d, %d failed
+                        item latency       p50 %d ms, p99 %d ms
+                        request latency    p50 %d ms, p99 %d ms
+                        heap peak          %d MB
+                        GC                 %d ms in %d collections""",
+                dataset, files, datasetBytes / (1024 * 1024), requests, concurrency, wallTimeMs,
+                throughputMbPerSec, bytesCopied / (1024 * 1024), items, failedItems,
+                itemLatencyP50Ms, itemLatencyP99Ms, requestLatencyP50Ms, requestLatencyP99Ms,
+                heapPeakBytes / (1024 * 1024), gcTimeMs, gcCount);
+    }
+}
@@ -0,0 +1,241 @@
+package com.github.nlayna.hadoopcopier.loadtest;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import com.alibaba.fastjson2.JSONWriter;
+import com.github.nlayna.hadoopcopier.HadoopCopierApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.server.datanode.DataNodeFaultInjector;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Starts an in-process {@link MiniDFSCluster}, fills it with a synthetic dataset, boots the service against it and
+ * drives concurrent copy requests through the REST API, then reports throughput, latency, heap and GC figures.
+ * Run through {@code ./gradlew loadTest}.
+ */
+@Slf4j
+public class LoadTestRunner {
+
+    private static final String NAMESPACE = "loadtest";
+    private static final Set<String> TERMINAL_STATUSES = Set.of("COMPLETED", "PARTIALLY_FAILED", "FAILED");
+    private static final long POLL_INTERVAL_MS = 200;
+
+    private final LoadTestSettings settings;
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final List<Long> itemLatencies = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> requestLatencies = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong bytesCopied = new AtomicLong();
+    private final AtomicLong failedItems = new AtomicLong();
+    private final AtomicLong heapPeak = new AtomicLong();
+    private String baseUrl;
+
+    LoadTestRunner(LoadTestSettings settings) {
+        this.settings = settings;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        LoadReport report = new LoadTestRunner(settings).run();
+
+        System.out.println(report.toText());
+        File reportFile = settings.reportFile();
+        Files.createDirectories(reportFile.getAbsoluteFile().getParentFile().toPath());
+        Files.writeString(reportFile.toPath(), JSON.toJSONString(report, JSONWriter.Feature.PrettyFormat));
+        System.out.println("Report written to " + reportFile.getAbsolutePath());
+        System.exit(0);
+    }
+
+    LoadReport run() throws Exception {
+        File workDir = settings.workDir().getAbsoluteFile();
+        FileUtil.fullyDelete(workDir);
+
+        Configuration conf = new Configuration();
+        conf.setInt("dfs.replication", Math.min(3, settings.dataNodes()));
+        MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf, new File(workDir, "dfs"))
+                .numDataNodes(settings.dataNodes())
+                .build();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+        ConfigurableApplicationContext context = null;
+        try {
+            cluster.waitActive();
+            long datasetBytes = new DatasetGenerator(cluster.getFileSystem(), settings).generate();
+            File confDir = writeClientConfiguration(workDir, cluster);
+
+            context = startService(confDir);
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/v1/copy";
+
+            BlockFaultInjector faultInjector = new BlockFaultInjector(settings);
+            if (faultInjector.isActive()) {
+                DataNodeFaultInjector.set(faultInjector);
+            }
+            if (settings.stopDataNodeAfterMs() >= 0) {
+                scheduler.schedule(() -> {
+                    log.warn("Fault injection: stopping DataNode 0");
+                    cluster.stopDataNode(0);
+                }, settings.stopDataNodeAfterMs(), TimeUnit.MILLISECONDS);
+            }
+            scheduler.scheduleAtFixedRate(this::sampleHeap, 0, 100, TimeUnit.MILLISECONDS);
+
+            long gcTimeBefore = gcTime();
+            long gcCountBefore = gcCount();
+            long startTime = System.currentTimeMillis();
+            driveRequests(new File(workDir, "local"));
+            long wallTimeMs = System.currentTimeMillis() - startTime;
+
+            double throughput = bytesCopied.get() / (1024.0 * 1024.0) / Math.max(wallTimeMs / 1000.0, 0.001);
+            List<Long> items = sorted(itemLatencies);
+            List<Long> requests = sorted(requestLatencies);
+            return new LoadReport(settings.dataset().name(), settings.files(), datasetBytes, settings.requests(),
+                    settings.concurrency(), wallTimeMs, bytesCopied.get(), throughput,
+                    items.size(), (int) failedItems.get(),
+                    LoadReport.percentile(items, 50), LoadReport.percentile(items, 99),
+                    LoadReport.percentile(requests, 50), LoadReport.percentile(requests, 99),
+                    heapPeak.get(), gcTime() - gcTimeBefore, gcCount() - gcCountBefore);
+        } finally {
+            scheduler.shutdownNow();
+            DataNodeFaultInjector.set(new DataNodeFaultInjector());
+            if (context != null) {
+                context.close();
+            }
+            cluster.shutdown();
+        }
+    }
+
+    /**
+     * Lays out {@code <confDir>/loadtest/core-site.xml} the way the service expects for a namespace.
+     */
+    private File writeClientConfiguration(File workDir, MiniDFSCluster cluster) throws IOException {
+        File confDir = new File(workDir, "conf");
+        File namespaceDir = new File(confDir, NAMESPACE);
+        Files.createDirectories(namespaceDir.toPath());
+
+        Configuration coreSite = new Configuration(false);
+        coreSite.set("fs.defaultFS", cluster.getURI().toString());
+        try (OutputStream out = Files.newOutputStream(new File(namespaceDir, "core-site.xml").toPath())) {
+            coreSite.writeXml(out);
+        }
+        try (OutputStream out = Files.newOutputStream(new File(namespaceDir, "hdfs-site.xml").toPath())) {
+            new Configuration(false).writeXml(out);
+        }
+        return confDir;
+    }
+
+    private ConfigurableApplicationContext startService(File confDir) {
+        return new SpringApplication(HadoopCopierApplication.class).run(
+                "--server.port=0",
+                "--hadoop.conf-basedir=" + confDir.getAbsolutePath(),
+                "--hadoop.authentication=simple",
+                "--hadoop.warmup-namespaces=" + NAMESPACE,
+                "--copy.sync-state-file=" + new File(confDir, "sync-state.properties").getAbsolutePath());
+    }
+
+    private void driveRequests(File localRoot) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(settings.concurrency());
+        try {
+            List<Future<?>> requests = new ArrayList<>();
+            for (int request = 0; request < settings.requests(); request++) {
+                int requestIndex = request;
+                requests.add(clients.submit(() -> {
+                    runRequest(requestIndex, localRoot);
+                    return null;
+                }));
+            }
+            for (Future<?> request : requests) {
+                request.get();
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private void runRequest(int request, File localRoot) throws IOException, InterruptedException {
+        JSONArray items = new JSONArray();
+        for (int i = 0; i < settings.itemsPerRequest(); i++) {
+            int part = request * settings.itemsPerRequest() + i;
+            items.add(JSONObject.of(
+                    "hdfsPath", DatasetGenerator.partPath(part).toString(),
+                    "localPath", new File(localRoot, "part-" + part).getAbsolutePath()));
+        }
+        JSONObject body = JSONObject.of("namespace", NAMESPACE, "items", items, "writeMode", settings.writeMode());
+        if (settings.bandwidth() > 0) {
+            body.put("bandwidth", settings.bandwidth());
+        }
+
+        long startTime = System.currentTimeMillis();
+        HttpResponse<String> submitted = httpClient.send(HttpRequest.newBuilder(URI.create(baseUrl))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toJSONString(), StandardCharsets.UTF_8))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (submitted.statusCode() != 202) {
+            throw new IOException("Request " + request + " rejected: " + submitted.statusCode() + " " + submitted.body());
+        }
+        String requestId = JSON.parseObject(submitted.body()).getString("requestId");
+
+        JSONObject task;
+        do {
+            Thread.sleep(POLL_INTERVAL_MS);
+            HttpResponse<String> status = httpClient.send(HttpRequest.newBuilder(URI.create(baseUrl + "/" + requestId))
+                    .GET().build(), HttpResponse.BodyHandlers.ofString());
+            task = JSON.parseObject(status.body());
+        } while (!TERMINAL_STATUSES.contains(task.getString("status")));
+        requestLatencies.add(System.currentTimeMillis() - startTime);
+
+        for (JSONObject item : task.getJSONArray("items").toList(JSONObject.class)) {
+            itemLatencies.add(item.getLongValue("durationMs"));
+            bytesCopied.addAndGet(item.getLongValue("bytesCopied"));
+            if (!"COMPLETED".equals(item.getString("status"))) {
+                failedItems.incrementAndGet();
+                log.warn("Item {} failed: {}", item.getString("hdfsPath"), item.getString("errorMessage"));
+            }
+        }
+        log.info("Request {} finished with status {}", request, task.getString("status"));
+    }
+
+    private void sampleHeap() {
+        long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        heapPeak.accumulateAndGet(used, Math::max);
+    }
+
+    private static long gcTime() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static List<Long> sorted(List<Long> values) {
+        List<Long> copy = new ArrayList<>(values);
+        Collections.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.nlayna.hadoopcopier.loadtest;
+
+import java.io.File;
+
+/**
+ * Load test knobs, read from {@code loadtest.*} system properties (the Gradle task forwards {@code -Ploadtest.*}).
+ *
+ * @param dataset              shape of the generated source tree
+ * @param files                number of files, {@code 0} for the dataset default
+ * @param fileSize             size of a regular file, {@code 0} for the dataset default
+ * @param depth                directory depth for {@link Dataset#DEEP}
+ * @param dataNodes            DataNodes in the mini cluster
+ * @param requests             copy requests sent to the API
+ * @param itemsPerRequest      items per request; the dataset is split into {@code requests * itemsPerRequest} parts
+ * @param concurrency          requests in flight at once
+ * @param bandwidth            per-stream bandwidth limit of each request in MB/s, {@code 0} for none
+ * @param writeMode            local write mode of each request ({@code BUFFERED}, {@code FSYNC}, {@code DIRECT}, ...)
+ * @param stopDataNodeAfterMs  stops DataNode 0 this long after the first request, {@code -1} to keep all running
+ * @param blockDelayMs         delay added to a slowed block read
+ * @param blockDelayFraction   share of block reads that are slowed
+ * @param blockFailureFraction share of block reads that fail, forcing the client onto another replica
+ */
+public record LoadTestSettings(Dataset dataset, int files, long fileSize, int depth, int dataNodes,
+                               int requests, int itemsPerRequest, int concurrency, int bandwidth, String writeMode,
+                               long stopDataNodeAfterMs, long blockDelayMs, double blockDelayFraction,
+                               double blockFailureFraction, File workDir, File reportFile) {
+
+    public enum Dataset {
+        /** Many 4 KiB files, 1000 per directory. */
+        TINY(10_000, 4 * 1024L),
+        /** A few large files. */
+        HUGE(8, 256L * 1024 * 1024),
+        /** Small files spread over a deep directory chain. */
+        DEEP(2_000, 64 * 1024L),
+        /** Tiny files in a three level tree with every hundredth file large. */
+        MIXED(10_000, 4 * 1024L);
+
+        private final int defaultFiles;
+        private final long defaultFileSize;
+
+        Dataset(int defaultFiles, long defaultFileSize) {
+            this.defaultFiles = defaultFiles;
+            this.defaultFileSize = defaultFileSize;
+        }
+    }
+
+    public static LoadTestSettings fromSystemProperties() {
+        Dataset dataset = Dataset.valueOf(property("dataset", "mixed").toUpperCase());
+        int files = Integer.parseInt(property("files", "0"));
+        long fileSize = Long.parseLong(property("fileSize", "0"));
+        return new LoadTestSettings(
+                dataset,
+                files > 0 ? files : dataset.defaultFiles,
+                fileSize > 0 ? fileSize : dataset.defaultFileSize,
+                Integer.parseInt(property("depth", "50")),
+                Integer.parseInt(property("dataNodes", "3")),
+                Integer.parseInt(property("requests", "8")),
+                Integer.parseInt(property("itemsPerRequest", "4")),
+                Integer.parseInt(property("concurrency", "4")),
+                Integer.parseInt(property("bandwidth", "0")),
+                property("writeMode", "BUFFERED"),
+                Long.parseLong(property("fault.stopDataNodeAfterMs", "-1")),
+                Long.parseLong(property("fault.blockDelayMs", "0")),
+                Double.parseDouble(property("fault.blockDelayFraction", "0")),
+                Double.parseDouble(property("fault.blockFailureFraction", "0")),
+                new File(property("workDir", "build/loadtest")),
+                new File(property("report", "build/reports/loadtest/report.json")));
+    }
+
+    public int parts() {
+        return requests * itemsPerRequest;
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty("loadtest." + name, defaultValue);
+    }
+}
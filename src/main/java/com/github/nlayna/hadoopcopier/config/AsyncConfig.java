@@ -23,4 +23,14 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+
+    @Bean(name = "transformExecutor")
+    public Executor transformExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(copyProperties.getTransformThreads());
+        executor.setMaxPoolSize(copyProperties.getTransformThreads());
+        executor.setThreadNamePrefix("copy-transform-");
+        executor.initialize();
+        return executor;
+    }
 }
@@ -4,10 +4,62 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 @Data
 @Component
 @ConfigurationProperties(prefix = "copy")
 public class CopyProperties {
     private int threadPoolSize = 10;
+    private int taskMaxItemsInFlight;
+    private int bulkMaxQueuedItems = 10_000;
     private boolean checksumEnabled = true;
+    private List<String> localDataRoots = new ArrayList<>();
+    private int groupFsyncFiles = 100;
+    private long groupFsyncBytes = 256L * 1024 * 1024;
+    private int transformThreads = Runtime.getRuntime().availableProcessors();
+    private int transformQueueDepth = 16;
+    private long archiveMaxBytes = 10L * 1024 * 1024 * 1024;
+    private String syncStateFile = "sync-state.properties";
+    private int transferParallelism = 4;
+    private Long uploadBlockSize;
+    private Short uploadReplication;
+    private int maxReadsPerDataNode;
+    private int bufferSize = 64 * 1024;
+    private String cacheDir;
+    private long cacheMaxBytes = 100L * 1024 * 1024 * 1024;
+    private boolean adaptiveConcurrency;
+    private int adaptiveMinStreams = 1;
+    private int adaptiveMaxStreams;
+    private Duration adaptiveWindow = Duration.ofSeconds(5);
+    private double adaptiveBackoff = 0.75;
+    private double adaptiveErrorThreshold = 0.05;
+    private double adaptiveLatencyTolerance = 2.0;
+    private int namespaceMaxItems;
+    private int breakerFailureThreshold = 5;
+    private Duration breakerOpenDuration = Duration.ofSeconds(30);
+    private double namenodeRpcPerSecond;
+    private Duration metadataCacheTtl = Duration.ZERO;
+    private int metadataCacheMaxStatuses = 50_000;
+    private boolean digestXattr = true;
+    private boolean writeManifest;
+    private List<BandwidthWindow> bandwidthSchedule = new ArrayList<>();
+    private String bandwidthScheduleZone;
+    private Duration offPeakCheckInterval = Duration.ofMinutes(1);
+
+    /**
+     * Aggregate read cap for a namespace during a time window. {@code from}/{@code to} are {@code HH:mm};
+     * a window with {@code to} before {@code from} runs past midnight and belongs to the day it starts on.
+     */
+    @Data
+    public static class BandwidthWindow {
+        private List<String> namespaces = new ArrayList<>();
+        private List<DayOfWeek> days = new ArrayList<>();
+        private String from = "00:00";
+        private String to = "00:00";
+        private int mbPerSec;
+    }
 }
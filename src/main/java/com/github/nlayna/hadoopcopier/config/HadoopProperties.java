@@ -4,9 +4,29 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 @Data
 @Component
 @ConfigurationProperties(prefix = "hadoop")
 public class HadoopProperties {
     private String confBasedir = "/etc/hadoop/conf";
+    private String authentication = "kerberos";
+    private String principal;
+    private String keytab;
+    private Map<String, KerberosCredentials> credentials = new HashMap<>();
+    private Duration reloginCheckInterval = Duration.ofMinutes(1);
+    private List<String> warmupNamespaces = new ArrayList<>();
+    private int warmupClients = 2;
+    private Duration warmupTimeout = Duration.ofMinutes(1);
+
+    @Data
+    public static class KerberosCredentials {
+        private String principal;
+        private String keytab;
+    }
 }
@@ -1,40 +1,156 @@
 package com.github.nlayna.hadoopcopier.controller;
 
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONException;
+import com.alibaba.fastjson2.JSONObject;
+import com.github.nlayna.hadoopcopier.model.CopyDirection;
+import com.github.nlayna.hadoopcopier.model.CopyFilter;
+import com.github.nlayna.hadoopcopier.model.CopyItem;
+import com.github.nlayna.hadoopcopier.model.CopyItemStatus;
+import com.github.nlayna.hadoopcopier.model.CopyPlan;
 import com.github.nlayna.hadoopcopier.model.CopyRequest;
 import com.github.nlayna.hadoopcopier.model.CopyTask;
+import com.github.nlayna.hadoopcopier.model.CopyTaskSummary;
+import com.github.nlayna.hadoopcopier.model.FileStatusTable;
+import com.github.nlayna.hadoopcopier.model.ItemPage;
+import com.github.nlayna.hadoopcopier.model.TransformMode;
+import com.github.nlayna.hadoopcopier.service.CompressionTransforms;
+import com.github.nlayna.hadoopcopier.service.CopyPlanService;
 import com.github.nlayna.hadoopcopier.service.CopyTaskService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 @RestController
 @RequestMapping("/api/v1/copy")
 @RequiredArgsConstructor
 public class CopyController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String NDJSON = "application/x-ndjson";
+
     private final CopyTaskService copyTaskService;
+    private final CopyPlanService copyPlanService;
+    private final CompressionTransforms compressionTransforms = new CompressionTransforms();
 
     @PostMapping
     public ResponseEntity<Map<String, String>> submitCopyRequest(@RequestBody CopyRequest request) {
-        if (request.getNamespace() == null || request.getNamespace().isBlank()) {
+        String error = validate(request);
+        if (error != null) {
             return ResponseEntity.badRequest()
-                    .body(Map.of("error", "namespace is required"));
+                    .body(Map.of("error", error));
         }
-        if (request.getItems() == null || request.getItems().isEmpty()) {
+
+        String requestId = copyTaskService.submitTask(request);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(Map.of("requestId", requestId));
+    }
+
+    /**
+     * Bulk submission: task settings come as query parameters, the body is NDJSON with one item per line.
+     * The task is opened before the body is read, and the response is NDJSON as well: its first line carries
+     * the request id as soon as the settings are accepted, the last one the item count once the body is read.
+     * Lines are parsed one at a time and each item starts copying as soon as it is read, so the body is never
+     * held in memory as a whole; while {@code copy.bulk-max-queued-items} items wait, reading pauses and the
+     * upload slows down to the copy rate. Lines that cannot be parsed or fail validation become failed items.
+     */
+    @PostMapping(value = "/bulk", consumes = NDJSON)
+    public ResponseEntity<StreamingResponseBody> submitBulkRequest(CopyRequest settings, InputStream body) {
+        String error = validateSettings(settings);
+        if (error != null) {
             return ResponseEntity.badRequest()
-                    .body(Map.of("error", "items must not be empty"));
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(out -> writeLine(new OutputStreamWriter(out, StandardCharsets.UTF_8),
+                            JSONObject.of("error", error)));
         }
-        if (request.getBandwidth() != null && request.getBandwidth() <= 0) {
+
+        CopyTaskService.BulkSubmission submission = copyTaskService.openBulkTask(settings);
+        StreamingResponseBody response = out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writeLine(writer, JSONObject.of("requestId", submission.getRequestId()));
+            boolean empty;
+            try (submission) {
+                readItems(settings, body, submission);
+                empty = submission.size() == 0;
+                if (empty) {
+                    submission.reject(null, "items must not be empty");
+                }
+            }
+            if (empty) {
+                writeLine(writer, JSONObject.of("requestId", submission.getRequestId(), "error", "items must not be empty"));
+            } else {
+                writeLine(writer, JSONObject.of("requestId", submission.getRequestId(), "items", submission.size()));
+            }
+        };
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(response);
+    }
+
+    private void readItems(CopyRequest settings, InputStream body, CopyTaskService.BulkSubmission submission)
+            throws IOException {
+        boolean upload = settings.getDirection() == CopyDirection.UPLOAD;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            CopyItem item;
+            try {
+                item = JSON.parseObject(line, CopyItem.class);
+            } catch (JSONException e) {
+                submission.reject(null, "line " + lineNumber + ": invalid JSON: " + e.getMessage());
+                continue;
+            }
+            String itemError = item == null ? "empty item" : validateItem(item, upload);
+            if (itemError != null) {
+                submission.reject(item, "line " + lineNumber + ": " + itemError);
+            } else {
+                submission.add(item);
+            }
+        }
+    }
+
+    private static void writeLine(Writer writer, JSONObject line) throws IOException {
+        writer.write(line.toJSONString());
+        writer.write('\n');
+        writer.flush();
+    }
+
+    @PostMapping("/plan")
+    public ResponseEntity<?> planCopyRequest(@RequestBody CopyRequest request) throws IOException {
+        String error = validate(request);
+        if (error != null) {
             return ResponseEntity.badRequest()
-                    .body(Map.of("error", "bandwidth must be positive"));
+                    .body(Map.of("error", error));
         }
 
-        String requestId = copyTaskService.submitTask(request);
-        return ResponseEntity.status(HttpStatus.ACCEPTED)
-                .body(Map.of("requestId", requestId));
+        if (request.getDirection() == CopyDirection.UPLOAD) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "plan is only supported for downloads"));
+        }
+
+        CopyPlan plan = copyPlanService.plan(request);
+        HttpStatus status = plan.isSufficientSpace() ? HttpStatus.OK : HttpStatus.INSUFFICIENT_STORAGE;
+        return ResponseEntity.status(status).body(plan);
     }
 
     @GetMapping("/{requestId}")
@@ -43,4 +159,123 @@ public class CopyController {
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
+
+    @GetMapping("/{requestId}/summary")
+    public ResponseEntity<CopyTaskSummary> getTaskSummary(@PathVariable String requestId) {
+        return copyTaskService.getSummary(requestId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{requestId}/items")
+    public ResponseEntity<ItemPage> getItems(@PathVariable String requestId,
+                                             @RequestParam(required = false) CopyItemStatus status,
+                                             @RequestParam(defaultValue = "0") int cursor,
+                                             @RequestParam(defaultValue = "100") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return copyTaskService.getItems(requestId, status, Math.max(0, cursor), pageSize)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{requestId}/items/{itemIndex}/files")
+    public ResponseEntity<FileStatusTable.FilePage> getItemFiles(@PathVariable String requestId,
+                                                                 @PathVariable int itemIndex,
+                                                                 @RequestParam(required = false) CopyItemStatus status,
+                                                                 @RequestParam(defaultValue = "0") int offset,
+                                                                 @RequestParam(defaultValue = "100") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return copyTaskService.getFiles(requestId, itemIndex, status, Math.max(0, offset), pageSize)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/{requestId}/retry")
+    public ResponseEntity<Map<String, String>> retryFailed(@PathVariable String requestId) throws IOException {
+        Optional<CopyTask> task = copyTaskService.getTask(requestId);
+        if (task.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (task.get().getCompletedAt() == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "task is still running"));
+        }
+
+        return copyTaskService.retryFailed(task.get())
+                .map(retryId -> ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("requestId", retryId)))
+                .orElse(ResponseEntity.badRequest().body(Map.of("error", "task has no failed items")));
+    }
+
+    private String validate(CopyRequest request) {
+        if (request.getNamespace() == null || request.getNamespace().isBlank()) {
+            return "namespace is required";
+        }
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            return "items must not be empty";
+        }
+        String error = validateSettings(request);
+        if (error != null) {
+            return error;
+        }
+        boolean upload = request.getDirection() == CopyDirection.UPLOAD;
+        for (CopyItem item : request.getItems()) {
+            String itemError = validateItem(item, upload);
+            if (itemError != null) {
+                return itemError;
+            }
+        }
+        return null;
+    }
+
+    private String validateSettings(CopyRequest request) {
+        if (request.getNamespace() == null || request.getNamespace().isBlank()) {
+            return "namespace is required";
+        }
+        if (request.getBandwidth() != null && request.getBandwidth() <= 0) {
+            return "bandwidth must be positive";
+        }
+        if (request.getBlockSize() != null && request.getBlockSize() <= 0) {
+            return "blockSize must be positive";
+        }
+        if (request.getReplication() != null && request.getReplication() <= 0) {
+            return "replication must be positive";
+        }
+        return null;
+    }
+
+    private String validateItem(CopyItem item, boolean upload) {
+        if (item.getTargetNamespace() != null && (item.getTargetPath() == null || item.getTargetPath().isBlank())) {
+            return "targetPath is required when targetNamespace is set";
+        }
+        if (upload && (item.getLocalPath() == null || item.getHdfsPath() == null || item.getTargetNamespace() != null)) {
+            return "upload items need localPath and hdfsPath and no targetNamespace";
+        }
+        if (item.getTransform() == TransformMode.COMPRESS) {
+            String codecError = compressionTransforms.validate(item.getCodec(), item.getCompressionLevel());
+            if (codecError != null) {
+                return codecError;
+            }
+        }
+        return validateFilter(item.getFilter());
+    }
+
+    private String validateFilter(CopyFilter filter) {
+        if (filter == null) {
+            return null;
+        }
+        for (String regex : new String[]{filter.getInclude(), filter.getExclude()}) {
+            if (regex == null) {
+                continue;
+            }
+            try {
+                Pattern.compile(regex);
+            } catch (PatternSyntaxException e) {
+                return "filter pattern is not a valid regex: " + regex;
+            }
+        }
+        if (filter.getMinSize() != null && filter.getMaxSize() != null && filter.getMinSize() > filter.getMaxSize()) {
+            return "filter minSize must not exceed maxSize";
+        }
+        return null;
+    }
 }
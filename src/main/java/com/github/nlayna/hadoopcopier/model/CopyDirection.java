@@ -0,0 +1,6 @@
+package com.github.nlayna.hadoopcopier.model;
+
+public enum CopyDirection {
+    DOWNLOAD,
+    UPLOAD
+}
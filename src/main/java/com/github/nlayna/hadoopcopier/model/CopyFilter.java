@@ -0,0 +1,15 @@
+package com.github.nlayna.hadoopcopier.model;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class CopyFilter {
+    private String include;
+    private String exclude;
+    private Long minSize;
+    private Long maxSize;
+    private Instant modifiedAfter;
+    private Instant modifiedBefore;
+}
@@ -6,4 +6,14 @@ import lombok.Data;
 public class CopyItem {
     private String hdfsPath;
     private String localPath;
+    private String targetNamespace;
+    private String targetPath;
+    private TransformMode transform;
+    private String codec;
+    private Integer compressionLevel;
+    private OutputMode outputMode;
+    private Long archiveMaxBytes;
+    private CopyFilter filter;
+    private SyncMode syncMode;
+    private String snapshotName;
 }
@@ -1,16 +1,36 @@
 package com.github.nlayna.hadoopcopier.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 @Data
 public class CopyItemTask {
     private String hdfsPath;
     private String localPath;
+    private String targetNamespace;
+    private String targetPath;
+    private TransformMode transform = TransformMode.NONE;
+    private String codec;
+    private Integer compressionLevel;
+    private OutputMode outputMode = OutputMode.FILES;
+    private Long archiveMaxBytes;
+    private CopyFilter filter;
+    private SyncMode syncMode = SyncMode.COPY;
+    private String snapshotName;
     private volatile CopyItemStatus status = CopyItemStatus.PENDING;
     private volatile long bytesCopied;
     private volatile long durationMs;
     private volatile String errorMessage;
     private volatile boolean checksumVerified;
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final FileStatusTable files = new FileStatusTable();
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final PhaseTimings phases = new PhaseTimings();
 
     public CopyItemTask(String hdfsPath, String localPath) {
         this.hdfsPath = hdfsPath;
@@ -0,0 +1,29 @@
+package com.github.nlayna.hadoopcopier.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class CopyPlan {
+    private String namespace;
+    private long totalBytes;
+    private long fileCount;
+    private long directoryCount;
+    private Map<String, Long> sizeDistribution = new LinkedHashMap<>();
+    private Double throughputBytesPerSec;
+    private Long estimatedDurationMs;
+    private boolean sufficientSpace = true;
+    private List<CopyPlanItem> items = new ArrayList<>();
+    private List<LocalStorage> localStorage = new ArrayList<>();
+
+    @Data
+    public static class LocalStorage {
+        private String store;
+        private long requiredBytes;
+        private long usableBytes;
+    }
+}
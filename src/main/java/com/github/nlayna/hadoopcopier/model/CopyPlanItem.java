@@ -0,0 +1,19 @@
+package com.github.nlayna.hadoopcopier.model;
+
+import lombok.Data;
+
+@Data
+public class CopyPlanItem {
+    private String hdfsPath;
+    private String localPath;
+    private boolean directory;
+    private long bytes;
+    private long fileCount;
+    private long directoryCount;
+    private String errorMessage;
+
+    public CopyPlanItem(String hdfsPath, String localPath) {
+        this.hdfsPath = hdfsPath;
+        this.localPath = localPath;
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.nlayna.hadoopcopier.model;
+
+/**
+ * Lane a task's items are scheduled in, highest first.
+ */
+public enum CopyPriority {
+    CRITICAL,
+    NORMAL,
+    BULK
+}
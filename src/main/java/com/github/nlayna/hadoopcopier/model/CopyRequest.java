@@ -9,4 +9,10 @@ public class CopyRequest {
     private String namespace;
     private List<CopyItem> items;
     private Integer bandwidth;
+    private WriteMode writeMode;
+    private CopyDirection direction;
+    private Long blockSize;
+    private Short replication;
+    private CopyPriority priority;
+    private Boolean deferUntilOffPeak;
 }
@@ -1,4 +1,11 @@
 package com.github.nlayna.hadoopcopier.model;
 
-public record CopyResult(long bytesCopied, boolean checksumVerified) {
+/**
+ * @param md5 digest of the local bytes of a single verified file, {@code null} for directories and unverified copies
+ */
+public record CopyResult(long bytesCopied, boolean checksumVerified, byte[] md5) {
+
+    public CopyResult(long bytesCopied, boolean checksumVerified) {
+        this(bytesCopied, checksumVerified, null);
+    }
 }
@@ -1,6 +1,9 @@
 package com.github.nlayna.hadoopcopier.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 import java.time.Instant;
 import java.util.List;
@@ -10,15 +13,37 @@ public class CopyTask {
     private final String requestId;
     private final String namespace;
     private final Integer bandwidth;
+    private WriteMode writeMode = WriteMode.BUFFERED;
+    private CopyDirection direction = CopyDirection.DOWNLOAD;
+    private Long blockSize;
+    private Short replication;
+    private CopyPriority priority = CopyPriority.NORMAL;
+    private boolean deferUntilOffPeak;
     private volatile CopyTaskStatus status = CopyTaskStatus.PENDING;
     private final List<CopyItemTask> items;
     private final Instant createdAt = Instant.now();
     private volatile Instant completedAt;
+    private volatile Instant deferredUntil;
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final TaskCounters counters = new TaskCounters();
 
     public CopyTask(String requestId, String namespace, Integer bandwidth, List<CopyItemTask> items) {
         this.requestId = requestId;
         this.namespace = namespace;
         this.bandwidth = bandwidth;
         this.items = items;
+        for (CopyItemTask item : items) {
+            counters.itemAdded(item.getStatus());
+        }
+    }
+
+    /**
+     * Appends an item to a task whose items are still arriving.
+     */
+    public void addItem(CopyItemTask item) {
+        items.add(item);
+        counters.itemAdded(item.getStatus());
     }
 }
@@ -0,0 +1,20 @@
+package com.github.nlayna.hadoopcopier.model;
+
+import java.time.Instant;
+
+/**
+ * Task status without the item list, built from the task's counters.
+ */
+public record CopyTaskSummary(String requestId, String namespace, CopyTaskStatus status, Instant createdAt,
+                              Instant completedAt, int items, int pending, int inProgress, int completed,
+                              int failed, long bytesCopied, long filesCompleted, long filesFailed) {
+
+    public static CopyTaskSummary of(CopyTask task) {
+        TaskCounters counters = task.getCounters();
+        return new CopyTaskSummary(task.getRequestId(), task.getNamespace(), task.getStatus(), task.getCreatedAt(),
+                task.getCompletedAt(), counters.totalItems(),
+                counters.items(CopyItemStatus.PENDING), counters.items(CopyItemStatus.IN_PROGRESS),
+                counters.items(CopyItemStatus.COMPLETED), counters.items(CopyItemStatus.FAILED),
+                counters.bytesCopied(), counters.filesCompleted(), counters.filesFailed());
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.nlayna.hadoopcopier.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-file results of a directory item, laid out column-wise so a few hundred thousand files cost
+ * a few dozen bytes each instead of an object per file. Directories are stored once and referenced
+ * by index, file names are packed UTF-8 in one byte array, sizes, states and durations live in
+ * primitive arrays, and error messages are kept only for failed files.
+ */
+public class FileStatusTable {
+
+    private static final CopyItemStatus[] STATUSES = CopyItemStatus.values();
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final List<String> sourceDirs = new ArrayList<>();
+    private final List<String> localDirs = new ArrayList<>();
+    private final Map<Integer, String> errors = new HashMap<>();
+    private final int[] statusCounts = new int[STATUSES.length];
+
+    private int[] dirIndexes = new int[0];
+    private int[] nameEnds = new int[0];
+    private byte[] names = new byte[0];
+    private long[] sizes = new long[0];
+    private byte[] states = new byte[0];
+    private int[] durationsMs = new int[0];
+    private int size;
+    private int nameBytes;
+    private boolean walkComplete;
+
+    public synchronized int addDirectory(String sourceDir, String localDir) {
+        sourceDirs.add(sourceDir);
+        localDirs.add(localDir);
+        return sourceDirs.size() - 1;
+    }
+
+    public synchronized int addFile(int directory, String name, long length) {
+        ensureCapacity(size + 1);
+        byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes + encoded.length > names.length) {
+            names = Arrays.copyOf(names, Math.max(names.length * 2, nameBytes + encoded.length));
+        }
+        System.arraycopy(encoded, 0, names, nameBytes, encoded.length);
+        nameBytes += encoded.length;
+
+        dirIndexes[size] = directory;
+        nameEnds[size] = nameBytes;
+        sizes[size] = length;
+        states[size] = (byte) CopyItemStatus.PENDING.ordinal();
+        statusCounts[CopyItemStatus.PENDING.ordinal()]++;
+        return size++;
+    }
+
+    public synchronized void markCompleted(int file, long durationMs) {
+        setState(file, CopyItemStatus.COMPLETED);
+        durationsMs[file] = (int) Math.min(durationMs, Integer.MAX_VALUE);
+    }
+
+    public synchronized void markFailed(int file, long durationMs, String error) {
+        setState(file, CopyItemStatus.FAILED);
+        durationsMs[file] = (int) Math.min(durationMs, Integer.MAX_VALUE);
+        errors.put(file, error);
+    }
+
+    /**
+     * Records that the whole tree has been listed, so files missing from the table are not part of the item.
+     */
+    public synchronized void markWalkComplete() {
+        walkComplete = true;
+    }
+
+    public synchronized boolean isWalkComplete() {
+        return walkComplete;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int count(CopyItemStatus status) {
+        return statusCounts[status.ordinal()];
+    }
+
+    /**
+     * Files in insertion order, optionally restricted to one status.
+     */
+    public synchronized FilePage page(CopyItemStatus status, int offset, int limit) {
+        List<FileEntry> files = new ArrayList<>(Math.min(limit, size));
+        int matched = 0;
+        for (int i = 0; i < size; i++) {
+            if (status != null && states[i] != status.ordinal()) {
+                continue;
+            }
+            if (matched >= offset && files.size() < limit) {
+                files.add(entry(i));
+            }
+            matched++;
+        }
+        return new FilePage(matched, offset, limit, files);
+    }
+
+    public synchronized List<FileEntry> entries(CopyItemStatus status) {
+        return page(status, 0, Integer.MAX_VALUE).files();
+    }
+
+    private void setState(int file, CopyItemStatus status) {
+        statusCounts[states[file]]--;
+        states[file] = (byte) status.ordinal();
+        statusCounts[status.ordinal()]++;
+    }
+
+    private FileEntry entry(int file) {
+        int nameStart = file == 0 ? 0 : nameEnds[file - 1];
+        String name = new String(names, nameStart, nameEnds[file] - nameStart, StandardCharsets.UTF_8);
+        String sourceDir = sourceDirs.get(dirIndexes[file]);
+        return new FileEntry(sourceDir + "/" + name, localDirs.get(dirIndexes[file]), name, sizes[file],
+                STATUSES[states[file]], durationsMs[file], errors.get(file));
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= dirIndexes.length) {
+            return;
+        }
+        int capacity = Math.max(INITIAL_CAPACITY, Math.max(required, dirIndexes.length * 2));
+        dirIndexes = Arrays.copyOf(dirIndexes, capacity);
+        nameEnds = Arrays.copyOf(nameEnds, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        states = Arrays.copyOf(states, capacity);
+        durationsMs = Arrays.copyOf(durationsMs, capacity);
+    }
+
+    public record FileEntry(String path, String localDir, String name, long size, CopyItemStatus status,
+                            long durationMs, String error) {
+    }
+
+    public record FilePage(int total, int offset, int limit, List<FileEntry> files) {
+    }
+}
@@ -0,0 +1,12 @@
+package com.github.nlayna.hadoopcopier.model;
+
+import java.util.List;
+
+/**
+ * One page of task items. {@code nextCursor} is the index to continue from, or {@code null} after the last item.
+ */
+public record ItemPage(List<Entry> items, Integer nextCursor) {
+
+    public record Entry(int index, CopyItemTask item) {
+    }
+}
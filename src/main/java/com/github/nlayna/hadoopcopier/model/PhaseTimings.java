@@ -0,0 +1,77 @@
+package com.github.nlayna.hadoopcopier.model;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Where the time of a copy went, summed over all files of an item. Serialized as milliseconds per phase,
+ * phases that took no time are left out.
+ */
+public class PhaseTimings {
+
+    public enum Phase {
+        /** Creating the FileSystem clients of the item. */
+        FS_CREATE("fsCreate"),
+        /** NameNode metadata calls: status, listings, globs. */
+        METADATA("metadata"),
+        /** Waiting for a stream or DataNode read slot. */
+        SLOT_WAIT("slotWait"),
+        /** The {@code open} call. */
+        OPEN("open"),
+        /** The first read after open, until the first bytes arrive. */
+        FIRST_BYTE("firstByte"),
+        /** The remaining reads, including decompression. */
+        READ("read"),
+        /** Sleeping in the bandwidth throttle. */
+        THROTTLE("throttle"),
+        /** Local writes, including compression, digests and closing the file. */
+        WRITE("write"),
+        /** Re-reading the local file for checksum verification. */
+        VERIFY("verify");
+
+        private final String key;
+
+        Phase(String key) {
+            this.key = key;
+        }
+
+        public String key() {
+            return key;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final AtomicLongArray nanos = new AtomicLongArray(PHASES.length);
+
+    public void add(Phase phase, long elapsedNanos) {
+        if (elapsedNanos > 0) {
+            nanos.addAndGet(phase.ordinal(), elapsedNanos);
+        }
+    }
+
+    public void addAll(PhaseTimings other) {
+        for (Phase phase : PHASES) {
+            add(phase, other.nanos(phase));
+        }
+    }
+
+    public long nanos(Phase phase) {
+        return nanos.get(phase.ordinal());
+    }
+
+    @JsonValue
+    public Map<String, Long> toMillis() {
+        Map<String, Long> millis = new LinkedHashMap<>();
+        for (Phase phase : PHASES) {
+            long value = nanos(phase) / 1_000_000;
+            if (value > 0) {
+                millis.put(phase.key(), value);
+            }
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,6 @@
+package com.github.nlayna.hadoopcopier.model;
+
+public enum SyncMode {
+    COPY,
+    SNAPSHOT_DIFF
+}
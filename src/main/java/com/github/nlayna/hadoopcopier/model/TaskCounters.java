@@ -0,0 +1,60 @@
+package com.github.nlayna.hadoopcopier.model;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Item and file counts of a task, updated on every status change so the summary of a task with
+ * hundreds of thousands of items is read in constant time.
+ */
+public class TaskCounters {
+
+    private final AtomicIntegerArray items = new AtomicIntegerArray(CopyItemStatus.values().length);
+    private final LongAdder bytesCopied = new LongAdder();
+    private final LongAdder filesCompleted = new LongAdder();
+    private final LongAdder filesFailed = new LongAdder();
+
+    public void itemAdded(CopyItemStatus status) {
+        items.incrementAndGet(status.ordinal());
+    }
+
+    public void itemChanged(CopyItemStatus from, CopyItemStatus to) {
+        if (from != to) {
+            items.decrementAndGet(from.ordinal());
+            items.incrementAndGet(to.ordinal());
+        }
+    }
+
+    public void addBytes(long bytes) {
+        bytesCopied.add(bytes);
+    }
+
+    public void addFiles(long completed, long failed) {
+        filesCompleted.add(completed);
+        filesFailed.add(failed);
+    }
+
+    public int items(CopyItemStatus status) {
+        return items.get(status.ordinal());
+    }
+
+    public int totalItems() {
+        int total = 0;
+        for (int i = 0; i < items.length(); i++) {
+            total += items.get(i);
+        }
+        return total;
+    }
+
+    public long bytesCopied() {
+        return bytesCopied.sum();
+    }
+
+    public long filesCompleted() {
+        return filesCompleted.sum();
+    }
+
+    public long filesFailed() {
+        return filesFailed.sum();
+    }
+}
@@ -0,0 +1,7 @@
+package com.github.nlayna.hadoopcopier.model;
+
+public enum TransformMode {
+    NONE,
+    DECOMPRESS,
+    COMPRESS
+}
@@ -0,0 +1,8 @@
+package com.github.nlayna.hadoopcopier.model;
+
+public enum WriteMode {
+    BUFFERED,
+    FSYNC,
+    GROUP_FSYNC,
+    DIRECT
+}
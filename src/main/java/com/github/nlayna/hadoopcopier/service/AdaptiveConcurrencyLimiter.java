@@ -0,0 +1,245 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FileSystem;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits concurrent HDFS streams per namespace and adapts the limit at runtime (AIMD). Completed streams are
+ * collected in windows of {@code copy.adaptive-window}; at the end of each window the limit
+ * <ul>
+ *     <li>is cut by {@code copy.adaptive-backoff} when the error rate exceeds {@code copy.adaptive-error-threshold},</li>
+ *     <li>is cut the same way when per-stream latency (time per MiB) exceeds its long-term average by
+ *     {@code copy.adaptive-latency-tolerance},</li>
+ *     <li>drops by one when the previous increase brought less than 5% more aggregate throughput,</li>
+ *     <li>grows by one when the limit was reached during the window, i.e. more streams were wanted.</li>
+ * </ul>
+ * The limit stays within {@code copy.adaptive-min-streams} and {@code copy.adaptive-max-streams}. The copy thread
+ * pool is still the hard cap, threads above the limit wait for a permit.
+ */
+@Slf4j
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    private static final Permit NO_PERMIT = new Permit() {
+        @Override
+        public void success(long bytes) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+    private static final long MIB = 1024 * 1024;
+    private static final double MIN_THROUGHPUT_GAIN = 1.05;
+    private static final double LATENCY_SMOOTHING = 0.1;
+
+    private final boolean enabled;
+    private final int minStreams;
+    private final int maxStreams;
+    private final long windowNanos;
+    private final double backoff;
+    private final double errorThreshold;
+    private final double latencyTolerance;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier clock;
+    private final ConcurrentMap<String, Limit> limits = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AdaptiveConcurrencyLimiter(CopyProperties copyProperties, MeterRegistry meterRegistry) {
+        this(copyProperties, meterRegistry, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimiter(CopyProperties copyProperties, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.enabled = copyProperties.isAdaptiveConcurrency();
+        this.minStreams = Math.max(1, copyProperties.getAdaptiveMinStreams());
+        int configuredMax = copyProperties.getAdaptiveMaxStreams() > 0
+                ? copyProperties.getAdaptiveMaxStreams()
+                : copyProperties.getThreadPoolSize();
+        this.maxStreams = Math.max(minStreams, configuredMax);
+        this.windowNanos = copyProperties.getAdaptiveWindow().toNanos();
+        this.backoff = copyProperties.getAdaptiveBackoff();
+        this.errorThreshold = copyProperties.getAdaptiveErrorThreshold();
+        this.latencyTolerance = copyProperties.getAdaptiveLatencyTolerance();
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Blocks until the namespace of {@code fs} has a free stream slot. The caller reports the transferred
+     * bytes through {@link Permit#success}; a permit closed without it counts as an error.
+     */
+    public Permit acquire(FileSystem fs) throws InterruptedIOException {
+        if (!enabled) {
+            return NO_PERMIT;
+        }
+        return limits.computeIfAbsent(namespaceOf(fs), Limit::new).acquire();
+    }
+
+    int currentLimit(String namespace) {
+        Limit limit = limits.get(namespace);
+        return limit == null ? initialLimit() : limit.current();
+    }
+
+    private int initialLimit() {
+        return Math.max(minStreams, maxStreams / 2);
+    }
+
+    static String namespaceOf(FileSystem fs) {
+        URI uri = fs.getUri();
+        if (uri == null) {
+            return "default";
+        }
+        return uri.getAuthority() != null ? uri.getAuthority() : uri.getScheme();
+    }
+
+    public interface Permit extends Closeable {
+
+        void success(long bytes);
+
+        @Override
+        void close();
+    }
+
+    private final class Limit {
+
+        private final String namespace;
+        private int limit = initialLimit();
+        private int inFlight;
+
+        private long windowStart = clock.getAsLong();
+        private long windowBytes;
+        private int windowSuccesses;
+        private int windowErrors;
+        private double windowLatency;
+        private boolean saturated;
+
+        private double previousThroughput;
+        private double longLatency;
+        private boolean lastChangeIncrease;
+
+        private Limit(String namespace) {
+            this.namespace = namespace;
+            Tags tags = Tags.of("namespace", namespace);
+            meterRegistry.gauge("copy.concurrency.limit", tags, this, Limit::current);
+            meterRegistry.gauge("copy.concurrency.in.flight", tags, this, Limit::inFlight);
+        }
+
+        synchronized int current() {
+            return limit;
+        }
+
+        synchronized int inFlight() {
+            return inFlight;
+        }
+
+        synchronized Permit acquire() throws InterruptedIOException {
+            while (inFlight >= limit) {
+                saturated = true;
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for a stream slot in " + namespace);
+                }
+            }
+            inFlight++;
+            if (inFlight >= limit) {
+                saturated = true;
+            }
+            long started = clock.getAsLong();
+            return new Permit() {
+                private long bytes = -1;
+                private boolean closed;
+
+                @Override
+                public void success(long transferred) {
+                    bytes = transferred;
+                }
+
+                @Override
+                public void close() {
+                    if (!closed) {
+                        closed = true;
+                        release(started, bytes);
+                    }
+                }
+            };
+        }
+
+        private synchronized void release(long started, long bytes) {
+            inFlight--;
+            long now = clock.getAsLong();
+            if (bytes >= 0) {
+                windowSuccesses++;
+                windowBytes += bytes;
+                windowLatency += (double) (now - started) / Math.max(bytes, MIB) * MIB;
+            } else {
+                windowErrors++;
+            }
+            if (now - windowStart >= windowNanos) {
+                evaluate(now);
+            }
+            notifyAll();
+        }
+
+        private void evaluate(long now) {
+            int samples = windowSuccesses + windowErrors;
+            double seconds = (now - windowStart) / 1e9;
+            double throughput = windowBytes / seconds;
+            double errorRate = samples == 0 ? 0 : (double) windowErrors / samples;
+            double latency = windowSuccesses == 0 ? 0 : windowLatency / windowSuccesses;
+
+            if (errorRate > errorThreshold) {
+                change((int) (limit * backoff), "errors");
+            } else if (longLatency > 0 && latency > longLatency * latencyTolerance) {
+                change((int) (limit * backoff), "latency");
+            } else if (lastChangeIncrease && throughput < previousThroughput * MIN_THROUGHPUT_GAIN) {
+                change(limit - 1, "no-throughput-gain");
+            } else if (saturated) {
+                change(limit + 1, "saturated");
+            } else {
+                lastChangeIncrease = false;
+            }
+
+            if (latency > 0) {
+                longLatency = longLatency == 0 ? latency : longLatency + (latency - longLatency) * LATENCY_SMOOTHING;
+            }
+            previousThroughput = throughput;
+            windowStart = now;
+            windowBytes = 0;
+            windowSuccesses = 0;
+            windowErrors = 0;
+            windowLatency = 0;
+            saturated = inFlight >= limit;
+        }
+
+        private void change(int target, String reason) {
+            int updated = Math.max(minStreams, Math.min(maxStreams, target));
+            lastChangeIncrease = updated > limit;
+            if (updated == limit) {
+                return;
+            }
+            String direction = updated > limit ? "increase" : "decrease";
+            log.info("Stream limit for {}: {} -> {} ({})", namespace, limit, updated, reason);
+            meterRegistry.counter("copy.concurrency.changes",
+                    "namespace", namespace, "direction", direction, "reason", reason).increment();
+            limit = updated;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FileSystem;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time-of-day bandwidth caps from {@code copy.bandwidth-schedule}. Each window caps the aggregate read rate of
+ * its namespaces (all namespaces when none are listed) on the given days; overlapping windows take the lowest
+ * cap, and outside every window the namespace is off-peak and uncapped. Times are in
+ * {@code copy.bandwidth-schedule-zone}, the system zone by default.
+ * <p>
+ * All streams of a namespace share one token bucket whose rate is looked up on every read, so running copies
+ * slow down or speed up as soon as a window starts or ends. The cap applies on top of a task's own
+ * {@code bandwidth}, which still limits each of its streams.
+ */
+@Slf4j
+@Component
+public class BandwidthCalendar {
+
+    private static final long MB = 1024 * 1024;
+    private static final int DAYS_AHEAD = 8;
+
+    private final List<Window> windows;
+    private final ZoneId zone;
+    private final Clock clock;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BandwidthCalendar(CopyProperties copyProperties, MeterRegistry meterRegistry) {
+        this(copyProperties, meterRegistry, Clock.systemDefaultZone());
+    }
+
+    BandwidthCalendar(CopyProperties copyProperties, MeterRegistry meterRegistry, Clock clock) {
+        this.windows = new ArrayList<>();
+        for (CopyProperties.BandwidthWindow window : copyProperties.getBandwidthSchedule()) {
+            windows.add(Window.of(window));
+        }
+        this.zone = copyProperties.getBandwidthScheduleZone() != null
+                ? ZoneId.of(copyProperties.getBandwidthScheduleZone())
+                : clock.getZone();
+        this.clock = clock;
+        this.meterRegistry = meterRegistry;
+        if (!windows.isEmpty()) {
+            log.info("Bandwidth schedule: {} windows, zone {}", windows.size(), zone);
+        }
+    }
+
+    public boolean isEnabled() {
+        return !windows.isEmpty();
+    }
+
+    /**
+     * Current cap of {@code namespace} in bytes per second, 0 when it is off-peak.
+     */
+    public long capBytesPerSecond(String namespace) {
+        return capAt(namespace, ZonedDateTime.now(clock.withZone(zone)));
+    }
+
+    public boolean isPeak(String namespace) {
+        return capBytesPerSecond(namespace) > 0;
+    }
+
+    /**
+     * Start of the next off-peak period of {@code namespace}: now if it is off-peak already, {@code null} if
+     * the schedule never leaves it uncapped within a week.
+     */
+    public Instant nextOffPeak(String namespace) {
+        ZonedDateTime now = ZonedDateTime.now(clock.withZone(zone));
+        if (capAt(namespace, now) == 0) {
+            return now.toInstant();
+        }
+        ZonedDateTime next = null;
+        LocalDate today = now.toLocalDate();
+        for (int day = 0; day < DAYS_AHEAD; day++) {
+            for (Window window : windows) {
+                ZonedDateTime end = today.plusDays(day).atTime(window.to()).atZone(zone);
+                if (end.isAfter(now) && (next == null || end.isBefore(next)) && capAt(namespace, end) == 0) {
+                    next = end;
+                }
+            }
+        }
+        return next != null ? next.toInstant() : null;
+    }
+
+    /**
+     * Wraps a stream read from {@code fs} so it draws from the namespace's shared budget. Returns {@code in}
+     * itself when no window covers the namespace.
+     */
+    public InputStream throttle(InputStream in, FileSystem fs) {
+        String namespace = AdaptiveConcurrencyLimiter.namespaceOf(fs);
+        if (windows.stream().noneMatch(window -> window.covers(namespace))) {
+            return in;
+        }
+        return new ScheduledInputStream(in, buckets.computeIfAbsent(namespace, Bucket::new));
+    }
+
+    long capAt(String namespace, ZonedDateTime time) {
+        long cap = 0;
+        for (Window window : windows) {
+            if (window.covers(namespace) && window.isActive(time)) {
+                long bytes = window.mbPerSec() * MB;
+                cap = cap == 0 ? bytes : Math.min(cap, bytes);
+            }
+        }
+        return cap;
+    }
+
+    private record Window(Set<String> namespaces, Set<DayOfWeek> days, LocalTime from, LocalTime to,
+                          long mbPerSec) {
+
+        static Window of(CopyProperties.BandwidthWindow config) {
+            if (config.getMbPerSec() <= 0) {
+                throw new IllegalArgumentException("Bandwidth window mb-per-sec must be positive, got: "
+                        + config.getMbPerSec());
+            }
+            Set<DayOfWeek> days = config.getDays().isEmpty()
+                    ? EnumSet.allOf(DayOfWeek.class)
+                    : EnumSet.copyOf(config.getDays());
+            try {
+                return new Window(Set.copyOf(config.getNamespaces()), days, LocalTime.parse(config.getFrom()),
+                        LocalTime.parse(config.getTo()), config.getMbPerSec());
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid bandwidth window time: " + e.getParsedString(), e);
+            }
+        }
+
+        boolean covers(String namespace) {
+            return namespaces.isEmpty() || namespaces.contains(namespace);
+        }
+
+        boolean isActive(ZonedDateTime time) {
+            LocalTime at = time.toLocalTime();
+            DayOfWeek day = time.getDayOfWeek();
+            if (from.equals(to)) {
+                return days.contains(day);
+            }
+            if (from.isBefore(to)) {
+                return days.contains(day) && !at.isBefore(from) && at.isBefore(to);
+            }
+            // past midnight: the evening part on the listed day, the morning part on the day after
+            return (days.contains(day) && !at.isBefore(from)) || (days.contains(day.minus(1)) && at.isBefore(to));
+        }
+    }
+
+    /**
+     * Token bucket with one second of burst at the namespace's current cap. Readers pay for what they have
+     * read and sleep off any debt, so concurrent streams share the cap in proportion to how much they read.
+     */
+    private final class Bucket {
+
+        private final String namespace;
+        private long rate;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        private Bucket(String namespace) {
+            this.namespace = namespace;
+            Tags tags = Tags.of("namespace", namespace);
+            meterRegistry.gauge("copy.bandwidth.cap", tags, this, bucket -> bucket.capBytesPerSecond());
+        }
+
+        private long capBytesPerSecond() {
+            return BandwidthCalendar.this.capBytesPerSecond(namespace);
+        }
+
+        long consume(long bytes) throws InterruptedIOException {
+            long waitNanos = reserve(bytes);
+            if (waitNanos <= 0) {
+                return 0;
+            }
+            meterRegistry.timer("copy.bandwidth.throttle.wait", "namespace", namespace)
+                    .record(waitNanos, TimeUnit.NANOSECONDS);
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for bandwidth of " + namespace);
+            }
+            return waitNanos;
+        }
+
+        private synchronized long reserve(long bytes) {
+            long cap = capBytesPerSecond();
+            long now = System.nanoTime();
+            if (cap != rate) {
+                log.info("Bandwidth cap for {}: {} -> {} MB/s", namespace, rate / MB, cap / MB);
+                rate = cap;
+                tokens = Math.min(tokens, cap);
+            }
+            if (cap == 0) {
+                tokens = 0;
+                refilledAt = now;
+                return 0;
+            }
+            tokens = Math.min(cap, tokens + (now - refilledAt) / 1e9 * cap);
+            refilledAt = now;
+            tokens -= bytes;
+            return tokens >= 0 ? 0 : (long) (-tokens / cap * 1e9);
+        }
+    }
+
+    /**
+     * Stream drawing from a namespace budget.
+     */
+    public static final class ScheduledInputStream extends FilterInputStream {
+
+        private final Bucket bucket;
+        private long sleptNanos;
+
+        private ScheduledInputStream(InputStream in, Bucket bucket) {
+            super(in);
+            this.bucket = bucket;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                sleptNanos += bucket.consume(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int bytesRead = in.read(b, off, len);
+            if (bytesRead > 0) {
+                sleptNanos += bucket.consume(bytesRead);
+            }
+            return bytesRead;
+        }
+
+        /**
+         * Total time spent waiting for the namespace budget.
+         */
+        public long getSleptNanos() {
+            return sleptNanos;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.model.CopyItemTask;
+import com.github.nlayna.hadoopcopier.model.TransformMode;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.CompressionInputStream;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.Decompressor;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Codec-aware stream wrappers for per-item transforms. Decompression resolves the codec from the
+ * source file extension through {@link CompressionCodecFactory}; compression uses java.util.zip for gzip
+ * (so the level is honoured without native zlib) and Hadoop codecs for everything else.
+ */
+public class CompressionTransforms {
+
+    public static final String DEFAULT_CODEC = "gzip";
+
+    private static final String ZSTD_CODEC = "zstandard";
+    private static final String LZ4_CODEC = "lz4";
+
+    private final Configuration baseConf = new Configuration();
+    private final CompressionCodecFactory decompressionCodecs = new CompressionCodecFactory(baseConf);
+    private final ConcurrentMap<String, CompressionCodec> compressionCodecs = new ConcurrentHashMap<>();
+
+    public InputStream wrapInput(InputStream in, Path sourcePath, CopyItemTask item) throws IOException {
+        if (item.getTransform() != TransformMode.DECOMPRESS) {
+            return in;
+        }
+        CompressionCodec codec = decompressionCodecs.getCodec(sourcePath);
+        if (codec == null) {
+            return in;
+        }
+        Decompressor decompressor = CodecPool.getDecompressor(codec);
+        CompressionInputStream decompressed = codec.createInputStream(in, decompressor);
+        return new FilterInputStream(decompressed) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    CodecPool.returnDecompressor(decompressor);
+                }
+            }
+        };
+    }
+
+    public OutputStream wrapOutput(OutputStream target, CopyItemTask item) throws IOException {
+        if (item.getTransform() != TransformMode.COMPRESS) {
+            return target;
+        }
+        String codecName = codecName(item);
+        Integer level = item.getCompressionLevel();
+        if (DEFAULT_CODEC.equals(codecName)) {
+            return level == null ? new GZIPOutputStream(target, true) : new LeveledGzipOutputStream(target, level);
+        }
+
+        CompressionCodec codec = compressionCodec(codecName, level);
+        Compressor compressor = null;
+        CompressionOutputStream compressed;
+        try {
+            compressor = CodecPool.getCompressor(codec);
+            compressed = codec.createOutputStream(target, compressor);
+        } catch (RuntimeException | LinkageError e) {
+            CodecPool.returnCompressor(compressor);
+            throw new IOException("Codec " + codecName + " is not available: " + e.getMessage(), e);
+        }
+        Compressor pooled = compressor;
+        return new FilterOutputStream(compressed) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    CodecPool.returnCompressor(pooled);
+                }
+            }
+        };
+    }
+
+    /**
+     * Local name of a file found inside a directory item: the codec suffix is dropped when decompressing
+     * and appended when compressing.
+     */
+    public String localName(String name, CopyItemTask item) throws IOException {
+        if (item.getTransform() == TransformMode.DECOMPRESS) {
+            CompressionCodec codec = decompressionCodecs.getCodec(new Path(name));
+            return codec == null ? name : CompressionCodecFactory.removeSuffix(name, codec.getDefaultExtension());
+        }
+        if (item.getTransform() == TransformMode.COMPRESS) {
+            String codecName = codecName(item);
+            String extension = DEFAULT_CODEC.equals(codecName)
+                    ? ".gz"
+                    : compressionCodec(codecName, item.getCompressionLevel()).getDefaultExtension();
+            return name + extension;
+        }
+        return name;
+    }
+
+    /**
+     * Checks a COMPRESS codec and level against this runtime, so that a codec whose native library or
+     * optional jar is missing (zstd needs libhadoop, lz4 needs lz4-java) is rejected when the request is
+     * submitted instead of failing on the first file.
+     *
+     * @return an error message, or {@code null} when the codec can compress at the requested level
+     */
+    public String validate(String codec, Integer level) {
+        String codecName = codecName(codec);
+        String levelError = validateLevel(codecName, level);
+        if (levelError != null) {
+            return levelError;
+        }
+        if (DEFAULT_CODEC.equals(codecName)) {
+            return null;
+        }
+
+        Compressor compressor = null;
+        try {
+            // creating a compressor runs the codec's native and library checks
+            compressor = CodecPool.getCompressor(compressionCodec(codecName, level));
+            return null;
+        } catch (IOException e) {
+            return e.getMessage();
+        } catch (RuntimeException | LinkageError e) {
+            return "codec " + codec + " is not available in this runtime: " + e;
+        } finally {
+            if (compressor != null) {
+                CodecPool.returnCompressor(compressor);
+            }
+        }
+    }
+
+    private static String validateLevel(String codecName, Integer level) {
+        if (level == null) {
+            return null;
+        }
+        return switch (codecName) {
+            case DEFAULT_CODEC -> level >= 1 && level <= 9 ? null : "compressionLevel for gzip must be 1-9";
+            case ZSTD_CODEC -> level >= 1 && level <= 22 ? null : "compressionLevel for zstd must be 1-22";
+            // the lz4 codec has no levels, only the choice between the fast and the HC compressor
+            case LZ4_CODEC -> level == 0 || level == 1 ? null : "compressionLevel for lz4 must be 0 (fast) or 1 (HC)";
+            default -> "compressionLevel is not supported for codec " + codecName;
+        };
+    }
+
+    private String codecName(CopyItemTask item) {
+        return codecName(item.getCodec());
+    }
+
+    private static String codecName(String codec) {
+        if (codec == null || codec.isBlank()) {
+            return DEFAULT_CODEC;
+        }
+        String codecName = codec.toLowerCase();
+        // Hadoop resolves codecs by class alias, which for ZStandardCodec is "zstandard"
+        return "zstd".equals(codecName) ? ZSTD_CODEC : codecName;
+    }
+
+    private CompressionCodec compressionCodec(String codecName, Integer level) throws IOException {
+        String key = codecName + ":" + level;
+        CompressionCodec codec = compressionCodecs.get(key);
+        if (codec != null) {
+            return codec;
+        }
+
+        Configuration conf = new Configuration(baseConf);
+        if (level != null) {
+            conf.setInt("io.compression.codec.zstd.level", level);
+            conf.setBoolean("io.compression.codec.lz4.use.lz4hc", level > 0);
+        }
+        codec = new CompressionCodecFactory(conf).getCodecByName(codecName);
+        if (codec == null) {
+            throw new IOException("Unknown compression codec: " + codecName);
+        }
+        CompressionCodec existing = compressionCodecs.putIfAbsent(key, codec);
+        return existing != null ? existing : codec;
+    }
+
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+        private LeveledGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out, true);
+            def.setLevel(level);
+        }
+    }
+}
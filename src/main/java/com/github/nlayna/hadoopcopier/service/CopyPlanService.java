@@ -0,0 +1,206 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import com.github.nlayna.hadoopcopier.model.CopyItem;
+import com.github.nlayna.hadoopcopier.model.CopyPlan;
+import com.github.nlayna.hadoopcopier.model.CopyPlanItem;
+import com.github.nlayna.hadoopcopier.model.CopyRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.springframework.stereotype.Service;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.Stack;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CopyPlanService {
+
+    private static final long MB = 1024L * 1024L;
+    private static final long[] SIZE_BUCKET_LIMITS = {MB, 128 * MB, 1024 * MB};
+    private static final String[] SIZE_BUCKET_NAMES = {"<1MB", "1MB-128MB", "128MB-1GB", ">=1GB"};
+
+    private final HdfsFileSystemFactory fileSystemFactory;
+    private final ThroughputTracker throughputTracker;
+    private final CopyProperties copyProperties;
+    private final LocalDiskSelector localDiskSelector;
+    private final HdfsMetadataClient metadataClient;
+
+    public CopyPlan plan(CopyRequest request) throws IOException {
+        CopyPlan plan = new CopyPlan();
+        plan.setNamespace(request.getNamespace());
+        for (String bucket : SIZE_BUCKET_NAMES) {
+            plan.getSizeDistribution().put(bucket, 0L);
+        }
+
+        try (FileSystem fs = fileSystemFactory.createFileSystem(request.getNamespace())) {
+            for (CopyItem item : request.getItems()) {
+                CopyPlanItem planItem = new CopyPlanItem(item.getHdfsPath(), item.getLocalPath());
+                try {
+                    resolveItem(fs, item, planItem, plan.getSizeDistribution());
+                } catch (FileNotFoundException e) {
+                    planItem.setErrorMessage("Source path does not exist: " + item.getHdfsPath());
+                } catch (IOException e) {
+                    planItem.setErrorMessage(e.getMessage());
+                }
+                plan.getItems().add(planItem);
+                plan.setTotalBytes(plan.getTotalBytes() + planItem.getBytes());
+                plan.setFileCount(plan.getFileCount() + planItem.getFileCount());
+                plan.setDirectoryCount(plan.getDirectoryCount() + planItem.getDirectoryCount());
+            }
+        }
+
+        estimateDuration(plan, request);
+        checkLocalSpace(plan);
+
+        log.info("Planned copy for namespace {}: {} bytes, {} files, {} directories, sufficientSpace={}",
+                plan.getNamespace(), plan.getTotalBytes(), plan.getFileCount(), plan.getDirectoryCount(),
+                plan.isSufficientSpace());
+        return plan;
+    }
+
+    private void resolveItem(FileSystem fs, CopyItem item, CopyPlanItem planItem,
+                             Map<String, Long> sizeDistribution) throws IOException {
+        Path sourcePath = new Path(item.getHdfsPath());
+        SourceFilter filter = SourceFilter.of(item.getFilter());
+
+        if (SourceFilter.isGlob(item.getHdfsPath())) {
+            FileStatus[] matches = metadataClient.globStatus(fs, sourcePath);
+            if (matches == null || matches.length == 0) {
+                throw new IOException("No source paths match: " + item.getHdfsPath());
+            }
+            planItem.setDirectory(true);
+            for (FileStatus match : matches) {
+                if (match.isDirectory()) {
+                    if (filter.acceptsDirectory(match)) {
+                        walkFiltered(fs, match.getPath(), filter, planItem, sizeDistribution);
+                    }
+                } else if (filter.acceptsFile(match)) {
+                    addFile(planItem, sizeDistribution, match.getLen());
+                }
+            }
+            return;
+        }
+
+        FileStatus status = metadataClient.getFileStatus(fs, sourcePath);
+        if (!status.isDirectory()) {
+            if (filter.acceptsFile(status)) {
+                addFile(planItem, sizeDistribution, status.getLen());
+            }
+            return;
+        }
+        // one listing pass yields bytes, counts and the size histogram; an empty filter accepts everything
+        planItem.setDirectory(true);
+        walkFiltered(fs, sourcePath, filter, planItem, sizeDistribution);
+    }
+
+    private void walkFiltered(FileSystem fs, Path root, SourceFilter filter, CopyPlanItem planItem,
+                              Map<String, Long> sizeDistribution) throws IOException {
+        Stack<Path> dirsToProcess = new Stack<>();
+        dirsToProcess.push(root);
+        planItem.setDirectoryCount(planItem.getDirectoryCount() + 1);
+
+        while (!dirsToProcess.isEmpty()) {
+            for (FileStatus status : metadataClient.list(fs, dirsToProcess.pop(), false)) {
+                if (status.isDirectory()) {
+                    if (filter.acceptsDirectory(status)) {
+                        planItem.setDirectoryCount(planItem.getDirectoryCount() + 1);
+                        dirsToProcess.push(status.getPath());
+                    }
+                } else if (filter.acceptsFile(status)) {
+                    addFile(planItem, sizeDistribution, status.getLen());
+                }
+            }
+        }
+    }
+
+    private void addFile(CopyPlanItem planItem, Map<String, Long> sizeDistribution, long length) {
+        planItem.setBytes(planItem.getBytes() + length);
+        planItem.setFileCount(planItem.getFileCount() + 1);
+        addToDistribution(sizeDistribution, length);
+    }
+
+    private void addToDistribution(Map<String, Long> sizeDistribution, long length) {
+        int bucket = 0;
+        while (bucket < SIZE_BUCKET_LIMITS.length && length >= SIZE_BUCKET_LIMITS[bucket]) {
+            bucket++;
+        }
+        sizeDistribution.merge(SIZE_BUCKET_NAMES[bucket], 1L, Long::sum);
+    }
+
+    private void estimateDuration(CopyPlan plan, CopyRequest request) {
+        OptionalDouble measured = throughputTracker.getBytesPerSecond(request.getNamespace());
+        Double perStream = measured.isPresent() ? measured.getAsDouble() : null;
+
+        if (request.getBandwidth() != null) {
+            double limit = request.getBandwidth() * (double) MB;
+            perStream = perStream == null ? limit : Math.min(perStream, limit);
+        }
+        if (perStream == null || perStream <= 0) {
+            return;
+        }
+
+        int parallelism = Math.max(1, Math.min(request.getItems().size(), copyProperties.getThreadPoolSize()));
+        double aggregate = perStream * parallelism;
+        plan.setThroughputBytesPerSec(aggregate);
+        plan.setEstimatedDurationMs((long) Math.ceil(plan.getTotalBytes() * 1000.0 / aggregate));
+    }
+
+    private void checkLocalSpace(CopyPlan plan) throws IOException {
+        if (localDiskSelector.isEnabled()) {
+            CopyPlan.LocalStorage storage = new CopyPlan.LocalStorage();
+            storage.setStore("local-data-roots");
+            storage.setRequiredBytes(plan.getItems().stream()
+                    .filter(planItem -> planItem.getLocalPath() != null)
+                    .mapToLong(CopyPlanItem::getBytes)
+                    .sum());
+            storage.setUsableBytes(localDiskSelector.getUsableSpace());
+            plan.setSufficientSpace(storage.getRequiredBytes() <= storage.getUsableBytes());
+            plan.getLocalStorage().add(storage);
+            return;
+        }
+
+        Map<FileStore, CopyPlan.LocalStorage> stores = new LinkedHashMap<>();
+        for (CopyPlanItem planItem : plan.getItems()) {
+            if (planItem.getErrorMessage() != null || planItem.getLocalPath() == null) {
+                // failed items need nothing, namespace-to-namespace items need no local space
+                continue;
+            }
+            FileStore store = Files.getFileStore(nearestExistingAncestor(planItem.getLocalPath()));
+            CopyPlan.LocalStorage storage = stores.computeIfAbsent(store, s -> {
+                CopyPlan.LocalStorage created = new CopyPlan.LocalStorage();
+                created.setStore(s.toString());
+                return created;
+            });
+            storage.setRequiredBytes(storage.getRequiredBytes() + planItem.getBytes());
+        }
+
+        for (Map.Entry<FileStore, CopyPlan.LocalStorage> entry : stores.entrySet()) {
+            CopyPlan.LocalStorage storage = entry.getValue();
+            storage.setUsableBytes(entry.getKey().getUsableSpace());
+            if (storage.getRequiredBytes() > storage.getUsableBytes()) {
+                plan.setSufficientSpace(false);
+            }
+            plan.getLocalStorage().add(storage);
+        }
+    }
+
+    private java.nio.file.Path nearestExistingAncestor(String localPath) {
+        java.nio.file.Path path = Paths.get(localPath).toAbsolutePath();
+        while (path != null && !Files.exists(path)) {
+            path = path.getParent();
+        }
+        return path != null ? path : Paths.get("/");
+    }
+}
@@ -1,19 +1,28 @@
 package com.github.nlayna.hadoopcopier.service;
 
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
 import com.github.nlayna.hadoopcopier.model.*;
+import com.github.nlayna.hadoopcopier.model.PhaseTimings.Phase;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.hadoop.fs.FileSystem;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 @Slf4j
 @Service
@@ -21,25 +30,41 @@ public class CopyTaskService {
 
     private final HdfsFileSystemFactory fileSystemFactory;
     private final HdfsCopyService hdfsCopyService;
-    private final Executor copyExecutor;
+    private final HdfsTransferService hdfsTransferService;
+    private final ThroughputTracker throughputTracker;
+    private final NamespaceGuard namespaceGuard;
+    private final CopyProperties copyProperties;
+    private final PriorityLanes priorityLanes;
+    private final BandwidthCalendar bandwidthCalendar;
     private final ConcurrentMap<String, CopyTask> tasks = new ConcurrentHashMap<>();
+    private final Queue<TaskExecution> deferred = new ConcurrentLinkedQueue<>();
 
     public CopyTaskService(HdfsFileSystemFactory fileSystemFactory,
                            HdfsCopyService hdfsCopyService,
-                           @Qualifier("copyExecutor") Executor copyExecutor) {
+                           HdfsTransferService hdfsTransferService,
+                           ThroughputTracker throughputTracker,
+                           NamespaceGuard namespaceGuard,
+                           CopyProperties copyProperties,
+                           PriorityLanes priorityLanes,
+                           BandwidthCalendar bandwidthCalendar) {
         this.fileSystemFactory = fileSystemFactory;
         this.hdfsCopyService = hdfsCopyService;
-        this.copyExecutor = copyExecutor;
+        this.hdfsTransferService = hdfsTransferService;
+        this.throughputTracker = throughputTracker;
+        this.namespaceGuard = namespaceGuard;
+        this.copyProperties = copyProperties;
+        this.priorityLanes = priorityLanes;
+        this.bandwidthCalendar = bandwidthCalendar;
     }
 
     public String submitTask(CopyRequest request) {
         String requestId = UUID.randomUUID().toString();
 
         List<CopyItemTask> itemTasks = request.getItems().stream()
-                .map(item -> new CopyItemTask(item.getHdfsPath(), item.getLocalPath()))
+                .map(this::createItemTask)
                 .toList();
 
-        CopyTask task = new CopyTask(requestId, request.getNamespace(), request.getBandwidth(), itemTasks);
+        CopyTask task = createTask(requestId, request, itemTasks);
         tasks.put(requestId, task);
 
         log.info("Task {} submitted: namespace={}, items={}", requestId, request.getNamespace(), itemTasks.size());
@@ -48,70 +73,299 @@ public class CopyTaskService {
         return requestId;
     }
 
+    /**
+     * Starts a task whose items arrive one by one, e.g. while a large request body is still being parsed.
+     * Items start copying as soon as they are added; the task finishes once the submission is closed and
+     * every added item is done. {@code settings} carries everything except the items.
+     */
+    public BulkSubmission openBulkTask(CopyRequest settings) {
+        String requestId = UUID.randomUUID().toString();
+        // readers serialize the list by index while items are still appended
+        CopyTask task = createTask(requestId, settings, Collections.synchronizedList(new ArrayList<>()));
+        tasks.put(requestId, task);
+
+        log.info("Bulk task {} opened: namespace={}", requestId, settings.getNamespace());
+        return new BulkSubmission(task, new TaskExecution(task));
+    }
+
+    private CopyTask createTask(String requestId, CopyRequest request, List<CopyItemTask> itemTasks) {
+        CopyTask task = new CopyTask(requestId, request.getNamespace(), request.getBandwidth(), itemTasks);
+        if (request.getWriteMode() != null) {
+            task.setWriteMode(request.getWriteMode());
+        }
+        if (request.getDirection() != null) {
+            task.setDirection(request.getDirection());
+        }
+        task.setBlockSize(request.getBlockSize());
+        task.setReplication(request.getReplication());
+        if (request.getPriority() != null) {
+            task.setPriority(request.getPriority());
+        }
+        task.setDeferUntilOffPeak(Boolean.TRUE.equals(request.getDeferUntilOffPeak()));
+        return task;
+    }
+
+    /**
+     * Submits a new task for what failed in a finished one: each failed file of a directory item becomes
+     * its own item, and failed items without per-file results are repeated as a whole.
+     *
+     * @return id of the new task, or empty if nothing failed
+     */
+    public Optional<String> retryFailed(CopyTask original) throws IOException {
+        List<CopyItemTask> retryItems = new ArrayList<>();
+        for (CopyItemTask item : original.getItems()) {
+            if (item.getStatus() != CopyItemStatus.FAILED) {
+                continue;
+            }
+            FileStatusTable files = item.getFiles();
+            // a snapshot sync re-diffs from its last synced snapshot, its per-file paths point into a snapshot;
+            // a _MANIFEST is only written by a whole directory item
+            boolean perFile = files.isWalkComplete() && item.getSyncMode() != SyncMode.SNAPSHOT_DIFF
+                    && !copyProperties.isWriteManifest();
+            List<FileStatusTable.FileEntry> unfinished = perFile
+                    ? files.entries(null).stream().filter(file -> file.status() != CopyItemStatus.COMPLETED).toList()
+                    : List.of();
+            if (unfinished.isEmpty()) {
+                // no per-file results, or the walk stopped before every file was listed: retry the whole item
+                retryItems.add(retryItem(item, item.getHdfsPath(), item.getLocalPath(), true));
+                continue;
+            }
+            for (FileStatusTable.FileEntry file : unfinished) {
+                String localPath = new File(file.localDir(), hdfsCopyService.localFileName(file.name(), item)).getPath();
+                retryItems.add(retryItem(item, file.path(), localPath, false));
+            }
+        }
+        if (retryItems.isEmpty()) {
+            return Optional.empty();
+        }
+
+        String requestId = UUID.randomUUID().toString();
+        CopyTask task = new CopyTask(requestId, original.getNamespace(), original.getBandwidth(), retryItems);
+        task.setWriteMode(original.getWriteMode());
+        task.setDirection(original.getDirection());
+        task.setBlockSize(original.getBlockSize());
+        task.setReplication(original.getReplication());
+        task.setPriority(original.getPriority());
+        task.setDeferUntilOffPeak(original.isDeferUntilOffPeak());
+        tasks.put(requestId, task);
+
+        log.info("Task {} submitted as retry of {}: items={}", requestId, original.getRequestId(), retryItems.size());
+
+        executeTask(task);
+        return Optional.of(requestId);
+    }
+
+    private CopyItemTask retryItem(CopyItemTask failed, String hdfsPath, String localPath, boolean wholeItem) {
+        CopyItemTask itemTask = new CopyItemTask(hdfsPath, localPath);
+        itemTask.setTransform(failed.getTransform());
+        itemTask.setCodec(failed.getCodec());
+        itemTask.setCompressionLevel(failed.getCompressionLevel());
+        if (wholeItem) {
+            itemTask.setTargetNamespace(failed.getTargetNamespace());
+            itemTask.setTargetPath(failed.getTargetPath());
+            itemTask.setOutputMode(failed.getOutputMode());
+            itemTask.setArchiveMaxBytes(failed.getArchiveMaxBytes());
+            itemTask.setFilter(failed.getFilter());
+            itemTask.setSyncMode(failed.getSyncMode());
+            itemTask.setSnapshotName(failed.getSnapshotName());
+        }
+        return itemTask;
+    }
+
+    private CopyItemTask createItemTask(CopyItem item) {
+        CopyItemTask itemTask = new CopyItemTask(item.getHdfsPath(), item.getLocalPath());
+        itemTask.setTargetNamespace(item.getTargetNamespace());
+        itemTask.setTargetPath(item.getTargetPath());
+        if (item.getTransform() != null) {
+            itemTask.setTransform(item.getTransform());
+        }
+        itemTask.setCodec(item.getCodec());
+        itemTask.setCompressionLevel(item.getCompressionLevel());
+        if (item.getOutputMode() != null) {
+            itemTask.setOutputMode(item.getOutputMode());
+        }
+        itemTask.setArchiveMaxBytes(item.getArchiveMaxBytes());
+        itemTask.setFilter(item.getFilter());
+        if (item.getSyncMode() != null) {
+            itemTask.setSyncMode(item.getSyncMode());
+        }
+        itemTask.setSnapshotName(item.getSnapshotName());
+        return itemTask;
+    }
+
     public Optional<CopyTask> getTask(String requestId) {
         return Optional.ofNullable(tasks.get(requestId));
     }
 
-    private void executeTask(CopyTask task) {
-        task.setStatus(CopyTaskStatus.IN_PROGRESS);
-        CountDownLatch latch = new CountDownLatch(task.getItems().size());
+    public Optional<FileStatusTable.FilePage> getFiles(String requestId, int itemIndex, CopyItemStatus status,
+                                                       int offset, int limit) {
+        return getTask(requestId)
+                .filter(task -> itemIndex >= 0 && itemIndex < task.getItems().size())
+                .map(task -> task.getItems().get(itemIndex).getFiles().page(status, offset, limit));
+    }
 
-        for (CopyItemTask itemTask : task.getItems()) {
-            copyExecutor.execute(() -> {
-                try {
-                    executeItemCopy(task.getNamespace(), task.getBandwidth(), itemTask);
-                } finally {
-                    latch.countDown();
+    public Optional<CopyTaskSummary> getSummary(String requestId) {
+        return getTask(requestId).map(CopyTaskSummary::of);
+    }
+
+    /**
+     * Items from index {@code cursor} on, optionally restricted to one status. Only the scanned part
+     * of the list is touched, so polling a page costs the same for any task size.
+     */
+    public Optional<ItemPage> getItems(String requestId, CopyItemStatus status, int cursor, int limit) {
+        return getTask(requestId).map(task -> {
+            List<CopyItemTask> items = task.getItems();
+            int size = items.size();
+            List<ItemPage.Entry> page = new ArrayList<>(Math.min(limit, Math.max(0, size - cursor)));
+            int index = cursor;
+            while (index < size && page.size() < limit) {
+                CopyItemTask item = items.get(index);
+                if (status == null || item.getStatus() == status) {
+                    page.add(new ItemPage.Entry(index, item));
                 }
-            });
+                index++;
+            }
+            return new ItemPage(page, index < size ? index : null);
+        });
+    }
+
+    private void executeTask(CopyTask task) {
+        TaskExecution execution = new TaskExecution(task);
+        for (CopyItemTask itemTask : task.getItems()) {
+            execution.enqueue(itemTask);
         }
+        execution.seal();
+    }
 
-        copyExecutor.execute(() -> {
-            try {
-                latch.await();
-                finalizeTask(task);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.error("Task {} interrupted while waiting for completion", task.getRequestId());
-                task.setStatus(CopyTaskStatus.FAILED);
-                task.setCompletedAt(Instant.now());
+    /**
+     * Starts deferred tasks whose namespace has left its peak windows.
+     */
+    @Scheduled(fixedDelayString = "${copy.off-peak-check-interval:PT1M}")
+    public void startDeferredTasks() {
+        for (TaskExecution execution : deferred) {
+            if (!bandwidthCalendar.isPeak(execution.task.getNamespace()) && deferred.remove(execution)) {
+                log.info("Task {}: namespace {} is off-peak, starting", execution.task.getRequestId(),
+                        execution.task.getNamespace());
+                execution.resume();
             }
-        });
+        }
+    }
+
+    private void closeSession(CopyTask task, LocalWriteSession session) {
+        try {
+            session.close();
+        } catch (IOException e) {
+            log.error("Task {}: failed to sync local files: {}", task.getRequestId(), e.getMessage());
+            for (CopyItemTask itemTask : task.getItems()) {
+                if (itemTask.getStatus() == CopyItemStatus.COMPLETED) {
+                    updateStatus(task, itemTask, CopyItemStatus.FAILED);
+                    itemTask.setErrorMessage("Failed to sync local files: " + e.getMessage());
+                }
+            }
+        }
     }
 
-    private void executeItemCopy(String namespace, Integer bandwidthMbPerSec, CopyItemTask itemTask) {
-        itemTask.setStatus(CopyItemStatus.IN_PROGRESS);
-        log.info("Copying: {} -> {}", itemTask.getHdfsPath(), itemTask.getLocalPath());
+    /**
+     * @return the failure of the item, or {@code null} if it completed
+     */
+    private Exception executeItemCopy(CopyTask task, CopyItemTask itemTask, LocalWriteSession session) {
+        String namespace = task.getNamespace();
+        Integer bandwidthMbPerSec = task.getBandwidth();
+        boolean upload = task.getDirection() == CopyDirection.UPLOAD;
+        updateStatus(task, itemTask, CopyItemStatus.IN_PROGRESS);
+        String source = upload ? itemTask.getLocalPath() : itemTask.getHdfsPath();
+        String destination = upload ? namespace + ":" + itemTask.getHdfsPath()
+                : itemTask.getTargetNamespace() != null ? itemTask.getTargetNamespace() + ":" + itemTask.getTargetPath()
+                : itemTask.getLocalPath();
+        log.info("Copying: {} -> {}", source, destination);
 
         long startTime = System.currentTimeMillis();
+        long fsStart = System.nanoTime();
         try (FileSystem fs = fileSystemFactory.createFileSystem(namespace)) {
-            CopyResult result = hdfsCopyService.copyPath(fs, itemTask.getHdfsPath(), itemTask.getLocalPath(), bandwidthMbPerSec);
+            itemTask.getPhases().add(Phase.FS_CREATE, System.nanoTime() - fsStart);
+            CopyResult result;
+            if (upload) {
+                result = hdfsTransferService.upload(fs, itemTask, bandwidthMbPerSec, uploadLayout(task));
+            } else if (itemTask.getTargetNamespace() != null) {
+                result = transferItem(fs, itemTask, bandwidthMbPerSec);
+            } else {
+                result = hdfsCopyService.copyItem(fs, itemTask, bandwidthMbPerSec, session);
+            }
             long duration = System.currentTimeMillis() - startTime;
 
             itemTask.setBytesCopied(result.bytesCopied());
             itemTask.setChecksumVerified(result.checksumVerified());
             itemTask.setDurationMs(duration);
-            itemTask.setStatus(CopyItemStatus.COMPLETED);
+            updateStatus(task, itemTask, CopyItemStatus.COMPLETED);
+            task.getCounters().addBytes(result.bytesCopied());
+            countFiles(task, itemTask);
+            throughputTracker.record(namespace, result.bytesCopied(), duration);
 
             log.info("Completed: {} -> {} ({} bytes in {}ms, speed: {})",
-                    itemTask.getHdfsPath(), itemTask.getLocalPath(),
+                    source, destination,
                     result.bytesCopied(), duration, itemTask.getSpeed());
+            return null;
         } catch (Exception e) {
             long duration = System.currentTimeMillis() - startTime;
             itemTask.setDurationMs(duration);
-            itemTask.setStatus(CopyItemStatus.FAILED);
             itemTask.setErrorMessage(e.getMessage());
-            log.error("Failed: {} -> {}: {}", itemTask.getHdfsPath(), itemTask.getLocalPath(), e.getMessage());
+            updateStatus(task, itemTask, CopyItemStatus.FAILED);
+            countFiles(task, itemTask);
+            log.error("Failed: {} -> {}: {}", source, destination, e.getMessage());
+            return e;
+        }
+    }
+
+    private static void rejectItem(CopyTask task, CopyItemTask itemTask, String error) {
+        itemTask.setErrorMessage(error);
+        updateStatus(task, itemTask, CopyItemStatus.FAILED);
+        countFiles(task, itemTask);
+    }
+
+    private static void updateStatus(CopyTask task, CopyItemTask itemTask, CopyItemStatus status) {
+        CopyItemStatus previous = itemTask.getStatus();
+        itemTask.setStatus(status);
+        task.getCounters().itemChanged(previous, status);
+    }
+
+    /**
+     * Directory downloads report their files individually, files left pending by an aborted walk as failed; any
+     * other item counts as one file.
+     */
+    private static void countFiles(CopyTask task, CopyItemTask itemTask) {
+        FileStatusTable files = itemTask.getFiles();
+        if (files.size() > 0) {
+            int completed = files.count(CopyItemStatus.COMPLETED);
+            task.getCounters().addFiles(completed, files.size() - completed);
+        } else if (itemTask.getStatus() == CopyItemStatus.COMPLETED) {
+            task.getCounters().addFiles(1, 0);
+        } else {
+            task.getCounters().addFiles(0, 1);
         }
     }
 
+    private HdfsTransferService.Layout uploadLayout(CopyTask task) {
+        Long blockSize = task.getBlockSize() != null ? task.getBlockSize() : copyProperties.getUploadBlockSize();
+        Short replication = task.getReplication() != null ? task.getReplication() : copyProperties.getUploadReplication();
+        return new HdfsTransferService.Layout(blockSize, replication, false);
+    }
+
+    private CopyResult transferItem(FileSystem source, CopyItemTask itemTask, Integer bandwidthMbPerSec) throws IOException {
+        long fsStart = System.nanoTime();
+        try (FileSystem target = fileSystemFactory.createFileSystem(itemTask.getTargetNamespace())) {
+            itemTask.getPhases().add(Phase.FS_CREATE, System.nanoTime() - fsStart);
+            return hdfsTransferService.transfer(source, target, itemTask, bandwidthMbPerSec);
+        }
+    }
+
+    private int maxItemsInFlight() {
+        int configured = copyProperties.getTaskMaxItemsInFlight();
+        return configured > 0 ? configured : Math.max(1, copyProperties.getThreadPoolSize());
+    }
+
     private void finalizeTask(CopyTask task) {
-        long completedCount = task.getItems().stream()
-                .filter(i -> i.getStatus() == CopyItemStatus.COMPLETED)
-                .count();
-        long failedCount = task.getItems().stream()
-                .filter(i -> i.getStatus() == CopyItemStatus.FAILED)
-                .count();
+        int completedCount = task.getCounters().items(CopyItemStatus.COMPLETED);
+        int failedCount = task.getCounters().items(CopyItemStatus.FAILED);
 
         if (failedCount == 0) {
             task.setStatus(CopyTaskStatus.COMPLETED);
@@ -125,4 +379,225 @@ public class CopyTaskService {
         log.info("Task {} finished: status={}, completed={}, failed={}",
                 task.getRequestId(), task.getStatus(), completedCount, failedCount);
     }
+
+    /**
+     * Feeds the items of one task to the shared copy executor, keeping at most
+     * {@code copy.task-max-items-in-flight} of them submitted at a time. The rest wait here, so a task with
+     * hundreds of thousands of items neither overflows the executor queue nor starves other tasks. Each item
+     * also passes the {@link NamespaceGuard} of the task's namespace: it waits here while the namespace's
+     * bulkhead is full and fails at once while its breaker is open. A task deferred until off-peak holds all
+     * its items until {@link #startDeferredTasks} resumes it. The task is finalized when it is sealed and the
+     * last item is done.
+     * <p>
+     * A bulk submission waits in {@link #awaitRoom} while {@code copy.bulk-max-queued-items} items are queued,
+     * which slows the client's upload down to the copy rate instead of buffering the whole body here.
+     */
+    private final class TaskExecution {
+
+        private final CopyTask task;
+        private final LocalWriteSession session;
+        private final int maxInFlight = maxItemsInFlight();
+        private final ArrayDeque<CopyItemTask> queued = new ArrayDeque<>();
+        private int inFlight;
+        private boolean sealed;
+        private boolean finished;
+        private boolean waitingForOffPeak;
+
+        private TaskExecution(CopyTask task) {
+            this.task = task;
+            this.session = new LocalWriteSession(task.getWriteMode(), copyProperties);
+            if (task.isDeferUntilOffPeak() && bandwidthCalendar.isPeak(task.getNamespace())) {
+                waitingForOffPeak = true;
+                task.setDeferredUntil(bandwidthCalendar.nextOffPeak(task.getNamespace()));
+                deferred.add(this);
+                log.info("Task {} deferred until off-peak: namespace={}, expected start {}",
+                        task.getRequestId(), task.getNamespace(), task.getDeferredUntil());
+            } else {
+                task.setStatus(CopyTaskStatus.IN_PROGRESS);
+            }
+        }
+
+        void resume() {
+            boolean done;
+            synchronized (this) {
+                waitingForOffPeak = false;
+                task.setDeferredUntil(null);
+                task.setStatus(CopyTaskStatus.IN_PROGRESS);
+                done = markFinishedIfDone();
+            }
+            if (done) {
+                complete();
+            } else {
+                dispatch();
+            }
+        }
+
+        /**
+         * Blocks while {@code limit} items are waiting. A task deferred until off-peak does not dispatch, so
+         * its items are taken without a bound instead of holding the submitter until the peak ends.
+         */
+        synchronized void awaitRoom(int limit) throws InterruptedIOException {
+            while (limit > 0 && queued.size() >= limit && !waitingForOffPeak && !finished) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting to queue items of task "
+                            + task.getRequestId());
+                }
+            }
+        }
+
+        void enqueue(CopyItemTask itemTask) {
+            synchronized (this) {
+                queued.add(itemTask);
+            }
+            dispatch();
+        }
+
+        void seal() {
+            boolean done;
+            synchronized (this) {
+                sealed = true;
+                done = markFinishedIfDone();
+            }
+            if (done) {
+                complete();
+            }
+        }
+
+        private void dispatch() {
+            while (true) {
+                CopyItemTask next;
+                String rejection;
+                synchronized (this) {
+                    if (finished || waitingForOffPeak || inFlight >= maxInFlight || queued.isEmpty()) {
+                        return;
+                    }
+                    NamespaceGuard.Decision decision = namespaceGuard.tryEnter(task.getNamespace(), this::dispatch);
+                    if (decision == NamespaceGuard.Decision.WAIT) {
+                        return;
+                    }
+                    next = queued.poll();
+                    notifyAll();
+                    if (decision == NamespaceGuard.Decision.REJECT) {
+                        rejection = namespaceGuard.rejectionMessage(task.getNamespace());
+                    } else {
+                        rejection = null;
+                        inFlight++;
+                    }
+                }
+                if (rejection == null) {
+                    try {
+                        priorityLanes.execute(task.getPriority(), () -> run(next));
+                        continue;
+                    } catch (RejectedExecutionException e) {
+                        log.warn("Copy executor rejected item {} of task {}: {}",
+                                next.getHdfsPath(), task.getRequestId(), e.getMessage());
+                        namespaceGuard.abandon(task.getNamespace());
+                        synchronized (this) {
+                            inFlight--;
+                        }
+                        rejection = "Copy executor rejected the item: " + e.getMessage();
+                    }
+                }
+                rejectItem(task, next, rejection);
+                boolean done;
+                synchronized (this) {
+                    done = markFinishedIfDone();
+                }
+                if (done) {
+                    complete();
+                    return;
+                }
+            }
+        }
+
+        private void run(CopyItemTask itemTask) {
+            Exception failure = null;
+            try {
+                failure = executeItemCopy(task, itemTask, session);
+            } finally {
+                namespaceGuard.release(task.getNamespace(), failure);
+                boolean done;
+                synchronized (this) {
+                    inFlight--;
+                    done = markFinishedIfDone();
+                }
+                if (done) {
+                    complete();
+                } else {
+                    dispatch();
+                }
+            }
+        }
+
+        private boolean markFinishedIfDone() {
+            if (!sealed || finished || waitingForOffPeak || inFlight > 0 || !queued.isEmpty()) {
+                return false;
+            }
+            finished = true;
+            return true;
+        }
+
+        private void complete() {
+            closeSession(task, session);
+            finalizeTask(task);
+        }
+    }
+
+    /**
+     * Open bulk task: items are added as they are parsed and start copying right away.
+     */
+    public final class BulkSubmission implements AutoCloseable {
+
+        private final CopyTask task;
+        private final TaskExecution execution;
+        private boolean closed;
+
+        private BulkSubmission(CopyTask task, TaskExecution execution) {
+            this.task = task;
+            this.execution = execution;
+        }
+
+        public String getRequestId() {
+            return task.getRequestId();
+        }
+
+        public int size() {
+            return task.getItems().size();
+        }
+
+        /**
+         * Queues an item for copying; blocks while {@code copy.bulk-max-queued-items} items of the task are
+         * already waiting.
+         */
+        public void add(CopyItem item) throws InterruptedIOException {
+            execution.awaitRoom(copyProperties.getBulkMaxQueuedItems());
+            CopyItemTask itemTask = createItemTask(item);
+            task.addItem(itemTask);
+            execution.enqueue(itemTask);
+        }
+
+        /**
+         * Records an item that could not be accepted, so its position and reason show up in the task status.
+         */
+        public void reject(CopyItem item, String error) {
+            CopyItemTask itemTask = item != null ? createItemTask(item) : new CopyItemTask(null, null);
+            itemTask.setStatus(CopyItemStatus.FAILED);
+            itemTask.setErrorMessage(error);
+            task.addItem(itemTask);
+            countFiles(task, itemTask);
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            log.info("Bulk task {} submitted: namespace={}, items={}", task.getRequestId(), task.getNamespace(), size());
+            execution.seal();
+        }
+    }
 }
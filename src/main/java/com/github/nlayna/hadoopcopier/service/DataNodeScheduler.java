@@ -0,0 +1,161 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Spreads concurrent HDFS reads across DataNodes. Each file is attributed to the host that stores most of its
+ * bytes; reads take a permit of that host, capped at {@code copy.max-reads-per-datanode}, and files within a
+ * directory are interleaved across hosts so one node's files are not read back to back. The DFS client still
+ * picks the replica itself, so the attribution is an approximation that holds for the common case where the
+ * preferred host also serves the other blocks. With a cap of 0 scheduling is off and listings stay plain.
+ */
+@Slf4j
+@Component
+public class DataNodeScheduler {
+
+    private static final Lease NO_LEASE = () -> {
+    };
+
+    private final int maxReadsPerDataNode;
+    private final HdfsMetadataClient metadataClient;
+    private final ConcurrentMap<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+    public DataNodeScheduler(CopyProperties copyProperties, HdfsMetadataClient metadataClient) {
+        this.maxReadsPerDataNode = copyProperties.getMaxReadsPerDataNode();
+        this.metadataClient = metadataClient;
+    }
+
+    public boolean isEnabled() {
+        return maxReadsPerDataNode > 0;
+    }
+
+    /**
+     * Lists a directory, with block locations when scheduling is enabled so no per-file location lookups are needed.
+     */
+    public FileStatus[] list(FileSystem fs, Path dir) throws IOException {
+        return metadataClient.list(fs, dir, isEnabled() && !isLocal(fs));
+    }
+
+    /**
+     * Round-robin over preferred hosts, starting with the least busy ones.
+     */
+    public List<FileStatus> order(List<FileStatus> files) {
+        if (!isEnabled() || files.size() < 2) {
+            return files;
+        }
+        Map<String, Deque<FileStatus>> byHost = new LinkedHashMap<>();
+        for (FileStatus file : files) {
+            byHost.computeIfAbsent(preferredHost(locationsOf(file)), host -> new ArrayDeque<>()).add(file);
+        }
+        List<Deque<FileStatus>> queues = new ArrayList<>(byHost.values());
+        Map<Deque<FileStatus>, Integer> load = new HashMap<>();
+        byHost.forEach((host, queue) -> load.put(queue, activeReads(host)));
+        queues.sort(Comparator.comparing(load::get));
+
+        List<FileStatus> ordered = new ArrayList<>(files.size());
+        while (ordered.size() < files.size()) {
+            for (Deque<FileStatus> queue : queues) {
+                FileStatus next = queue.poll();
+                if (next != null) {
+                    ordered.add(next);
+                }
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Blocks until the file's preferred DataNode has a free read slot.
+     */
+    public Lease acquire(FileSystem fs, FileStatus file) throws IOException {
+        if (!isEnabled() || isLocal(fs) || file.getLen() == 0) {
+            return NO_LEASE;
+        }
+        BlockLocation[] locations = file instanceof LocatedFileStatus located
+                ? located.getBlockLocations()
+                : metadataClient.call(fs, "getFileBlockLocations",
+                        () -> fs.getFileBlockLocations(file, 0, file.getLen()));
+        String host = preferredHost(locations);
+        if (host == null) {
+            return NO_LEASE;
+        }
+
+        Semaphore semaphore = permits.computeIfAbsent(host, h -> new Semaphore(maxReadsPerDataNode));
+        if (!semaphore.tryAcquire()) {
+            log.debug("DataNode {} has {} active reads, waiting", host, maxReadsPerDataNode);
+            try {
+                semaphore.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for DataNode " + host);
+            }
+        }
+        return semaphore::release;
+    }
+
+    int activeReads(String host) {
+        Semaphore semaphore = host != null ? permits.get(host) : null;
+        return semaphore == null ? 0 : maxReadsPerDataNode - semaphore.availablePermits();
+    }
+
+    /**
+     * Host holding the most bytes of the file, or {@code null} when locations are unknown.
+     */
+    static String preferredHost(BlockLocation[] locations) {
+        if (locations == null) {
+            return null;
+        }
+        Map<String, Long> bytesByHost = new HashMap<>();
+        try {
+            for (BlockLocation location : locations) {
+                for (String host : location.getHosts()) {
+                    bytesByHost.merge(host, location.getLength(), Long::sum);
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return bytesByHost.entrySet().stream()
+                .max(Map.Entry.<String, Long>comparingByValue().thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder())))
+                .map(Map.Entry::getKey)
+                .orElse(null);
+    }
+
+    private static BlockLocation[] locationsOf(FileStatus file) {
+        return file instanceof LocatedFileStatus located ? located.getBlockLocations() : null;
+    }
+
+    private static boolean isLocal(FileSystem fs) {
+        return fs instanceof LocalFileSystem || fs instanceof RawLocalFileSystem;
+    }
+
+    @FunctionalInterface
+    public interface Lease extends Closeable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.model.PhaseTimings;
+import com.github.nlayna.hadoopcopier.model.PhaseTimings.Phase;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for one file read from HDFS, with the same phase breakdown as the item status. Recorded with
+ * e.g. {@code jcmd <pid> JFR.start settings=profile} and shown under "Hadoop Copier" in JDK Mission Control.
+ * When no recording is running the event is disabled and costs next to nothing.
+ */
+@Name("hadoopcopier.FileCopy")
+@Label("File Copy")
+@Category("Hadoop Copier")
+@Description("One file copied from HDFS, with time per phase")
+@StackTrace(false)
+class FileCopyEvent extends jdk.jfr.Event {
+
+    @Label("Source")
+    String source;
+
+    @Label("Destination")
+    String destination;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Slot Wait")
+    @Timespan
+    long slotWait;
+
+    @Label("Open")
+    @Timespan
+    long open;
+
+    @Label("First Byte")
+    @Timespan
+    long firstByte;
+
+    @Label("Read")
+    @Timespan
+    long read;
+
+    @Label("Throttle")
+    @Timespan
+    long throttle;
+
+    @Label("Write")
+    @Timespan
+    long write;
+
+    @Label("Verify")
+    @Timespan
+    long verify;
+
+    @Label("Failed")
+    boolean failed;
+
+    void record(String source, String destination, long bytes, PhaseTimings timings, boolean failed) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.source = source;
+        this.destination = destination;
+        this.bytes = bytes;
+        this.slotWait = timings.nanos(Phase.SLOT_WAIT);
+        this.open = timings.nanos(Phase.OPEN);
+        this.firstByte = timings.nanos(Phase.FIRST_BYTE);
+        this.read = timings.nanos(Phase.READ);
+        this.throttle = timings.nanos(Phase.THROTTLE);
+        this.write = timings.nanos(Phase.WRITE);
+        this.verify = timings.nanos(Phase.VERIFY);
+        this.failed = failed;
+        commit();
+    }
+}
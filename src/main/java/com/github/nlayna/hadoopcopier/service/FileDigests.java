@@ -0,0 +1,73 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.util.HexFormat;
+
+/**
+ * Verified MD5 of a local file kept in the user extended attribute {@code user.hadoop-copier.md5}, so later
+ * runs and downstream consumers can trust it instead of re-reading the file. The value is
+ * {@code <md5 hex> <length> <mtime millis>}; it only counts while the file still has that length and
+ * modification time. Hardlinks share the attribute, symlinks are followed. Filesystems without user
+ * xattrs are skipped silently.
+ */
+@Slf4j
+public final class FileDigests {
+
+    static final String ATTRIBUTE = "hadoop-copier.md5";
+
+    private FileDigests() {
+    }
+
+    /**
+     * Stores the digest of {@code file} as it is now. Returns {@code false} if the filesystem does not
+     * support user extended attributes.
+     */
+    public static boolean store(Path file, byte[] md5) {
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(file, UserDefinedFileAttributeView.class);
+        if (view == null) {
+            return false;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            String value = HexFormat.of().formatHex(md5) + " " + attributes.size() + " "
+                    + attributes.lastModifiedTime().toMillis();
+            view.write(ATTRIBUTE, StandardCharsets.US_ASCII.encode(value));
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("Cannot store digest of {}: {}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * The stored digest, or {@code null} when there is none or the file changed since it was stored.
+     */
+    public static byte[] load(Path file) {
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(file, UserDefinedFileAttributeView.class);
+        if (view == null) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(view.size(ATTRIBUTE));
+            view.read(ATTRIBUTE, buffer);
+            String[] parts = new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII).split(" ");
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (parts.length != 3
+                    || Long.parseLong(parts[1]) != attributes.size()
+                    || Long.parseLong(parts[2]) != attributes.lastModifiedTime().toMillis()) {
+                return null;
+            }
+            return HexFormat.of().parseHex(parts[0]);
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
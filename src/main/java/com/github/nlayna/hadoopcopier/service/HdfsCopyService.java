@@ -1,47 +1,225 @@
 package com.github.nlayna.hadoopcopier.service;
 
 import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import com.github.nlayna.hadoopcopier.model.CopyItemStatus;
+import com.github.nlayna.hadoopcopier.model.CopyItemTask;
 import com.github.nlayna.hadoopcopier.model.CopyResult;
-import lombok.RequiredArgsConstructor;
+import com.github.nlayna.hadoopcopier.model.FileStatusTable;
+import com.github.nlayna.hadoopcopier.model.OutputMode;
+import com.github.nlayna.hadoopcopier.model.PhaseTimings;
+import com.github.nlayna.hadoopcopier.model.PhaseTimings.Phase;
+import com.github.nlayna.hadoopcopier.model.SyncMode;
+import com.github.nlayna.hadoopcopier.model.TransformMode;
+import com.github.nlayna.hadoopcopier.model.WriteMode;
+import com.sun.nio.file.ExtendedOpenOption;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport.DiffReportEntry;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport.DiffType;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class HdfsCopyService {
 
     private static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * Uncompressed tar bytes after which a compressed archive part starts a new compression frame at the next
+     * file, bounding how much a reader of the index has to decompress to reach an entry.
+     */
+    private static final long ARCHIVE_FRAME_BYTES = 1024 * 1024;
+    private static final String SNAPSHOT_DIR = ".snapshot";
+    private static final String SNAPSHOT_PREFIX = "hadoop-copier-";
+    private static final DateTimeFormatter SNAPSHOT_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
 
     private final CopyProperties copyProperties;
+    private final LocalDiskSelector localDiskSelector;
+    private final Executor transformExecutor;
+    private final SyncStateStore syncStateStore;
+    private final DataNodeScheduler dataNodeScheduler;
+    private final LocalContentCache localContentCache;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final HdfsMetadataClient metadataClient;
+    private final PriorityLanes priorityLanes;
+    private final BandwidthCalendar bandwidthCalendar;
+    private final CompressionTransforms compressionTransforms = new CompressionTransforms();
+
+    public HdfsCopyService(CopyProperties copyProperties,
+                           LocalDiskSelector localDiskSelector,
+                           @Qualifier("transformExecutor") Executor transformExecutor,
+                           SyncStateStore syncStateStore,
+                           DataNodeScheduler dataNodeScheduler,
+                           LocalContentCache localContentCache,
+                           AdaptiveConcurrencyLimiter concurrencyLimiter,
+                           HdfsMetadataClient metadataClient,
+                           PriorityLanes priorityLanes,
+                           BandwidthCalendar bandwidthCalendar) {
+        this.copyProperties = copyProperties;
+        this.localDiskSelector = localDiskSelector;
+        this.transformExecutor = transformExecutor;
+        this.syncStateStore = syncStateStore;
+        this.dataNodeScheduler = dataNodeScheduler;
+        this.localContentCache = localContentCache;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.metadataClient = metadataClient;
+        this.priorityLanes = priorityLanes;
+        this.bandwidthCalendar = bandwidthCalendar;
+    }
 
     public CopyResult copyPath(FileSystem fs, String hdfsPath, String localPath, Integer bandwidthMbPerSec) throws IOException {
-        Path sourcePath = new Path(hdfsPath);
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.BUFFERED, copyProperties)) {
+            return copyItem(fs, new CopyItemTask(hdfsPath, localPath), bandwidthMbPerSec, session);
+        }
+    }
 
-        if (!fs.exists(sourcePath)) {
-            throw new IOException("Source path does not exist: " + hdfsPath);
+    public CopyResult copyItem(FileSystem fs, CopyItemTask item, Integer bandwidthMbPerSec,
+                               LocalWriteSession session) throws IOException {
+        ItemContext context = new ItemContext(fs, item, bandwidthMbPerSec, session, SourceFilter.of(item.getFilter()),
+                null);
+        Path sourcePath = new Path(item.getHdfsPath());
+
+        if (SourceFilter.isGlob(item.getHdfsPath())) {
+            long globStart = System.nanoTime();
+            FileStatus[] matches = metadataClient.globStatus(fs, sourcePath);
+            item.getPhases().add(Phase.METADATA, System.nanoTime() - globStart);
+            if (matches == null || matches.length == 0) {
+                throw new IOException("No source paths match: " + item.getHdfsPath());
+            }
+            File localDir = new File(item.getLocalPath());
+            if (item.getOutputMode() == OutputMode.TAR) {
+                return copyMatches(context, matches, localDir);
+            }
+            return withManifest(context, localDir,
+                    withManifest -> finishWalk(item, copyMatches(withManifest, matches, localDir)));
+        }
+        if (item.getSyncMode() == SyncMode.SNAPSHOT_DIFF) {
+            return syncSnapshot(context, sourcePath, new File(item.getLocalPath()));
         }
 
-        FileStatus sourceStatus = fs.getFileStatus(sourcePath);
+        FileStatus sourceStatus;
+        long statusStart = System.nanoTime();
+        try {
+            sourceStatus = metadataClient.getFileStatus(fs, sourcePath);
+        } catch (FileNotFoundException e) {
+            throw new IOException("Source path does not exist: " + item.getHdfsPath());
+        } finally {
+            item.getPhases().add(Phase.METADATA, System.nanoTime() - statusStart);
+        }
+        if (item.getOutputMode() == OutputMode.TAR) {
+            FileStatus[] entries = sourceStatus.isDirectory()
+                    ? list(context, sourcePath)
+                    : new FileStatus[]{sourceStatus};
+            return archiveItem(context, entries, new File(item.getLocalPath()));
+        }
         if (sourceStatus.isDirectory()) {
-            return copyDirectory(fs, sourcePath, localPath, bandwidthMbPerSec);
-        } else {
-            return copyFile(fs, sourcePath, localPath, bandwidthMbPerSec);
+            return withManifest(context, new File(item.getLocalPath()),
+                    withManifest -> finishWalk(item, copyDirectory(withManifest, sourcePath, item.getLocalPath())));
         }
+        if (!context.filter().acceptsFile(sourceStatus)) {
+            log.info("Skipping {}: rejected by filter", sourcePath);
+            return new CopyResult(0, false);
+        }
+        return copyFile(context, sourcePath, sourceStatus, item.getLocalPath());
     }
 
-    private CopyResult copyFile(FileSystem fs, Path sourcePath, String localPath, Integer bandwidthMbPerSec) throws IOException {
+    /**
+     * Copies the results of a glob into {@code localDir}, each match under its own name. Matched files are
+     * recorded in the item's {@link FileStatusTable} like the files of matched directories, and a failed file
+     * does not stop the remaining matches.
+     */
+    private CopyResult copyMatches(ItemContext context, FileStatus[] matches, File localDir) throws IOException {
+        log.info("Glob {} matched {} paths", context.item().getHdfsPath(), matches.length);
+        if (context.item().getOutputMode() == OutputMode.TAR) {
+            return archiveItem(context, matches, localDir);
+        }
+        if (!localDir.exists() && !localDir.mkdirs()) {
+            throw new IOException("Failed to create local directory: " + localDir.getAbsolutePath());
+        }
+
+        long totalBytes = 0;
+        boolean allVerified = true;
+        int copied = 0;
+        for (FileStatus match : matches) {
+            priorityLanes.yieldToHigher();
+            Path matchPath = match.getPath();
+            CopyResult result;
+            if (match.isDirectory()) {
+                if (!context.filter().acceptsDirectory(match)) {
+                    continue;
+                }
+                result = copyDirectory(context, matchPath, new File(localDir, matchPath.getName()).getPath());
+            } else {
+                if (!context.filter().acceptsFile(match)) {
+                    continue;
+                }
+                File localFile = new File(localDir, compressionTransforms.localName(matchPath.getName(), context.item()));
+                result = copyTracked(context, matchPath, match, localFile);
+                if (result == null) {
+                    continue;
+                }
+            }
+            totalBytes += result.bytesCopied();
+            allVerified &= result.checksumVerified();
+            copied++;
+        }
+        return new CopyResult(totalBytes, allVerified && copied > 0);
+    }
+
+    /**
+     * Runs a directory-shaped copy with a {@code _MANIFEST} written into {@code localDir} when
+     * {@code copy.write-manifest} is on. The manifest is published only when the whole item succeeded; a failed
+     * item leaves no {@code _MANIFEST}, not even one from an earlier run.
+     */
+    private CopyResult withManifest(ItemContext context, File localDir, ItemCopy copy) throws IOException {
+        if (!copyProperties.isWriteManifest()) {
+            return copy.copy(context);
+        }
+        ManifestWriter manifest = new ManifestWriter(localDir);
+        CopyResult result;
+        try {
+            result = copy.copy(context.withManifest(manifest));
+        } catch (IOException | RuntimeException e) {
+            try {
+                manifest.abort();
+            } catch (IOException abortFailure) {
+                e.addSuppressed(abortFailure);
+            }
+            throw e;
+        }
+        manifest.close();
+        return result;
+    }
+
+    private CopyResult copyFile(ItemContext context, Path sourcePath, FileStatus sourceStatus, String localPath)
+            throws IOException {
         log.info("Copying file {} -> {}", sourcePath, localPath);
 
         File localFile = new File(localPath);
@@ -50,10 +228,10 @@ public class HdfsCopyService {
             throw new IOException("Failed to create parent directory: " + parentDir.getAbsolutePath());
         }
 
-        return copyWithStreams(fs, sourcePath, localFile, bandwidthMbPerSec);
+        return copyToLocal(context, sourcePath, sourceStatus, localFile);
     }
 
-    private CopyResult copyDirectory(FileSystem fs, Path sourcePath, String localPath, Integer bandwidthMbPerSec) throws IOException {
+    private CopyResult copyDirectory(ItemContext context, Path sourcePath, String localPath) throws IOException {
         log.info("Copying directory {} -> {}", sourcePath, localPath);
 
         File localDir = new File(localPath);
@@ -61,10 +239,16 @@ public class HdfsCopyService {
             throw new IOException("Failed to create local directory: " + localPath);
         }
 
-        return manualCopyDirectory(fs, sourcePath, localDir, bandwidthMbPerSec);
+        return manualCopyDirectory(context, sourcePath, localDir);
     }
 
-    private CopyResult manualCopyDirectory(FileSystem fs, Path sourcePath, File localDir, Integer bandwidthMbPerSec) throws IOException {
+    /**
+     * Walks the tree and records every file in the item's {@link FileStatusTable}. A failed file does not stop the
+     * walk: it is recorded as failed and the remaining files are still copied; {@link #finishWalk} fails the item
+     * once all of it has been walked, so only the failed files need a retry.
+     */
+    private CopyResult manualCopyDirectory(ItemContext context, Path sourcePath, File localDir) throws IOException {
+        FileStatusTable fileTable = context.item().getFiles();
         Stack<Path> dirsToProcess = new Stack<>();
         dirsToProcess.push(sourcePath);
 
@@ -74,87 +258,589 @@ public class HdfsCopyService {
         long totalBytes = 0;
         boolean allVerified = true;
         int filesCopied = 0;
+        int filesFailed = 0;
         int dirsCopied = 0;
 
         while (!dirsToProcess.isEmpty()) {
             Path currentDir = dirsToProcess.pop();
             File localCurrentDir = pathMap.get(currentDir);
 
-            FileStatus[] items = fs.listStatus(currentDir);
+            FileStatus[] items = list(context, currentDir);
+            List<FileStatus> files = new ArrayList<>();
             for (FileStatus item : items) {
                 Path itemPath = item.getPath();
-                File localItem = new File(localCurrentDir, itemPath.getName());
 
                 if (item.isDirectory()) {
+                    if (!context.filter().acceptsDirectory(item)) {
+                        continue;
+                    }
+                    File localItem = new File(localCurrentDir, itemPath.getName());
                     if (!localItem.exists() && !localItem.mkdirs()) {
                         throw new IOException("Failed to create directory: " + localItem.getAbsolutePath());
                     }
                     dirsCopied++;
                     dirsToProcess.push(itemPath);
                     pathMap.put(itemPath, localItem);
-                } else {
-                    CopyResult fileResult = copyWithStreams(fs, itemPath, localItem, bandwidthMbPerSec);
-                    totalBytes += fileResult.bytesCopied();
-                    if (!fileResult.checksumVerified()) {
-                        allVerified = false;
-                    }
-                    filesCopied++;
-                    log.debug("Copied file: {} ({} bytes)", itemPath.getName(), item.getLen());
+                } else if (context.filter().acceptsFile(item)) {
+                    files.add(item);
                 }
             }
+
+            List<FileStatus> ordered = dataNodeScheduler.order(files);
+            if (ordered.isEmpty()) {
+                continue;
+            }
+            int directory = fileTable.addDirectory(currentDir.toString(), localCurrentDir.getPath());
+            int[] entries = new int[ordered.size()];
+            for (int i = 0; i < entries.length; i++) {
+                entries[i] = fileTable.addFile(directory, ordered.get(i).getPath().getName(), ordered.get(i).getLen());
+            }
+
+            for (int i = 0; i < entries.length; i++) {
+                // a file boundary: more urgent queued items run here, this item continues with its next file
+                priorityLanes.yieldToHigher();
+                FileStatus item = ordered.get(i);
+                File localItem = new File(localCurrentDir,
+                        compressionTransforms.localName(item.getPath().getName(), context.item()));
+                CopyResult fileResult = copyTracked(context, entries[i], item.getPath(), item, localItem);
+                if (fileResult == null) {
+                    filesFailed++;
+                    continue;
+                }
+                totalBytes += fileResult.bytesCopied();
+                if (!fileResult.checksumVerified()) {
+                    allVerified = false;
+                }
+                filesCopied++;
+                log.debug("Copied file: {} ({} bytes)", item.getPath().getName(), item.getLen());
+            }
         }
 
-        log.info("Manual copy completed: {} files, {} directories", filesCopied, dirsCopied);
+        log.info("Manual copy completed: {} files, {} failed, {} directories", filesCopied, filesFailed, dirsCopied);
         return new CopyResult(totalBytes, allVerified && filesCopied > 0);
     }
 
-    private CopyResult copyWithStreams(FileSystem fs, Path sourcePath, File localFile, Integer bandwidthMbPerSec) throws IOException {
-        boolean checksumEnabled = copyProperties.isChecksumEnabled();
-        long totalBytes = 0;
+    /**
+     * Records a single file in the item's table and copies it,
+     * see {@link #copyTracked(ItemContext, int, Path, FileStatus, File)}.
+     */
+    private CopyResult copyTracked(ItemContext context, Path sourcePath, FileStatus status, File localFile)
+            throws IOException {
+        FileStatusTable fileTable = context.item().getFiles();
+        int directory = fileTable.addDirectory(sourcePath.getParent().toString(), localFile.getParentFile().getPath());
+        return copyTracked(context, fileTable.addFile(directory, sourcePath.getName(), status.getLen()),
+                sourcePath, status, localFile);
+    }
 
-        MessageDigest sourceDigest = null;
-        if (checksumEnabled) {
+    /**
+     * Copies a file recorded as {@code entry} of the item's table and records its outcome there.
+     *
+     * @return the copy result, {@code null} when the file failed
+     */
+    private CopyResult copyTracked(ItemContext context, int entry, Path sourcePath, FileStatus status, File localFile)
+            throws IOException {
+        FileStatusTable fileTable = context.item().getFiles();
+        long fileStart = System.currentTimeMillis();
+        try {
+            CopyResult result = copyToLocal(context, sourcePath, status, localFile);
+            fileTable.markCompleted(entry, System.currentTimeMillis() - fileStart);
+            return result;
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            fileTable.markFailed(entry, System.currentTimeMillis() - fileStart, e.getMessage());
+            log.warn("Failed to copy {}: {}", sourcePath, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Ends the walk of a directory-shaped item: marks its file table complete, so a retry can rely on it, and
+     * fails the item if any recorded file failed.
+     */
+    private CopyResult finishWalk(CopyItemTask item, CopyResult result) throws IOException {
+        FileStatusTable fileTable = item.getFiles();
+        fileTable.markWalkComplete();
+        int failed = fileTable.count(CopyItemStatus.FAILED);
+        if (failed == 0) {
+            return result;
+        }
+        FileStatusTable.FileEntry first = fileTable.page(CopyItemStatus.FAILED, 0, 1).files().get(0);
+        throw new IOException(failed + " of " + (failed + fileTable.count(CopyItemStatus.COMPLETED))
+                + " files failed, first: " + first.path() + ": " + first.error());
+    }
+
+    /**
+     * Incremental sync of a snapshottable directory. The first run copies a full snapshot; later runs apply
+     * {@code getSnapshotDiffReport} between the last synced snapshot and the new one, so only created, modified,
+     * renamed and deleted entries are touched locally. Snapshots created here are named
+     * {@code hadoop-copier-<timestamp>} and the previous one is deleted once the new one is synced.
+     */
+    private CopyResult syncSnapshot(ItemContext context, Path sourcePath, File localDir) throws IOException {
+        if (!(context.fs() instanceof DistributedFileSystem dfs)) {
+            throw new IOException("Snapshot sync requires an HDFS source: " + sourcePath);
+        }
+        CopyItemTask item = context.item();
+        if (item.getOutputMode() == OutputMode.TAR) {
+            throw new IOException("Snapshot sync is not supported with TAR output");
+        }
+
+        String stateKey = SyncStateStore.key(dfs.makeQualified(sourcePath).toString(), localDir.getPath());
+        String lastSnapshot = syncStateStore.getLastSnapshot(stateKey);
+        boolean created = item.getSnapshotName() == null;
+        String snapshot = created
+                ? SNAPSHOT_PREFIX + SNAPSHOT_TIMESTAMP.format(LocalDateTime.now())
+                : item.getSnapshotName();
+        if (created) {
+            dfs.createSnapshot(sourcePath, snapshot);
+        }
+        Path snapshotRoot = new Path(sourcePath, SNAPSHOT_DIR + "/" + snapshot);
+
+        CopyResult result;
+        try {
+            if (lastSnapshot == null || !localDir.exists()) {
+                log.info("Full snapshot sync {} -> {}", snapshotRoot, localDir);
+                result = copyDirectory(context, snapshotRoot, localDir.getPath());
+            } else if (lastSnapshot.equals(snapshot)) {
+                log.info("{} is already synced at snapshot {}", sourcePath, snapshot);
+                result = new CopyResult(0, false);
+            } else {
+                SnapshotDiffReport report = dfs.getSnapshotDiffReport(sourcePath, lastSnapshot, snapshot);
+                result = applySnapshotDiff(context, report, snapshotRoot, localDir);
+            }
+            result = finishWalk(item, result);
+            syncStateStore.setLastSnapshot(stateKey, snapshot);
+        } catch (IOException | RuntimeException e) {
+            if (created) {
+                deleteSnapshotQuietly(dfs, sourcePath, snapshot);
+            }
+            throw e;
+        }
+
+        if (lastSnapshot != null && !lastSnapshot.equals(snapshot) && lastSnapshot.startsWith(SNAPSHOT_PREFIX)) {
+            deleteSnapshotQuietly(dfs, sourcePath, lastSnapshot);
+        }
+        return result;
+    }
+
+    /**
+     * Renames go first so that later entries see the new layout, then deletes, then created and modified files
+     * are copied from the new snapshot. HDFS reports entries under a renamed directory by their old path, so
+     * every path is translated through the renames before it is used. Modified directories carry no data and
+     * are skipped: their changed children are reported as separate entries.
+     */
+    private CopyResult applySnapshotDiff(ItemContext context, SnapshotDiffReport report, Path snapshotRoot,
+                                         File localDir) throws IOException {
+        List<DiffReportEntry> renames = new ArrayList<>();
+        List<DiffReportEntry> deletes = new ArrayList<>();
+        List<DiffReportEntry> changes = new ArrayList<>();
+        for (DiffReportEntry entry : report.getDiffList()) {
+            switch (entry.getType()) {
+                case RENAME -> renames.add(entry);
+                case DELETE -> deletes.add(entry);
+                case CREATE, MODIFY -> changes.add(entry);
+            }
+        }
+        log.info("Snapshot diff {} -> {}: {} renamed, {} deleted, {} created or modified",
+                report.getFromSnapshot(), report.getLaterSnapshotName(), renames.size(), deletes.size(), changes.size());
+
+        Map<String, String> renamed = new HashMap<>();
+        for (DiffReportEntry entry : renames) {
+            String source = translate(relativePath(entry.getSourcePath()), renamed);
+            String target = relativePath(entry.getTargetPath());
+            renamed.put(relativePath(entry.getSourcePath()), target);
+            File from = existingLocalFile(localDir, source, context.item());
+            if (!from.exists() && !Files.isSymbolicLink(from.toPath())) {
+                continue;
+            }
+            File to = from.getName().equals(new Path(source).getName())
+                    ? new File(localDir, target)
+                    : localFileFor(localDir, target, context.item());
+            File parent = to.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Failed to create parent directory: " + parent.getAbsolutePath());
+            }
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        for (DiffReportEntry entry : deletes) {
+            deleteLocal(existingLocalFile(localDir, translate(relativePath(entry.getSourcePath()), renamed),
+                    context.item()));
+        }
+
+        long totalBytes = 0;
+        boolean allVerified = true;
+        int filesCopied = 0;
+        for (DiffReportEntry entry : changes) {
+            String relative = translate(relativePath(entry.getSourcePath()), renamed);
+            if (relative.isEmpty()) {
+                continue;
+            }
+            Path snapshotPath = new Path(snapshotRoot, relative);
+            FileStatus status;
             try {
-                sourceDigest = MessageDigest.getInstance("MD5");
-            } catch (NoSuchAlgorithmException e) {
-                throw new IOException("MD5 algorithm not available", e);
+                status = metadataClient.getFileStatus(context.fs(), snapshotPath);
+            } catch (FileNotFoundException e) {
+                // removed again before the new snapshot was taken
+                continue;
+            }
+
+            CopyResult fileResult;
+            if (status.isDirectory()) {
+                if (entry.getType() != DiffType.CREATE || !context.filter().acceptsDirectory(status)) {
+                    continue;
+                }
+                fileResult = copyDirectory(context, snapshotPath, new File(localDir, relative).getPath());
+            } else {
+                if (!context.filter().acceptsFile(status)) {
+                    continue;
+                }
+                File localFile = localFileFor(localDir, relative, context.item());
+                File parent = localFile.getParentFile();
+                if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                    throw new IOException("Failed to create parent directory: " + parent.getAbsolutePath());
+                }
+                fileResult = copyTracked(context, snapshotPath, status, localFile);
+                if (fileResult == null) {
+                    continue;
+                }
             }
+            totalBytes += fileResult.bytesCopied();
+            allVerified &= fileResult.checksumVerified();
+            filesCopied++;
         }
+        return new CopyResult(totalBytes, allVerified && filesCopied > 0);
+    }
 
-        try (InputStream rawIn = fs.open(sourcePath);
-             InputStream throttledIn = wrapWithThrottle(rawIn, bandwidthMbPerSec);
-             InputStream in = checksumEnabled ? new DigestInputStream(throttledIn, sourceDigest) : throttledIn;
-             OutputStream out = new FileOutputStream(localFile)) {
+    /**
+     * Maps a path of the old snapshot to the new one, through the longest renamed prefix.
+     */
+    static String translate(String relative, Map<String, String> renamed) {
+        for (String prefix = relative; !prefix.isEmpty(); prefix = parentOf(prefix)) {
+            String target = renamed.get(prefix);
+            if (target != null) {
+                return target + relative.substring(prefix.length());
+            }
+        }
+        return relative;
+    }
 
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int bytesRead;
-            while ((bytesRead = in.read(buffer)) != -1) {
+    private static String parentOf(String relative) {
+        int slash = relative.lastIndexOf('/');
+        return slash < 0 ? "" : relative.substring(0, slash);
+    }
+
+    private static String relativePath(byte[] path) {
+        return path == null ? "" : new String(path, StandardCharsets.UTF_8);
+    }
+
+    private File localFileFor(File localDir, String relative, CopyItemTask item) throws IOException {
+        Path relativePath = new Path(relative);
+        File parent = relativePath.getParent() != null && !relativePath.getParent().toString().isEmpty()
+                ? new File(localDir, relativePath.getParent().toString())
+                : localDir;
+        return new File(parent, compressionTransforms.localName(relativePath.getName(), item));
+    }
+
+    /**
+     * Local counterpart of a source entry that may be a directory (kept under its own name)
+     * or a file (possibly renamed by a transform).
+     */
+    private File existingLocalFile(File localDir, String relative, CopyItemTask item) throws IOException {
+        File plain = new File(localDir, relative);
+        if (plain.exists() || Files.isSymbolicLink(plain.toPath())) {
+            return plain;
+        }
+        return localFileFor(localDir, relative, item);
+    }
+
+    /**
+     * Deletes a local file or tree. Files placed on a data root are symlinks, so their physical target goes too.
+     */
+    private void deleteLocal(File file) throws IOException {
+        java.nio.file.Path path = file.toPath();
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        List<java.nio.file.Path> paths;
+        try (Stream<java.nio.file.Path> walk = Files.walk(path)) {
+            paths = walk.sorted(Comparator.reverseOrder()).toList();
+        }
+        for (java.nio.file.Path entry : paths) {
+            if (Files.isSymbolicLink(entry)) {
+                Files.deleteIfExists(Files.readSymbolicLink(entry));
+            }
+            Files.delete(entry);
+        }
+    }
+
+    private void deleteSnapshotQuietly(DistributedFileSystem dfs, Path sourcePath, String snapshot) {
+        try {
+            dfs.deleteSnapshot(sourcePath, snapshot);
+        } catch (IOException e) {
+            log.warn("Failed to delete snapshot {} of {}: {}", snapshot, sourcePath, e.getMessage());
+        }
+    }
+
+    private CopyResult copyToLocal(ItemContext context, Path sourcePath, FileStatus source, File localFile)
+            throws IOException {
+        CopyResult result;
+        if (localContentCache.isEnabled() && context.item().getTransform() == TransformMode.NONE) {
+            // cached files are hardlinked into place, so data-root striping does not apply to them
+            result = localContentCache.fetch(context.fs(), sourcePath, source, localFile,
+                    target -> download(context, sourcePath, source, target, false));
+            // the download went to a temp file that the cache has moved away; what must be durable is the link
+            context.session().fileCompleted(localFile, result.bytesCopied());
+        } else {
+            try (LocalDiskSelector.Placement placement = localDiskSelector.place(localFile, source.getLen())) {
+                result = download(context, sourcePath, source, placement.getFile(), true);
+                placement.link();
+            }
+        }
+        if (context.manifest() != null) {
+            context.manifest().add(localFile, result.md5(), sourcePath.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Downloads one file, timing its phases into the item and a {@link FileCopyEvent}. With
+     * {@code completeInSession} unset the caller reports the file to the write session itself.
+     */
+    private CopyResult download(ItemContext context, Path sourcePath, FileStatus source, File localFile,
+                                boolean completeInSession) throws IOException {
+        PhaseTimings timings = new PhaseTimings();
+        FileCopyEvent event = new FileCopyEvent();
+        event.begin();
+        long bytes = 0;
+        boolean failed = true;
+        long waitStart = System.nanoTime();
+        // the DataNode lease first: a stream permit is not held idle while the DataNode host is saturated
+        try (DataNodeScheduler.Lease lease = dataNodeScheduler.acquire(context.fs(), source);
+             AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire(context.fs())) {
+            timings.add(Phase.SLOT_WAIT, System.nanoTime() - waitStart);
+            CopyResult result = copyWithStreams(context, sourcePath, localFile, timings,
+                    completeInSession);
+            permit.success(result.bytesCopied());
+            bytes = result.bytesCopied();
+            failed = false;
+            return result;
+        } finally {
+            context.item().getPhases().addAll(timings);
+            event.record(sourcePath.toString(), localFile.getPath(), bytes, timings, failed);
+        }
+    }
+
+    /**
+     * Only reads are timed individually; writing is what remains of the stream copy, so the per-buffer
+     * overhead is two {@code nanoTime} calls.
+     */
+    private CopyResult copyWithStreams(ItemContext context, Path sourcePath, File localFile,
+                                       PhaseTimings timings, boolean completeInSession) throws IOException {
+        boolean checksumEnabled = copyProperties.isChecksumEnabled();
+        LocalWriteSession session = context.session();
+        long totalBytes = 0;
+        long readNanos = 0;
+        long throttleNanos = 0;
+
+        MessageDigest localDigest = checksumEnabled ? newMd5() : null;
+
+        long streamStart = System.nanoTime();
+        LocalFileWriter writer = session.open(localFile);
+        try (writer;
+             InputStream rawIn = open(context.fs(), sourcePath, timings);
+             InputStream scheduledIn = bandwidthCalendar.throttle(rawIn, context.fs());
+             InputStream throttledIn = wrapWithThrottle(scheduledIn, context.bandwidthMbPerSec());
+             InputStream in = compressionTransforms.wrapInput(throttledIn, sourcePath, context.item());
+             OutputStream out = wrapOutput(writer, localDigest, context.item())) {
+
+            byte[] buffer = new byte[copyProperties.getBufferSize()];
+            long readStart = System.nanoTime();
+            int bytesRead = in.read(buffer);
+            timings.add(Phase.FIRST_BYTE, System.nanoTime() - readStart);
+            while (bytesRead != -1) {
                 out.write(buffer, 0, bytesRead);
                 totalBytes += bytesRead;
+                readStart = System.nanoTime();
+                bytesRead = in.read(buffer);
+                readNanos += System.nanoTime() - readStart;
+            }
+            if (throttledIn instanceof ThrottledInputStream throttled) {
+                throttleNanos += throttled.getSleptNanos();
+            }
+            if (scheduledIn instanceof BandwidthCalendar.ScheduledInputStream scheduled) {
+                throttleNanos += scheduled.getSleptNanos();
             }
         }
+        if (completeInSession) {
+            session.fileCompleted(localFile, writer.getBytesWritten());
+        }
+        long streamNanos = System.nanoTime() - streamStart;
+        timings.add(Phase.READ, readNanos - throttleNanos);
+        timings.add(Phase.THROTTLE, throttleNanos);
+        timings.add(Phase.WRITE, streamNanos - timings.nanos(Phase.OPEN) - timings.nanos(Phase.FIRST_BYTE)
+                - readNanos);
 
         if (checksumEnabled) {
-            byte[] sourceHash = sourceDigest.digest();
-            byte[] localHash = computeLocalFileMd5(localFile);
+            long verifyStart = System.nanoTime();
+            byte[] md5 = verifyChecksum(localFile, localDigest, session);
+            timings.add(Phase.VERIFY, System.nanoTime() - verifyStart);
+            storeDigest(localFile, md5);
+            return new CopyResult(totalBytes, true, md5);
+        }
+
+        return new CopyResult(totalBytes, false);
+    }
+
+    private static InputStream open(FileSystem fs, Path sourcePath, PhaseTimings timings) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return fs.open(sourcePath);
+        } finally {
+            timings.add(Phase.OPEN, System.nanoTime() - start);
+        }
+    }
+
+    private FileStatus[] list(ItemContext context, Path dir) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return dataNodeScheduler.list(context.fs(), dir);
+        } finally {
+            context.item().getPhases().add(Phase.METADATA, System.nanoTime() - start);
+        }
+    }
+
+    private void storeDigest(File localFile, byte[] md5) {
+        if (copyProperties.isDigestXattr() && !FileDigests.store(localFile.toPath(), md5)) {
+            log.debug("Extended attributes are not supported for {}, digest not stored", localFile);
+        }
+    }
+
+    /**
+     * @return the verified MD5 of the local file
+     */
+    private byte[] verifyChecksum(File localFile, MessageDigest localDigest, LocalWriteSession session) throws IOException {
+        byte[] expectedHash = localDigest.digest();
+        byte[] localHash = session.getMode() == WriteMode.DIRECT
+                ? computeLocalFileMd5Direct(localFile)
+                : computeLocalFileMd5(localFile);
+
+        if (!MessageDigest.isEqual(expectedHash, localHash)) {
+            throw new IOException("Checksum mismatch for " + localFile.getAbsolutePath()
+                    + ": source=" + bytesToHex(expectedHash)
+                    + ", local=" + bytesToHex(localHash));
+        }
+        log.debug("Checksum verified for {}: {}", localFile.getName(), bytesToHex(expectedHash));
+        return expectedHash;
+    }
+
+    /**
+     * Streams the whole source tree into tar archives {@code part-NNNNN.tar[.ext]} under {@code localDir}
+     * instead of recreating it file by file, so local metadata work no longer grows with the number of files.
+     * A new part is started once the uncompressed part would exceed the size limit. Next to every part an
+     * index {@code <part>.idx} lists one line per file: data offset within the uncompressed tar, length,
+     * source MD5 (or {@code -} when checksums are disabled) and the entry name, tab separated.
+     * <p>
+     * Archiving does not give way to higher priority lanes: some part is open for the whole run.
+     */
+    private CopyResult archiveItem(ItemContext context, FileStatus[] entries, File localDir) throws IOException {
+        CopyItemTask item = context.item();
+        if (item.getTransform() == TransformMode.DECOMPRESS) {
+            // tar headers carry the entry size up front, which is unknown until a file is decompressed
+            throw new IOException("DECOMPRESS is not supported with TAR output");
+        }
+        log.info("Archiving {} -> {}", item.getHdfsPath(), localDir);
+        if (!localDir.exists() && !localDir.mkdirs()) {
+            throw new IOException("Failed to create local directory: " + localDir.getAbsolutePath());
+        }
+
+        long maxBytes = item.getArchiveMaxBytes() != null ? item.getArchiveMaxBytes() : copyProperties.getArchiveMaxBytes();
+        byte[] buffer = new byte[copyProperties.getBufferSize()];
+        long totalBytes = 0;
+        boolean allVerified = true;
+        int filesArchived = 0;
+        int partCount = 0;
 
-            if (!MessageDigest.isEqual(sourceHash, localHash)) {
-                throw new IOException("Checksum mismatch for " + localFile.getAbsolutePath()
-                        + ": source=" + bytesToHex(sourceHash)
-                        + ", local=" + bytesToHex(localHash));
+        Stack<Path> dirsToProcess = new Stack<>();
+        Map<Path, String> entryNames = new HashMap<>();
+        String prefix = "";
+
+        ArchivePart part = new ArchivePart(context, localDir, partCount++);
+        try {
+            while (true) {
+                // no yieldToHigher() here: the open part holds a transform thread, and inline work waiting for
+                // one would never let this part finish
+                for (FileStatus entry : entries) {
+                    boolean accepted = entry.isDirectory()
+                            ? context.filter().acceptsDirectory(entry)
+                            : context.filter().acceptsFile(entry);
+                    if (!accepted) {
+                        continue;
+                    }
+                    String name = prefix + entry.getPath().getName();
+                    long entrySize = entry.isDirectory() ? 0 : entry.getLen();
+                    if (part.isFull(entrySize, maxBytes)) {
+                        ArchivePart completed = part;
+                        part = null;
+                        allVerified &= completed.finish();
+                        part = new ArchivePart(context, localDir, partCount++);
+                    }
+
+                    if (entry.isDirectory()) {
+                        part.tar.putDirectory(name, entry.getModificationTime());
+                        entryNames.put(entry.getPath(), name + "/");
+                        dirsToProcess.push(entry.getPath());
+                    } else {
+                        part.putFile(entry, name, buffer);
+                        totalBytes += entrySize;
+                        filesArchived++;
+                    }
+                }
+                if (dirsToProcess.isEmpty()) {
+                    break;
+                }
+                Path currentDir = dirsToProcess.pop();
+                prefix = entryNames.remove(currentDir);
+                entries = list(context, currentDir);
+            }
+            ArchivePart completed = part;
+            part = null;
+            allVerified &= completed.finish();
+        } finally {
+            if (part != null) {
+                part.abort();
             }
-            log.debug("Checksum verified for {}: {}", localFile.getName(), bytesToHex(sourceHash));
-            return new CopyResult(totalBytes, true);
         }
 
-        return new CopyResult(totalBytes, false);
+        log.info("Archive completed: {} files in {} parts", filesArchived, partCount);
+        return new CopyResult(totalBytes, allVerified && filesArchived > 0);
+    }
+
+    /**
+     * Builds the write side of the pipeline. The digest covers the bytes that land in the local file,
+     * i.e. after compression, so it can be checked against a re-read of that file. Compression runs
+     * on the transform executor so it overlaps with network reads.
+     */
+    private OutputStream wrapOutput(LocalFileWriter writer, MessageDigest digest, CopyItemTask item) throws IOException {
+        OutputStream out = digest != null ? new DigestOutputStream(writer, digest) : writer;
+        if (item.getTransform() != TransformMode.COMPRESS) {
+            return out;
+        }
+        return new PipelinedOutputStream(compressionTransforms.wrapOutput(out, item),
+                transformExecutor, copyProperties.getTransformQueueDepth());
+    }
+
+    /**
+     * Local name a source file gets inside a directory item, accounting for compression transforms.
+     */
+    String localFileName(String sourceName, CopyItemTask item) throws IOException {
+        return compressionTransforms.localName(sourceName, item);
     }
 
     byte[] computeLocalFileMd5(File file) throws IOException {
         try {
             MessageDigest md = MessageDigest.getInstance("MD5");
             try (InputStream fis = new FileInputStream(file)) {
-                byte[] buffer = new byte[BUFFER_SIZE];
+                byte[] buffer = new byte[copyProperties.getBufferSize()];
                 int bytesRead;
                 while ((bytesRead = fis.read(buffer)) != -1) {
                     md.update(buffer, 0, bytesRead);
@@ -166,6 +852,35 @@ public class HdfsCopyService {
         }
     }
 
+    /**
+     * Re-reads a file written with O_DIRECT without pulling it back into the page cache.
+     */
+    byte[] computeLocalFileMd5Direct(File file) throws IOException {
+        java.nio.file.Path path = file.toPath();
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ, ExtendedOpenOption.DIRECT);
+        } catch (IOException | UnsupportedOperationException e) {
+            return computeLocalFileMd5(file);
+        }
+        try (channel) {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            ByteBuffer buffer = LocalFileWriter.alignedBuffer(BUFFER_SIZE, LocalFileWriter.blockSize(path));
+            long remaining = channel.size();
+            int bytesRead;
+            // stop at the known size: an O_DIRECT read from the unaligned EOF offset may fail instead of returning -1
+            while (remaining > 0 && (bytesRead = channel.read(buffer)) > 0) {
+                remaining -= bytesRead;
+                buffer.flip();
+                md.update(buffer);
+                buffer.clear().limit(BUFFER_SIZE);
+            }
+            return md.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("MD5 algorithm not available", e);
+        }
+    }
+
     private String bytesToHex(byte[] bytes) {
         StringBuilder sb = new StringBuilder(bytes.length * 2);
         for (byte b : bytes) {
@@ -174,6 +889,252 @@ public class HdfsCopyService {
         return sb.toString();
     }
 
+    /**
+     * @param manifest manifest of a directory item, {@code null} when none is written
+     */
+    private record ItemContext(FileSystem fs, CopyItemTask item, Integer bandwidthMbPerSec, LocalWriteSession session,
+                               SourceFilter filter, ManifestWriter manifest) {
+
+        ItemContext withManifest(ManifestWriter manifest) {
+            return new ItemContext(fs, item, bandwidthMbPerSec, session, filter, manifest);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ItemCopy {
+        CopyResult copy(ItemContext context) throws IOException;
+    }
+
+    /**
+     * One tar part being written: the local file (placed on a data root when striping is enabled),
+     * the write pipeline in front of it and the index sidecar. Each index line gives the byte offset in the part
+     * file to start reading at, the number of tar bytes to skip from there, the entry length, its MD5 and name.
+     * An uncompressed part is read at the entry's data offset with nothing to skip. A compressed part is a
+     * series of concatenated compression frames, a new one started at a file once the current frame holds
+     * {@link #ARCHIVE_FRAME_BYTES}; the index points at the frame and the entry's offset within its output.
+     */
+    private final class ArchivePart {
+
+        private final ItemContext context;
+        private final File archiveFile;
+        private final File indexFile;
+        private final LocalDiskSelector.Placement placement;
+        private final MessageDigest archiveDigest;
+        private final boolean compressed;
+        private LocalFileWriter writer;
+        private OutputStream sink;
+        private OutputStream frame;
+        private long frameOffset;
+        private long frameStart;
+        private TarArchiveWriter tar;
+        private LocalFileWriter indexWriter;
+        private Writer index;
+
+        private ArchivePart(ItemContext context, File localDir, int partIndex) throws IOException {
+            this.context = context;
+            String tarName = String.format("part-%05d.tar", partIndex);
+            this.archiveFile = new File(localDir, compressionTransforms.localName(tarName, context.item()));
+            this.indexFile = new File(localDir, archiveFile.getName() + ".idx");
+            this.placement = localDiskSelector.place(archiveFile, 0);
+            this.archiveDigest = copyProperties.isChecksumEnabled() ? newMd5() : null;
+            this.compressed = context.item().getTransform() == TransformMode.COMPRESS;
+            try {
+                writer = context.session().open(placement.getFile());
+                sink = archiveDigest != null ? new DigestOutputStream(writer, archiveDigest) : writer;
+                frame = openFrame();
+                tar = new TarArchiveWriter(new OutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        frame.write(b);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        frame.write(b, off, len);
+                    }
+                });
+                indexWriter = context.session().open(indexFile);
+                index = new BufferedWriter(new OutputStreamWriter(indexWriter, StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                abort();
+                throw e;
+            }
+        }
+
+        /**
+         * Opens the stream the tar bytes go through up to the next frame boundary. Tar headers are 512-byte
+         * writes, so they are batched before they reach the compression pipeline.
+         */
+        private OutputStream openFrame() throws IOException {
+            if (!compressed) {
+                return new BufferedOutputStream(sink, BUFFER_SIZE);
+            }
+            // closing a frame finishes the codec stream, the part file stays open for the next frame
+            OutputStream frameSink = new FilterOutputStream(sink) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+            return new BufferedOutputStream(new PipelinedOutputStream(
+                    compressionTransforms.wrapOutput(frameSink, context.item()),
+                    transformExecutor, copyProperties.getTransformQueueDepth()), BUFFER_SIZE);
+        }
+
+        private void startFrameIfFull() throws IOException {
+            if (!compressed || tar.getOffset() - frameStart < ARCHIVE_FRAME_BYTES) {
+                return;
+            }
+            frame.close();
+            frame = null;
+            frameOffset = writer.getBytesWritten();
+            frameStart = tar.getOffset();
+            frame = openFrame();
+        }
+
+        private boolean isFull(long entrySize, long maxBytes) {
+            long offset = tar.getOffset();
+            return maxBytes > 0 && offset > 0 && offset + TarArchiveWriter.BLOCK_SIZE + entrySize > maxBytes;
+        }
+
+        /**
+         * Streams one file into the part, under the same stream permit and DataNode lease as {@link #download}
+         * and timed into the same phases and {@link FileCopyEvent}.
+         */
+        private void putFile(FileStatus entry, String name, byte[] buffer) throws IOException {
+            startFrameIfFull();
+            MessageDigest entryDigest = archiveDigest != null ? newMd5() : null;
+            PhaseTimings timings = new PhaseTimings();
+            FileCopyEvent event = new FileCopyEvent();
+            event.begin();
+            boolean failed = true;
+            long dataOffset;
+            long waitStart = System.nanoTime();
+            try (DataNodeScheduler.Lease lease = dataNodeScheduler.acquire(context.fs(), entry);
+                 AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire(context.fs())) {
+                timings.add(Phase.SLOT_WAIT, System.nanoTime() - waitStart);
+                long streamStart = System.nanoTime();
+                long throttleNanos = 0;
+                TimedInputStream timedIn;
+                try (InputStream rawIn = open(context.fs(), entry.getPath(), timings);
+                     InputStream scheduledIn = bandwidthCalendar.throttle(rawIn, context.fs());
+                     InputStream throttledIn = wrapWithThrottle(scheduledIn, context.bandwidthMbPerSec());
+                     InputStream in = entryDigest != null ? new DigestInputStream(throttledIn, entryDigest) : throttledIn;
+                     TimedInputStream timed = new TimedInputStream(in)) {
+                    timedIn = timed;
+                    dataOffset = tar.putFile(name, entry.getLen(), entry.getModificationTime(), timed, buffer);
+                    if (throttledIn instanceof ThrottledInputStream throttled) {
+                        throttleNanos += throttled.getSleptNanos();
+                    }
+                    if (scheduledIn instanceof BandwidthCalendar.ScheduledInputStream scheduled) {
+                        throttleNanos += scheduled.getSleptNanos();
+                    }
+                }
+                long streamNanos = System.nanoTime() - streamStart;
+                timings.add(Phase.FIRST_BYTE, timedIn.firstByteNanos);
+                timings.add(Phase.READ, timedIn.readNanos - throttleNanos);
+                timings.add(Phase.THROTTLE, throttleNanos);
+                timings.add(Phase.WRITE, streamNanos - timings.nanos(Phase.OPEN) - timedIn.firstByteNanos
+                        - timedIn.readNanos);
+                permit.success(entry.getLen());
+                failed = false;
+            } finally {
+                context.item().getPhases().addAll(timings);
+                event.record(entry.getPath().toString(), archiveFile.getPath(), failed ? 0 : entry.getLen(),
+                        timings, failed);
+            }
+            index.write((compressed ? frameOffset + "\t" + (dataOffset - frameStart) : dataOffset + "\t0")
+                    + "\t" + entry.getLen() + "\t"
+                    + (entryDigest != null ? bytesToHex(entryDigest.digest()) : "-") + "\t" + name + "\n");
+        }
+
+        /**
+         * Completes the part and returns whether its checksum was verified.
+         */
+        private boolean finish() throws IOException {
+            try (placement) {
+                try (LocalFileWriter archiveWriter = writer; OutputStream lastFrame = frame; Writer indexOut = index) {
+                    tar.finish();
+                }
+                context.session().fileCompleted(indexFile, indexWriter.getBytesWritten());
+                File physicalFile = placement.getFile();
+                context.session().fileCompleted(physicalFile, writer.getBytesWritten());
+                if (archiveDigest != null) {
+                    storeDigest(physicalFile, verifyChecksum(physicalFile, archiveDigest, context.session()));
+                }
+                placement.link();
+            }
+            return archiveDigest != null;
+        }
+
+        private void abort() {
+            try (placement; Closeable writerCloser = writer; Closeable frameCloser = frame;
+                 Closeable indexCloser = index != null ? index : indexWriter) {
+                log.debug("Aborting archive part {}", archiveFile);
+            } catch (IOException e) {
+                log.debug("Failed to close archive part {}: {}", archiveFile, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Times the reads of a stream consumed by someone else's loop: the first read as time to first byte,
+     * the rest as reads.
+     */
+    private static final class TimedInputStream extends FilterInputStream {
+
+        private long firstByteNanos;
+        private long readNanos;
+        private boolean started;
+
+        private TimedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read();
+            } finally {
+                addElapsed(start);
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read(b, off, len);
+            } finally {
+                addElapsed(start);
+            }
+        }
+
+        private void addElapsed(long start) {
+            long elapsed = System.nanoTime() - start;
+            if (started) {
+                readNanos += elapsed;
+            } else {
+                firstByteNanos = elapsed;
+                started = true;
+            }
+        }
+    }
+
+    private static MessageDigest newMd5() throws IOException {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("MD5 algorithm not available", e);
+        }
+    }
+
     private InputStream wrapWithThrottle(InputStream in, Integer bandwidthMbPerSec) {
         if (bandwidthMbPerSec == null) {
             return in;
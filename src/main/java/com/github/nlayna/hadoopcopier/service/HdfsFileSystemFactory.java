@@ -7,10 +7,15 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.security.UserGroupInformation;
+import jakarta.annotation.PreDestroy;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.security.PrivilegedExceptionAction;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 
 @Slf4j
@@ -18,12 +23,71 @@ import java.util.concurrent.ConcurrentMap;
 @RequiredArgsConstructor
 public class HdfsFileSystemFactory {
 
+    private static final Path ROOT = new Path("/");
+
     private final HadoopProperties hadoopProperties;
+    private final KerberosCredentialManager credentialManager;
     private final ConcurrentMap<String, Configuration> configCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Queue<FileSystem>> warmClients = new ConcurrentHashMap<>();
 
+    /**
+     * Creates the file system as the namespace's Kerberos user. The DFS client keeps that UGI for all its
+     * RPCs, so reads and writes through the returned instance run as that user and pick up background relogins.
+     * Clients opened by {@link #warmUp} are handed out first; the caller owns and closes the instance either way.
+     */
     public FileSystem createFileSystem(String namespace) throws IOException {
+        Queue<FileSystem> warm = warmClients.get(namespace);
+        FileSystem warmClient = warm != null ? warm.poll() : null;
+        if (warmClient != null) {
+            return warmClient;
+        }
+        return openFileSystem(namespace);
+    }
+
+    /**
+     * Parses the namespace configuration, logs in and opens {@code clients} file systems, checking the first one
+     * with a root listing RPC so the NameNode proxy and its connection are set up before the first copy.
+     */
+    public void warmUp(String namespace, int clients) throws IOException {
+        Queue<FileSystem> warm = warmClients.computeIfAbsent(namespace, ns -> new ConcurrentLinkedQueue<>());
+        for (int i = 0; i < clients; i++) {
+            FileSystem fs = openFileSystem(namespace);
+            if (i == 0) {
+                try {
+                    fs.getFileStatus(ROOT);
+                } catch (IOException e) {
+                    fs.close();
+                    throw e;
+                }
+            }
+            warm.add(fs);
+        }
+        log.info("Warmed up namespace {} with {} clients", namespace, clients);
+    }
+
+    @PreDestroy
+    void closeWarmClients() {
+        warmClients.values().forEach(warm -> {
+            FileSystem fs;
+            while ((fs = warm.poll()) != null) {
+                try {
+                    fs.close();
+                } catch (IOException e) {
+                    log.debug("Failed to close warm client: {}", e.getMessage());
+                }
+            }
+        });
+    }
+
+    private FileSystem openFileSystem(String namespace) throws IOException {
         Configuration conf = getConfiguration(namespace);
-        return FileSystem.get(conf);
+        UserGroupInformation ugi = credentialManager.getUgi(namespace, conf);
+        try {
+            return ugi.doAs((PrivilegedExceptionAction<FileSystem>) () -> FileSystem.get(conf));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while connecting to namespace " + namespace);
+        }
     }
 
     Configuration getConfiguration(String namespace) {
@@ -39,22 +103,16 @@ public class HdfsFileSystemFactory {
 
         configuration.set("fs.file.impl", org.apache.hadoop.fs.LocalFileSystem.class.getName());
         configuration.set("fs.hdfs.impl", org.apache.hadoop.hdfs.DistributedFileSystem.class.getName());
-        configuration.set("hadoop.security.authentication", "kerberos");
+        configuration.set("hadoop.security.authentication", hadoopProperties.getAuthentication());
         configuration.setBoolean("fs.hdfs.impl.disable.cache", true);
+        // block-layout independent checksums, comparable across namespaces with different block sizes
+        configuration.set("dfs.checksum.combine.mode", "COMPOSITE_CRC");
 
         String principal = System.getProperty("kerberos.principal");
         if (principal != null) {
             configuration.set("hadoop.kerberos.principal", principal);
         }
 
-        try {
-            UserGroupInformation.setConfiguration(configuration);
-            UserGroupInformation.loginUserFromSubject(null);
-        } catch (IOException e) {
-            log.error("Kerberos authentication failed for namespace {}: {}", namespace, e.getMessage());
-            throw new RuntimeException("Kerberos authentication failed", e);
-        }
-
         log.info("Created Hadoop configuration for namespace: {}", namespace);
         return configuration;
     }
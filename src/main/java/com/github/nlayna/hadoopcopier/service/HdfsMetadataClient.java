@@ -0,0 +1,293 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Single path for NameNode metadata calls. Calls are rate limited per namespace to
+ * {@code copy.namenode-rpc-per-second} (token bucket with one second of burst, 0 = unlimited); listings are
+ * charged one token per page of {@code dfs.ls.limit} entries, since each page is a separate RPC.
+ * {@code getFileStatus} results and directory listings are kept for {@code copy.metadata-cache-ttl}, so items
+ * and retries touching the same paths within that window cost no extra RPCs. The cache holds at most
+ * {@code copy.metadata-cache-max-statuses} statuses in total, and listings larger than a quarter of that are
+ * not cached, so one huge directory cannot flush it. Missing paths are not cached. The cache is off by default:
+ * a file rewritten within the window keeps its old length and mtime, and those key the local content cache and
+ * decide what gets copied. The local filesystem (uploads) bypasses all of this.
+ */
+@Slf4j
+@Component
+public class HdfsMetadataClient {
+
+    private static final String DFS_LIST_LIMIT = "dfs.ls.limit";
+    private static final int DEFAULT_LIST_LIMIT = 1000;
+
+    private final double rpcPerSecond;
+    private final long ttlNanos;
+    private final int maxStatuses;
+    private final LongSupplier clock;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, Budget> budgets = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedStatuses;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    @Autowired
+    public HdfsMetadataClient(CopyProperties copyProperties, MeterRegistry meterRegistry) {
+        this(copyProperties, meterRegistry, System::nanoTime);
+    }
+
+    HdfsMetadataClient(CopyProperties copyProperties, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.rpcPerSecond = copyProperties.getNamenodeRpcPerSecond();
+        this.ttlNanos = copyProperties.getMetadataCacheTtl().toNanos();
+        this.maxStatuses = copyProperties.getMetadataCacheMaxStatuses();
+        this.clock = clock;
+        this.meterRegistry = meterRegistry;
+        this.hits = meterRegistry.counter("copy.metadata.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("copy.metadata.cache.requests", "result", "miss");
+    }
+
+    /**
+     * Status of {@code path}; a missing path throws {@link java.io.FileNotFoundException}, which replaces
+     * a separate {@code exists} call.
+     */
+    public FileStatus getFileStatus(FileSystem fs, Path path) throws IOException {
+        if (isLocal(fs)) {
+            return fs.getFileStatus(path);
+        }
+        return cached(fs, "getFileStatus", path, () -> fs.getFileStatus(path));
+    }
+
+    /**
+     * Lists a directory. With {@code withLocations} the listing comes from {@code listLocatedStatus}, so sizes
+     * and block locations arrive in one call instead of a lookup per file. The array may be shared with the
+     * cache and must not be modified.
+     */
+    public FileStatus[] list(FileSystem fs, Path dir, boolean withLocations) throws IOException {
+        if (isLocal(fs)) {
+            return fs.listStatus(dir);
+        }
+        if (!withLocations) {
+            return cached(fs, "listStatus", dir, () -> {
+                FileStatus[] statuses = fs.listStatus(dir);
+                // the first page was charged before the call
+                charge(fs, "listStatus", pages(fs, statuses.length) - 1);
+                return statuses;
+            });
+        }
+        return cached(fs, "listLocatedStatus", dir, () -> {
+            List<FileStatus> statuses = new ArrayList<>();
+            RemoteIterator<LocatedFileStatus> iterator = fs.listLocatedStatus(dir);
+            while (iterator.hasNext()) {
+                statuses.add(iterator.next());
+            }
+            charge(fs, "listLocatedStatus", pages(fs, statuses.size()) - 1);
+            return statuses.toArray(new FileStatus[0]);
+        });
+    }
+
+    /**
+     * Recursive or flat file listing that draws from the namespace's budget while it is consumed: the call
+     * itself costs one token, and every further page or directory the iterator moves on to costs another.
+     * Empty directories are listed without being seen here, so a deep tree of them is undercharged.
+     */
+    public RemoteIterator<LocatedFileStatus> listFiles(FileSystem fs, Path path, boolean recursive)
+            throws IOException {
+        RemoteIterator<LocatedFileStatus> files = call(fs, "listFiles", () -> fs.listFiles(path, recursive));
+        if (isLocal(fs)) {
+            return files;
+        }
+        return new RemoteIterator<>() {
+            private final int pageSize = listPageSize(fs);
+            private Path directory;
+            private int inDirectory;
+
+            @Override
+            public boolean hasNext() throws IOException {
+                return files.hasNext();
+            }
+
+            @Override
+            public LocatedFileStatus next() throws IOException {
+                LocatedFileStatus file = files.next();
+                Path parent = file.getPath().getParent();
+                if (directory != null && !parent.equals(directory)) {
+                    charge(fs, "listFiles", 1);
+                    inDirectory = 0;
+                } else if (inDirectory > 0 && inDirectory % pageSize == 0) {
+                    charge(fs, "listFiles", 1);
+                }
+                directory = parent;
+                inDirectory++;
+                return file;
+            }
+        };
+    }
+
+    public FileStatus[] globStatus(FileSystem fs, Path pattern) throws IOException {
+        return call(fs, "globStatus", () -> fs.globStatus(pattern));
+    }
+
+    /**
+     * Runs an uncached metadata call within the namespace's RPC budget.
+     */
+    public <T> T call(FileSystem fs, String operation, Rpc<T> rpc) throws IOException {
+        if (isLocal(fs)) {
+            return rpc.call();
+        }
+        return invoke(AdaptiveConcurrencyLimiter.namespaceOf(fs), operation, rpc);
+    }
+
+    private <T> T invoke(String namespace, String operation, Rpc<T> rpc) throws IOException {
+        charge(namespace, operation, 1);
+        return rpc.call();
+    }
+
+    private void charge(FileSystem fs, String operation, int rpcs) throws InterruptedIOException {
+        if (rpcs <= 0) {
+            return;
+        }
+        charge(AdaptiveConcurrencyLimiter.namespaceOf(fs), operation, rpcs);
+    }
+
+    private void charge(String namespace, String operation, int rpcs) throws InterruptedIOException {
+        if (rpcs <= 0) {
+            return;
+        }
+        budgets.computeIfAbsent(namespace, Budget::new).acquire(rpcs);
+        meterRegistry.counter("copy.namenode.calls", "namespace", namespace, "operation", operation).increment(rpcs);
+    }
+
+    private static int listPageSize(FileSystem fs) {
+        Configuration conf = fs.getConf();
+        int pageSize = conf != null ? conf.getInt(DFS_LIST_LIMIT, DEFAULT_LIST_LIMIT) : DEFAULT_LIST_LIMIT;
+        return Math.max(1, pageSize);
+    }
+
+    private static int pages(FileSystem fs, int entries) {
+        if (entries <= 1) {
+            return 1;
+        }
+        int pageSize = listPageSize(fs);
+        return (entries + pageSize - 1) / pageSize;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T cached(FileSystem fs, String operation, Path path, Rpc<T> rpc) throws IOException {
+        if (ttlNanos <= 0) {
+            return call(fs, operation, rpc);
+        }
+        String namespace = AdaptiveConcurrencyLimiter.namespaceOf(fs);
+        String key = namespace + "\n" + operation + "\n" + path;
+        synchronized (cache) {
+            Entry entry = cache.get(key);
+            if (entry != null && clock.getAsLong() - entry.loadedAt() < ttlNanos) {
+                hits.increment();
+                return (T) entry.value();
+            }
+        }
+        misses.increment();
+        long loadedAt = clock.getAsLong();
+        T value = invoke(namespace, operation, rpc);
+        int weight = value instanceof Object[] array ? Math.max(1, array.length) : 1;
+        if (weight > maxStatuses / 4) {
+            return value;
+        }
+        synchronized (cache) {
+            Entry previous = cache.put(key, new Entry(value, loadedAt, weight));
+            cachedStatuses += weight - (previous != null ? previous.weight() : 0);
+            Iterator<Entry> eldest = cache.values().iterator();
+            while (cachedStatuses > maxStatuses && eldest.hasNext()) {
+                cachedStatuses -= eldest.next().weight();
+                eldest.remove();
+            }
+        }
+        return value;
+    }
+
+    int cacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private static boolean isLocal(FileSystem fs) {
+        return fs instanceof LocalFileSystem || fs instanceof RawLocalFileSystem;
+    }
+
+    @FunctionalInterface
+    public interface Rpc<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * @param weight number of statuses held, 1 for a single status
+     */
+    private record Entry(Object value, long loadedAt, int weight) {
+    }
+
+    /**
+     * Token bucket refilled at {@code copy.namenode-rpc-per-second}; a call that finds it empty reserves the
+     * next token and sleeps until it is due, so waiting callers are served in arrival order.
+     */
+    private final class Budget {
+
+        private final String namespace;
+        private double tokens = Math.max(1, rpcPerSecond);
+        private long refilledAt = clock.getAsLong();
+
+        private Budget(String namespace) {
+            this.namespace = namespace;
+        }
+
+        void acquire(int permits) throws InterruptedIOException {
+            if (rpcPerSecond <= 0) {
+                return;
+            }
+            long waitNanos = reserve(permits);
+            if (waitNanos <= 0) {
+                return;
+            }
+            meterRegistry.timer("copy.namenode.throttle.wait", "namespace", namespace)
+                    .record(waitNanos, TimeUnit.NANOSECONDS);
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for NameNode budget of " + namespace);
+            }
+        }
+
+        private synchronized long reserve(int permits) {
+            long now = clock.getAsLong();
+            tokens = Math.min(Math.max(1, rpcPerSecond), tokens + (now - refilledAt) / 1e9 * rpcPerSecond);
+            refilledAt = now;
+            tokens -= permits;
+            return tokens >= 0 ? 0 : (long) (-tokens / rpcPerSecond * 1e9);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import com.github.nlayna.hadoopcopier.model.CopyItemTask;
+import com.github.nlayna.hadoopcopier.model.CopyResult;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.springframework.stereotype.Service;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Streams items into HDFS without staging them on local disk: from another namespace, or from the local
+ * filesystem for uploads. Every file is written to {@code <target>._COPYING_} and renamed into place once
+ * verified; the files of a directory run in parallel through {@link ParallelFileRunner}, whose helpers queue in
+ * the item's {@link PriorityLanes} lane and take a {@link NamespaceGuard} slot while they run. Verification compares {@code getFileChecksum} of both sides
+ * (composite CRC, so it does not depend on block layout). A source without one, such as a local file, is
+ * checked by a CRC32C of the streamed bytes against the target's composite CRC32C; only a target that cannot
+ * produce one is read back.
+ */
+@Slf4j
+@Service
+public class HdfsTransferService {
+
+    static final String TEMP_SUFFIX = "._COPYING_";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String COMPOSITE_CRC32C = "COMPOSITE-CRC32C";
+
+    private final CopyProperties copyProperties;
+    private final PriorityLanes priorityLanes;
+    private final NamespaceGuard namespaceGuard;
+    private final DataNodeScheduler dataNodeScheduler;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final HdfsMetadataClient metadataClient;
+    private final BandwidthCalendar bandwidthCalendar;
+    private final FileSystem localFileSystem;
+
+    public HdfsTransferService(CopyProperties copyProperties,
+                               PriorityLanes priorityLanes,
+                               NamespaceGuard namespaceGuard,
+                               DataNodeScheduler dataNodeScheduler,
+                               AdaptiveConcurrencyLimiter concurrencyLimiter,
+                               HdfsMetadataClient metadataClient,
+                               BandwidthCalendar bandwidthCalendar) throws IOException {
+        this.copyProperties = copyProperties;
+        this.priorityLanes = priorityLanes;
+        this.namespaceGuard = namespaceGuard;
+        this.dataNodeScheduler = dataNodeScheduler;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.metadataClient = metadataClient;
+        this.bandwidthCalendar = bandwidthCalendar;
+        // raw: uploads read plain files, without looking for .crc side files
+        this.localFileSystem = FileSystem.getLocal(new Configuration()).getRawFileSystem();
+    }
+
+    /**
+     * Block size and replication of written files. {@code null} values fall back to the source file's
+     * layout when {@code preserveSource} is set, otherwise to the target filesystem defaults.
+     */
+    public record Layout(Long blockSize, Short replication, boolean preserveSource) {
+        public static final Layout PRESERVE_SOURCE = new Layout(null, null, true);
+    }
+
+    /**
+     * Copies {@code hdfsPath} of the source namespace to {@code targetPath} of the target namespace.
+     */
+    public CopyResult transfer(FileSystem source, FileSystem target, CopyItemTask item,
+                               Integer bandwidthMbPerSec) throws IOException {
+        log.info("Transferring {} -> {}:{}", item.getHdfsPath(), item.getTargetNamespace(), item.getTargetPath());
+        return copyTree(source, new Path(item.getHdfsPath()), target, new Path(item.getTargetPath()),
+                SourceFilter.of(item.getFilter()), bandwidthMbPerSec, Layout.PRESERVE_SOURCE);
+    }
+
+    /**
+     * Uploads {@code localPath} to {@code hdfsPath} of the target namespace.
+     */
+    public CopyResult upload(FileSystem target, CopyItemTask item, Integer bandwidthMbPerSec,
+                             Layout layout) throws IOException {
+        log.info("Uploading {} -> {}", item.getLocalPath(), item.getHdfsPath());
+        return copyTree(localFileSystem, new Path(item.getLocalPath()), target, new Path(item.getHdfsPath()),
+                SourceFilter.of(item.getFilter()), bandwidthMbPerSec, layout);
+    }
+
+    private CopyResult copyTree(FileSystem source, Path sourcePath, FileSystem target, Path targetPath,
+                                SourceFilter filter, Integer bandwidthMbPerSec, Layout layout) throws IOException {
+        FileStatus sourceStatus;
+        try {
+            sourceStatus = metadataClient.getFileStatus(source, sourcePath);
+        } catch (FileNotFoundException e) {
+            throw new IOException("Source path does not exist: " + sourcePath);
+        }
+
+        if (!sourceStatus.isDirectory()) {
+            if (!filter.acceptsFile(sourceStatus)) {
+                log.info("Skipping {}: rejected by filter", sourcePath);
+                return new CopyResult(0, false);
+            }
+            Path parent = targetPath.getParent();
+            if (parent != null) {
+                target.mkdirs(parent);
+            }
+            return transferFile(source, target, sourceStatus, targetPath, bandwidthMbPerSec, layout);
+        }
+        return transferDirectory(source, target, sourcePath, targetPath, filter, bandwidthMbPerSec, layout);
+    }
+
+    private CopyResult transferDirectory(FileSystem source, FileSystem target, Path sourcePath, Path targetPath,
+                                         SourceFilter filter, Integer bandwidthMbPerSec,
+                                         Layout layout) throws IOException {
+        Stack<Path> dirsToProcess = new Stack<>();
+        dirsToProcess.push(sourcePath);
+        Map<Path, Path> pathMap = new HashMap<>();
+        pathMap.put(sourcePath, targetPath);
+        if (!target.mkdirs(targetPath)) {
+            throw new IOException("Failed to create target directory: " + targetPath);
+        }
+
+        List<ParallelFileRunner.FileJob> jobs = new ArrayList<>();
+        while (!dirsToProcess.isEmpty()) {
+            Path currentDir = dirsToProcess.pop();
+            Path targetDir = pathMap.remove(currentDir);
+
+            for (FileStatus status : dataNodeScheduler.list(source, currentDir)) {
+                Path itemPath = status.getPath();
+                Path targetItem = new Path(targetDir, itemPath.getName());
+                if (status.isDirectory()) {
+                    if (!filter.acceptsDirectory(status)) {
+                        continue;
+                    }
+                    if (!target.mkdirs(targetItem)) {
+                        throw new IOException("Failed to create target directory: " + targetItem);
+                    }
+                    dirsToProcess.push(itemPath);
+                    pathMap.put(itemPath, targetItem);
+                } else if (filter.acceptsFile(status)) {
+                    jobs.add(() -> transferFile(source, target, status, targetItem, bandwidthMbPerSec, layout));
+                }
+            }
+        }
+
+        CopyResult result = ParallelFileRunner.run(jobs, helpers(clusterOf(source, target)),
+                copyProperties.getTransferParallelism());
+        log.info("Transfer completed: {} files", jobs.size());
+        return result;
+    }
+
+    private CopyResult transferFile(FileSystem source, FileSystem target, FileStatus sourceStatus, Path targetFile,
+                                    Integer bandwidthMbPerSec, Layout layout) throws IOException {
+        Path sourceFile = sourceStatus.getPath();
+        Path tempFile = targetFile.suffix(TEMP_SUFFIX);
+        boolean checksumEnabled = copyProperties.isChecksumEnabled();
+        CRC32C crc = checksumEnabled ? new CRC32C() : null;
+        long totalBytes = 0;
+        long blockSize = layout.blockSize() != null ? layout.blockSize()
+                : layout.preserveSource() ? sourceStatus.getBlockSize() : target.getDefaultBlockSize(targetFile);
+        short replication = layout.replication() != null ? layout.replication()
+                : layout.preserveSource() ? sourceStatus.getReplication() : target.getDefaultReplication(targetFile);
+
+        FileSystem cluster = clusterOf(source, target);
+        // the DataNode lease first: a stream permit is not held idle while the DataNode host is saturated
+        try (DataNodeScheduler.Lease lease = dataNodeScheduler.acquire(source, sourceStatus);
+             AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire(cluster)) {
+            try (InputStream rawIn = source.open(sourceFile);
+                 InputStream scheduledIn = bandwidthCalendar.throttle(rawIn, cluster);
+                 InputStream throttledIn = wrapWithThrottle(scheduledIn, bandwidthMbPerSec);
+                 InputStream in = crc != null ? new CheckedInputStream(throttledIn, crc) : throttledIn;
+                 FSDataOutputStream out = target.create(tempFile, true, BUFFER_SIZE, replication, blockSize)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int bytesRead;
+                while ((bytesRead = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, bytesRead);
+                    totalBytes += bytesRead;
+                }
+            }
+
+            if (checksumEnabled) {
+                verify(source, sourceFile, target, tempFile, (int) crc.getValue());
+            }
+
+            renameIntoPlace(target, tempFile, targetFile);
+            permit.success(totalBytes);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(target, tempFile);
+            throw e;
+        }
+
+        log.debug("Transferred file: {} ({} bytes)", sourceFile, totalBytes);
+        return new CopyResult(totalBytes, checksumEnabled);
+    }
+
+    /**
+     * The namespace whose streams and bulkhead a copy uses: uploads read from the local filesystem, so they
+     * count against the target namespace.
+     */
+    private FileSystem clusterOf(FileSystem source, FileSystem target) {
+        return source == localFileSystem ? target : source;
+    }
+
+    /**
+     * Runs the helpers of an item in its lane. A helper that finds the namespace's bulkhead full or its breaker
+     * not closed exits at once and leaves the files to the item's own thread.
+     */
+    private Executor helpers(FileSystem cluster) {
+        String namespace = AdaptiveConcurrencyLimiter.namespaceOf(cluster);
+        Executor lane = priorityLanes.currentLane();
+        return helper -> lane.execute(() -> {
+            if (!namespaceGuard.tryEnterHelper(namespace)) {
+                log.debug("Bulkhead of {} is full, skipping a transfer helper", namespace);
+                return;
+            }
+            try {
+                helper.run();
+            } finally {
+                namespaceGuard.leaveHelper(namespace);
+            }
+        });
+    }
+
+    private void verify(FileSystem source, Path sourceFile, FileSystem target, Path targetFile,
+                        int streamedCrc) throws IOException {
+        FileChecksum sourceChecksum = metadataClient.call(source, "getFileChecksum",
+                () -> source.getFileChecksum(sourceFile));
+        FileChecksum targetChecksum = metadataClient.call(target, "getFileChecksum",
+                () -> target.getFileChecksum(targetFile));
+        if (sourceChecksum != null && targetChecksum != null
+                && sourceChecksum.getAlgorithmName().equals(targetChecksum.getAlgorithmName())) {
+            if (!sourceChecksum.equals(targetChecksum)) {
+                throw new IOException("Checksum mismatch for " + targetFile
+                        + ": source=" + sourceChecksum + ", target=" + targetChecksum);
+            }
+            return;
+        }
+
+        byte[] expected = ByteBuffer.allocate(Integer.BYTES).putInt(streamedCrc).array();
+        if (targetChecksum != null && COMPOSITE_CRC32C.equals(targetChecksum.getAlgorithmName())) {
+            // the composite CRC of a file equals the CRC32C of its whole content
+            if (!Arrays.equals(expected, targetChecksum.getBytes())) {
+                throw new IOException("Checksum mismatch for " + targetFile + ": target content differs from source");
+            }
+            return;
+        }
+
+        CRC32C targetCrc = new CRC32C();
+        try (InputStream in = new CheckedInputStream(target.open(targetFile), targetCrc)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (in.read(buffer) != -1) {
+                // checksum is updated by the stream
+            }
+        }
+        if ((int) targetCrc.getValue() != streamedCrc) {
+            throw new IOException("Checksum mismatch for " + targetFile + ": target content differs from source");
+        }
+    }
+
+    /**
+     * Replaces {@code targetFile} with {@code tempFile}. HDFS does it in one NameNode operation, so readers see
+     * either the old or the new file; other filesystems have no public overwriting rename and fall back to
+     * deleting the old file first.
+     */
+    private void renameIntoPlace(FileSystem target, Path tempFile, Path targetFile) throws IOException {
+        if (target instanceof DistributedFileSystem dfs) {
+            dfs.rename(tempFile, targetFile, Options.Rename.OVERWRITE);
+            return;
+        }
+        if (metadataClient.call(target, "exists", () -> target.exists(targetFile))
+                && !target.delete(targetFile, false)) {
+            throw new IOException("Failed to replace existing target file: " + targetFile);
+        }
+        if (!target.rename(tempFile, targetFile)) {
+            throw new IOException("Failed to rename " + tempFile + " to " + targetFile);
+        }
+    }
+
+    private void deleteQuietly(FileSystem target, Path path) {
+        try {
+            target.delete(path, false);
+        } catch (IOException e) {
+            log.warn("Failed to delete temporary file {}: {}", path, e.getMessage());
+        }
+    }
+
+    private InputStream wrapWithThrottle(InputStream in, Integer bandwidthMbPerSec) {
+        if (bandwidthMbPerSec == null) {
+            return in;
+        }
+        long maxBytesPerSecond = (long) bandwidthMbPerSec * 1024 * 1024;
+        return new ThrottledInputStream(in, maxBytesPerSecond);
+    }
+}
@@ -0,0 +1,156 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.HadoopProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds one Kerberos session per principal. Namespaces with a keytab (own or the default one) get their own
+ * UGI logged in from that keytab, without touching the process-wide login user; namespaces without one share
+ * the login user from the ticket cache. Sessions are relogged in the background before the TGT expires, so
+ * copies never wait on the KDC after the first login.
+ */
+@Slf4j
+@Component
+public class KerberosCredentialManager {
+
+    private static final String LOGIN_USER = "<login-user>";
+
+    private final HadoopProperties hadoopProperties;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private volatile boolean securityConfigured;
+
+    public KerberosCredentialManager(HadoopProperties hadoopProperties, MeterRegistry meterRegistry) {
+        this.hadoopProperties = hadoopProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Returns the logged-in UGI for the namespace, logging in on first use. Only callers of the same
+     * principal wait for a slow login; other namespaces are not blocked.
+     */
+    public UserGroupInformation getUgi(String namespace, Configuration conf) throws IOException {
+        configureSecurity(conf);
+        HadoopProperties.KerberosCredentials credentials = credentialsFor(namespace);
+        String key = credentials == null ? LOGIN_USER : credentials.getPrincipal();
+        return sessions.computeIfAbsent(key, k -> new Session(k, credentials)).get();
+    }
+
+    /**
+     * Relogs every session whose TGT is close to expiry. Hadoop relogs once 80% of the ticket lifetime
+     * has passed, so checking every minute keeps tickets valid for copies that outlive them.
+     */
+    @Scheduled(fixedDelayString = "${hadoop.relogin-check-interval:PT1M}")
+    public void renewAll() {
+        for (Session session : sessions.values()) {
+            session.renew();
+        }
+    }
+
+    int sessionCount() {
+        return sessions.size();
+    }
+
+    private HadoopProperties.KerberosCredentials credentialsFor(String namespace) {
+        HadoopProperties.KerberosCredentials credentials = hadoopProperties.getCredentials().get(namespace);
+        if (credentials != null && credentials.getPrincipal() != null && credentials.getKeytab() != null) {
+            return credentials;
+        }
+        if (hadoopProperties.getPrincipal() != null && hadoopProperties.getKeytab() != null) {
+            HadoopProperties.KerberosCredentials defaults = new HadoopProperties.KerberosCredentials();
+            defaults.setPrincipal(hadoopProperties.getPrincipal());
+            defaults.setKeytab(hadoopProperties.getKeytab());
+            return defaults;
+        }
+        return null;
+    }
+
+    /**
+     * UGI keeps its security settings in static state, so it is configured once with the first namespace.
+     */
+    private void configureSecurity(Configuration conf) {
+        if (securityConfigured) {
+            return;
+        }
+        synchronized (this) {
+            if (!securityConfigured) {
+                UserGroupInformation.setConfiguration(conf);
+                securityConfigured = true;
+            }
+        }
+    }
+
+    private final class Session {
+
+        private final String principal;
+        private final HadoopProperties.KerberosCredentials credentials;
+        private volatile UserGroupInformation ugi;
+
+        private Session(String principal, HadoopProperties.KerberosCredentials credentials) {
+            this.principal = principal;
+            this.credentials = credentials;
+        }
+
+        UserGroupInformation get() throws IOException {
+            UserGroupInformation current = ugi;
+            if (current != null) {
+                return current;
+            }
+            synchronized (this) {
+                if (ugi == null) {
+                    ugi = login();
+                }
+                return ugi;
+            }
+        }
+
+        private UserGroupInformation login() throws IOException {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String outcome = "failure";
+            try {
+                UserGroupInformation loggedIn;
+                if (credentials == null) {
+                    UserGroupInformation.loginUserFromSubject(null);
+                    loggedIn = UserGroupInformation.getLoginUser();
+                } else {
+                    loggedIn = UserGroupInformation.loginUserFromKeytabAndReturnUGI(
+                            credentials.getPrincipal(), credentials.getKeytab());
+                }
+                outcome = "success";
+                log.info("Kerberos login succeeded for {}", principal);
+                return loggedIn;
+            } catch (IOException e) {
+                log.error("Kerberos login failed for {}: {}", principal, e.getMessage());
+                throw new IOException("Kerberos authentication failed for " + principal, e);
+            } finally {
+                sample.stop(meterRegistry.timer("hadoop.kerberos.login", "principal", principal, "outcome", outcome));
+            }
+        }
+
+        void renew() {
+            UserGroupInformation current = ugi;
+            if (current == null || credentials == null) {
+                return;
+            }
+            Timer.Sample sample = Timer.start(meterRegistry);
+            try {
+                current.checkTGTAndReloginFromKeytab();
+            } catch (IOException e) {
+                meterRegistry.counter("hadoop.kerberos.renewal.failures", "principal", principal).increment();
+                log.warn("Kerberos relogin failed for {}, will retry: {}", principal, e.getMessage());
+            } finally {
+                sample.stop(meterRegistry.timer("hadoop.kerberos.relogin", "principal", principal));
+            }
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import com.github.nlayna.hadoopcopier.model.CopyResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Local cache of downloaded HDFS files under {@code copy.cache-dir}, keyed by namespace, path, length and
+ * modification time, so a changed source never matches an old entry. Concurrent requests for the same source
+ * share one download; every requester's local path is then a hardlink to the cached file (a plain copy when
+ * the target is on another filesystem). The cache is bounded by {@code copy.cache-max-bytes} with LRU eviction;
+ * evicting an entry only unlinks the cache name, files already served keep their data.
+ */
+@Slf4j
+@Component
+public class LocalContentCache {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final java.nio.file.Path cacheDir;
+    private final long maxBytes;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentMap<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+    private long totalBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter bytesSaved;
+
+    public LocalContentCache(CopyProperties copyProperties, MeterRegistry meterRegistry) {
+        this.cacheDir = copyProperties.getCacheDir() == null
+                ? null
+                : java.nio.file.Path.of(copyProperties.getCacheDir()).toAbsolutePath();
+        this.maxBytes = copyProperties.getCacheMaxBytes();
+        this.hits = meterRegistry.counter("copy.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("copy.cache.requests", "result", "miss");
+        this.coalesced = meterRegistry.counter("copy.cache.requests", "result", "coalesced");
+        this.bytesSaved = meterRegistry.counter("copy.cache.bytes.saved");
+        meterRegistry.gauge("copy.cache.size.bytes", this, LocalContentCache::sizeBytes);
+        meterRegistry.gauge("copy.cache.hit.ratio", this, LocalContentCache::hitRatio);
+        if (cacheDir != null) {
+            loadExisting();
+        }
+    }
+
+    public boolean isEnabled() {
+        return cacheDir != null;
+    }
+
+    /**
+     * Serves {@code source} into {@code localFile} from the cache. On a miss {@code loader} downloads the
+     * source into the given cache file; concurrent callers for the same source wait for that download
+     * instead of starting their own. Files larger than the whole cache bypass it.
+     */
+    public CopyResult fetch(FileSystem fs, Path sourcePath, FileStatus source, File localFile, Loader loader)
+            throws IOException {
+        if (source.getLen() > maxBytes) {
+            return loader.load(localFile);
+        }
+        String key = key(fs, sourcePath, source);
+        while (true) {
+            Entry cached = lookup(key);
+            if (cached != null) {
+                if (serve(key, cached, localFile)) {
+                    hits.increment();
+                    bytesSaved.increment(cached.size());
+                    return new CopyResult(cached.size(), cached.verified(), cached.md5());
+                }
+                continue;
+            }
+
+            CompletableFuture<Entry> flight = new CompletableFuture<>();
+            CompletableFuture<Entry> running = inFlight.putIfAbsent(key, flight);
+            if (running != null) {
+                Entry loaded = await(running, sourcePath);
+                if (serve(key, loaded, localFile)) {
+                    coalesced.increment();
+                    bytesSaved.increment(loaded.size());
+                    return new CopyResult(loaded.size(), loaded.verified(), loaded.md5());
+                }
+                continue;
+            }
+
+            misses.increment();
+            Entry loaded;
+            try {
+                loaded = fill(key, loader);
+                flight.complete(loaded);
+            } catch (IOException | RuntimeException e) {
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, flight);
+            }
+            if (serve(key, loaded, localFile)) {
+                return new CopyResult(loaded.size(), loaded.verified(), loaded.md5());
+            }
+        }
+    }
+
+    synchronized long sizeBytes() {
+        return totalBytes;
+    }
+
+    synchronized int entryCount() {
+        return entries.size();
+    }
+
+    private double hitRatio() {
+        double served = hits.count() + coalesced.count();
+        double total = served + misses.count();
+        return total == 0 ? 0 : served / total;
+    }
+
+    private Entry fill(String key, Loader loader) throws IOException {
+        File temp = cacheDir.resolve(key + "." + UUID.randomUUID() + TEMP_SUFFIX).toFile();
+        try {
+            CopyResult result = loader.load(temp);
+            File target = cacheDir.resolve(key).toFile();
+            Files.move(temp.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Entry entry = new Entry(target, target.length(), result.checksumVerified(), result.md5());
+            put(key, entry);
+            return entry;
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Links the cached file to {@code localFile}. Returns {@code false} if the entry was evicted meanwhile,
+     * in which case the caller looks the source up again.
+     */
+    private boolean serve(String key, Entry entry, File localFile) throws IOException {
+        java.nio.file.Path target = localFile.toPath();
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, entry.file().toPath());
+        } catch (NoSuchFileException e) {
+            if (entry.file().exists()) {
+                throw e;
+            }
+            remove(key, entry);
+            return false;
+        } catch (FileSystemException | UnsupportedOperationException e) {
+            log.debug("Cannot hardlink {} to {}, copying: {}", entry.file(), localFile, e.getMessage());
+            try {
+                Files.copy(entry.file().toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+            } catch (NoSuchFileException missing) {
+                remove(key, entry);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Entry await(CompletableFuture<Entry> running, Path sourcePath) throws IOException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for download of " + sourcePath);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw new IOException("Shared download of " + sourcePath + " failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    private synchronized Entry lookup(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.file().length() != entry.size()) {
+            // the cached file was written through a served hardlink
+            log.warn("Cache entry {} changed on disk, dropping it", entry.file());
+            removeLocked(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            totalBytes -= previous.size();
+        }
+        totalBytes += entry.size();
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> evicted = eldest.next();
+            if (evicted.getKey().equals(key)) {
+                break;
+            }
+            eldest.remove();
+            totalBytes -= evicted.getValue().size();
+            delete(evicted.getValue().file());
+        }
+    }
+
+    private synchronized void remove(String key, Entry entry) {
+        if (entries.get(key) == entry) {
+            removeLocked(key);
+        }
+    }
+
+    private void removeLocked(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.size();
+            delete(removed.file());
+        }
+    }
+
+    private void loadExisting() {
+        File dir = cacheDir.toFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalStateException("Failed to create cache directory: " + cacheDir);
+        }
+        File[] files = dir.listFiles(File::isFile);
+        if (files == null) {
+            return;
+        }
+        // oldest first, so the LRU order after a restart follows the order the entries were written
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                delete(file);
+            } else {
+                // a digest stored when the entry was downloaded still vouches for it
+                byte[] md5 = FileDigests.load(file.toPath());
+                put(file.getName(), new Entry(file, file.length(), md5 != null, md5));
+            }
+        }
+        log.info("Local cache {}: {} entries, {} bytes", cacheDir, entries.size(), totalBytes);
+    }
+
+    private static void delete(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            log.warn("Failed to delete cache file {}: {}", file, e.getMessage());
+        }
+    }
+
+    static String key(FileSystem fs, Path sourcePath, FileStatus source) throws IOException {
+        String identity = fs.getUri() + "\n" + sourcePath + "\n" + source.getLen() + "\n" + source.getModificationTime();
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(identity.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Downloads the source into the given file.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        CopyResult load(File target) throws IOException;
+    }
+
+    private record Entry(File file, long size, boolean verified, byte[] md5) {
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads local output files across the configured data roots (JBOD disks).
+ * A file for logical path {@code /tmp/res1/part-0} is written to {@code <root>/tmp/res1/part-0} on the
+ * least loaded root and exposed at the logical path through a symlink.
+ * Without configured roots files are written in place.
+ */
+@Slf4j
+@Component
+public class LocalDiskSelector {
+
+    private final List<DataRoot> roots;
+
+    public LocalDiskSelector(CopyProperties copyProperties) {
+        this.roots = copyProperties.getLocalDataRoots().stream()
+                .map(root -> new DataRoot(new File(root).getAbsoluteFile()))
+                .toList();
+    }
+
+    public boolean isEnabled() {
+        return !roots.isEmpty();
+    }
+
+    public long getUsableSpace() {
+        return roots.stream().mapToLong(root -> root.dir.getUsableSpace()).sum();
+    }
+
+    public Placement place(File logicalFile, long expectedBytes) throws IOException {
+        if (roots.isEmpty()) {
+            return new Placement(logicalFile, logicalFile, null, roots);
+        }
+
+        DataRoot selected = selectRoot(expectedBytes);
+        File physicalFile = new File(selected.dir, logicalFile.getAbsolutePath());
+        File parentDir = physicalFile.getParentFile();
+        if (!parentDir.exists() && !parentDir.mkdirs() && !parentDir.isDirectory()) {
+            throw new IOException("Failed to create directory on data root: " + parentDir.getAbsolutePath());
+        }
+
+        selected.activeWrites.incrementAndGet();
+        return new Placement(logicalFile, physicalFile, selected, roots);
+    }
+
+    private DataRoot selectRoot(long expectedBytes) throws IOException {
+        DataRoot best = null;
+        long bestUsable = 0;
+        for (DataRoot root : roots) {
+            long usable = root.dir.getUsableSpace();
+            if (usable < expectedBytes) {
+                continue;
+            }
+            if (best == null
+                    || root.activeWrites.get() < best.activeWrites.get()
+                    || (root.activeWrites.get() == best.activeWrites.get() && usable > bestUsable)) {
+                best = root;
+                bestUsable = usable;
+            }
+        }
+        if (best == null) {
+            throw new IOException("No local data root has " + expectedBytes + " bytes of free space");
+        }
+        return best;
+    }
+
+    private static final class DataRoot {
+        private final File dir;
+        private final AtomicInteger activeWrites = new AtomicInteger();
+
+        private DataRoot(File dir) {
+            this.dir = dir;
+        }
+    }
+
+    public static final class Placement implements Closeable {
+        private final File logicalFile;
+        private final File physicalFile;
+        private final DataRoot root;
+        private final List<DataRoot> roots;
+        private boolean released;
+
+        private Placement(File logicalFile, File physicalFile, DataRoot root, List<DataRoot> roots) {
+            this.logicalFile = logicalFile;
+            this.physicalFile = physicalFile;
+            this.root = root;
+            this.roots = roots;
+        }
+
+        public File getFile() {
+            return physicalFile;
+        }
+
+        /**
+         * Exposes the written file at its logical path. No-op when the file was written in place. When the
+         * logical path already links to an earlier copy on another data root, that copy is deleted as well,
+         * so rewriting a file does not leave the old one behind on a disk nothing points to.
+         */
+        public void link() throws IOException {
+            if (root == null) {
+                return;
+            }
+            java.nio.file.Path link = logicalFile.toPath();
+            java.nio.file.Path previous = Files.isSymbolicLink(link) ? Files.readSymbolicLink(link) : null;
+            Files.deleteIfExists(link);
+            Files.createSymbolicLink(link, physicalFile.toPath());
+            log.debug("Linked {} -> {}", link, physicalFile);
+            if (previous != null && !previous.equals(physicalFile.toPath()) && isOnDataRoot(previous)) {
+                Files.deleteIfExists(previous);
+                log.debug("Deleted previous copy {} of {}", previous, link);
+            }
+        }
+
+        private boolean isOnDataRoot(java.nio.file.Path file) {
+            return file.isAbsolute() && roots.stream().anyMatch(dataRoot -> file.startsWith(dataRoot.dir.toPath()));
+        }
+
+        @Override
+        public void close() {
+            if (root != null && !released) {
+                released = true;
+                root.activeWrites.decrementAndGet();
+            }
+        }
+    }
+}
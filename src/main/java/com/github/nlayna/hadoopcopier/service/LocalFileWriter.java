@@ -0,0 +1,208 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.sun.nio.file.ExtendedOpenOption;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sequential writer for a local output file. The buffered variant goes through the page cache,
+ * the direct variant uses O_DIRECT with a block-aligned direct buffer and pads the last block,
+ * trimming the file to its real length on close. Files are not preallocated: the JDK has no fallocate, and
+ * writing a byte past the end only creates a sparse file without reserving any blocks. An existing file is
+ * unlinked rather than truncated, since it may be a hardlink into the {@link LocalContentCache} shared with other
+ * targets.
+ */
+@Slf4j
+public abstract class LocalFileWriter extends OutputStream {
+
+    private static final int DIRECT_BUFFER_SIZE = 1024 * 1024;
+    private static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    protected final Path path;
+    protected final FileChannel channel;
+    private final boolean fsyncOnClose;
+    protected long written;
+    private boolean closed;
+
+    private LocalFileWriter(Path path, FileChannel channel, boolean fsyncOnClose) {
+        this.path = path;
+        this.channel = channel;
+        this.fsyncOnClose = fsyncOnClose;
+    }
+
+    public static LocalFileWriter buffered(File file, boolean fsyncOnClose) throws IOException {
+        Path path = file.toPath();
+        Files.deleteIfExists(path);
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new Buffered(path, channel, fsyncOnClose);
+    }
+
+    public static LocalFileWriter direct(File file) throws IOException {
+        Path path = file.toPath();
+        int blockSize = blockSize(path);
+        Files.deleteIfExists(path);
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING, ExtendedOpenOption.DIRECT);
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("O_DIRECT is not supported for {}, falling back to buffered writes: {}", path, e.getMessage());
+            return buffered(file, true);
+        }
+        return new Direct(path, channel, blockSize);
+    }
+
+    @Override
+    public abstract void write(byte[] bytes, int offset, int length) throws IOException;
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    public long getBytesWritten() {
+        return written;
+    }
+
+    protected void finish() throws IOException {
+    }
+
+    /**
+     * Returns {@code false} if the writer was already closed, making close idempotent for stacked streams.
+     */
+    protected boolean markClosed() {
+        if (closed) {
+            return false;
+        }
+        closed = true;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!markClosed()) {
+            return;
+        }
+        try {
+            finish();
+            if (fsyncOnClose) {
+                channel.force(true);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    static int blockSize(Path path) {
+        try {
+            Path existing = path.toAbsolutePath().getParent();
+            long size = Files.getFileStore(existing).getBlockSize();
+            return size > 0 && size <= DIRECT_BUFFER_SIZE ? (int) size : DEFAULT_BLOCK_SIZE;
+        } catch (IOException | UnsupportedOperationException e) {
+            return DEFAULT_BLOCK_SIZE;
+        }
+    }
+
+    static ByteBuffer alignedBuffer(int size, int blockSize) {
+        return ByteBuffer.allocateDirect(size + blockSize).alignedSlice(blockSize).limit(size);
+    }
+
+    private static long alignUp(long value, int blockSize) {
+        return (value + blockSize - 1) / blockSize * blockSize;
+    }
+
+    private static final class Buffered extends LocalFileWriter {
+
+        private Buffered(Path path, FileChannel channel, boolean fsyncOnClose) {
+            super(path, channel, fsyncOnClose);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            written += length;
+        }
+    }
+
+    private static final class Direct extends LocalFileWriter {
+
+        private final int blockSize;
+        private final ByteBuffer buffer;
+
+        private Direct(Path path, FileChannel channel, int blockSize) {
+            super(path, channel, true);
+            this.blockSize = blockSize;
+            this.buffer = alignedBuffer(DIRECT_BUFFER_SIZE, blockSize);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            int remaining = length;
+            int position = offset;
+            while (remaining > 0) {
+                int chunk = Math.min(remaining, buffer.remaining());
+                buffer.put(bytes, position, chunk);
+                position += chunk;
+                remaining -= chunk;
+                if (!buffer.hasRemaining()) {
+                    flushBuffer();
+                }
+            }
+            written += length;
+        }
+
+        @Override
+        protected void finish() throws IOException {
+            int pending = buffer.position();
+            if (pending == 0) {
+                return;
+            }
+            int padded = (int) alignUp(pending, blockSize);
+            buffer.limit(padded);
+            while (buffer.position() < padded) {
+                buffer.put((byte) 0);
+            }
+            flushBuffer();
+        }
+
+        private void flushBuffer() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear().limit(DIRECT_BUFFER_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!markClosed()) {
+                return;
+            }
+            try {
+                finish();
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+            // O_DIRECT requires aligned lengths, so the padded tail is trimmed through a regular channel
+            try (FileChannel trimChannel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                if (trimChannel.size() > written) {
+                    trimChannel.truncate(written);
+                    trimChannel.force(true);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import com.github.nlayna.hadoopcopier.model.WriteMode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Durability policy for the local files written by one task. Opens writers in the requested {@link WriteMode}
+ * and, for {@link WriteMode#GROUP_FSYNC}, batches fsyncs until the configured number of files or bytes
+ * accumulates. Closing the session syncs whatever is still pending.
+ */
+@Slf4j
+public class LocalWriteSession implements Closeable {
+
+    private final WriteMode mode;
+    private final int groupFsyncFiles;
+    private final long groupFsyncBytes;
+
+    private final List<Path> pendingFiles = new ArrayList<>();
+    private long pendingBytes;
+
+    public LocalWriteSession(WriteMode mode, CopyProperties copyProperties) {
+        this.mode = mode != null ? mode : WriteMode.BUFFERED;
+        this.groupFsyncFiles = copyProperties.getGroupFsyncFiles();
+        this.groupFsyncBytes = copyProperties.getGroupFsyncBytes();
+    }
+
+    public WriteMode getMode() {
+        return mode;
+    }
+
+    public LocalFileWriter open(File file) throws IOException {
+        return switch (mode) {
+            case DIRECT -> LocalFileWriter.direct(file);
+            case FSYNC -> LocalFileWriter.buffered(file, true);
+            case BUFFERED, GROUP_FSYNC -> LocalFileWriter.buffered(file, false);
+        };
+    }
+
+    /**
+     * Called once a file is fully written and its writer closed.
+     */
+    public void fileCompleted(File file, long bytes) throws IOException {
+        if (mode == WriteMode.FSYNC || mode == WriteMode.DIRECT) {
+            syncDirectories(Set.of(file.toPath().toAbsolutePath().getParent()));
+            return;
+        }
+        if (mode != WriteMode.GROUP_FSYNC) {
+            return;
+        }
+
+        List<Path> batch = null;
+        synchronized (this) {
+            pendingFiles.add(file.toPath());
+            pendingBytes += bytes;
+            if (pendingFiles.size() >= groupFsyncFiles || pendingBytes >= groupFsyncBytes) {
+                batch = drainPending();
+            }
+        }
+        if (batch != null) {
+            syncFiles(batch);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        List<Path> batch;
+        synchronized (this) {
+            batch = drainPending();
+        }
+        if (!batch.isEmpty()) {
+            syncFiles(batch);
+        }
+    }
+
+    private List<Path> drainPending() {
+        List<Path> batch = new ArrayList<>(pendingFiles);
+        pendingFiles.clear();
+        pendingBytes = 0;
+        return batch;
+    }
+
+    private void syncFiles(List<Path> files) throws IOException {
+        Set<Path> directories = new LinkedHashSet<>();
+        for (Path file : files) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            directories.add(file.toAbsolutePath().getParent());
+        }
+        syncDirectories(directories);
+        log.debug("Group fsync of {} files", files.size());
+    }
+
+    private void syncDirectories(Set<Path> directories) {
+        for (Path directory : directories) {
+            try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException e) {
+                log.debug("Directory fsync is not supported for {}: {}", directory, e.getMessage());
+            }
+        }
+    }
+}
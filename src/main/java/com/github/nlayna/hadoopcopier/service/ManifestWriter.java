@@ -0,0 +1,73 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HexFormat;
+
+/**
+ * Streams the {@code _MANIFEST} of a directory item: one tab separated line per local file as soon as it is
+ * written, with the path relative to the item directory, length, modification time (epoch millis),
+ * digest algorithm, digest of the local bytes ({@code -} when checksums are disabled) and the source path.
+ * Lines go to {@code _MANIFEST.inprogress}, which is renamed into place on close, so a present
+ * {@code _MANIFEST} is always complete for the files it lists. {@link #abort()} drops it instead.
+ */
+public class ManifestWriter implements Closeable {
+
+    public static final String FILE_NAME = "_MANIFEST";
+    static final String HEADER = "#path\tlength\tmtime\talgorithm\tdigest\tsource\n";
+
+    private static final String IN_PROGRESS_SUFFIX = ".inprogress";
+
+    private final Path root;
+    private final Path inProgress;
+    private final Writer writer;
+    private int entries;
+
+    public ManifestWriter(File localDir) throws IOException {
+        this.root = localDir.toPath().toAbsolutePath();
+        Files.createDirectories(root);
+        this.inProgress = root.resolve(FILE_NAME + IN_PROGRESS_SUFFIX);
+        this.writer = Files.newBufferedWriter(inProgress, StandardCharsets.UTF_8);
+        writer.write(HEADER);
+    }
+
+    /**
+     * Adds a file that was just written under the item directory.
+     */
+    public synchronized void add(File localFile, byte[] md5, String source) throws IOException {
+        Path file = localFile.toPath().toAbsolutePath();
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        writer.write(root.relativize(file) + "\t" + attributes.size() + "\t"
+                + attributes.lastModifiedTime().toMillis() + "\t"
+                + (md5 != null ? "MD5\t" + HexFormat.of().formatHex(md5) : "-\t-") + "\t" + source + "\n");
+        entries++;
+    }
+
+    public synchronized int getEntries() {
+        return entries;
+    }
+
+    /**
+     * Discards the manifest of an item that failed, together with the {@code _MANIFEST} of an earlier run,
+     * which no longer describes the directory.
+     */
+    public synchronized void abort() throws IOException {
+        writer.close();
+        Files.deleteIfExists(inProgress);
+        Files.deleteIfExists(root.resolve(FILE_NAME));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+        Files.move(inProgress, root.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
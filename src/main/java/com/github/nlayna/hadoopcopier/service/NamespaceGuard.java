@@ -0,0 +1,259 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-namespace bulkhead and circuit breaker in front of the shared copy executor.
+ * <p>
+ * The bulkhead caps the items of one namespace running at once ({@code copy.namespace-max-items}), so a
+ * hanging NameNode can tie up at most that many workers; further items stay queued in their task until a
+ * slot frees up. The breaker opens after {@code copy.breaker-failure-threshold} consecutive connectivity
+ * failures (timeouts, refused or reset connections); while open, new items of the namespace fail at once.
+ * After {@code copy.breaker-open-duration} a single probe item is let through: success closes the breaker,
+ * failure opens it again. Items queued behind the probe wait for its outcome.
+ */
+@Slf4j
+@Component
+public class NamespaceGuard {
+
+    public enum Decision {
+        ADMIT, WAIT, REJECT
+    }
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int maxItems;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+    private final ConcurrentMap<String, Guard> guards = new ConcurrentHashMap<>();
+
+    @Autowired
+    public NamespaceGuard(CopyProperties copyProperties) {
+        this(copyProperties, System::nanoTime);
+    }
+
+    NamespaceGuard(CopyProperties copyProperties, LongSupplier clock) {
+        this.maxItems = copyProperties.getNamespaceMaxItems();
+        this.failureThreshold = copyProperties.getBreakerFailureThreshold();
+        this.openNanos = copyProperties.getBreakerOpenDuration().toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * Decides whether an item of {@code namespace} may start now. On {@link Decision#ADMIT} the caller holds
+     * a slot and must call {@link #release}; on {@link Decision#WAIT} {@code onAvailable} runs once a slot or
+     * the probe outcome is available, after which the caller asks again.
+     */
+    public Decision tryEnter(String namespace, Runnable onAvailable) {
+        return guard(namespace).tryEnter(onAvailable);
+    }
+
+    /**
+     * Frees the slot taken by an admitted item and feeds its outcome to the breaker.
+     */
+    public void release(String namespace, Throwable failure) {
+        guard(namespace).release(failure);
+    }
+
+    /**
+     * Frees the slot taken by an admitted item that never ran, without counting it as an outcome.
+     */
+    public void abandon(String namespace) {
+        guard(namespace).abandon();
+    }
+
+    /**
+     * Takes a slot for a helper thread of an item that is already running, without waiting: helpers only start
+     * while the breaker is closed and the bulkhead has room. An admitted helper must call {@link #leaveHelper}.
+     */
+    public boolean tryEnterHelper(String namespace) {
+        return guard(namespace).tryEnterHelper();
+    }
+
+    /**
+     * Frees a helper's slot. Helpers carry no outcome of their own, the item they help reports it.
+     */
+    public void leaveHelper(String namespace) {
+        guard(namespace).leaveHelper();
+    }
+
+    public String rejectionMessage(String namespace) {
+        return "Circuit breaker is open for namespace " + namespace;
+    }
+
+    /**
+     * Breaker state per namespace, for the health endpoint.
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> snapshot = new LinkedHashMap<>();
+        guards.forEach((namespace, guard) -> snapshot.put(namespace, guard.describe()));
+        return snapshot;
+    }
+
+    State state(String namespace) {
+        return guard(namespace).state();
+    }
+
+    private Guard guard(String namespace) {
+        return guards.computeIfAbsent(namespace, Guard::new);
+    }
+
+    /**
+     * Whether the failure says the cluster is unreachable or hanging, as opposed to a problem with one path.
+     */
+    static boolean isConnectivityFailure(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketTimeoutException || cause instanceof ConnectException
+                    || cause instanceof NoRouteToHostException || cause instanceof UnknownHostException
+                    || cause instanceof SocketException || cause instanceof TimeoutException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private final class Guard {
+
+        private final String namespace;
+        private final List<Runnable> waiters = new ArrayList<>();
+        private State state = State.CLOSED;
+        private int running;
+        private int consecutiveFailures;
+        private long openedAt;
+        private Instant openedAtWallClock;
+        private boolean probeRunning;
+
+        private Guard(String namespace) {
+            this.namespace = namespace;
+        }
+
+        synchronized State state() {
+            return state;
+        }
+
+        synchronized Decision tryEnter(Runnable onAvailable) {
+            if (state == State.OPEN) {
+                if (clock.getAsLong() - openedAt < openNanos) {
+                    return Decision.REJECT;
+                }
+                state = State.HALF_OPEN;
+                log.info("Circuit breaker for {} is half-open, probing", namespace);
+            }
+            if (state == State.HALF_OPEN) {
+                if (probeRunning) {
+                    waiters.add(onAvailable);
+                    return Decision.WAIT;
+                }
+                probeRunning = true;
+            } else if (maxItems > 0 && running >= maxItems) {
+                waiters.add(onAvailable);
+                return Decision.WAIT;
+            }
+            running++;
+            return Decision.ADMIT;
+        }
+
+        synchronized boolean tryEnterHelper() {
+            if (state != State.CLOSED || (maxItems > 0 && running >= maxItems)) {
+                return false;
+            }
+            running++;
+            return true;
+        }
+
+        void leaveHelper() {
+            List<Runnable> wake;
+            synchronized (this) {
+                running--;
+                wake = new ArrayList<>(waiters);
+                waiters.clear();
+            }
+            wake.forEach(Runnable::run);
+        }
+
+        void release(Throwable failure) {
+            List<Runnable> wake;
+            synchronized (this) {
+                running--;
+                boolean probe = state == State.HALF_OPEN && probeRunning;
+                if (probe) {
+                    probeRunning = false;
+                }
+                if (failure != null && isConnectivityFailure(failure)) {
+                    consecutiveFailures++;
+                    if (probe || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+                        open(failure);
+                    }
+                } else {
+                    consecutiveFailures = 0;
+                    if (state == State.HALF_OPEN && probe) {
+                        state = State.CLOSED;
+                        log.info("Circuit breaker for {} closed", namespace);
+                    }
+                }
+                wake = new ArrayList<>(waiters);
+                waiters.clear();
+            }
+            wake.forEach(Runnable::run);
+        }
+
+        void abandon() {
+            List<Runnable> wake;
+            synchronized (this) {
+                running--;
+                if (state == State.HALF_OPEN) {
+                    probeRunning = false;
+                }
+                wake = new ArrayList<>(waiters);
+                waiters.clear();
+            }
+            wake.forEach(Runnable::run);
+        }
+
+        private void open(Throwable failure) {
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+            openedAtWallClock = Instant.now();
+            log.warn("Circuit breaker for {} opened after {} consecutive failures, last: {}",
+                    namespace, consecutiveFailures, failure.getMessage());
+        }
+
+        synchronized Map<String, Object> describe() {
+            Map<String, Object> details = new LinkedHashMap<>();
+            details.put("state", state);
+            details.put("runningItems", running);
+            details.put("queuedTasks", waiters.size());
+            details.put("consecutiveFailures", consecutiveFailures);
+            if (state != State.CLOSED) {
+                details.put("openedAt", openedAtWallClock);
+                details.put("retryAfter", Duration.ofNanos(Math.max(0, openNanos - (clock.getAsLong() - openedAt))));
+            }
+            return details;
+        }
+    }
+}
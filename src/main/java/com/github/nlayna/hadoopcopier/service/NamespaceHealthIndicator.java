@@ -0,0 +1,25 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Circuit breaker state per namespace under {@code /actuator/health}. An open breaker only affects copies
+ * from that namespace, so the service itself stays {@code UP}.
+ */
+@Component("namespaces")
+@RequiredArgsConstructor
+public class NamespaceHealthIndicator implements HealthIndicator {
+
+    private final NamespaceGuard namespaceGuard;
+
+    @Override
+    public Health health() {
+        Map<String, Map<String, Object>> namespaces = namespaceGuard.snapshot();
+        return Health.up().withDetails(namespaces).build();
+    }
+}
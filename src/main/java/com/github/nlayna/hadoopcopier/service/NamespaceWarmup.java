@@ -0,0 +1,76 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.HadoopProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Warms up the configured namespaces in parallel at startup. Spring Boot switches readiness to
+ * ACCEPTING_TRAFFIC only after all application runners return, so the readiness probe stays down
+ * until warm-up has finished or {@code hadoop.warmup-timeout} has passed. A failed or slow namespace
+ * is logged and left to warm up on its first request.
+ */
+@Slf4j
+@Component
+public class NamespaceWarmup implements ApplicationRunner {
+
+    private final HdfsFileSystemFactory fileSystemFactory;
+    private final HadoopProperties hadoopProperties;
+    private final Executor copyExecutor;
+
+    public NamespaceWarmup(HdfsFileSystemFactory fileSystemFactory,
+                           HadoopProperties hadoopProperties,
+                           @Qualifier("copyExecutor") Executor copyExecutor) {
+        this.fileSystemFactory = fileSystemFactory;
+        this.hadoopProperties = hadoopProperties;
+        this.copyExecutor = copyExecutor;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<String> namespaces = hadoopProperties.getWarmupNamespaces();
+        if (namespaces.isEmpty()) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        CompletableFuture<?>[] warmups = namespaces.stream()
+                .map(this::warmUpAsync)
+                .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(warmups).get(hadoopProperties.getWarmupTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            log.info("Warm-up of {} namespaces finished in {} ms", namespaces.size(), System.currentTimeMillis() - startTime);
+        } catch (TimeoutException e) {
+            log.warn("Warm-up did not finish within {}, accepting traffic anyway", hadoopProperties.getWarmupTimeout());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // failures are logged per namespace
+        }
+    }
+
+    private CompletableFuture<Void> warmUpAsync(String namespace) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                fileSystemFactory.warmUp(namespace, hadoopProperties.getWarmupClients());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, copyExecutor).whenComplete((ignored, error) -> {
+            if (error != null) {
+                log.warn("Warm-up of namespace {} failed: {}", namespace, error.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.model.CopyResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the files of one item on up to {@code parallelism} threads: the calling thread plus helpers submitted
+ * to a shared executor. The caller always works through the queue itself, so a saturated executor (or one
+ * whose threads are all busy running items) cannot deadlock the batch; helpers that start late find nothing left.
+ * The first failure stops the batch and is rethrown once running jobs have finished.
+ */
+@Slf4j
+public class ParallelFileRunner {
+
+    @FunctionalInterface
+    public interface FileJob {
+        CopyResult run() throws IOException;
+    }
+
+    private final Queue<FileJob> queue;
+    private final int jobCount;
+    private final CountDownLatch done;
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicBoolean allVerified = new AtomicBoolean(true);
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private ParallelFileRunner(List<FileJob> jobs) {
+        this.queue = new ConcurrentLinkedQueue<>(jobs);
+        this.jobCount = jobs.size();
+        this.done = new CountDownLatch(jobs.size());
+    }
+
+    public static CopyResult run(List<FileJob> jobs, Executor executor, int parallelism) throws IOException {
+        ParallelFileRunner runner = new ParallelFileRunner(jobs);
+        int helpers = Math.min(parallelism, jobs.size()) - 1;
+        for (int i = 0; i < helpers; i++) {
+            try {
+                executor.execute(runner::drain);
+            } catch (RejectedExecutionException e) {
+                log.debug("Executor is saturated, running remaining files with {} helpers", i);
+                break;
+            }
+        }
+        runner.drain();
+        return runner.await();
+    }
+
+    private void drain() {
+        FileJob job;
+        while ((job = queue.poll()) != null) {
+            try {
+                if (failure.get() == null) {
+                    CopyResult result = job.run();
+                    totalBytes.addAndGet(result.bytesCopied());
+                    if (!result.checksumVerified()) {
+                        allVerified.set(false);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+
+    private CopyResult await() throws IOException {
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for file copies");
+        }
+        Throwable error = failure.get();
+        if (error instanceof IOException ioException) {
+            throw ioException;
+        }
+        if (error != null) {
+            throw new IOException(error.getMessage(), error);
+        }
+        return new CopyResult(totalBytes.get(), allVerified.get() && jobCount > 0);
+    }
+}
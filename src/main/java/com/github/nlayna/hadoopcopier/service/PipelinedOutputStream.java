@@ -0,0 +1,94 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OutputStream that hands written chunks over a bounded queue to a worker on another executor,
+ * which writes them to the downstream stream. Lets CPU-heavy downstream work (compression) overlap
+ * with the network reads of the calling thread.
+ */
+public class PipelinedOutputStream extends OutputStream {
+
+    private static final byte[] END_OF_STREAM = new byte[0];
+
+    private final BlockingQueue<byte[]> queue;
+    private final CompletableFuture<Void> worker;
+    private volatile Throwable failure;
+    private boolean closed;
+
+    public PipelinedOutputStream(OutputStream downstream, Executor executor, int queueDepth) {
+        this.queue = new ArrayBlockingQueue<>(queueDepth);
+        this.worker = CompletableFuture.runAsync(() -> drain(downstream), executor);
+    }
+
+    private void drain(OutputStream downstream) {
+        try (downstream) {
+            byte[] chunk;
+            while ((chunk = queue.take()) != END_OF_STREAM) {
+                downstream.write(chunk);
+            }
+        } catch (Throwable e) {
+            failure = e;
+            queue.clear();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len > 0) {
+            enqueue(Arrays.copyOfRange(b, off, off + len));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        enqueue(END_OF_STREAM);
+        try {
+            worker.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for pipeline to drain");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+        checkFailure();
+    }
+
+    private void enqueue(byte[] chunk) throws IOException {
+        try {
+            while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing to pipeline");
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable error = failure;
+        if (error != null) {
+            // a fresh exception each time: write and close may both rethrow within one try-with-resources
+            throw new IOException(error.getMessage(), error);
+        }
+    }
+}
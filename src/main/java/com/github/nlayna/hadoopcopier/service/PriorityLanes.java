@@ -0,0 +1,178 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import com.github.nlayna.hadoopcopier.model.CopyPriority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Priority lanes in front of the copy executor. At most {@code copy.thread-pool-size} workers run on the
+ * executor at a time, across all tasks; each worker keeps taking the oldest item of the highest non-empty lane
+ * until the lanes are empty, so urgent items overtake queued bulk work without a second pool, and waiting
+ * items stay in the lanes instead of filling the executor queue.
+ * <p>
+ * Items already running are preempted at file boundaries: a copy calls {@link #yieldToHigher()} between
+ * files, and if a higher lane has work waiting, that work runs on the same thread first. The paused copy keeps
+ * its progress and continues with its next file afterwards, and its stream slot and bandwidth are free
+ * while it waits.
+ */
+@Slf4j
+@Component
+public class PriorityLanes {
+
+    private static final CopyPriority[] PRIORITIES = CopyPriority.values();
+
+    private final Executor copyExecutor;
+    private final int maxWorkers;
+    private final Deque<Runnable>[] lanes;
+    private final Counter[] preemptions;
+    private final ThreadLocal<CopyPriority> running = new ThreadLocal<>();
+    private int workers;
+
+    @SuppressWarnings("unchecked")
+    public PriorityLanes(@Qualifier("copyExecutor") Executor copyExecutor, CopyProperties copyProperties,
+                         MeterRegistry meterRegistry) {
+        this.copyExecutor = copyExecutor;
+        this.maxWorkers = Math.max(1, copyProperties.getThreadPoolSize());
+        this.lanes = new Deque[PRIORITIES.length];
+        this.preemptions = new Counter[PRIORITIES.length];
+        for (CopyPriority priority : PRIORITIES) {
+            lanes[priority.ordinal()] = new ArrayDeque<>();
+            preemptions[priority.ordinal()] = meterRegistry.counter("copy.lanes.preemptions",
+                    "lane", priority.name());
+            meterRegistry.gauge("copy.lanes.queued", Tags.of("lane", priority.name()), this,
+                    self -> self.queued(priority));
+        }
+    }
+
+    /**
+     * Queues {@code work} and starts a worker for it if fewer than the maximum are running.
+     *
+     * @throws RejectedExecutionException if the executor refused a worker and none is running to pick the work
+     *                                    up; the work is not queued then
+     */
+    public void execute(CopyPriority priority, Runnable work) {
+        synchronized (this) {
+            lanes[priority.ordinal()].add(work);
+            if (workers >= maxWorkers) {
+                return;
+            }
+            workers++;
+        }
+        try {
+            copyExecutor.execute(this::work);
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                workers--;
+                if (workers > 0) {
+                    log.debug("Executor rejected a lane worker, {} running workers will pick up the work", workers);
+                    return;
+                }
+                lanes[priority.ordinal()].removeLastOccurrence(work);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Runs waiting work of higher lanes than the one the calling thread is working for. A no-op outside
+     * of lane work and when nothing more urgent is queued.
+     */
+    public void yieldToHigher() {
+        CopyPriority current = running.get();
+        if (current == null) {
+            return;
+        }
+        while (true) {
+            Lane next = poll(current.ordinal());
+            if (next == null) {
+                return;
+            }
+            log.debug("{} work preempted by {} work", current, next.priority());
+            preemptions[current.ordinal()].increment();
+            run(next);
+        }
+    }
+
+    /**
+     * An executor for helpers of the work running on the calling thread: it queues them in that work's lane,
+     * so they count against the worker cap and wait behind more urgent work. Outside of lane work the helpers
+     * go to the lowest lane.
+     */
+    public Executor currentLane() {
+        CopyPriority current = running.get();
+        CopyPriority priority = current != null ? current : PRIORITIES[PRIORITIES.length - 1];
+        return helper -> execute(priority, helper);
+    }
+
+    synchronized int queued(CopyPriority priority) {
+        return lanes[priority.ordinal()].size();
+    }
+
+    synchronized int workers() {
+        return workers;
+    }
+
+    private void work() {
+        Lane next;
+        while ((next = pollOrRetire()) != null) {
+            try {
+                run(next);
+            } catch (RuntimeException e) {
+                // the worker must outlive a failing item, or the work queued behind it would have no worker
+                log.error("{} lane work failed", next.priority(), e);
+            }
+        }
+    }
+
+    /**
+     * Takes the next work for a worker, or retires the worker when the lanes are empty. Both happen under the
+     * lock {@link #execute} queues under, so queued work always has a worker.
+     */
+    private synchronized Lane pollOrRetire() {
+        Lane next = poll(PRIORITIES.length);
+        if (next == null) {
+            workers--;
+        }
+        return next;
+    }
+
+    private void run(Lane lane) {
+        CopyPriority previous = running.get();
+        running.set(lane.priority());
+        try {
+            lane.work().run();
+        } finally {
+            if (previous == null) {
+                running.remove();
+            } else {
+                running.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Takes the oldest work of the highest non-empty lane above {@code belowOrdinal}.
+     */
+    private synchronized Lane poll(int belowOrdinal) {
+        for (int i = 0; i < belowOrdinal; i++) {
+            Runnable work = lanes[i].poll();
+            if (work != null) {
+                return new Lane(PRIORITIES[i], work);
+            }
+        }
+        return null;
+    }
+
+    private record Lane(CopyPriority priority, Runnable work) {
+    }
+}
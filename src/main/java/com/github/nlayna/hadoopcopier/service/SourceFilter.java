@@ -0,0 +1,78 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.model.CopyFilter;
+import org.apache.hadoop.fs.FileStatus;
+
+import java.util.regex.Pattern;
+
+/**
+ * Compiled form of a {@link CopyFilter}, applied to source listings so that rejected files are never opened.
+ * {@code include} and {@code exclude} are searched in the source path (without scheme and authority);
+ * {@code exclude} also prunes whole directories. Size and modification time bounds apply to files only,
+ * lower bounds inclusive and upper bounds exclusive for the time window.
+ */
+public class SourceFilter {
+
+    public static final SourceFilter ACCEPT_ALL = new SourceFilter(new CopyFilter());
+
+    private final Pattern include;
+    private final Pattern exclude;
+    private final Long minSize;
+    private final Long maxSize;
+    private final Long modifiedAfter;
+    private final Long modifiedBefore;
+
+    private SourceFilter(CopyFilter filter) {
+        this.include = filter.getInclude() != null ? Pattern.compile(filter.getInclude()) : null;
+        this.exclude = filter.getExclude() != null ? Pattern.compile(filter.getExclude()) : null;
+        this.minSize = filter.getMinSize();
+        this.maxSize = filter.getMaxSize();
+        this.modifiedAfter = filter.getModifiedAfter() != null ? filter.getModifiedAfter().toEpochMilli() : null;
+        this.modifiedBefore = filter.getModifiedBefore() != null ? filter.getModifiedBefore().toEpochMilli() : null;
+    }
+
+    public static SourceFilter of(CopyFilter filter) {
+        return filter != null ? new SourceFilter(filter) : ACCEPT_ALL;
+    }
+
+    /**
+     * Whether the path contains glob characters understood by {@code FileSystem.globStatus}.
+     */
+    public static boolean isGlob(String path) {
+        for (char c : path.toCharArray()) {
+            if (c == '*' || c == '?' || c == '[' || c == '{') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return include == null && exclude == null && minSize == null && maxSize == null
+                && modifiedAfter == null && modifiedBefore == null;
+    }
+
+    public boolean acceptsDirectory(FileStatus status) {
+        return exclude == null || !exclude.matcher(pathOf(status)).find();
+    }
+
+    public boolean acceptsFile(FileStatus status) {
+        if (include != null && !include.matcher(pathOf(status)).find()) {
+            return false;
+        }
+        if (exclude != null && exclude.matcher(pathOf(status)).find()) {
+            return false;
+        }
+        long length = status.getLen();
+        if ((minSize != null && length < minSize) || (maxSize != null && length > maxSize)) {
+            return false;
+        }
+        long modified = status.getModificationTime();
+        return (modifiedAfter == null || modified >= modifiedAfter)
+                && (modifiedBefore == null || modified < modifiedBefore);
+    }
+
+    private static String pathOf(FileStatus status) {
+        return status.getPath().toUri().getPath();
+    }
+}
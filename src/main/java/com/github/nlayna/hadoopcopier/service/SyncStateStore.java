@@ -0,0 +1,59 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Last synced snapshot per (source, local target), persisted to {@code copy.sync-state-file} so incremental
+ * syncs survive restarts. The file is rewritten through a temporary file and an atomic rename.
+ */
+@Slf4j
+@Component
+public class SyncStateStore {
+
+    private final Path stateFile;
+    private final Properties state = new Properties();
+
+    public SyncStateStore(CopyProperties copyProperties) {
+        this.stateFile = Paths.get(copyProperties.getSyncStateFile()).toAbsolutePath();
+        if (Files.exists(stateFile)) {
+            try (InputStream in = Files.newInputStream(stateFile)) {
+                state.load(in);
+            } catch (IOException e) {
+                // losing the state only costs a full copy on the next sync
+                log.warn("Failed to load sync state from {}, starting empty: {}", stateFile, e.getMessage());
+            }
+        }
+    }
+
+    public static String key(String sourceUri, String localPath) {
+        return sourceUri + " -> " + Paths.get(localPath).toAbsolutePath().normalize();
+    }
+
+    public synchronized String getLastSnapshot(String key) {
+        return state.getProperty(key);
+    }
+
+    public synchronized void setLastSnapshot(String key, String snapshotName) throws IOException {
+        state.setProperty(key, snapshotName);
+        Path parent = stateFile.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tempFile = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempFile)) {
+            state.store(out, "hadoop-copier snapshot sync state");
+        }
+        Files.move(tempFile, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
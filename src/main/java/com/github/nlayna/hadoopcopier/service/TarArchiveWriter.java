@@ -0,0 +1,181 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal streaming POSIX (ustar) tar writer. Names longer than the ustar field and sizes above 8 GiB
+ * are carried in PAX extended headers, so any modern tar can read the result.
+ */
+public class TarArchiveWriter {
+
+    static final int BLOCK_SIZE = 512;
+
+    private static final int NAME_LENGTH = 100;
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+    private static final byte[] ZERO_BLOCK = new byte[BLOCK_SIZE];
+
+    private final OutputStream out;
+    private long offset;
+
+    public TarArchiveWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Number of bytes written so far, i.e. the offset of the next header in the uncompressed archive.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public void putDirectory(String name, long mtimeMillis) throws IOException {
+        String dirName = name.endsWith("/") ? name : name + "/";
+        writeHeader(dirName, 0, mtimeMillis, (byte) '5', 0755);
+    }
+
+    /**
+     * Writes a file entry with exactly {@code size} bytes read from {@code in}.
+     *
+     * @return offset of the file data within the uncompressed archive
+     */
+    public long putFile(String name, long size, long mtimeMillis, InputStream in, byte[] buffer) throws IOException {
+        writeHeader(name, size, mtimeMillis, (byte) '0', 0644);
+        long dataOffset = offset;
+
+        long remaining = size;
+        while (remaining > 0) {
+            int bytesRead = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (bytesRead == -1) {
+                throw new IOException("Source ended " + remaining + " bytes early for archive entry " + name);
+            }
+            write(buffer, 0, bytesRead);
+            remaining -= bytesRead;
+        }
+        if (in.read() != -1) {
+            throw new IOException("Source is longer than " + size + " bytes for archive entry " + name);
+        }
+        padToBlock();
+        return dataOffset;
+    }
+
+    /**
+     * Writes the end-of-archive marker. The underlying stream is left open.
+     */
+    public void finish() throws IOException {
+        write(ZERO_BLOCK, 0, BLOCK_SIZE);
+        write(ZERO_BLOCK, 0, BLOCK_SIZE);
+    }
+
+    private void writeHeader(String name, long size, long mtimeMillis, byte type, int mode) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        boolean longName = nameBytes.length > NAME_LENGTH;
+        boolean largeSize = size > MAX_OCTAL_SIZE;
+        if (longName || largeSize) {
+            writePaxHeader(name, size, longName, largeSize);
+        }
+
+        byte[] header = new byte[BLOCK_SIZE];
+        putString(header, 0, NAME_LENGTH, longName ? truncate(nameBytes) : nameBytes);
+        putOctal(header, 100, 8, mode);
+        putOctal(header, 108, 8, 0);
+        putOctal(header, 116, 8, 0);
+        putOctal(header, 124, 12, largeSize ? 0 : size);
+        putOctal(header, 136, 12, mtimeMillis / 1000);
+        header[156] = type;
+        putString(header, 257, 6, "ustar\0".getBytes(StandardCharsets.US_ASCII));
+        putString(header, 263, 2, "00".getBytes(StandardCharsets.US_ASCII));
+        writeChecksum(header);
+        write(header, 0, BLOCK_SIZE);
+    }
+
+    private void writePaxHeader(String name, long size, boolean longName, boolean largeSize) throws IOException {
+        StringBuilder records = new StringBuilder();
+        if (longName) {
+            records.append(paxRecord("path", name));
+        }
+        if (largeSize) {
+            records.append(paxRecord("size", Long.toString(size)));
+        }
+        byte[] data = records.toString().getBytes(StandardCharsets.UTF_8);
+
+        byte[] header = new byte[BLOCK_SIZE];
+        putString(header, 0, NAME_LENGTH, "././@PaxHeader".getBytes(StandardCharsets.US_ASCII));
+        putOctal(header, 100, 8, 0644);
+        putOctal(header, 108, 8, 0);
+        putOctal(header, 116, 8, 0);
+        putOctal(header, 124, 12, data.length);
+        putOctal(header, 136, 12, 0);
+        header[156] = 'x';
+        putString(header, 257, 6, "ustar\0".getBytes(StandardCharsets.US_ASCII));
+        putString(header, 263, 2, "00".getBytes(StandardCharsets.US_ASCII));
+        writeChecksum(header);
+        write(header, 0, BLOCK_SIZE);
+        write(data, 0, data.length);
+        padToBlock();
+    }
+
+    /**
+     * A PAX record is "<length> <key>=<value>\n" where the length counts itself.
+     */
+    private static String paxRecord(String key, String value) {
+        int payload = key.getBytes(StandardCharsets.UTF_8).length + value.getBytes(StandardCharsets.UTF_8).length + 3;
+        int length = payload + Integer.toString(payload).length();
+        if (Integer.toString(length).length() != Integer.toString(payload).length()) {
+            length++;
+        }
+        return length + " " + key + "=" + value + "\n";
+    }
+
+    private static byte[] truncate(byte[] nameBytes) {
+        return Arrays.copyOf(nameBytes, NAME_LENGTH);
+    }
+
+    private static void putString(byte[] header, int offset, int length, byte[] value) {
+        System.arraycopy(value, 0, header, offset, Math.min(length, value.length));
+    }
+
+    private static void putOctal(byte[] header, int offset, int length, long value) {
+        String octal = Long.toOctalString(value);
+        int digits = length - 1;
+        StringBuilder padded = new StringBuilder(digits);
+        for (int i = octal.length(); i < digits; i++) {
+            padded.append('0');
+        }
+        padded.append(octal);
+        putString(header, offset, digits, padded.toString().getBytes(StandardCharsets.US_ASCII));
+        header[offset + digits] = 0;
+    }
+
+    private static void writeChecksum(byte[] header) {
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long sum = 0;
+        for (byte b : header) {
+            sum += b & 0xff;
+        }
+        String octal = Long.toOctalString(sum);
+        StringBuilder padded = new StringBuilder(6);
+        for (int i = octal.length(); i < 6; i++) {
+            padded.append('0');
+        }
+        padded.append(octal);
+        putString(header, 148, 6, padded.toString().getBytes(StandardCharsets.US_ASCII));
+        header[154] = 0;
+        header[155] = ' ';
+    }
+
+    private void padToBlock() throws IOException {
+        int remainder = (int) (offset % BLOCK_SIZE);
+        if (remainder != 0) {
+            write(ZERO_BLOCK, 0, BLOCK_SIZE - remainder);
+        }
+    }
+
+    private void write(byte[] bytes, int off, int len) throws IOException {
+        out.write(bytes, off, len);
+        offset += len;
+    }
+}
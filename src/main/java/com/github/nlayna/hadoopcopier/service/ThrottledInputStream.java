@@ -13,6 +13,7 @@ public class ThrottledInputStream extends FilterInputStream {
     private final long maxBytesPerSecond;
     private long windowStartNanos;
     private long bytesReadInWindow;
+    private long sleptNanos;
 
     public ThrottledInputStream(InputStream in, long maxBytesPerSecond) {
         super(in);
@@ -44,6 +45,13 @@ public class ThrottledInputStream extends FilterInputStream {
         return bytesRead;
     }
 
+    /**
+     * Total time spent sleeping to stay under the limit.
+     */
+    public long getSleptNanos() {
+        return sleptNanos;
+    }
+
     private void throttle(int bytesRequested) throws IOException {
         if (bytesReadInWindow >= maxBytesPerSecond) {
             long elapsedNanos = System.nanoTime() - windowStartNanos;
@@ -59,6 +67,7 @@ public class ThrottledInputStream extends FilterInputStream {
                     Thread.currentThread().interrupt();
                     throw new IOException("Throttled read interrupted", e);
                 }
+                sleptNanos += System.nanoTime() - windowStartNanos - elapsedNanos;
             }
 
             // Reset window
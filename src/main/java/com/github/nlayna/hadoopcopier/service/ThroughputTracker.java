@@ -0,0 +1,32 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.OptionalDouble;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps an exponentially weighted moving average of per-stream copy throughput for each namespace.
+ * Fed by completed items, read by the planner to estimate copy duration.
+ */
+@Component
+public class ThroughputTracker {
+
+    private static final double SMOOTHING = 0.3;
+
+    private final ConcurrentMap<String, Double> bytesPerSecond = new ConcurrentHashMap<>();
+
+    public void record(String namespace, long bytes, long durationMs) {
+        if (bytes <= 0 || durationMs <= 0) {
+            return;
+        }
+        double sample = bytes * 1000.0 / durationMs;
+        bytesPerSecond.merge(namespace, sample, (previous, current) -> previous + SMOOTHING * (current - previous));
+    }
+
+    public OptionalDouble getBytesPerSecond(String namespace) {
+        Double value = bytesPerSecond.get(namespace);
+        return value == null ? OptionalDouble.empty() : OptionalDouble.of(value);
+    }
+}
@@ -1,19 +1,36 @@
 package com.github.nlayna.hadoopcopier.controller;
 
 import com.github.nlayna.hadoopcopier.model.*;
+import com.github.nlayna.hadoopcopier.service.CopyPlanService;
 import com.github.nlayna.hadoopcopier.service.CopyTaskService;
+import org.apache.hadoop.util.NativeCodeLoader;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -27,6 +44,9 @@ class CopyControllerTest {
     @MockitoBean
     private CopyTaskService copyTaskService;
 
+    @MockitoBean
+    private CopyPlanService copyPlanService;
+
     @Test
     void submitCopyRequest_validRequest_returns202() throws Exception {
         when(copyTaskService.submitTask(any())).thenReturn("test-request-id");
@@ -154,6 +174,148 @@ class CopyControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void submitBulkRequest_ndjson_addsItemsAsTheyAreParsed() throws Exception {
+        CopyTaskService.BulkSubmission submission = mock(CopyTaskService.BulkSubmission.class);
+        when(copyTaskService.openBulkTask(any())).thenReturn(submission);
+        when(submission.getRequestId()).thenReturn("bulk-1");
+        when(submission.size()).thenReturn(4);
+
+        MvcResult result = mockMvc.perform(post("/api/v1/copy/bulk")
+                        .param("namespace", "ns1")
+                        .param("bandwidth", "50")
+                        .contentType("application/x-ndjson")
+                        .content("""
+                                {"hdfsPath": "/data/a", "localPath": "/tmp/a"}
+                                {"hdfsPath": "/data/b", "localPath": "/tmp/b"}
+
+                                {not json
+                                {"hdfsPath": "/data/c", "targetNamespace": "ns2"}
+                                """))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isAccepted())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string("""
+                        {"requestId":"bulk-1"}
+                        {"requestId":"bulk-1","items":4}
+                        """));
+
+        ArgumentCaptor<CopyRequest> settings = ArgumentCaptor.forClass(CopyRequest.class);
+        verify(copyTaskService).openBulkTask(settings.capture());
+        assertThat(settings.getValue().getNamespace()).isEqualTo("ns1");
+        assertThat(settings.getValue().getBandwidth()).isEqualTo(50);
+        verify(submission, times(2)).add(any());
+        verify(submission).reject(isNull(), startsWith("line 4: invalid JSON"));
+        verify(submission).reject(any(), eq("line 5: targetPath is required when targetNamespace is set"));
+        verify(submission).close();
+    }
+
+    @Test
+    void submitBulkRequest_emptyBody_failsTask() throws Exception {
+        CopyTaskService.BulkSubmission submission = mock(CopyTaskService.BulkSubmission.class);
+        when(copyTaskService.openBulkTask(any())).thenReturn(submission);
+        when(submission.getRequestId()).thenReturn("bulk-1");
+
+        MvcResult result = mockMvc.perform(post("/api/v1/copy/bulk")
+                        .param("namespace", "ns1")
+                        .contentType("application/x-ndjson")
+                        .content("\n"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isAccepted())
+                .andExpect(content().string(endsWith("""
+                        {"requestId":"bulk-1","error":"items must not be empty"}
+                        """)));
+        verify(submission).reject(isNull(), eq("items must not be empty"));
+        verify(submission).close();
+    }
+
+    @Test
+    void submitBulkRequest_missingNamespace_returns400() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/v1/copy/bulk")
+                        .contentType("application/x-ndjson")
+                        .content("{\"hdfsPath\": \"/data/a\", \"localPath\": \"/tmp/a\"}"))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("namespace is required"));
+    }
+
+    @Test
+    void getTaskSummary_returnsCountersWithoutItems() throws Exception {
+        CopyTaskSummary summary = new CopyTaskSummary("req-1", "ns1", CopyTaskStatus.IN_PROGRESS, Instant.now(), null,
+                200_000, 150_000, 10, 49_990, 0, 1L << 40, 49_990, 0);
+        when(copyTaskService.getSummary("req-1")).thenReturn(Optional.of(summary));
+
+        mockMvc.perform(get("/api/v1/copy/req-1/summary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items").value(200_000))
+                .andExpect(jsonPath("$.completed").value(49_990))
+                .andExpect(jsonPath("$.bytesCopied").value(1L << 40));
+    }
+
+    @Test
+    void getItems_passesCursorAndCapsLimit() throws Exception {
+        ItemPage page = new ItemPage(List.of(new ItemPage.Entry(7, new CopyItemTask("/data/a", "/tmp/a"))), 8);
+        when(copyTaskService.getItems("req-1", CopyItemStatus.FAILED, 7, 1000)).thenReturn(Optional.of(page));
+
+        mockMvc.perform(get("/api/v1/copy/req-1/items")
+                        .param("status", "FAILED")
+                        .param("cursor", "7")
+                        .param("limit", "5000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].index").value(7))
+                .andExpect(jsonPath("$.items[0].item.hdfsPath").value("/data/a"))
+                .andExpect(jsonPath("$.nextCursor").value(8));
+    }
+
+    @Test
+    void getItemFiles_filtersByStatus() throws Exception {
+        FileStatusTable table = new FileStatusTable();
+        int dir = table.addDirectory("/data/dir", "/tmp/dir");
+        table.markCompleted(table.addFile(dir, "a.txt", 10), 3);
+        table.markFailed(table.addFile(dir, "b.txt", 20), 4, "Connection reset");
+
+        when(copyTaskService.getFiles("req-1", 0, CopyItemStatus.FAILED, 0, 100))
+                .thenReturn(Optional.of(table.page(CopyItemStatus.FAILED, 0, 100)));
+
+        mockMvc.perform(get("/api/v1/copy/req-1/items/0/files").param("status", "FAILED"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.files[0].path").value("/data/dir/b.txt"))
+                .andExpect(jsonPath("$.files[0].error").value("Connection reset"));
+    }
+
+    @Test
+    void retryFailed_runningTask_returns409() throws Exception {
+        CopyTask task = new CopyTask("req-1", "ns1", null,
+                List.of(new CopyItemTask("/data/res1", "/tmp/res1")));
+        when(copyTaskService.getTask("req-1")).thenReturn(Optional.of(task));
+
+        mockMvc.perform(post("/api/v1/copy/req-1/retry"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("task is still running"));
+    }
+
+    @Test
+    void retryFailed_finishedTask_returns202() throws Exception {
+        CopyTask task = new CopyTask("req-1", "ns1", null,
+                List.of(new CopyItemTask("/data/res1", "/tmp/res1")));
+        task.setCompletedAt(Instant.now());
+        when(copyTaskService.getTask("req-1")).thenReturn(Optional.of(task));
+        when(copyTaskService.retryFailed(task)).thenReturn(Optional.of("req-2"));
+
+        mockMvc.perform(post("/api/v1/copy/req-1/retry"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.requestId").value("req-2"));
+    }
+
     @Test
     void submitCopyRequest_multipleItems_returns202() throws Exception {
         when(copyTaskService.submitTask(any())).thenReturn("multi-id");
@@ -207,6 +369,122 @@ class CopyControllerTest {
                 .andExpect(jsonPath("$.error").value("bandwidth must be positive"));
     }
 
+    @Test
+    void submitCopyRequest_invalidFilterRegex_returns400() throws Exception {
+        mockMvc.perform(post("/api/v1/copy")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                    "namespace": "nameservice1",
+                                    "items": [
+                                        {"hdfsPath": "/data/*", "localPath": "/tmp/res1", "filter": {"include": "[unclosed"}}
+                                    ]
+                                }
+                                """))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("filter pattern is not a valid regex: [unclosed"));
+    }
+
+    @Test
+    void submitCopyRequest_gzipLevelOutOfRange_returns400() throws Exception {
+        mockMvc.perform(post("/api/v1/copy")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                    "namespace": "nameservice1",
+                                    "items": [
+                                        {"hdfsPath": "/data/a", "localPath": "/tmp/a", "transform": "COMPRESS", "compressionLevel": 12}
+                                    ]
+                                }
+                                """))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("compressionLevel for gzip must be 1-9"));
+    }
+
+    @Test
+    void submitCopyRequest_lz4WithLevel_returns400() throws Exception {
+        mockMvc.perform(post("/api/v1/copy")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                    "namespace": "nameservice1",
+                                    "items": [
+                                        {"hdfsPath": "/data/a", "localPath": "/tmp/a", "transform": "COMPRESS", "codec": "lz4", "compressionLevel": 9}
+                                    ]
+                                }
+                                """))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("compressionLevel for lz4 must be 0 (fast) or 1 (HC)"));
+    }
+
+    @Test
+    void submitCopyRequest_unknownCodec_returns400() throws Exception {
+        mockMvc.perform(post("/api/v1/copy")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                    "namespace": "nameservice1",
+                                    "items": [
+                                        {"hdfsPath": "/data/a", "localPath": "/tmp/a", "transform": "COMPRESS", "codec": "no-such-codec"}
+                                    ]
+                                }
+                                """))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Unknown compression codec: no-such-codec"));
+    }
+
+    @Test
+    void submitCopyRequest_zstdWithoutNativeHadoop_returns400() throws Exception {
+        assumeFalse(NativeCodeLoader.isNativeCodeLoaded(), "libhadoop is loaded, zstd is available");
+
+        mockMvc.perform(post("/api/v1/copy")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                    "namespace": "nameservice1",
+                                    "items": [
+                                        {"hdfsPath": "/data/a", "localPath": "/tmp/a", "transform": "COMPRESS", "codec": "zstd", "compressionLevel": 3}
+                                    ]
+                                }
+                                """))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value(containsString("codec zstd is not available in this runtime")));
+        verify(copyTaskService, never()).submitTask(any());
+    }
+
+    @Test
+    void submitCopyRequest_targetNamespaceWithoutPath_returns400() throws Exception {
+        mockMvc.perform(post("/api/v1/copy")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                    "namespace": "nameservice1",
+                                    "items": [
+                                        {"hdfsPath": "/data/result1", "targetNamespace": "nameservice2"}
+                                    ]
+                                }
+                                """))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("targetPath is required when targetNamespace is set"));
+    }
+
+    @Test
+    void submitCopyRequest_uploadWithoutLocalPath_returns400() throws Exception {
+        mockMvc.perform(post("/api/v1/copy")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                    "namespace": "nameservice1",
+                                    "direction": "UPLOAD",
+                                    "items": [
+                                        {"hdfsPath": "/data/result1"}
+                                    ]
+                                }
+                                """))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("upload items need localPath and hdfsPath and no targetNamespace"));
+    }
+
     @Test
     void submitCopyRequest_validBandwidth_returns202() throws Exception {
         when(copyTaskService.submitTask(any())).thenReturn("bw-request-id");
@@ -225,4 +503,65 @@ class CopyControllerTest {
                 .andExpect(status().isAccepted())
                 .andExpect(jsonPath("$.requestId").value("bw-request-id"));
     }
+
+    @Test
+    void planCopyRequest_sufficientSpace_returns200() throws Exception {
+        CopyPlan plan = new CopyPlan();
+        plan.setNamespace("nameservice1");
+        plan.setTotalBytes(2048L);
+        plan.setFileCount(2);
+        plan.setEstimatedDurationMs(1500L);
+        when(copyPlanService.plan(any())).thenReturn(plan);
+
+        mockMvc.perform(post("/api/v1/copy/plan")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                    "namespace": "nameservice1",
+                                    "items": [
+                                        {"hdfsPath": "/data/result1", "localPath": "/tmp/res1"}
+                                    ]
+                                }
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalBytes").value(2048))
+                .andExpect(jsonPath("$.fileCount").value(2))
+                .andExpect(jsonPath("$.estimatedDurationMs").value(1500))
+                .andExpect(jsonPath("$.sufficientSpace").value(true));
+    }
+
+    @Test
+    void planCopyRequest_insufficientSpace_returns507() throws Exception {
+        CopyPlan plan = new CopyPlan();
+        plan.setSufficientSpace(false);
+        when(copyPlanService.plan(any())).thenReturn(plan);
+
+        mockMvc.perform(post("/api/v1/copy/plan")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                    "namespace": "nameservice1",
+                                    "items": [
+                                        {"hdfsPath": "/data/result1", "localPath": "/tmp/res1"}
+                                    ]
+                                }
+                                """))
+                .andExpect(status().isInsufficientStorage())
+                .andExpect(jsonPath("$.sufficientSpace").value(false));
+    }
+
+    @Test
+    void planCopyRequest_missingNamespace_returns400() throws Exception {
+        mockMvc.perform(post("/api/v1/copy/plan")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                    "items": [
+                                        {"hdfsPath": "/data/result1", "localPath": "/tmp/res1"}
+                                    ]
+                                }
+                                """))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("namespace is required"));
+    }
 }
@@ -0,0 +1,49 @@
+package com.github.nlayna.hadoopcopier.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class FileStatusTableTest {
+
+    @Test
+    void page_filtersByStatusAndPaginates() {
+        FileStatusTable table = new FileStatusTable();
+        int dir = table.addDirectory("/data/dir", "/local/dir");
+        for (int i = 0; i < 10; i++) {
+            int file = table.addFile(dir, "file-" + i, i * 100L);
+            if (i % 3 == 0) {
+                table.markFailed(file, 7, "error " + i);
+            } else {
+                table.markCompleted(file, 5);
+            }
+        }
+
+        FileStatusTable.FilePage page = table.page(CopyItemStatus.FAILED, 1, 2);
+
+        assertThat(page.total()).isEqualTo(4);
+        assertThat(page.files()).extracting(FileStatusTable.FileEntry::path)
+                .containsExactly("/data/dir/file-3", "/data/dir/file-6");
+        assertThat(page.files().get(0).error()).isEqualTo("error 3");
+        assertThat(page.files().get(0).size()).isEqualTo(300);
+        assertThat(table.page(null, 0, 100).total()).isEqualTo(10);
+        assertThat(table.count(CopyItemStatus.COMPLETED)).isEqualTo(6);
+    }
+
+    @Test
+    void addFile_keepsDirectoriesAndUnicodeNamesApart() {
+        FileStatusTable table = new FileStatusTable();
+        int first = table.addDirectory("/data/a", "/local/a");
+        int second = table.addDirectory("/data/b", "/local/b");
+        table.addFile(first, "отчёт.csv", 1);
+        table.addFile(second, "x", 2);
+
+        assertThat(table.entries(CopyItemStatus.PENDING))
+                .extracting(FileStatusTable.FileEntry::path, FileStatusTable.FileEntry::localDir,
+                        FileStatusTable.FileEntry::error)
+                .containsExactly(
+                        tuple("/data/a/отчёт.csv", "/local/a", null),
+                        tuple("/data/b/x", "/local/b", null));
+    }
+}
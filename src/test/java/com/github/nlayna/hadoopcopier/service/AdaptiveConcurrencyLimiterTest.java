@@ -0,0 +1,162 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hadoop.fs.FileSystem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long MIB = 1024 * 1024;
+
+    @Mock
+    private FileSystem fileSystem;
+
+    private final AtomicLong clock = new AtomicLong();
+    private CopyProperties copyProperties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        copyProperties = new CopyProperties();
+        copyProperties.setAdaptiveConcurrency(true);
+        copyProperties.setAdaptiveMinStreams(1);
+        copyProperties.setAdaptiveMaxStreams(8);
+        copyProperties.setAdaptiveWindow(Duration.ofSeconds(1));
+        meterRegistry = new SimpleMeterRegistry();
+        lenient().when(fileSystem.getUri()).thenReturn(URI.create("hdfs://ns1"));
+    }
+
+    private AdaptiveConcurrencyLimiter limiter() {
+        return new AdaptiveConcurrencyLimiter(copyProperties, meterRegistry, clock::get);
+    }
+
+    /**
+     * Runs one window in which all {@code streams} start together and finish after {@code durationNanos};
+     * the last one to finish closes the window.
+     */
+    private void window(AdaptiveConcurrencyLimiter limiter, int streams, long durationNanos, long bytes,
+                        boolean success) throws Exception {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < streams; i++) {
+            permits.add(limiter.acquire(fileSystem));
+        }
+        clock.addAndGet(durationNanos - 1);
+        for (int i = 0; i < streams; i++) {
+            if (i == streams - 1) {
+                clock.incrementAndGet();
+            }
+            if (success) {
+                permits.get(i).success(bytes);
+            }
+            permits.get(i).close();
+        }
+    }
+
+    @Test
+    void saturatedWindowWithGrowingThroughput_increasesLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter();
+        assertThat(limiter.currentLimit("ns1")).isEqualTo(4);
+
+        window(limiter, 4, SECOND, 100 * MIB, true);
+        window(limiter, 5, SECOND, 100 * MIB, true);
+
+        assertThat(limiter.currentLimit("ns1")).isEqualTo(6);
+        assertThat(meterRegistry.get("copy.concurrency.limit").tag("namespace", "ns1").gauge().value())
+                .isEqualTo(6);
+        assertThat(meterRegistry.get("copy.concurrency.changes")
+                .tags("namespace", "ns1", "direction", "increase", "reason", "saturated")
+                .counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void increaseWithoutThroughputGain_isRolledBack() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter();
+
+        window(limiter, 4, SECOND, 100 * MIB, true);
+        // five streams now share the same aggregate bandwidth
+        window(limiter, 5, SECOND, 80 * MIB, true);
+
+        assertThat(limiter.currentLimit("ns1")).isEqualTo(4);
+        assertThat(meterRegistry.get("copy.concurrency.changes")
+                .tags("direction", "decrease", "reason", "no-throughput-gain")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void errors_cutLimitMultiplicatively() throws Exception {
+        copyProperties.setAdaptiveMaxStreams(16);
+        AdaptiveConcurrencyLimiter limiter = limiter();
+
+        window(limiter, 8, SECOND, 0, false);
+
+        assertThat(limiter.currentLimit("ns1")).isEqualTo(6);
+        assertThat(meterRegistry.get("copy.concurrency.changes").tag("reason", "errors").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void risingLatency_cutsLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter();
+
+        window(limiter, 2, SECOND, 100 * MIB, true);
+        window(limiter, 2, 10 * SECOND, 100 * MIB, true);
+
+        assertThat(limiter.currentLimit("ns1")).isEqualTo(3);
+        assertThat(meterRegistry.get("copy.concurrency.changes").tag("reason", "latency").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void acquire_overLimit_waitsForRelease() throws Exception {
+        copyProperties.setAdaptiveMaxStreams(2);
+        copyProperties.setAdaptiveWindow(Duration.ofHours(1));
+        AdaptiveConcurrencyLimiter limiter = limiter();
+        AdaptiveConcurrencyLimiter.Permit first = limiter.acquire(fileSystem);
+
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return limiter.acquire(fileSystem);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertThat(second).isNotDone();
+
+        first.success(1);
+        first.close();
+        await().atMost(5, TimeUnit.SECONDS).until(second::isDone);
+        second.get().close();
+    }
+
+    @Test
+    void disabled_neverBlocks() throws Exception {
+        copyProperties.setAdaptiveConcurrency(false);
+        AdaptiveConcurrencyLimiter limiter = limiter();
+
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire(fileSystem);
+        }
+
+        assertThat(limiter.isEnabled()).isFalse();
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hadoop.fs.FileSystem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BandwidthCalendarTest {
+
+    private static final long MB = 1024 * 1024;
+    // a Monday
+    private static final Instant MONDAY_NOON = Instant.parse("2024-01-01T12:00:00Z");
+
+    @Mock
+    private FileSystem fileSystem;
+
+    private final MutableClock clock = new MutableClock();
+    private CopyProperties copyProperties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        copyProperties = new CopyProperties();
+        copyProperties.setBandwidthScheduleZone("UTC");
+        meterRegistry = new SimpleMeterRegistry();
+        clock.now = MONDAY_NOON;
+    }
+
+    private static CopyProperties.BandwidthWindow window(String from, String to, int mbPerSec,
+                                                         List<String> namespaces, List<DayOfWeek> days) {
+        CopyProperties.BandwidthWindow window = new CopyProperties.BandwidthWindow();
+        window.setFrom(from);
+        window.setTo(to);
+        window.setMbPerSec(mbPerSec);
+        window.setNamespaces(namespaces);
+        window.setDays(days);
+        return window;
+    }
+
+    private BandwidthCalendar calendar() {
+        return new BandwidthCalendar(copyProperties, meterRegistry, clock);
+    }
+
+    @Test
+    void capBytesPerSecond_overlappingWindows_takesLowestCap() {
+        copyProperties.setBandwidthSchedule(List.of(
+                window("08:00", "20:00", 100, List.of(), List.of()),
+                window("11:00", "13:00", 10, List.of("ns1"), List.of(DayOfWeek.MONDAY)),
+                window("11:00", "13:00", 1, List.of("ns1"), List.of(DayOfWeek.TUESDAY))));
+        BandwidthCalendar calendar = calendar();
+
+        assertThat(calendar.capBytesPerSecond("ns1")).isEqualTo(10 * MB);
+        assertThat(calendar.capBytesPerSecond("ns2")).isEqualTo(100 * MB);
+        clock.now = MONDAY_NOON.plusSeconds(9 * 3600);
+        assertThat(calendar.isPeak("ns1")).isFalse();
+    }
+
+    @Test
+    void overnightWindow_belongsToTheDayItStarts() {
+        copyProperties.setBandwidthSchedule(List.of(
+                window("22:00", "06:00", 5, List.of(), List.of(DayOfWeek.SUNDAY))));
+        BandwidthCalendar calendar = calendar();
+
+        clock.now = Instant.parse("2024-01-01T05:00:00Z");
+        assertThat(calendar.capBytesPerSecond("ns1")).isEqualTo(5 * MB);
+        clock.now = Instant.parse("2024-01-01T23:00:00Z");
+        assertThat(calendar.isPeak("ns1")).isFalse();
+    }
+
+    @Test
+    void nextOffPeak_returnsEndOfCurrentWindows() {
+        copyProperties.setBandwidthSchedule(List.of(
+                window("08:00", "18:00", 50, List.of("ns1"), List.of()),
+                window("17:00", "20:00", 20, List.of("ns1"), List.of())));
+        BandwidthCalendar calendar = calendar();
+
+        assertThat(calendar.nextOffPeak("ns1")).isEqualTo(Instant.parse("2024-01-01T20:00:00Z"));
+        assertThat(calendar.nextOffPeak("ns2")).isEqualTo(MONDAY_NOON);
+    }
+
+    @Test
+    void throttle_followsScheduleWhileStreamIsOpen() throws Exception {
+        copyProperties.setBandwidthSchedule(List.of(window("08:00", "18:00", 1, List.of("ns1"), List.of())));
+        when(fileSystem.getUri()).thenReturn(URI.create("hdfs://ns1"));
+        BandwidthCalendar calendar = calendar();
+        InputStream in = calendar.throttle(new ByteArrayInputStream(new byte[(int) MB]), fileSystem);
+
+        long start = System.nanoTime();
+        assertThat(in.read(new byte[256 * 1024])).isEqualTo(256 * 1024);
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(200_000_000L);
+        long slept = ((BandwidthCalendar.ScheduledInputStream) in).getSleptNanos();
+        assertThat(slept).isPositive();
+        assertThat(meterRegistry.get("copy.bandwidth.cap").tag("namespace", "ns1").gauge().value())
+                .isEqualTo(MB);
+
+        clock.now = MONDAY_NOON.plusSeconds(7 * 3600);
+        assertThat(in.readAllBytes()).hasSize(768 * 1024);
+        assertThat(((BandwidthCalendar.ScheduledInputStream) in).getSleptNanos()).isEqualTo(slept);
+    }
+
+    @Test
+    void throttle_namespaceWithoutWindows_returnsStreamItself() {
+        copyProperties.setBandwidthSchedule(List.of(window("08:00", "18:00", 1, List.of("ns1"), List.of())));
+        when(fileSystem.getUri()).thenReturn(URI.create("hdfs://ns2"));
+        InputStream in = new ByteArrayInputStream(new byte[1]);
+
+        assertThat(calendar().throttle(in, fileSystem)).isSameAs(in);
+    }
+
+    @Test
+    void constructor_invalidWindow_fails() {
+        copyProperties.setBandwidthSchedule(List.of(window("8am", "18:00", 1, List.of(), List.of())));
+
+        assertThatThrownBy(this::calendar)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("8am");
+    }
+
+    static final class MutableClock extends Clock {
+
+        volatile Instant now = Instant.EPOCH;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import com.github.nlayna.hadoopcopier.model.CopyFilter;
+import com.github.nlayna.hadoopcopier.model.CopyItem;
+import com.github.nlayna.hadoopcopier.model.CopyPlan;
+import com.github.nlayna.hadoopcopier.model.CopyRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CopyPlanServiceTest {
+
+    private static final long MB = 1024L * 1024L;
+
+    @Mock
+    private HdfsFileSystemFactory fileSystemFactory;
+
+    @Mock
+    private FileSystem fileSystem;
+
+    private ThroughputTracker throughputTracker;
+    private CopyPlanService copyPlanService;
+
+    @TempDir
+    File tempDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        throughputTracker = new ThroughputTracker();
+        CopyProperties copyProperties = new CopyProperties();
+        copyProperties.setThreadPoolSize(4);
+        copyPlanService = new CopyPlanService(fileSystemFactory, throughputTracker, copyProperties,
+                new LocalDiskSelector(copyProperties),
+                new HdfsMetadataClient(copyProperties, new SimpleMeterRegistry()));
+        when(fileSystemFactory.createFileSystem("ns1")).thenReturn(fileSystem);
+    }
+
+    private CopyRequest request(Integer bandwidth, String... hdfsPaths) {
+        CopyRequest request = new CopyRequest();
+        request.setNamespace("ns1");
+        request.setBandwidth(bandwidth);
+        request.setItems(Arrays.stream(hdfsPaths).map(hdfsPath -> {
+            CopyItem item = new CopyItem();
+            item.setHdfsPath(hdfsPath);
+            item.setLocalPath(new File(tempDir, new Path(hdfsPath).getName()).getAbsolutePath());
+            return item;
+        }).toList());
+        return request;
+    }
+
+    private FileStatus fileStatus(long length) {
+        FileStatus status = mock(FileStatus.class);
+        when(status.isDirectory()).thenReturn(false);
+        when(status.getLen()).thenReturn(length);
+        return status;
+    }
+
+    @Test
+    void plan_singleFile_countsBytesAndDistribution() throws Exception {
+        FileStatus status = fileStatus(10 * MB);
+        when(fileSystem.getFileStatus(new Path("/data/file.bin"))).thenReturn(status);
+
+        CopyPlan plan = copyPlanService.plan(request(null, "/data/file.bin"));
+
+        assertThat(plan.getTotalBytes()).isEqualTo(10 * MB);
+        assertThat(plan.getFileCount()).isEqualTo(1);
+        assertThat(plan.getDirectoryCount()).isZero();
+        assertThat(plan.getSizeDistribution()).containsEntry("1MB-128MB", 1L).containsEntry("<1MB", 0L);
+        assertThat(plan.getEstimatedDurationMs()).isNull();
+        assertThat(plan.isSufficientSpace()).isTrue();
+        assertThat(plan.getLocalStorage()).hasSize(1);
+    }
+
+    @Test
+    void plan_directory_walksTreeOnce() throws Exception {
+        Path dir = new Path("/data/dir");
+        Path sub = new Path("/data/dir/sub");
+        FileStatus dirStatus = mock(FileStatus.class);
+        when(dirStatus.isDirectory()).thenReturn(true);
+        FileStatus subStatus = mock(FileStatus.class);
+        when(subStatus.isDirectory()).thenReturn(true);
+        when(subStatus.getPath()).thenReturn(sub);
+        FileStatus small = fileStatus(100);
+        FileStatus large = fileStatus(2 * 1024 * MB);
+        when(fileSystem.getFileStatus(dir)).thenReturn(dirStatus);
+        when(fileSystem.listStatus(dir)).thenReturn(new FileStatus[]{small, subStatus});
+        when(fileSystem.listStatus(sub)).thenReturn(new FileStatus[]{large});
+
+        CopyPlan plan = copyPlanService.plan(request(null, "/data/dir"));
+
+        assertThat(plan.getTotalBytes()).isEqualTo(2 * 1024 * MB + 100);
+        assertThat(plan.getFileCount()).isEqualTo(2);
+        assertThat(plan.getDirectoryCount()).isEqualTo(2);
+        assertThat(plan.getSizeDistribution()).containsEntry("<1MB", 1L).containsEntry(">=1GB", 1L);
+        assertThat(plan.getItems().get(0).isDirectory()).isTrue();
+        verify(fileSystem, never()).getContentSummary(any());
+        verify(fileSystem, never()).listFiles(any(), anyBoolean());
+    }
+
+    @Test
+    void plan_missingSource_reportsItemError() throws Exception {
+        when(fileSystem.getFileStatus(new Path("/data/missing"))).thenThrow(new FileNotFoundException());
+
+        CopyPlan plan = copyPlanService.plan(request(null, "/data/missing"));
+
+        assertThat(plan.getItems().get(0).getErrorMessage()).isEqualTo("Source path does not exist: /data/missing");
+        assertThat(plan.getTotalBytes()).isZero();
+        assertThat(plan.getLocalStorage()).isEmpty();
+    }
+
+    @Test
+    void plan_withMeasuredThroughputAndBandwidth_usesSlowerRate() throws Exception {
+        FileStatus status = fileStatus(100 * MB);
+        when(fileSystem.getFileStatus(new Path("/data/file.bin"))).thenReturn(status);
+        throughputTracker.record("ns1", 50 * MB, 1000);
+
+        CopyPlan plan = copyPlanService.plan(request(10, "/data/file.bin"));
+
+        assertThat(plan.getThroughputBytesPerSec()).isEqualTo(10.0 * MB);
+        assertThat(plan.getEstimatedDurationMs()).isEqualTo(10_000L);
+    }
+
+    @Test
+    void plan_parallelItems_scaleAggregateThroughput() throws Exception {
+        FileStatus first = fileStatus(50 * MB);
+        FileStatus second = fileStatus(50 * MB);
+        when(fileSystem.getFileStatus(new Path("/data/a.bin"))).thenReturn(first);
+        when(fileSystem.getFileStatus(new Path("/data/b.bin"))).thenReturn(second);
+        throughputTracker.record("ns1", 10 * MB, 1000);
+
+        CopyPlan plan = copyPlanService.plan(request(null, "/data/a.bin", "/data/b.bin"));
+
+        assertThat(plan.getThroughputBytesPerSec()).isEqualTo(20.0 * MB);
+        assertThat(plan.getEstimatedDurationMs()).isEqualTo(5_000L);
+    }
+
+    @Test
+    void plan_exceedingFreeSpace_isNotSufficient() throws Exception {
+        FileStatus status = fileStatus(Long.MAX_VALUE / 2);
+        when(fileSystem.getFileStatus(new Path("/data/huge.bin"))).thenReturn(status);
+
+        CopyPlan plan = copyPlanService.plan(request(null, "/data/huge.bin"));
+
+        assertThat(plan.isSufficientSpace()).isFalse();
+        assertThat(plan.getLocalStorage().get(0).getRequiredBytes()).isEqualTo(Long.MAX_VALUE / 2);
+    }
+
+    @Test
+    void plan_itemsList_matchesRequest() throws Exception {
+        FileStatus status = fileStatus(1);
+        when(fileSystem.getFileStatus(new Path("/data/tiny"))).thenReturn(status);
+
+        CopyPlan plan = copyPlanService.plan(request(null, "/data/tiny"));
+
+        assertThat(plan.getItems()).extracting("hdfsPath").isEqualTo(List.of("/data/tiny"));
+    }
+
+    @Test
+    void plan_globWithSizeFilter_countsOnlyAcceptedFiles() throws Exception {
+        Path partition = new Path("/data/2024-01");
+        FileStatus partitionStatus = mock(FileStatus.class);
+        when(partitionStatus.isDirectory()).thenReturn(true);
+        when(partitionStatus.getPath()).thenReturn(partition);
+        FileStatus small = fileStatus(10);
+        FileStatus large = fileStatus(10 * MB);
+        when(fileSystem.globStatus(new Path("/data/2024-*"))).thenReturn(new FileStatus[]{partitionStatus});
+        when(fileSystem.listStatus(partition)).thenReturn(new FileStatus[]{small, large});
+
+        CopyRequest request = request(null, "/data/2024-*");
+        CopyFilter filter = new CopyFilter();
+        filter.setMinSize(MB);
+        request.getItems().get(0).setFilter(filter);
+
+        CopyPlan plan = copyPlanService.plan(request);
+
+        assertThat(plan.getTotalBytes()).isEqualTo(10 * MB);
+        assertThat(plan.getFileCount()).isEqualTo(1);
+        assertThat(plan.getDirectoryCount()).isEqualTo(1);
+        assertThat(plan.getSizeDistribution()).containsEntry("1MB-128MB", 1L).containsEntry("<1MB", 0L);
+    }
+}
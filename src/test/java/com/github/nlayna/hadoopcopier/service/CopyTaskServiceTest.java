@@ -1,21 +1,32 @@
 package com.github.nlayna.hadoopcopier.service;
 
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
 import com.github.nlayna.hadoopcopier.model.*;
 import com.github.nlayna.hadoopcopier.model.CopyResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.hadoop.fs.FileSystem;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.awaitility.Awaitility.await;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -29,17 +40,32 @@ class CopyTaskServiceTest {
     @Mock
     private HdfsCopyService hdfsCopyService;
 
+    @Mock
+    private HdfsTransferService hdfsTransferService;
+
     @Mock
     private FileSystem fileSystem;
 
+    private ThroughputTracker throughputTracker;
+
     private CopyTaskService copyTaskService;
 
+    private static CopyItemTask item(String hdfsPath) {
+        return argThat(itemTask -> itemTask != null && hdfsPath.equals(itemTask.getHdfsPath()));
+    }
+
     @BeforeEach
     void setUp() {
+        throughputTracker = new ThroughputTracker();
         copyTaskService = new CopyTaskService(
                 fileSystemFactory,
                 hdfsCopyService,
-                Executors.newFixedThreadPool(4)
+                hdfsTransferService,
+                throughputTracker,
+                new NamespaceGuard(new CopyProperties()),
+                new CopyProperties(),
+                new PriorityLanes(Executors.newFixedThreadPool(4), new CopyProperties(), new SimpleMeterRegistry()),
+                new BandwidthCalendar(new CopyProperties(), new SimpleMeterRegistry())
         );
     }
 
@@ -64,7 +90,7 @@ class CopyTaskServiceTest {
     @Test
     void submitTask_successfulCopy_setsCompletedStatus() throws Exception {
         when(fileSystemFactory.createFileSystem("ns1")).thenReturn(fileSystem);
-        when(hdfsCopyService.copyPath(eq(fileSystem), eq("/data/result1"), eq("/tmp/res1"), isNull()))
+        when(hdfsCopyService.copyItem(eq(fileSystem), item("/data/result1"), isNull(), any()))
                 .thenReturn(new CopyResult(1024L, true));
 
         CopyRequest request = new CopyRequest();
@@ -86,10 +112,33 @@ class CopyTaskServiceTest {
         });
     }
 
+    @Test
+    void submitTask_successfulCopy_recordsThroughput() throws Exception {
+        when(fileSystemFactory.createFileSystem("ns1")).thenReturn(fileSystem);
+        when(hdfsCopyService.copyItem(eq(fileSystem), item("/data/result1"), isNull(), any()))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(20);
+                    return new CopyResult(1024L * 1024L, true);
+                });
+
+        CopyRequest request = new CopyRequest();
+        request.setNamespace("ns1");
+        CopyItem item = new CopyItem();
+        item.setHdfsPath("/data/result1");
+        item.setLocalPath("/tmp/res1");
+        request.setItems(List.of(item));
+
+        copyTaskService.submitTask(request);
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                assertThat(throughputTracker.getBytesPerSecond("ns1")).isPresent());
+        assertThat(throughputTracker.getBytesPerSecond("ns2")).isEmpty();
+    }
+
     @Test
     void submitTask_failedCopy_setsFailedStatus() throws Exception {
         when(fileSystemFactory.createFileSystem("ns1")).thenReturn(fileSystem);
-        when(hdfsCopyService.copyPath(eq(fileSystem), anyString(), anyString(), isNull()))
+        when(hdfsCopyService.copyItem(eq(fileSystem), any(), isNull(), any()))
                 .thenThrow(new IOException("HDFS unavailable"));
 
         CopyRequest request = new CopyRequest();
@@ -112,9 +161,9 @@ class CopyTaskServiceTest {
     @Test
     void submitTask_partialFailure_setsPartiallyFailedStatus() throws Exception {
         when(fileSystemFactory.createFileSystem("ns1")).thenReturn(fileSystem);
-        when(hdfsCopyService.copyPath(eq(fileSystem), eq("/data/result1"), eq("/tmp/res1"), isNull()))
+        when(hdfsCopyService.copyItem(eq(fileSystem), item("/data/result1"), isNull(), any()))
                 .thenReturn(new CopyResult(1024L, true));
-        when(hdfsCopyService.copyPath(eq(fileSystem), eq("/data/result2"), eq("/tmp/res2"), isNull()))
+        when(hdfsCopyService.copyItem(eq(fileSystem), item("/data/result2"), isNull(), any()))
                 .thenThrow(new IOException("File not found"));
 
         CopyRequest request = new CopyRequest();
@@ -138,10 +187,349 @@ class CopyTaskServiceTest {
         });
     }
 
+    @Test
+    void submitTask_moreItemsThanExecutorQueue_completesAllItems() throws Exception {
+        CopyProperties copyProperties = new CopyProperties();
+        copyProperties.setThreadPoolSize(2);
+        ThreadPoolExecutor boundedExecutor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(2));
+        copyTaskService = new CopyTaskService(fileSystemFactory, hdfsCopyService, hdfsTransferService,
+                throughputTracker, new NamespaceGuard(copyProperties), copyProperties,
+                new PriorityLanes(boundedExecutor, copyProperties, new SimpleMeterRegistry()),
+                new BandwidthCalendar(copyProperties, new SimpleMeterRegistry()));
+        when(fileSystemFactory.createFileSystem("ns1")).thenReturn(fileSystem);
+        when(hdfsCopyService.copyItem(eq(fileSystem), any(), isNull(), any()))
+                .thenReturn(new CopyResult(1L, false));
+
+        CopyRequest request = new CopyRequest();
+        request.setNamespace("ns1");
+        List<CopyItem> items = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            CopyItem item = new CopyItem();
+            item.setHdfsPath("/data/file" + i);
+            item.setLocalPath("/tmp/file" + i);
+            items.add(item);
+        }
+        request.setItems(items);
+
+        String requestId = copyTaskService.submitTask(request);
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                assertThat(copyTaskService.getTask(requestId).orElseThrow().getStatus())
+                        .isEqualTo(CopyTaskStatus.COMPLETED));
+        assertThat(copyTaskService.getTask(requestId).orElseThrow().getItems())
+                .allMatch(item -> item.getStatus() == CopyItemStatus.COMPLETED);
+        boundedExecutor.shutdown();
+    }
+
+    @Test
+    void submitTask_breakerOpens_failsRemainingItemsWithoutCopying() throws Exception {
+        CopyProperties copyProperties = new CopyProperties();
+        copyProperties.setTaskMaxItemsInFlight(1);
+        copyProperties.setBreakerFailureThreshold(1);
+        copyTaskService = new CopyTaskService(fileSystemFactory, hdfsCopyService, hdfsTransferService,
+                throughputTracker, new NamespaceGuard(copyProperties), copyProperties,
+                new PriorityLanes(Executors.newFixedThreadPool(2), copyProperties, new SimpleMeterRegistry()),
+                new BandwidthCalendar(copyProperties, new SimpleMeterRegistry()));
+        when(fileSystemFactory.createFileSystem("ns1")).thenReturn(fileSystem);
+        when(hdfsCopyService.copyItem(eq(fileSystem), any(), isNull(), any()))
+                .thenThrow(new IOException("Call to nn1:8020 failed", new SocketTimeoutException("timed out")));
+
+        CopyRequest request = new CopyRequest();
+        request.setNamespace("ns1");
+        List<CopyItem> items = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            CopyItem item = new CopyItem();
+            item.setHdfsPath("/data/file" + i);
+            item.setLocalPath("/tmp/file" + i);
+            items.add(item);
+        }
+        request.setItems(items);
+
+        String requestId = copyTaskService.submitTask(request);
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                assertThat(copyTaskService.getTask(requestId).orElseThrow().getStatus())
+                        .isEqualTo(CopyTaskStatus.FAILED));
+        List<CopyItemTask> itemTasks = copyTaskService.getTask(requestId).orElseThrow().getItems();
+        assertThat(itemTasks.get(2).getErrorMessage()).isEqualTo("Circuit breaker is open for namespace ns1");
+        verify(hdfsCopyService, times(1)).copyItem(any(), any(), any(), any());
+    }
+
+    @Test
+    void submitTask_deferUntilOffPeak_startsWhenPeakWindowEnds() throws Exception {
+        CopyProperties copyProperties = new CopyProperties();
+        CopyProperties.BandwidthWindow window = new CopyProperties.BandwidthWindow();
+        window.setFrom("08:00");
+        window.setTo("18:00");
+        window.setMbPerSec(10);
+        copyProperties.setBandwidthSchedule(List.of(window));
+        copyProperties.setBandwidthScheduleZone("UTC");
+        BandwidthCalendarTest.MutableClock clock = new BandwidthCalendarTest.MutableClock();
+        clock.now = Instant.parse("2024-01-01T12:00:00Z");
+        copyTaskService = new CopyTaskService(fileSystemFactory, hdfsCopyService, hdfsTransferService,
+                throughputTracker, new NamespaceGuard(copyProperties), copyProperties,
+                new PriorityLanes(Executors.newFixedThreadPool(2), copyProperties, new SimpleMeterRegistry()),
+                new BandwidthCalendar(copyProperties, new SimpleMeterRegistry(), clock));
+        when(fileSystemFactory.createFileSystem("ns1")).thenReturn(fileSystem);
+        when(hdfsCopyService.copyItem(eq(fileSystem), any(), isNull(), any()))
+                .thenReturn(new CopyResult(10L, false));
+
+        CopyRequest request = new CopyRequest();
+        request.setNamespace("ns1");
+        request.setDeferUntilOffPeak(true);
+        CopyItem item = new CopyItem();
+        item.setHdfsPath("/data/file");
+        item.setLocalPath("/tmp/file");
+        request.setItems(List.of(item));
+
+        String requestId = copyTaskService.submitTask(request);
+        copyTaskService.startDeferredTasks();
+
+        CopyTask task = copyTaskService.getTask(requestId).orElseThrow();
+        assertThat(task.getStatus()).isEqualTo(CopyTaskStatus.PENDING);
+        assertThat(task.getDeferredUntil()).isEqualTo(Instant.parse("2024-01-01T18:00:00Z"));
+        verifyNoInteractions(hdfsCopyService);
+
+        clock.now = Instant.parse("2024-01-01T18:00:00Z");
+        copyTaskService.startDeferredTasks();
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                assertThat(task.getStatus()).isEqualTo(CopyTaskStatus.COMPLETED));
+        assertThat(task.getDeferredUntil()).isNull();
+    }
+
+    @Test
+    void openBulkTask_itemsCopyBeforeSubmissionIsClosed() throws Exception {
+        when(fileSystemFactory.createFileSystem("ns1")).thenReturn(fileSystem);
+        when(hdfsCopyService.copyItem(eq(fileSystem), any(), isNull(), any()))
+                .thenReturn(new CopyResult(10L, false));
+        CopyRequest settings = new CopyRequest();
+        settings.setNamespace("ns1");
+
+        CopyTaskService.BulkSubmission submission = copyTaskService.openBulkTask(settings);
+        CopyItem item = new CopyItem();
+        item.setHdfsPath("/data/result1");
+        item.setLocalPath("/tmp/res1");
+        submission.add(item);
+        submission.reject(null, "line 2: invalid JSON");
+
+        CopyTask task = copyTaskService.getTask(submission.getRequestId()).orElseThrow();
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                assertThat(task.getItems().get(0).getStatus()).isEqualTo(CopyItemStatus.COMPLETED));
+        assertThat(task.getStatus()).isEqualTo(CopyTaskStatus.IN_PROGRESS);
+
+        submission.close();
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                assertThat(task.getStatus()).isEqualTo(CopyTaskStatus.PARTIALLY_FAILED));
+        assertThat(task.getItems().get(1).getErrorMessage()).isEqualTo("line 2: invalid JSON");
+        assertThat(task.getCounters().filesFailed()).isEqualTo(1);
+    }
+
+    @Test
+    void openBulkTask_fullQueue_blocksAddUntilItemsStart() throws Exception {
+        CopyProperties copyProperties = new CopyProperties();
+        copyProperties.setTaskMaxItemsInFlight(1);
+        copyProperties.setBulkMaxQueuedItems(1);
+        copyTaskService = new CopyTaskService(fileSystemFactory, hdfsCopyService, hdfsTransferService,
+                throughputTracker, new NamespaceGuard(copyProperties), copyProperties,
+                new PriorityLanes(Executors.newFixedThreadPool(2), copyProperties, new SimpleMeterRegistry()),
+                new BandwidthCalendar(copyProperties, new SimpleMeterRegistry()));
+        CountDownLatch release = new CountDownLatch(1);
+        when(fileSystemFactory.createFileSystem("ns1")).thenReturn(fileSystem);
+        when(hdfsCopyService.copyItem(eq(fileSystem), any(), isNull(), any())).thenAnswer(invocation -> {
+            release.await();
+            return new CopyResult(1L, false);
+        });
+        CopyTaskService.BulkSubmission submission = copyTaskService.openBulkTask(bulkSettings());
+        submission.add(bulkItem("/data/a"));
+        submission.add(bulkItem("/data/b"));
+
+        Thread producer = new Thread(() -> {
+            try {
+                submission.add(bulkItem("/data/c"));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        producer.start();
+        producer.join(200);
+        assertThat(producer.isAlive()).isTrue();
+        assertThat(submission.size()).isEqualTo(2);
+
+        release.countDown();
+        producer.join(5000);
+        assertThat(producer.isAlive()).isFalse();
+        submission.close();
+
+        CopyTask task = copyTaskService.getTask(submission.getRequestId()).orElseThrow();
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                assertThat(task.getStatus()).isEqualTo(CopyTaskStatus.COMPLETED));
+        assertThat(task.getItems()).hasSize(3);
+    }
+
+    @Test
+    void submitTask_executorRejects_failsItemsAndFreesNamespaceSlot() throws Exception {
+        CopyProperties copyProperties = new CopyProperties();
+        copyProperties.setNamespaceMaxItems(1);
+        copyTaskService = new CopyTaskService(fileSystemFactory, hdfsCopyService, hdfsTransferService,
+                throughputTracker, new NamespaceGuard(copyProperties), copyProperties,
+                new PriorityLanes(work -> {
+                    throw new RejectedExecutionException("queue full");
+                }, copyProperties, new SimpleMeterRegistry()),
+                new BandwidthCalendar(copyProperties, new SimpleMeterRegistry()));
+        CopyRequest request = bulkSettings();
+        request.setItems(List.of(bulkItem("/data/a"), bulkItem("/data/b")));
+
+        String requestId = copyTaskService.submitTask(request);
+
+        CopyTask task = copyTaskService.getTask(requestId).orElseThrow();
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                assertThat(task.getStatus()).isEqualTo(CopyTaskStatus.FAILED));
+        assertThat(task.getItems()).extracting(CopyItemTask::getErrorMessage)
+                .containsOnly("Copy executor rejected the item: queue full");
+        verifyNoInteractions(hdfsCopyService);
+    }
+
+    private static CopyItem bulkItem(String hdfsPath) {
+        CopyItem item = new CopyItem();
+        item.setHdfsPath(hdfsPath);
+        item.setLocalPath("/tmp" + hdfsPath);
+        return item;
+    }
+
+    @Test
+    void retryFailed_createsOneItemPerFailedFile() throws Exception {
+        when(fileSystemFactory.createFileSystem("ns1")).thenReturn(fileSystem);
+        when(hdfsCopyService.localFileName(anyString(), any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(hdfsCopyService.copyItem(eq(fileSystem), any(), isNull(), any()))
+                .thenReturn(new CopyResult(10L, false));
+
+        CopyItemTask directory = new CopyItemTask("/data/dir", "/tmp/dir");
+        directory.setStatus(CopyItemStatus.FAILED);
+        int dir = directory.getFiles().addDirectory("/data/dir", "/tmp/dir");
+        directory.getFiles().markCompleted(directory.getFiles().addFile(dir, "a.txt", 10), 1);
+        directory.getFiles().markFailed(directory.getFiles().addFile(dir, "b.txt", 10), 1, "Connection reset");
+        directory.getFiles().markFailed(directory.getFiles().addFile(dir, "c.txt", 10), 1, "Connection reset");
+        directory.getFiles().addFile(dir, "d.txt", 10);
+        directory.getFiles().markWalkComplete();
+        CopyItemTask completed = new CopyItemTask("/data/file", "/tmp/file");
+        completed.setStatus(CopyItemStatus.COMPLETED);
+        CopyTask original = new CopyTask("req-1", "ns1", null, List.of(directory, completed));
+        original.setPriority(CopyPriority.CRITICAL);
+
+        String retryId = copyTaskService.retryFailed(original).orElseThrow();
+
+        CopyTask retry = copyTaskService.getTask(retryId).orElseThrow();
+        assertThat(retry.getPriority()).isEqualTo(CopyPriority.CRITICAL);
+        assertThat(retry.getItems())
+                .extracting(CopyItemTask::getHdfsPath, CopyItemTask::getLocalPath)
+                .containsExactly(
+                        tuple("/data/dir/b.txt", "/tmp/dir/b.txt"),
+                        tuple("/data/dir/c.txt", "/tmp/dir/c.txt"),
+                        tuple("/data/dir/d.txt", "/tmp/dir/d.txt"));
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                assertThat(copyTaskService.getTask(retryId).orElseThrow().getStatus())
+                        .isEqualTo(CopyTaskStatus.COMPLETED));
+    }
+
+    @Test
+    void retryFailed_walkAborted_retriesWholeItem() throws Exception {
+        when(fileSystemFactory.createFileSystem("ns1")).thenReturn(fileSystem);
+        when(hdfsCopyService.copyItem(eq(fileSystem), any(), isNull(), any()))
+                .thenReturn(new CopyResult(10L, false));
+
+        CopyItemTask directory = new CopyItemTask("/data/dir", "/tmp/dir");
+        directory.setStatus(CopyItemStatus.FAILED);
+        directory.setSyncMode(SyncMode.SNAPSHOT_DIFF);
+        int dir = directory.getFiles().addDirectory("/data/dir", "/tmp/dir");
+        directory.getFiles().markFailed(directory.getFiles().addFile(dir, "a.txt", 10), 1, "Connection reset");
+
+        String retryId = copyTaskService.retryFailed(new CopyTask("req-1", "ns1", null, List.of(directory)))
+                .orElseThrow();
+
+        assertThat(copyTaskService.getTask(retryId).orElseThrow().getItems())
+                .extracting(CopyItemTask::getHdfsPath, CopyItemTask::getLocalPath, CopyItemTask::getSyncMode)
+                .containsExactly(tuple("/data/dir", "/tmp/dir", SyncMode.SNAPSHOT_DIFF));
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                assertThat(copyTaskService.getTask(retryId).orElseThrow().getStatus())
+                        .isEqualTo(CopyTaskStatus.COMPLETED));
+    }
+
+    @Test
+    void retryFailed_nothingFailed_returnsEmpty() throws Exception {
+        CopyItemTask completed = new CopyItemTask("/data/file", "/tmp/file");
+        completed.setStatus(CopyItemStatus.COMPLETED);
+
+        assertThat(copyTaskService.retryFailed(new CopyTask("req-1", "ns1", null, List.of(completed)))).isEmpty();
+    }
+
+    @Test
+    void getSummary_countsItemsBytesAndFiles() throws Exception {
+        when(fileSystemFactory.createFileSystem("ns1")).thenReturn(fileSystem);
+        when(hdfsCopyService.copyItem(eq(fileSystem), item("/data/result1"), isNull(), any()))
+                .thenReturn(new CopyResult(1024L, true));
+        when(hdfsCopyService.copyItem(eq(fileSystem), item("/data/result2"), isNull(), any()))
+                .thenThrow(new IOException("File not found"));
+
+        CopyRequest request = new CopyRequest();
+        request.setNamespace("ns1");
+        CopyItem item1 = new CopyItem();
+        item1.setHdfsPath("/data/result1");
+        item1.setLocalPath("/tmp/res1");
+        CopyItem item2 = new CopyItem();
+        item2.setHdfsPath("/data/result2");
+        item2.setLocalPath("/tmp/res2");
+        request.setItems(List.of(item1, item2));
+
+        String requestId = copyTaskService.submitTask(request);
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                assertThat(copyTaskService.getTask(requestId).orElseThrow().getCompletedAt()).isNotNull());
+        CopyTaskSummary summary = copyTaskService.getSummary(requestId).orElseThrow();
+        assertThat(summary.status()).isEqualTo(CopyTaskStatus.PARTIALLY_FAILED);
+        assertThat(summary.items()).isEqualTo(2);
+        assertThat(summary.pending()).isZero();
+        assertThat(summary.inProgress()).isZero();
+        assertThat(summary.completed()).isEqualTo(1);
+        assertThat(summary.failed()).isEqualTo(1);
+        assertThat(summary.bytesCopied()).isEqualTo(1024L);
+        assertThat(summary.filesCompleted()).isEqualTo(1);
+        assertThat(summary.filesFailed()).isEqualTo(1);
+    }
+
+    @Test
+    void getItems_pagesWithCursorAndStatusFilter() {
+        CopyTaskService.BulkSubmission submission = copyTaskService.openBulkTask(bulkSettings());
+        for (int i = 0; i < 5; i++) {
+            CopyItem item = new CopyItem();
+            item.setHdfsPath("/data/bad" + i);
+            submission.reject(item, "invalid");
+        }
+
+        ItemPage first = copyTaskService.getItems(submission.getRequestId(), CopyItemStatus.FAILED, 0, 2).orElseThrow();
+        ItemPage last = copyTaskService.getItems(submission.getRequestId(), null, first.nextCursor(), 10).orElseThrow();
+
+        assertThat(first.items()).extracting(ItemPage.Entry::index).containsExactly(0, 1);
+        assertThat(first.nextCursor()).isEqualTo(2);
+        assertThat(last.items()).extracting(entry -> entry.item().getHdfsPath())
+                .containsExactly("/data/bad2", "/data/bad3", "/data/bad4");
+        assertThat(last.nextCursor()).isNull();
+        assertThat(copyTaskService.getItems("unknown", null, 0, 10)).isEmpty();
+        submission.close();
+    }
+
+    private static CopyRequest bulkSettings() {
+        CopyRequest settings = new CopyRequest();
+        settings.setNamespace("ns1");
+        return settings;
+    }
+
     @Test
     void submitTask_multipleItems_executesInParallel() throws Exception {
         when(fileSystemFactory.createFileSystem("ns1")).thenReturn(fileSystem);
-        when(hdfsCopyService.copyPath(eq(fileSystem), anyString(), anyString(), isNull()))
+        when(hdfsCopyService.copyItem(eq(fileSystem), any(), isNull(), any()))
                 .thenAnswer(invocation -> {
                     Thread.sleep(100);
                     return new CopyResult(512L, true);
@@ -195,7 +583,7 @@ class CopyTaskServiceTest {
     @Test
     void submitTask_withBandwidth_passesBandwidthToCopyService() throws Exception {
         when(fileSystemFactory.createFileSystem("ns1")).thenReturn(fileSystem);
-        when(hdfsCopyService.copyPath(eq(fileSystem), eq("/data/result1"), eq("/tmp/res1"), eq(10)))
+        when(hdfsCopyService.copyItem(eq(fileSystem), item("/data/result1"), eq(10), any()))
                 .thenReturn(new CopyResult(2048L, true));
 
         CopyRequest request = new CopyRequest();
@@ -214,6 +602,115 @@ class CopyTaskServiceTest {
             assertThat(task.getBandwidth()).isEqualTo(10);
         });
 
-        verify(hdfsCopyService).copyPath(eq(fileSystem), eq("/data/result1"), eq("/tmp/res1"), eq(10));
+        verify(hdfsCopyService).copyItem(eq(fileSystem), item("/data/result1"), eq(10), any());
+    }
+
+    @Test
+    void submitTask_withWriteMode_passesSessionInRequestedMode() throws Exception {
+        when(fileSystemFactory.createFileSystem("ns1")).thenReturn(fileSystem);
+        when(hdfsCopyService.copyItem(eq(fileSystem), item("/data/result1"), isNull(), any()))
+                .thenReturn(new CopyResult(2048L, true));
+
+        CopyRequest request = new CopyRequest();
+        request.setNamespace("ns1");
+        request.setWriteMode(WriteMode.GROUP_FSYNC);
+        CopyItem item = new CopyItem();
+        item.setHdfsPath("/data/result1");
+        item.setLocalPath("/tmp/res1");
+        request.setItems(List.of(item));
+
+        String requestId = copyTaskService.submitTask(request);
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
+            CopyTask task = copyTaskService.getTask(requestId).orElseThrow();
+            assertThat(task.getStatus()).isEqualTo(CopyTaskStatus.COMPLETED);
+            assertThat(task.getWriteMode()).isEqualTo(WriteMode.GROUP_FSYNC);
+        });
+
+        ArgumentCaptor<LocalWriteSession> session = ArgumentCaptor.forClass(LocalWriteSession.class);
+        verify(hdfsCopyService).copyItem(eq(fileSystem), item("/data/result1"), isNull(), session.capture());
+        assertThat(session.getValue().getMode()).isEqualTo(WriteMode.GROUP_FSYNC);
+    }
+
+    @Test
+    void submitTask_withTransform_passesItemOptions() throws Exception {
+        when(fileSystemFactory.createFileSystem("ns1")).thenReturn(fileSystem);
+        when(hdfsCopyService.copyItem(eq(fileSystem), item("/data/result1"), isNull(), any()))
+                .thenReturn(new CopyResult(100L, true));
+
+        CopyRequest request = new CopyRequest();
+        request.setNamespace("ns1");
+        CopyItem item = new CopyItem();
+        item.setHdfsPath("/data/result1");
+        item.setLocalPath("/tmp/res1.zst");
+        item.setTransform(TransformMode.COMPRESS);
+        item.setCodec("zstd");
+        item.setCompressionLevel(3);
+        request.setItems(List.of(item));
+
+        String requestId = copyTaskService.submitTask(request);
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                assertThat(copyTaskService.getTask(requestId).orElseThrow().getStatus()).isEqualTo(CopyTaskStatus.COMPLETED));
+
+        CopyItemTask itemTask = copyTaskService.getTask(requestId).orElseThrow().getItems().get(0);
+        assertThat(itemTask.getTransform()).isEqualTo(TransformMode.COMPRESS);
+        assertThat(itemTask.getCodec()).isEqualTo("zstd");
+        assertThat(itemTask.getCompressionLevel()).isEqualTo(3);
+    }
+
+    @Test
+    void submitTask_withTargetNamespace_transfersBetweenNamespaces() throws Exception {
+        FileSystem targetFileSystem = mock(FileSystem.class);
+        when(fileSystemFactory.createFileSystem("ns1")).thenReturn(fileSystem);
+        when(fileSystemFactory.createFileSystem("ns2")).thenReturn(targetFileSystem);
+        when(hdfsTransferService.transfer(eq(fileSystem), eq(targetFileSystem), item("/data/result1"), isNull()))
+                .thenReturn(new CopyResult(100L, true));
+
+        CopyRequest request = new CopyRequest();
+        request.setNamespace("ns1");
+        CopyItem item = new CopyItem();
+        item.setHdfsPath("/data/result1");
+        item.setTargetNamespace("ns2");
+        item.setTargetPath("/backup/result1");
+        request.setItems(List.of(item));
+
+        String requestId = copyTaskService.submitTask(request);
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                assertThat(copyTaskService.getTask(requestId).orElseThrow().getStatus()).isEqualTo(CopyTaskStatus.COMPLETED));
+
+        CopyItemTask itemTask = copyTaskService.getTask(requestId).orElseThrow().getItems().get(0);
+        assertThat(itemTask.getBytesCopied()).isEqualTo(100L);
+        assertThat(itemTask.getTargetPath()).isEqualTo("/backup/result1");
+        verify(targetFileSystem).close();
+        verifyNoInteractions(hdfsCopyService);
+    }
+
+    @Test
+    void submitTask_upload_usesRequestLayout() throws Exception {
+        when(fileSystemFactory.createFileSystem("ns1")).thenReturn(fileSystem);
+        when(hdfsTransferService.upload(eq(fileSystem), item("/data/upload"), isNull(), any()))
+                .thenReturn(new CopyResult(42L, true));
+
+        CopyRequest request = new CopyRequest();
+        request.setNamespace("ns1");
+        request.setDirection(CopyDirection.UPLOAD);
+        request.setReplication((short) 2);
+        CopyItem item = new CopyItem();
+        item.setHdfsPath("/data/upload");
+        item.setLocalPath("/tmp/upload");
+        request.setItems(List.of(item));
+
+        String requestId = copyTaskService.submitTask(request);
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                assertThat(copyTaskService.getTask(requestId).orElseThrow().getStatus()).isEqualTo(CopyTaskStatus.COMPLETED));
+
+        ArgumentCaptor<HdfsTransferService.Layout> layout = ArgumentCaptor.forClass(HdfsTransferService.Layout.class);
+        verify(hdfsTransferService).upload(eq(fileSystem), item("/data/upload"), isNull(), layout.capture());
+        assertThat(layout.getValue()).isEqualTo(new HdfsTransferService.Layout(null, (short) 2, false));
+        assertThat(copyTaskService.getTask(requestId).orElseThrow().getItems().get(0).getBytesCopied()).isEqualTo(42L);
+        verifyNoInteractions(hdfsCopyService);
     }
 }
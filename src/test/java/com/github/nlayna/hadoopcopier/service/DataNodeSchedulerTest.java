@@ -0,0 +1,101 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+class DataNodeSchedulerTest {
+
+    private static DataNodeScheduler scheduler(int maxReadsPerDataNode) {
+        CopyProperties copyProperties = new CopyProperties();
+        copyProperties.setMaxReadsPerDataNode(maxReadsPerDataNode);
+        return new DataNodeScheduler(copyProperties, new HdfsMetadataClient(copyProperties, new SimpleMeterRegistry()));
+    }
+
+    private static LocatedFileStatus located(String name, String... hosts) {
+        FileStatus status = new FileStatus(100, false, 3, 128, 0, new Path("hdfs://ns1/data/" + name));
+        BlockLocation block = new BlockLocation(hosts, hosts, 0, 100);
+        return new LocatedFileStatus(status, new BlockLocation[]{block});
+    }
+
+    @Test
+    void preferredHost_picksHostWithMostBytes() {
+        BlockLocation[] locations = {
+                new BlockLocation(null, new String[]{"dn1", "dn2"}, 0, 100),
+                new BlockLocation(null, new String[]{"dn2", "dn3"}, 100, 50),
+        };
+
+        assertThat(DataNodeScheduler.preferredHost(locations)).isEqualTo("dn2");
+        assertThat(DataNodeScheduler.preferredHost(null)).isNull();
+    }
+
+    @Test
+    void order_interleavesFilesAcrossHosts() {
+        DataNodeScheduler scheduler = scheduler(2);
+        LocatedFileStatus a1 = located("a1", "dn1");
+        LocatedFileStatus a2 = located("a2", "dn1");
+        LocatedFileStatus a3 = located("a3", "dn1");
+        LocatedFileStatus b1 = located("b1", "dn2");
+        LocatedFileStatus b2 = located("b2", "dn2");
+
+        List<FileStatus> ordered = scheduler.order(List.of(a1, a2, a3, b1, b2));
+
+        assertThat(ordered).containsExactly(a1, b1, a2, b2, a3);
+    }
+
+    @Test
+    void acquire_capReached_blocksUntilLeaseReleased() throws Exception {
+        DataNodeScheduler scheduler = scheduler(1);
+        FileSystem fs = mock(FileSystem.class);
+        LocatedFileStatus first = located("first", "dn1");
+        LocatedFileStatus second = located("second", "dn1");
+
+        DataNodeScheduler.Lease lease = scheduler.acquire(fs, first);
+        assertThat(scheduler.activeReads("dn1")).isEqualTo(1);
+
+        CompletableFuture<DataNodeScheduler.Lease> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return scheduler.acquire(fs, second);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        await().during(200, TimeUnit.MILLISECONDS).atMost(1, TimeUnit.SECONDS).until(() -> !waiting.isDone());
+
+        lease.close();
+        waiting.get(5, TimeUnit.SECONDS).close();
+        assertThat(scheduler.activeReads("dn1")).isZero();
+    }
+
+    @Test
+    void list_disabled_usesPlainListing() throws Exception {
+        DataNodeScheduler scheduler = scheduler(0);
+        FileSystem fs = mock(FileSystem.class);
+        Path dir = new Path("/data");
+        FileStatus[] statuses = {new FileStatus(1, false, 3, 128, 0, new Path("/data/a"))};
+        when(fs.listStatus(dir)).thenReturn(statuses);
+
+        assertThat(scheduler.list(fs, dir)).isSameAs(statuses);
+        scheduler.acquire(fs, statuses[0]).close();
+
+        verify(fs).listStatus(dir);
+        verify(fs).getUri();
+        verifyNoMoreInteractions(fs);
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class FileDigestsTest {
+
+    private static final byte[] MD5 = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16};
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void load_unchangedFile_returnsStoredDigest() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("data.csv"), "payload");
+        assumeTrue(FileDigests.store(file, MD5), "user xattrs not supported here");
+
+        Path link = Files.createLink(tempDir.resolve("link.csv"), file);
+
+        assertThat(FileDigests.load(file)).isEqualTo(MD5);
+        assertThat(FileDigests.load(link)).isEqualTo(MD5);
+    }
+
+    @Test
+    void load_changedFile_ignoresStaleDigest() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("data.csv"), "payload");
+        assumeTrue(FileDigests.store(file, MD5), "user xattrs not supported here");
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+        assertThat(FileDigests.load(file)).isNull();
+
+        FileDigests.store(file, MD5);
+        Files.writeString(file, "payload, appended");
+        assertThat(FileDigests.load(file)).isNull();
+    }
+
+    @Test
+    void load_withoutDigest_returnsNull() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("plain.csv"), "payload");
+
+        assertThat(FileDigests.load(file)).isNull();
+    }
+}
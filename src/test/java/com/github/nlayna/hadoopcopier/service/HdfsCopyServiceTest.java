@@ -1,11 +1,27 @@
 package com.github.nlayna.hadoopcopier.service;
 
 import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import com.github.nlayna.hadoopcopier.model.CopyFilter;
+import com.github.nlayna.hadoopcopier.model.CopyItemStatus;
+import com.github.nlayna.hadoopcopier.model.CopyItemTask;
+import com.github.nlayna.hadoopcopier.model.CopyPriority;
 import com.github.nlayna.hadoopcopier.model.CopyResult;
+import com.github.nlayna.hadoopcopier.model.FileStatusTable;
+import com.github.nlayna.hadoopcopier.model.OutputMode;
+import com.github.nlayna.hadoopcopier.model.PhaseTimings;
+import com.github.nlayna.hadoopcopier.model.SyncMode;
+import com.github.nlayna.hadoopcopier.model.TransformMode;
+import com.github.nlayna.hadoopcopier.model.WriteMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,9 +30,27 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -29,7 +63,14 @@ class HdfsCopyServiceTest {
     @Mock
     private FileSystem fileSystem;
 
+    @Mock
+    private DistributedFileSystem distributedFileSystem;
+
+    private final ExecutorService transformExecutor = Executors.newCachedThreadPool();
+
     private CopyProperties copyProperties;
+    private SyncStateStore syncStateStore;
+    private HdfsMetadataClient metadataClient;
     private HdfsCopyService hdfsCopyService;
 
     @TempDir
@@ -39,7 +80,15 @@ class HdfsCopyServiceTest {
     void setUp() {
         copyProperties = new CopyProperties();
         copyProperties.setChecksumEnabled(true);
-        hdfsCopyService = new HdfsCopyService(copyProperties);
+        copyProperties.setSyncStateFile(new File(tempDir, "sync-state.properties").getAbsolutePath());
+        syncStateStore = new SyncStateStore(copyProperties);
+        metadataClient = new HdfsMetadataClient(copyProperties, new SimpleMeterRegistry());
+        hdfsCopyService = new HdfsCopyService(copyProperties, new LocalDiskSelector(copyProperties), transformExecutor,
+                syncStateStore, new DataNodeScheduler(copyProperties, metadataClient),
+                new LocalContentCache(copyProperties, new SimpleMeterRegistry()),
+                new AdaptiveConcurrencyLimiter(copyProperties, new SimpleMeterRegistry()), metadataClient,
+                new PriorityLanes(Runnable::run, new CopyProperties(), new SimpleMeterRegistry()),
+                new BandwidthCalendar(copyProperties, new SimpleMeterRegistry()));
     }
 
     private FSDataInputStream mockFsOpen(byte[] data) throws IOException {
@@ -52,7 +101,7 @@ class HdfsCopyServiceTest {
     @Test
     void copyPath_sourceNotExists_throwsException() throws Exception {
         Path sourcePath = new Path("/data/missing");
-        when(fileSystem.exists(sourcePath)).thenReturn(false);
+        when(fileSystem.getFileStatus(sourcePath)).thenThrow(new FileNotFoundException("/data/missing"));
 
         assertThatThrownBy(() -> hdfsCopyService.copyPath(fileSystem, "/data/missing", "/tmp/dest", null))
                 .isInstanceOf(IOException.class)
@@ -67,7 +116,6 @@ class HdfsCopyServiceTest {
         FileStatus fileStatus = mock(FileStatus.class);
         when(fileStatus.isDirectory()).thenReturn(false);
 
-        when(fileSystem.exists(sourcePath)).thenReturn(true);
         when(fileSystem.getFileStatus(sourcePath)).thenReturn(fileStatus);
 
         mockFsOpen(fileContent);
@@ -81,6 +129,69 @@ class HdfsCopyServiceTest {
         assertThat(Files.readAllBytes(new File(localDest).toPath())).isEqualTo(fileContent);
     }
 
+    @Test
+    void copyItem_recordsPhaseTimingsAndJfrEvent() throws Exception {
+        Path sourcePath = new Path("/data/file.txt");
+        FileStatus fileStatus = mock(FileStatus.class);
+        when(fileStatus.isDirectory()).thenReturn(false);
+        when(fileStatus.getLen()).thenReturn(11L);
+        when(fileSystem.getFileStatus(sourcePath)).thenReturn(fileStatus);
+        mockFsOpen("hello world".getBytes());
+        String localDest = new File(tempDir, "file.txt").getAbsolutePath();
+        CopyItemTask item = new CopyItemTask("/data/file.txt", localDest);
+
+        java.nio.file.Path dump = tempDir.toPath().resolve("copy.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("hadoopcopier.FileCopy").withThreshold(Duration.ZERO);
+            recording.start();
+            try (LocalWriteSession session = new LocalWriteSession(WriteMode.BUFFERED, copyProperties)) {
+                hdfsCopyService.copyItem(fileSystem, item, null, session);
+            }
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        PhaseTimings phases = item.getPhases();
+        assertThat(phases.nanos(PhaseTimings.Phase.METADATA)).isPositive();
+        assertThat(phases.nanos(PhaseTimings.Phase.OPEN)).isPositive();
+        assertThat(phases.nanos(PhaseTimings.Phase.WRITE)).isPositive();
+        assertThat(phases.nanos(PhaseTimings.Phase.VERIFY)).isPositive();
+        assertThat(phases.nanos(PhaseTimings.Phase.THROTTLE)).isZero();
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        assertThat(events).hasSize(1);
+        RecordedEvent event = events.get(0);
+        assertThat(event.getString("source")).isEqualTo("/data/file.txt");
+        assertThat(event.getString("destination")).isEqualTo(localDest);
+        assertThat(event.getLong("bytes")).isEqualTo(11);
+        assertThat(event.getBoolean("failed")).isFalse();
+        assertThat(event.getDuration("verify")).isEqualTo(Duration.ofNanos(phases.nanos(PhaseTimings.Phase.VERIFY)));
+    }
+
+    @Test
+    void copyPath_repeatedSourceWithMetadataCache_usesOneMetadataCall() throws Exception {
+        copyProperties.setMetadataCacheTtl(Duration.ofSeconds(5));
+        metadataClient = new HdfsMetadataClient(copyProperties, new SimpleMeterRegistry());
+        hdfsCopyService = new HdfsCopyService(copyProperties, new LocalDiskSelector(copyProperties), transformExecutor,
+                syncStateStore, new DataNodeScheduler(copyProperties, metadataClient),
+                new LocalContentCache(copyProperties, new SimpleMeterRegistry()),
+                new AdaptiveConcurrencyLimiter(copyProperties, new SimpleMeterRegistry()), metadataClient,
+                new PriorityLanes(Runnable::run, new CopyProperties(), new SimpleMeterRegistry()),
+                new BandwidthCalendar(copyProperties, new SimpleMeterRegistry()));
+        Path sourcePath = new Path("/data/file.txt");
+        FileStatus fileStatus = mock(FileStatus.class);
+        when(fileStatus.isDirectory()).thenReturn(false);
+        when(fileSystem.getFileStatus(sourcePath)).thenReturn(fileStatus);
+        when(fileSystem.open(any(Path.class))).thenAnswer(invocation ->
+                new FSDataInputStream(new SeekableByteArrayInputStream("hello".getBytes())));
+
+        hdfsCopyService.copyPath(fileSystem, "/data/file.txt", new File(tempDir, "a.txt").getAbsolutePath(), null);
+        hdfsCopyService.copyPath(fileSystem, "/data/file.txt", new File(tempDir, "b.txt").getAbsolutePath(), null);
+
+        verify(fileSystem, times(1)).getFileStatus(sourcePath);
+        verify(fileSystem, never()).exists(any());
+    }
+
     @Test
     void copyPath_singleFile_withBandwidth_copiesSuccessfully() throws Exception {
         Path sourcePath = new Path("/data/file.txt");
@@ -89,7 +200,6 @@ class HdfsCopyServiceTest {
         FileStatus fileStatus = mock(FileStatus.class);
         when(fileStatus.isDirectory()).thenReturn(false);
 
-        when(fileSystem.exists(sourcePath)).thenReturn(true);
         when(fileSystem.getFileStatus(sourcePath)).thenReturn(fileStatus);
 
         mockFsOpen(fileContent);
@@ -116,7 +226,6 @@ class HdfsCopyServiceTest {
         when(childFile.getLen()).thenReturn((long) childContent.length);
         when(childFile.getPath()).thenReturn(childPath);
 
-        when(fileSystem.exists(sourcePath)).thenReturn(true);
         when(fileSystem.getFileStatus(sourcePath)).thenReturn(dirStatus);
         when(fileSystem.listStatus(sourcePath)).thenReturn(new FileStatus[]{childFile});
 
@@ -130,6 +239,119 @@ class HdfsCopyServiceTest {
         assertThat(new File(localDest, "file1.txt")).exists();
     }
 
+    @Test
+    void copyPath_directoryWithManifest_listsFilesWithStoredDigests() throws Exception {
+        copyProperties.setWriteManifest(true);
+        Path sourcePath = new Path("/data/dir");
+        FileStatus dirStatus = new FileStatus(0, true, 0, 0, 0, sourcePath);
+        FileStatus subDirStatus = new FileStatus(0, true, 0, 0, 0, new Path("/data/dir/sub"));
+        FileStatus top = new FileStatus(5, false, 1, 128, 0, new Path("/data/dir/a.txt"));
+        FileStatus nested = new FileStatus(5, false, 1, 128, 0, new Path("/data/dir/sub/b.txt"));
+        when(fileSystem.getFileStatus(sourcePath)).thenReturn(dirStatus);
+        when(fileSystem.listStatus(sourcePath)).thenReturn(new FileStatus[]{top, subDirStatus});
+        when(fileSystem.listStatus(subDirStatus.getPath())).thenReturn(new FileStatus[]{nested});
+        when(fileSystem.open(any(Path.class))).thenAnswer(invocation ->
+                new FSDataInputStream(new SeekableByteArrayInputStream("12345".getBytes())));
+
+        File localDest = new File(tempDir, "dir");
+        hdfsCopyService.copyPath(fileSystem, "/data/dir", localDest.getAbsolutePath(), null);
+
+        String md5 = "827ccb0eea8a706c4c34a16891f84e7b";
+        File local = new File(localDest, "sub/b.txt");
+        assertThat(FileDigests.load(local.toPath())).isEqualTo(HexFormat.of().parseHex(md5));
+        assertThat(new File(localDest, ManifestWriter.FILE_NAME + ".inprogress")).doesNotExist();
+        assertThat(Files.readAllLines(new File(localDest, ManifestWriter.FILE_NAME).toPath())).containsExactly(
+                ManifestWriter.HEADER.strip(),
+                "a.txt\t5\t" + new File(localDest, "a.txt").lastModified() + "\tMD5\t" + md5 + "\t/data/dir/a.txt",
+                "sub/b.txt\t5\t" + local.lastModified() + "\tMD5\t" + md5 + "\t/data/dir/sub/b.txt");
+    }
+
+    @Test
+    void copyPath_directoryWithManifestWithoutXattr_listsComputedDigests() throws Exception {
+        copyProperties.setWriteManifest(true);
+        copyProperties.setDigestXattr(false);
+        Path sourcePath = new Path("/data/dir");
+        when(fileSystem.getFileStatus(sourcePath)).thenReturn(new FileStatus(0, true, 0, 0, 0, sourcePath));
+        when(fileSystem.listStatus(sourcePath)).thenReturn(new FileStatus[]{
+                new FileStatus(5, false, 1, 128, 0, new Path("/data/dir/a.txt"))});
+        when(fileSystem.open(any(Path.class))).thenAnswer(invocation ->
+                new FSDataInputStream(new SeekableByteArrayInputStream("12345".getBytes())));
+
+        File localDest = new File(tempDir, "dir");
+        hdfsCopyService.copyPath(fileSystem, "/data/dir", localDest.getAbsolutePath(), null);
+
+        File local = new File(localDest, "a.txt");
+        assertThat(FileDigests.load(local.toPath())).isNull();
+        assertThat(Files.readAllLines(new File(localDest, ManifestWriter.FILE_NAME).toPath())).containsExactly(
+                ManifestWriter.HEADER.strip(),
+                "a.txt\t5\t" + local.lastModified() + "\tMD5\t827ccb0eea8a706c4c34a16891f84e7b\t/data/dir/a.txt");
+    }
+
+    @Test
+    void copyItem_directoryWithManifestAndFailingFile_publishesNoManifest() throws Exception {
+        copyProperties.setWriteManifest(true);
+        Path sourcePath = new Path("/data/dir");
+        Path failing = new Path("/data/dir/b.txt");
+        when(fileSystem.getFileStatus(sourcePath)).thenReturn(new FileStatus(0, true, 0, 0, 0, sourcePath));
+        when(fileSystem.listStatus(sourcePath)).thenReturn(new FileStatus[]{
+                new FileStatus(5, false, 1, 128, 0, new Path("/data/dir/a.txt")),
+                new FileStatus(5, false, 1, 128, 0, failing)});
+        when(fileSystem.open(new Path("/data/dir/a.txt")))
+                .thenReturn(new FSDataInputStream(new SeekableByteArrayInputStream("12345".getBytes())));
+        when(fileSystem.open(failing)).thenThrow(new IOException("Connection reset"));
+        File localDest = new File(tempDir, "dir");
+        Files.createDirectories(localDest.toPath());
+        Files.writeString(new File(localDest, ManifestWriter.FILE_NAME).toPath(), "stale");
+
+        CopyItemTask item = new CopyItemTask("/data/dir", localDest.getAbsolutePath());
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.BUFFERED, copyProperties)) {
+            assertThatThrownBy(() -> hdfsCopyService.copyItem(fileSystem, item, null, session))
+                    .hasMessageContaining("1 of 2 files failed");
+        }
+
+        assertThat(new File(localDest, "a.txt")).exists();
+        assertThat(new File(localDest, ManifestWriter.FILE_NAME)).doesNotExist();
+        assertThat(new File(localDest, ManifestWriter.FILE_NAME + ".inprogress")).doesNotExist();
+    }
+
+    @Test
+    void copyItem_directoryWithFailingFile_copiesRestAndRecordsPerFileStatus() throws Exception {
+        Path sourcePath = new Path("/data/dir");
+        FileStatus dirStatus = new FileStatus(0, true, 0, 0, 0, sourcePath);
+        FileStatus[] children = new FileStatus[3];
+        for (int i = 0; i < children.length; i++) {
+            Path childPath = new Path("/data/dir/file" + i + ".txt");
+            children[i] = new FileStatus(5, false, 1, 128, 0, childPath);
+            if (i == 1) {
+                when(fileSystem.open(childPath)).thenThrow(new IOException("Connection reset"));
+            } else {
+                when(fileSystem.open(childPath))
+                        .thenReturn(new FSDataInputStream(new SeekableByteArrayInputStream("12345".getBytes())));
+            }
+        }
+        when(fileSystem.getFileStatus(sourcePath)).thenReturn(dirStatus);
+        when(fileSystem.listStatus(sourcePath)).thenReturn(children);
+
+        File localDest = new File(tempDir, "dir");
+        CopyItemTask item = new CopyItemTask("/data/dir", localDest.getAbsolutePath());
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.BUFFERED, copyProperties)) {
+            assertThatThrownBy(() -> hdfsCopyService.copyItem(fileSystem, item, null, session))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("1 of 3 files failed")
+                    .hasMessageContaining("/data/dir/file1.txt: Connection reset");
+        }
+
+        assertThat(new File(localDest, "file0.txt")).exists();
+        assertThat(new File(localDest, "file2.txt")).exists();
+        assertThat(item.getFiles().count(CopyItemStatus.COMPLETED)).isEqualTo(2);
+        List<FileStatusTable.FileEntry> failed = item.getFiles().entries(CopyItemStatus.FAILED);
+        assertThat(failed).singleElement().satisfies(entry -> {
+            assertThat(entry.path()).isEqualTo("/data/dir/file1.txt");
+            assertThat(entry.localDir()).isEqualTo(localDest.getAbsolutePath());
+            assertThat(entry.error()).isEqualTo("Connection reset");
+        });
+    }
+
     @Test
     void copyPath_directory_withSubdirectory() throws Exception {
         Path sourcePath = new Path("/data/dir");
@@ -148,7 +370,6 @@ class HdfsCopyServiceTest {
         when(fileInSubDir.getLen()).thenReturn((long) fileContent.length);
         when(fileInSubDir.getPath()).thenReturn(filePath);
 
-        when(fileSystem.exists(sourcePath)).thenReturn(true);
         when(fileSystem.getFileStatus(sourcePath)).thenReturn(dirStatus);
         when(fileSystem.listStatus(sourcePath)).thenReturn(new FileStatus[]{subDirStatus});
         when(fileSystem.listStatus(subDirPath)).thenReturn(new FileStatus[]{fileInSubDir});
@@ -176,7 +397,6 @@ class HdfsCopyServiceTest {
         when(childFile.getLen()).thenReturn((long) childContent.length);
         when(childFile.getPath()).thenReturn(childPath);
 
-        when(fileSystem.exists(sourcePath)).thenReturn(true);
         when(fileSystem.getFileStatus(sourcePath)).thenReturn(dirStatus);
         when(fileSystem.listStatus(sourcePath)).thenReturn(new FileStatus[]{childFile});
 
@@ -199,7 +419,6 @@ class HdfsCopyServiceTest {
         FileStatus fileStatus = mock(FileStatus.class);
         when(fileStatus.isDirectory()).thenReturn(false);
 
-        when(fileSystem.exists(sourcePath)).thenReturn(true);
         when(fileSystem.getFileStatus(sourcePath)).thenReturn(fileStatus);
 
         mockFsOpen(fileContent);
@@ -220,7 +439,6 @@ class HdfsCopyServiceTest {
         FileStatus fileStatus = mock(FileStatus.class);
         when(fileStatus.isDirectory()).thenReturn(false);
 
-        when(fileSystem.exists(sourcePath)).thenReturn(true);
         when(fileSystem.getFileStatus(sourcePath)).thenReturn(fileStatus);
 
         mockFsOpen(fileContent);
@@ -250,7 +468,6 @@ class HdfsCopyServiceTest {
         when(childFile.getLen()).thenReturn((long) childContent.length);
         when(childFile.getPath()).thenReturn(childPath);
 
-        when(fileSystem.exists(sourcePath)).thenReturn(true);
         when(fileSystem.getFileStatus(sourcePath)).thenReturn(dirStatus);
         when(fileSystem.listStatus(sourcePath)).thenReturn(new FileStatus[]{childFile});
 
@@ -263,6 +480,767 @@ class HdfsCopyServiceTest {
         assertThat(result.checksumVerified()).isFalse();
     }
 
+    @Test
+    void copyPath_withCache_downloadsPopularFileOnce() throws Exception {
+        copyProperties.setCacheDir(new File(tempDir, "cache").getAbsolutePath());
+        hdfsCopyService = new HdfsCopyService(copyProperties, new LocalDiskSelector(copyProperties), transformExecutor,
+                syncStateStore, new DataNodeScheduler(copyProperties, metadataClient),
+                new LocalContentCache(copyProperties, new SimpleMeterRegistry()),
+                new AdaptiveConcurrencyLimiter(copyProperties, new SimpleMeterRegistry()), metadataClient,
+                new PriorityLanes(Runnable::run, new CopyProperties(), new SimpleMeterRegistry()),
+                new BandwidthCalendar(copyProperties, new SimpleMeterRegistry()));
+
+        Path sourcePath = new Path("/data/file.txt");
+        byte[] fileContent = "cached".getBytes();
+        FileStatus fileStatus = new FileStatus(fileContent.length, false, 1, 128, 1000, sourcePath);
+        when(fileSystem.getFileStatus(sourcePath)).thenReturn(fileStatus);
+        mockFsOpen(fileContent);
+
+        File first = new File(tempDir, "team-a/file.txt");
+        File second = new File(tempDir, "team-b/file.txt");
+        CopyResult firstResult = hdfsCopyService.copyPath(fileSystem, "/data/file.txt", first.getAbsolutePath(), null);
+        CopyResult secondResult = hdfsCopyService.copyPath(fileSystem, "/data/file.txt", second.getAbsolutePath(), null);
+
+        verify(fileSystem, times(1)).open(sourcePath);
+        assertThat(firstResult.checksumVerified()).isTrue();
+        assertThat(secondResult).isEqualTo(firstResult);
+        assertThat(Files.readAllBytes(second.toPath())).isEqualTo(fileContent);
+        assertThat(Files.isSameFile(first.toPath(), second.toPath())).isTrue();
+    }
+
+    @Test
+    void copyItem_withCacheAndGroupFsync_syncsLinkedFiles() throws Exception {
+        copyProperties.setCacheDir(new File(tempDir, "cache").getAbsolutePath());
+        hdfsCopyService = new HdfsCopyService(copyProperties, new LocalDiskSelector(copyProperties), transformExecutor,
+                syncStateStore, new DataNodeScheduler(copyProperties, metadataClient),
+                new LocalContentCache(copyProperties, new SimpleMeterRegistry()),
+                new AdaptiveConcurrencyLimiter(copyProperties, new SimpleMeterRegistry()), metadataClient,
+                new PriorityLanes(Runnable::run, new CopyProperties(), new SimpleMeterRegistry()),
+                new BandwidthCalendar(copyProperties, new SimpleMeterRegistry()));
+
+        Path sourcePath = new Path("/data/file.txt");
+        byte[] fileContent = "grouped".getBytes();
+        when(fileSystem.getFileStatus(sourcePath))
+                .thenReturn(new FileStatus(fileContent.length, false, 1, 128, 1000, sourcePath));
+        mockFsOpen(fileContent);
+
+        File localFile = new File(tempDir, "out/file.txt");
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.GROUP_FSYNC, copyProperties)) {
+            CopyResult result = hdfsCopyService.copyItem(fileSystem,
+                    new CopyItemTask("/data/file.txt", localFile.getAbsolutePath()), null, session);
+            assertThat(result.bytesCopied()).isEqualTo(fileContent.length);
+        }
+
+        assertThat(Files.readAllBytes(localFile.toPath())).isEqualTo(fileContent);
+    }
+
+    @Test
+    void copyPath_withDataRoots_writesToRootAndLinksLogicalPath() throws Exception {
+        File dataRoot = new File(tempDir, "disk1");
+        dataRoot.mkdirs();
+        copyProperties.setLocalDataRoots(List.of(dataRoot.getAbsolutePath()));
+        copyProperties.setSyncStateFile(new File(tempDir, "sync-state.properties").getAbsolutePath());
+        syncStateStore = new SyncStateStore(copyProperties);
+        hdfsCopyService = new HdfsCopyService(copyProperties, new LocalDiskSelector(copyProperties), transformExecutor,
+                syncStateStore, new DataNodeScheduler(copyProperties, metadataClient),
+                new LocalContentCache(copyProperties, new SimpleMeterRegistry()),
+                new AdaptiveConcurrencyLimiter(copyProperties, new SimpleMeterRegistry()), metadataClient,
+                new PriorityLanes(Runnable::run, new CopyProperties(), new SimpleMeterRegistry()),
+                new BandwidthCalendar(copyProperties, new SimpleMeterRegistry()));
+
+        Path sourcePath = new Path("/data/file.txt");
+        byte[] fileContent = "striped".getBytes();
+
+        FileStatus fileStatus = mock(FileStatus.class);
+        when(fileStatus.isDirectory()).thenReturn(false);
+        when(fileStatus.getLen()).thenReturn((long) fileContent.length);
+
+        when(fileSystem.getFileStatus(sourcePath)).thenReturn(fileStatus);
+
+        mockFsOpen(fileContent);
+
+        File logical = new File(tempDir, "out/file.txt");
+        CopyResult result = hdfsCopyService.copyPath(fileSystem, "/data/file.txt", logical.getAbsolutePath(), null);
+
+        File physical = new File(dataRoot, logical.getAbsolutePath());
+        assertThat(result.checksumVerified()).isTrue();
+        assertThat(Files.isSymbolicLink(logical.toPath())).isTrue();
+        assertThat(Files.readSymbolicLink(logical.toPath())).isEqualTo(physical.toPath());
+        assertThat(Files.readAllBytes(physical.toPath())).isEqualTo(fileContent);
+        assertThat(Files.readAllBytes(logical.toPath())).isEqualTo(fileContent);
+    }
+
+    @Test
+    void copyPath_directWriteMode_writesExactContent() throws Exception {
+        Path sourcePath = new Path("/data/file.bin");
+        byte[] fileContent = new byte[100_000];
+        new Random(42).nextBytes(fileContent);
+
+        FileStatus fileStatus = mock(FileStatus.class);
+        when(fileStatus.isDirectory()).thenReturn(false);
+        when(fileStatus.getLen()).thenReturn((long) fileContent.length);
+
+        when(fileSystem.getFileStatus(sourcePath)).thenReturn(fileStatus);
+
+        mockFsOpen(fileContent);
+
+        String localDest = new File(tempDir, "file_direct.bin").getAbsolutePath();
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.DIRECT, copyProperties)) {
+            CopyResult result = hdfsCopyService.copyItem(fileSystem, new CopyItemTask("/data/file.bin", localDest), null, session);
+
+            assertThat(result.bytesCopied()).isEqualTo(fileContent.length);
+            assertThat(result.checksumVerified()).isTrue();
+        }
+        assertThat(Files.readAllBytes(new File(localDest).toPath())).isEqualTo(fileContent);
+    }
+
+    @Test
+    void copyPath_groupFsyncMode_copiesDirectory() throws Exception {
+        copyProperties.setGroupFsyncFiles(1);
+
+        Path sourcePath = new Path("/data/dir");
+        FileStatus dirStatus = mock(FileStatus.class);
+        when(dirStatus.isDirectory()).thenReturn(true);
+
+        Path childPath = new Path("/data/dir/file1.txt");
+        byte[] childContent = "grouped".getBytes();
+        FileStatus childFile = mock(FileStatus.class);
+        when(childFile.isDirectory()).thenReturn(false);
+        when(childFile.getLen()).thenReturn((long) childContent.length);
+        when(childFile.getPath()).thenReturn(childPath);
+
+        when(fileSystem.getFileStatus(sourcePath)).thenReturn(dirStatus);
+        when(fileSystem.listStatus(sourcePath)).thenReturn(new FileStatus[]{childFile});
+
+        mockFsOpen(childContent);
+
+        String localDest = new File(tempDir, "dir_group").getAbsolutePath();
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.GROUP_FSYNC, copyProperties)) {
+            CopyResult result = hdfsCopyService.copyItem(fileSystem, new CopyItemTask("/data/dir", localDest), null, session);
+            assertThat(result.bytesCopied()).isEqualTo(childContent.length);
+        }
+        assertThat(Files.readAllBytes(new File(localDest, "file1.txt").toPath())).isEqualTo(childContent);
+    }
+
+    @Test
+    void copyPath_sourceShorterThanStatus_keepsCopiedBytes() throws Exception {
+        Path sourcePath = new Path("/data/file.txt");
+        byte[] fileContent = "shrunk".getBytes();
+
+        FileStatus fileStatus = mock(FileStatus.class);
+        when(fileStatus.isDirectory()).thenReturn(false);
+        when(fileStatus.getLen()).thenReturn(4096L);
+
+        when(fileSystem.getFileStatus(sourcePath)).thenReturn(fileStatus);
+
+        mockFsOpen(fileContent);
+
+        File localDest = new File(tempDir, "file_shrunk.txt");
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.FSYNC, copyProperties)) {
+            hdfsCopyService.copyItem(fileSystem, new CopyItemTask("/data/file.txt", localDest.getAbsolutePath()), null, session);
+        }
+
+        assertThat(localDest.length()).isEqualTo(fileContent.length);
+        assertThat(Files.readAllBytes(localDest.toPath())).isEqualTo(fileContent);
+    }
+
+    @Test
+    void copyItem_compressGzip_writesCompressedFile() throws Exception {
+        Path sourcePath = new Path("/data/file.txt");
+        byte[] fileContent = "compress me please, compress me please".getBytes();
+
+        FileStatus fileStatus = mock(FileStatus.class);
+        when(fileStatus.isDirectory()).thenReturn(false);
+        when(fileStatus.getLen()).thenReturn((long) fileContent.length);
+
+        when(fileSystem.getFileStatus(sourcePath)).thenReturn(fileStatus);
+
+        mockFsOpen(fileContent);
+
+        File localDest = new File(tempDir, "file.txt.gz");
+        CopyItemTask item = new CopyItemTask("/data/file.txt", localDest.getAbsolutePath());
+        item.setTransform(TransformMode.COMPRESS);
+        item.setCompressionLevel(9);
+
+        CopyResult result;
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.BUFFERED, copyProperties)) {
+            result = hdfsCopyService.copyItem(fileSystem, item, null, session);
+        }
+
+        assertThat(result.bytesCopied()).isEqualTo(fileContent.length);
+        assertThat(result.checksumVerified()).isTrue();
+        try (InputStream in = new GZIPInputStream(new FileInputStream(localDest))) {
+            assertThat(in.readAllBytes()).isEqualTo(fileContent);
+        }
+    }
+
+    @Test
+    void copyItem_decompressDirectory_stripsCodecSuffix() throws Exception {
+        Path sourcePath = new Path("/data/dir");
+        FileStatus dirStatus = mock(FileStatus.class);
+        when(dirStatus.isDirectory()).thenReturn(true);
+
+        byte[] plain = "decompressed content".getBytes();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(plain);
+        }
+
+        Path childPath = new Path("/data/dir/part-0.gz");
+        FileStatus childFile = mock(FileStatus.class);
+        when(childFile.isDirectory()).thenReturn(false);
+        when(childFile.getLen()).thenReturn((long) compressed.size());
+        when(childFile.getPath()).thenReturn(childPath);
+
+        when(fileSystem.getFileStatus(sourcePath)).thenReturn(dirStatus);
+        when(fileSystem.listStatus(sourcePath)).thenReturn(new FileStatus[]{childFile});
+
+        mockFsOpen(compressed.toByteArray());
+
+        File localDir = new File(tempDir, "dir_decompressed");
+        CopyItemTask item = new CopyItemTask("/data/dir", localDir.getAbsolutePath());
+        item.setTransform(TransformMode.DECOMPRESS);
+
+        CopyResult result;
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.BUFFERED, copyProperties)) {
+            result = hdfsCopyService.copyItem(fileSystem, item, null, session);
+        }
+
+        assertThat(result.checksumVerified()).isTrue();
+        assertThat(Files.readAllBytes(new File(localDir, "part-0").toPath())).isEqualTo(plain);
+    }
+
+    @Test
+    void copyItem_unknownCodec_throwsException() throws Exception {
+        Path sourcePath = new Path("/data/file.txt");
+
+        FileStatus fileStatus = mock(FileStatus.class);
+        when(fileStatus.isDirectory()).thenReturn(false);
+
+        when(fileSystem.getFileStatus(sourcePath)).thenReturn(fileStatus);
+
+        mockFsOpen("data".getBytes());
+
+        CopyItemTask item = new CopyItemTask("/data/file.txt", new File(tempDir, "file.out").getAbsolutePath());
+        item.setTransform(TransformMode.COMPRESS);
+        item.setCodec("no-such-codec");
+
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.BUFFERED, copyProperties)) {
+            assertThatThrownBy(() -> hdfsCopyService.copyItem(fileSystem, item, null, session))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("Unknown compression codec");
+        }
+    }
+
+    @Test
+    void copyItem_tarOutput_archivesDirectoryWithIndex() throws Exception {
+        Path sourcePath = new Path("/data/dir");
+        FileStatus dirStatus = mock(FileStatus.class);
+        when(dirStatus.isDirectory()).thenReturn(true);
+
+        byte[] content1 = "first small file".getBytes();
+        byte[] content2 = "second small file in a subdirectory".getBytes();
+
+        Path file1Path = new Path("/data/dir/a.txt");
+        FileStatus file1 = mock(FileStatus.class);
+        when(file1.isDirectory()).thenReturn(false);
+        when(file1.getLen()).thenReturn((long) content1.length);
+        when(file1.getPath()).thenReturn(file1Path);
+
+        Path subDirPath = new Path("/data/dir/sub");
+        FileStatus subDir = mock(FileStatus.class);
+        when(subDir.isDirectory()).thenReturn(true);
+        when(subDir.getPath()).thenReturn(subDirPath);
+
+        Path file2Path = new Path("/data/dir/sub/b.txt");
+        FileStatus file2 = mock(FileStatus.class);
+        when(file2.isDirectory()).thenReturn(false);
+        when(file2.getLen()).thenReturn((long) content2.length);
+        when(file2.getPath()).thenReturn(file2Path);
+
+        when(fileSystem.getFileStatus(sourcePath)).thenReturn(dirStatus);
+        when(fileSystem.listStatus(sourcePath)).thenReturn(new FileStatus[]{file1, subDir});
+        when(fileSystem.listStatus(subDirPath)).thenReturn(new FileStatus[]{file2});
+        when(fileSystem.open(file1Path)).thenReturn(new FSDataInputStream(new SeekableByteArrayInputStream(content1)));
+        when(fileSystem.open(file2Path)).thenReturn(new FSDataInputStream(new SeekableByteArrayInputStream(content2)));
+
+        File localDir = new File(tempDir, "archive");
+        CopyItemTask item = new CopyItemTask("/data/dir", localDir.getAbsolutePath());
+        item.setOutputMode(OutputMode.TAR);
+
+        CopyResult result;
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.BUFFERED, copyProperties)) {
+            result = hdfsCopyService.copyItem(fileSystem, item, null, session);
+        }
+
+        assertThat(result.bytesCopied()).isEqualTo(content1.length + content2.length);
+        assertThat(result.checksumVerified()).isTrue();
+        assertThat(localDir.list()).containsExactlyInAnyOrder("part-00000.tar", "part-00000.tar.idx");
+
+        byte[] archive = Files.readAllBytes(new File(localDir, "part-00000.tar").toPath());
+        assertThat(archive.length % TarArchiveWriter.BLOCK_SIZE).isZero();
+        List<String> index = Files.readAllLines(new File(localDir, "part-00000.tar.idx").toPath());
+        assertThat(index).hasSize(2);
+        assertThat(readIndexedEntry(archive, index.get(0), "a.txt")).isEqualTo(content1);
+        assertThat(readIndexedEntry(archive, index.get(1), "sub/b.txt")).isEqualTo(content2);
+        assertThat(item.getPhases().nanos(PhaseTimings.Phase.OPEN)).isPositive();
+        assertThat(item.getPhases().nanos(PhaseTimings.Phase.FIRST_BYTE)).isPositive();
+    }
+
+    @Test
+    void copyItem_tarOutputCompressed_rollsAtSizeLimit() throws Exception {
+        Path sourcePath = new Path("/data/dir");
+        FileStatus dirStatus = mock(FileStatus.class);
+        when(dirStatus.isDirectory()).thenReturn(true);
+
+        byte[] content = new byte[1000];
+        new Random(7).nextBytes(content);
+        FileStatus[] files = new FileStatus[3];
+        for (int i = 0; i < files.length; i++) {
+            Path filePath = new Path("/data/dir/part-" + i);
+            files[i] = mock(FileStatus.class);
+            when(files[i].isDirectory()).thenReturn(false);
+            when(files[i].getLen()).thenReturn((long) content.length);
+            when(files[i].getPath()).thenReturn(filePath);
+            when(fileSystem.open(filePath)).thenReturn(new FSDataInputStream(new SeekableByteArrayInputStream(content)));
+        }
+
+        when(fileSystem.getFileStatus(sourcePath)).thenReturn(dirStatus);
+        when(fileSystem.listStatus(sourcePath)).thenReturn(files);
+
+        File localDir = new File(tempDir, "rolled");
+        CopyItemTask item = new CopyItemTask("/data/dir", localDir.getAbsolutePath());
+        item.setOutputMode(OutputMode.TAR);
+        item.setTransform(TransformMode.COMPRESS);
+        item.setArchiveMaxBytes(2048L);
+
+        CopyResult result;
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.BUFFERED, copyProperties)) {
+            result = hdfsCopyService.copyItem(fileSystem, item, null, session);
+        }
+
+        assertThat(result.bytesCopied()).isEqualTo(3L * content.length);
+        assertThat(result.checksumVerified()).isTrue();
+        for (int i = 0; i < files.length; i++) {
+            String partName = String.format("part-%05d.tar.gz", i);
+            List<String> index = Files.readAllLines(new File(localDir, partName + ".idx").toPath());
+            assertThat(index).hasSize(1);
+            assertThat(readCompressedEntry(new File(localDir, partName), index.get(0), "part-" + i)).isEqualTo(content);
+        }
+    }
+
+    @Test
+    void copyItem_tarOutputCompressed_indexPointsIntoFrames() throws Exception {
+        Path sourcePath = new Path("/data/dir");
+        byte[][] contents = new byte[3][];
+        FileStatus[] files = new FileStatus[contents.length];
+        Random random = new Random(7);
+        for (int i = 0; i < files.length; i++) {
+            contents[i] = new byte[700 * 1024];
+            random.nextBytes(contents[i]);
+            Path filePath = new Path("/data/dir/part-" + i);
+            files[i] = new FileStatus(contents[i].length, false, 1, 128, 0, filePath);
+            when(fileSystem.open(filePath))
+                    .thenReturn(new FSDataInputStream(new SeekableByteArrayInputStream(contents[i])));
+        }
+        when(fileSystem.getFileStatus(sourcePath)).thenReturn(new FileStatus(0, true, 0, 0, 0, sourcePath));
+        when(fileSystem.listStatus(sourcePath)).thenReturn(files);
+
+        File localDir = new File(tempDir, "framed");
+        CopyItemTask item = new CopyItemTask("/data/dir", localDir.getAbsolutePath());
+        item.setOutputMode(OutputMode.TAR);
+        item.setTransform(TransformMode.COMPRESS);
+        item.setArchiveMaxBytes(0L);
+        LocalWriteSession session = spy(new LocalWriteSession(WriteMode.GROUP_FSYNC, copyProperties));
+        try (session) {
+            hdfsCopyService.copyItem(fileSystem, item, null, session);
+        }
+
+        File part = new File(localDir, "part-00000.tar.gz");
+        List<String> index = Files.readAllLines(new File(localDir, "part-00000.tar.gz.idx").toPath());
+        assertThat(index).extracting(line -> line.split("\t")[0]).startsWith("0", "0").last().isNotEqualTo("0");
+        for (int i = 0; i < files.length; i++) {
+            assertThat(readCompressedEntry(part, index.get(i), "part-" + i)).isEqualTo(contents[i]);
+        }
+        verify(session).fileCompleted(eq(new File(localDir, "part-00000.tar.gz.idx")), anyLong());
+    }
+
+    @Test
+    void copyItem_tarOutputWithDecompress_throwsException() throws Exception {
+        Path sourcePath = new Path("/data/dir");
+        FileStatus dirStatus = mock(FileStatus.class);
+
+        when(fileSystem.getFileStatus(sourcePath)).thenReturn(dirStatus);
+
+        CopyItemTask item = new CopyItemTask("/data/dir", new File(tempDir, "archive").getAbsolutePath());
+        item.setOutputMode(OutputMode.TAR);
+        item.setTransform(TransformMode.DECOMPRESS);
+
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.BUFFERED, copyProperties)) {
+            assertThatThrownBy(() -> hdfsCopyService.copyItem(fileSystem, item, null, session))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("DECOMPRESS is not supported with TAR output");
+        }
+    }
+
+    @Test
+    void copyItem_tarOutput_doesNotYieldWhileArchivePartIsOpen() throws Exception {
+        Deque<Runnable> workers = new ArrayDeque<>();
+        PriorityLanes lanes = new PriorityLanes(workers::add, new CopyProperties(), new SimpleMeterRegistry());
+        hdfsCopyService = new HdfsCopyService(copyProperties, new LocalDiskSelector(copyProperties), transformExecutor,
+                syncStateStore, new DataNodeScheduler(copyProperties, metadataClient),
+                new LocalContentCache(copyProperties, new SimpleMeterRegistry()),
+                new AdaptiveConcurrencyLimiter(copyProperties, new SimpleMeterRegistry()), metadataClient,
+                lanes, new BandwidthCalendar(copyProperties, new SimpleMeterRegistry()));
+
+        Path sourcePath = new Path("/data/dir");
+        Path file1Path = new Path("/data/dir/a.txt");
+        Path file2Path = new Path("/data/dir/b.txt");
+        when(fileSystem.getFileStatus(sourcePath)).thenReturn(new FileStatus(0, true, 1, 128, 1000, sourcePath));
+        when(fileSystem.listStatus(sourcePath)).thenReturn(new FileStatus[]{
+                new FileStatus(1, false, 1, 128, 1000, file1Path),
+                new FileStatus(1, false, 1, 128, 1000, file2Path)});
+        when(fileSystem.open(file1Path)).thenReturn(new FSDataInputStream(new SeekableByteArrayInputStream(new byte[1])));
+        when(fileSystem.open(file2Path)).thenReturn(new FSDataInputStream(new SeekableByteArrayInputStream(new byte[1])));
+
+        CopyItemTask item = new CopyItemTask("/data/dir", new File(tempDir, "archive").getAbsolutePath());
+        item.setOutputMode(OutputMode.TAR);
+        List<String> runs = new ArrayList<>();
+        lanes.execute(CopyPriority.BULK, () -> {
+            lanes.execute(CopyPriority.CRITICAL, () -> runs.add("critical"));
+            try (LocalWriteSession session = new LocalWriteSession(WriteMode.BUFFERED, copyProperties)) {
+                hdfsCopyService.copyItem(fileSystem, item, null, session);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            runs.add("archive");
+        });
+        Runnable worker;
+        while ((worker = workers.poll()) != null) {
+            worker.run();
+        }
+
+        assertThat(runs).containsExactly("archive", "critical");
+    }
+
+    @Test
+    void copyItem_globWithFilter_copiesOnlyAcceptedFiles() throws Exception {
+        Path globPath = new Path("/data/2024-*");
+        byte[] content = "parquet bytes".getBytes();
+
+        Path partitionPath = new Path("/data/2024-01");
+        FileStatus partition = mock(FileStatus.class);
+        when(partition.isDirectory()).thenReturn(true);
+        when(partition.getPath()).thenReturn(partitionPath);
+
+        Path matchedFilePath = new Path("/data/2024-02.parquet");
+        FileStatus matchedFile = mock(FileStatus.class);
+        when(matchedFile.isDirectory()).thenReturn(false);
+        when(matchedFile.getLen()).thenReturn((long) content.length);
+        when(matchedFile.getPath()).thenReturn(matchedFilePath);
+
+        Path dataPath = new Path("/data/2024-01/a.parquet");
+        FileStatus dataFile = mock(FileStatus.class);
+        when(dataFile.isDirectory()).thenReturn(false);
+        when(dataFile.getLen()).thenReturn((long) content.length);
+        when(dataFile.getPath()).thenReturn(dataPath);
+
+        FileStatus crcFile = mock(FileStatus.class);
+        when(crcFile.isDirectory()).thenReturn(false);
+        when(crcFile.getPath()).thenReturn(new Path("/data/2024-01/a.parquet.crc"));
+
+        Path tmpPath = new Path("/data/2024-01/_tmp");
+        FileStatus tmpDir = mock(FileStatus.class);
+        when(tmpDir.isDirectory()).thenReturn(true);
+        when(tmpDir.getPath()).thenReturn(tmpPath);
+
+        when(fileSystem.globStatus(globPath)).thenReturn(new FileStatus[]{partition, matchedFile});
+        when(fileSystem.listStatus(partitionPath)).thenReturn(new FileStatus[]{dataFile, crcFile, tmpDir});
+        when(fileSystem.open(dataPath)).thenReturn(new FSDataInputStream(new SeekableByteArrayInputStream(content)));
+        when(fileSystem.open(matchedFilePath)).thenReturn(new FSDataInputStream(new SeekableByteArrayInputStream(content)));
+
+        CopyFilter filter = new CopyFilter();
+        filter.setInclude("\\.parquet$");
+        filter.setExclude("/_tmp");
+        File localDir = new File(tempDir, "globbed");
+        CopyItemTask item = new CopyItemTask("/data/2024-*", localDir.getAbsolutePath());
+        item.setFilter(filter);
+
+        CopyResult result;
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.BUFFERED, copyProperties)) {
+            result = hdfsCopyService.copyItem(fileSystem, item, null, session);
+        }
+
+        assertThat(result.bytesCopied()).isEqualTo(2L * content.length);
+        assertThat(result.checksumVerified()).isTrue();
+        assertThat(Files.readAllBytes(new File(localDir, "2024-01/a.parquet").toPath())).isEqualTo(content);
+        assertThat(Files.readAllBytes(new File(localDir, "2024-02.parquet").toPath())).isEqualTo(content);
+        assertThat(new File(localDir, "2024-01").list()).containsExactly("a.parquet");
+        verify(fileSystem, never()).listStatus(tmpPath);
+        verify(fileSystem, times(2)).open(any(Path.class));
+    }
+
+    @Test
+    void copyItem_globWithFailingFile_copiesRemainingMatchesAndRetriesTheFailedFile() throws Exception {
+        Path globPath = new Path("/data/2024-*");
+        Path firstDir = new Path("/data/2024-01");
+        Path secondDir = new Path("/data/2024-02");
+        Path failing = new Path("/data/2024-01/a.txt");
+        Path[] copied = {new Path("/data/2024-01/b.txt"), new Path("/data/2024-02/c.txt"), new Path("/data/2024-03.txt")};
+        when(fileSystem.globStatus(globPath)).thenReturn(new FileStatus[]{
+                new FileStatus(0, true, 0, 0, 0, firstDir),
+                new FileStatus(0, true, 0, 0, 0, secondDir),
+                new FileStatus(5, false, 1, 128, 0, copied[2])});
+        when(fileSystem.listStatus(firstDir)).thenReturn(new FileStatus[]{
+                new FileStatus(5, false, 1, 128, 0, failing), new FileStatus(5, false, 1, 128, 0, copied[0])});
+        when(fileSystem.listStatus(secondDir)).thenReturn(new FileStatus[]{new FileStatus(5, false, 1, 128, 0, copied[1])});
+        when(fileSystem.open(failing)).thenThrow(new IOException("Connection reset"));
+        for (Path path : copied) {
+            when(fileSystem.open(path))
+                    .thenReturn(new FSDataInputStream(new SeekableByteArrayInputStream("12345".getBytes())));
+        }
+
+        File localDir = new File(tempDir, "globbed");
+        CopyItemTask item = new CopyItemTask("/data/2024-*", localDir.getAbsolutePath());
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.BUFFERED, copyProperties)) {
+            assertThatThrownBy(() -> hdfsCopyService.copyItem(fileSystem, item, null, session))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("1 of 4 files failed")
+                    .hasMessageContaining("/data/2024-01/a.txt: Connection reset");
+        }
+
+        assertThat(new File(localDir, "2024-01/b.txt")).exists();
+        assertThat(new File(localDir, "2024-02/c.txt")).exists();
+        assertThat(new File(localDir, "2024-03.txt")).exists();
+        assertThat(item.getFiles().isWalkComplete()).isTrue();
+        assertThat(item.getFiles().count(CopyItemStatus.COMPLETED)).isEqualTo(3);
+        FileStatusTable.FileEntry failed = item.getFiles().entries(CopyItemStatus.FAILED).get(0);
+        assertThat(failed.path()).isEqualTo("/data/2024-01/a.txt");
+
+        // the retry copies just the failed entry to where the walk would have put it
+        when(fileSystem.getFileStatus(failing)).thenReturn(new FileStatus(5, false, 1, 128, 0, failing));
+        doReturn(new FSDataInputStream(new SeekableByteArrayInputStream("12345".getBytes())))
+                .when(fileSystem).open(failing);
+        CopyItemTask retry = new CopyItemTask(failed.path(), new File(failed.localDir(), failed.name()).getPath());
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.BUFFERED, copyProperties)) {
+            hdfsCopyService.copyItem(fileSystem, retry, null, session);
+        }
+
+        assertThat(new File(localDir, "2024-01/a.txt")).hasContent("12345");
+    }
+
+    @Test
+    void copyItem_globWithoutMatches_throwsException() throws Exception {
+        when(fileSystem.globStatus(new Path("/data/none-*"))).thenReturn(new FileStatus[0]);
+
+        CopyItemTask item = new CopyItemTask("/data/none-*", new File(tempDir, "none").getAbsolutePath());
+
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.BUFFERED, copyProperties)) {
+            assertThatThrownBy(() -> hdfsCopyService.copyItem(fileSystem, item, null, session))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("No source paths match: /data/none-*");
+        }
+    }
+
+    @Test
+    void copyItem_snapshotSyncFirstRun_createsSnapshotAndCopiesItFully() throws Exception {
+        Path sourcePath = new Path("/data/warehouse");
+        Path snapshotRoot = new Path("/data/warehouse/.snapshot/base");
+        byte[] content = "snapshot content".getBytes();
+
+        Path filePath = new Path("/data/warehouse/.snapshot/base/a.txt");
+        FileStatus file = mock(FileStatus.class);
+        when(file.isDirectory()).thenReturn(false);
+        when(file.getLen()).thenReturn((long) content.length);
+        when(file.getPath()).thenReturn(filePath);
+
+        when(distributedFileSystem.makeQualified(sourcePath)).thenReturn(new Path("hdfs://ns1/data/warehouse"));
+        when(distributedFileSystem.listStatus(snapshotRoot)).thenReturn(new FileStatus[]{file});
+        when(distributedFileSystem.open(filePath)).thenReturn(new FSDataInputStream(new SeekableByteArrayInputStream(content)));
+
+        File localDir = new File(tempDir, "warehouse");
+        CopyItemTask item = new CopyItemTask("/data/warehouse", localDir.getAbsolutePath());
+        item.setSyncMode(SyncMode.SNAPSHOT_DIFF);
+        item.setSnapshotName("base");
+
+        CopyResult result;
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.BUFFERED, copyProperties)) {
+            result = hdfsCopyService.copyItem(distributedFileSystem, item, null, session);
+        }
+
+        assertThat(result.bytesCopied()).isEqualTo(content.length);
+        assertThat(Files.readAllBytes(new File(localDir, "a.txt").toPath())).isEqualTo(content);
+        assertThat(syncStateStore.getLastSnapshot(SyncStateStore.key("hdfs://ns1/data/warehouse", localDir.getAbsolutePath())))
+                .isEqualTo("base");
+        verify(distributedFileSystem, never()).createSnapshot(any(Path.class), any());
+    }
+
+    @Test
+    void copyItem_snapshotSyncIncremental_appliesDiffReport() throws Exception {
+        Path sourcePath = new Path("/data/warehouse");
+        File localDir = new File(tempDir, "warehouse");
+        Files.createDirectories(localDir.toPath());
+        Files.write(new File(localDir, "modified.txt").toPath(), "old".getBytes());
+        Files.write(new File(localDir, "deleted.txt").toPath(), "gone".getBytes());
+        Files.write(new File(localDir, "before.txt").toPath(), "moved".getBytes());
+        String stateKey = SyncStateStore.key("hdfs://ns1/data/warehouse", localDir.getAbsolutePath());
+        syncStateStore.setLastSnapshot(stateKey, "hadoop-copier-previous");
+
+        byte[] created = "created".getBytes();
+        byte[] modified = "modified".getBytes();
+        Path createdPath = new Path("/data/warehouse/.snapshot/next/created.txt");
+        Path modifiedPath = new Path("/data/warehouse/.snapshot/next/modified.txt");
+        FileStatus createdStatus = mock(FileStatus.class);
+        when(createdStatus.isDirectory()).thenReturn(false);
+        when(createdStatus.getLen()).thenReturn((long) created.length);
+        FileStatus modifiedStatus = mock(FileStatus.class);
+        when(modifiedStatus.isDirectory()).thenReturn(false);
+        when(modifiedStatus.getLen()).thenReturn((long) modified.length);
+
+        SnapshotDiffReport report = new SnapshotDiffReport("/data/warehouse", "hadoop-copier-previous", "next", List.of(
+                new SnapshotDiffReport.DiffReportEntry(SnapshotDiffReport.DiffType.MODIFY, "".getBytes()),
+                new SnapshotDiffReport.DiffReportEntry(SnapshotDiffReport.DiffType.CREATE, "created.txt".getBytes()),
+                new SnapshotDiffReport.DiffReportEntry(SnapshotDiffReport.DiffType.MODIFY, "modified.txt".getBytes()),
+                new SnapshotDiffReport.DiffReportEntry(SnapshotDiffReport.DiffType.DELETE, "deleted.txt".getBytes()),
+                new SnapshotDiffReport.DiffReportEntry(SnapshotDiffReport.DiffType.RENAME,
+                        "before.txt".getBytes(), "sub/after.txt".getBytes())));
+
+        when(distributedFileSystem.makeQualified(sourcePath)).thenReturn(new Path("hdfs://ns1/data/warehouse"));
+        when(distributedFileSystem.getSnapshotDiffReport(sourcePath, "hadoop-copier-previous", "next")).thenReturn(report);
+        when(distributedFileSystem.getFileStatus(createdPath)).thenReturn(createdStatus);
+        when(distributedFileSystem.getFileStatus(modifiedPath)).thenReturn(modifiedStatus);
+        when(distributedFileSystem.open(createdPath)).thenReturn(new FSDataInputStream(new SeekableByteArrayInputStream(created)));
+        when(distributedFileSystem.open(modifiedPath)).thenReturn(new FSDataInputStream(new SeekableByteArrayInputStream(modified)));
+
+        CopyItemTask item = new CopyItemTask("/data/warehouse", localDir.getAbsolutePath());
+        item.setSyncMode(SyncMode.SNAPSHOT_DIFF);
+        item.setSnapshotName("next");
+
+        CopyResult result;
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.BUFFERED, copyProperties)) {
+            result = hdfsCopyService.copyItem(distributedFileSystem, item, null, session);
+        }
+
+        assertThat(result.bytesCopied()).isEqualTo(created.length + modified.length);
+        assertThat(result.checksumVerified()).isTrue();
+        assertThat(Files.readAllBytes(new File(localDir, "created.txt").toPath())).isEqualTo(created);
+        assertThat(Files.readAllBytes(new File(localDir, "modified.txt").toPath())).isEqualTo(modified);
+        assertThat(new File(localDir, "deleted.txt")).doesNotExist();
+        assertThat(new File(localDir, "before.txt")).doesNotExist();
+        assertThat(Files.readAllBytes(new File(localDir, "sub/after.txt").toPath())).isEqualTo("moved".getBytes());
+        assertThat(syncStateStore.getLastSnapshot(stateKey)).isEqualTo("next");
+        verify(distributedFileSystem).deleteSnapshot(sourcePath, "hadoop-copier-previous");
+        verify(distributedFileSystem, never()).getFileStatus(new Path("/data/warehouse/.snapshot/next"));
+    }
+
+    private CopyResult syncSnapshotDiff(File localDir, SnapshotDiffReport.DiffReportEntry... entries) throws Exception {
+        Path sourcePath = new Path("/data/warehouse");
+        syncStateStore.setLastSnapshot(SyncStateStore.key("hdfs://ns1/data/warehouse", localDir.getAbsolutePath()),
+                "hadoop-copier-previous");
+        when(distributedFileSystem.makeQualified(sourcePath)).thenReturn(new Path("hdfs://ns1/data/warehouse"));
+        when(distributedFileSystem.getSnapshotDiffReport(sourcePath, "hadoop-copier-previous", "next")).thenReturn(
+                new SnapshotDiffReport("/data/warehouse", "hadoop-copier-previous", "next", List.of(entries)));
+
+        CopyItemTask item = new CopyItemTask("/data/warehouse", localDir.getAbsolutePath());
+        item.setSyncMode(SyncMode.SNAPSHOT_DIFF);
+        item.setSnapshotName("next");
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.BUFFERED, copyProperties)) {
+            return hdfsCopyService.copyItem(distributedFileSystem, item, null, session);
+        }
+    }
+
+    @Test
+    void copyItem_snapshotSyncRenamedDirectory_copiesModifiedFileReportedUnderOldPath() throws Exception {
+        File localDir = new File(tempDir, "warehouse");
+        Files.createDirectories(new File(localDir, "foo").toPath());
+        Files.write(new File(localDir, "foo/bar").toPath(), "old".getBytes());
+
+        byte[] modified = "modified".getBytes();
+        Path modifiedPath = new Path("/data/warehouse/.snapshot/next/foo2/bar");
+        FileStatus modifiedStatus = mock(FileStatus.class);
+        when(modifiedStatus.isDirectory()).thenReturn(false);
+        when(modifiedStatus.getLen()).thenReturn((long) modified.length);
+        when(distributedFileSystem.getFileStatus(modifiedPath)).thenReturn(modifiedStatus);
+        when(distributedFileSystem.open(modifiedPath))
+                .thenReturn(new FSDataInputStream(new SeekableByteArrayInputStream(modified)));
+
+        CopyResult result = syncSnapshotDiff(localDir,
+                new SnapshotDiffReport.DiffReportEntry(SnapshotDiffReport.DiffType.RENAME,
+                        "foo".getBytes(), "foo2".getBytes()),
+                new SnapshotDiffReport.DiffReportEntry(SnapshotDiffReport.DiffType.MODIFY, "foo/bar".getBytes()));
+
+        assertThat(result.bytesCopied()).isEqualTo(modified.length);
+        assertThat(new File(localDir, "foo")).doesNotExist();
+        assertThat(Files.readAllBytes(new File(localDir, "foo2/bar").toPath())).isEqualTo(modified);
+    }
+
+    @Test
+    void copyItem_snapshotSyncRenamedDirectory_deletesFileReportedUnderOldPath() throws Exception {
+        File localDir = new File(tempDir, "warehouse");
+        Files.createDirectories(new File(localDir, "foo").toPath());
+        Files.write(new File(localDir, "foo/deleted").toPath(), "gone".getBytes());
+        Files.write(new File(localDir, "foo/kept").toPath(), "kept".getBytes());
+
+        syncSnapshotDiff(localDir,
+                new SnapshotDiffReport.DiffReportEntry(SnapshotDiffReport.DiffType.RENAME,
+                        "foo".getBytes(), "foo2".getBytes()),
+                new SnapshotDiffReport.DiffReportEntry(SnapshotDiffReport.DiffType.DELETE, "foo/deleted".getBytes()));
+
+        assertThat(new File(localDir, "foo2").list()).containsExactly("kept");
+    }
+
+    @Test
+    void translate_usesLongestRenamedPrefix() {
+        Map<String, String> renamed = Map.of("a", "x", "a/b", "y/b2");
+
+        assertThat(HdfsCopyService.translate("a/b/c", renamed)).isEqualTo("y/b2/c");
+        assertThat(HdfsCopyService.translate("a/bc", renamed)).isEqualTo("x/bc");
+        assertThat(HdfsCopyService.translate("ab", renamed)).isEqualTo("ab");
+    }
+
+    @Test
+    void copyItem_snapshotSyncOnNonHdfs_throwsException() throws Exception {
+        CopyItemTask item = new CopyItemTask("/data/warehouse", new File(tempDir, "warehouse").getAbsolutePath());
+        item.setSyncMode(SyncMode.SNAPSHOT_DIFF);
+
+        try (LocalWriteSession session = new LocalWriteSession(WriteMode.BUFFERED, copyProperties)) {
+            assertThatThrownBy(() -> hdfsCopyService.copyItem(fileSystem, item, null, session))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("Snapshot sync requires an HDFS source");
+        }
+    }
+
+    /**
+     * Reads an entry of an uncompressed part through its index line (offset, skip, length, md5, name) and checks
+     * the tar header in front of it.
+     */
+    private static byte[] readIndexedEntry(byte[] archive, String indexLine, String expectedName) {
+        String[] fields = indexLine.split("\t");
+        int offset = Integer.parseInt(fields[0]);
+        assertThat(fields[1]).isEqualTo("0");
+        int length = Integer.parseInt(fields[2]);
+        assertThat(fields[4]).isEqualTo(expectedName);
+        String headerName = new String(archive, offset - TarArchiveWriter.BLOCK_SIZE, expectedName.length());
+        assertThat(headerName).isEqualTo(expectedName);
+        return Arrays.copyOfRange(archive, offset, offset + length);
+    }
+
+    /**
+     * Reads an entry of a gzip part the way the index allows: decompressing from its frame offset only.
+     */
+    private static byte[] readCompressedEntry(File part, String indexLine, String expectedName) throws IOException {
+        String[] fields = indexLine.split("\t");
+        assertThat(fields[4]).isEqualTo(expectedName);
+        try (FileInputStream raw = new FileInputStream(part)) {
+            raw.getChannel().position(Long.parseLong(fields[0]));
+            InputStream in = new GZIPInputStream(raw);
+            in.skipNBytes(Long.parseLong(fields[1]) - TarArchiveWriter.BLOCK_SIZE);
+            byte[] header = in.readNBytes(TarArchiveWriter.BLOCK_SIZE);
+            assertThat(new String(header, 0, expectedName.length())).isEqualTo(expectedName);
+            return in.readNBytes(Integer.parseInt(fields[2]));
+        }
+    }
+
     /**
      * A seekable InputStream backed by a byte array, implementing the interfaces
      * required by FSDataInputStream.
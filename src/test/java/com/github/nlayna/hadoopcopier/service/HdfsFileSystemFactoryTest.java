@@ -2,20 +2,32 @@ package com.github.nlayna.hadoopcopier.service;
 
 import com.github.nlayna.hadoopcopier.config.HadoopProperties;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.MockedStatic;
+import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.apache.hadoop.security.UserGroupInformation;
 
+import java.io.IOException;
+import java.security.PrivilegedExceptionAction;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.mockStatic;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class HdfsFileSystemFactoryTest {
 
+    @Mock
+    private KerberosCredentialManager credentialManager;
+
     private HdfsFileSystemFactory factory;
     private HadoopProperties hadoopProperties;
 
@@ -23,48 +35,77 @@ class HdfsFileSystemFactoryTest {
     void setUp() {
         hadoopProperties = new HadoopProperties();
         hadoopProperties.setConfBasedir("/test/hadoop/conf");
-        factory = new HdfsFileSystemFactory(hadoopProperties);
+        factory = new HdfsFileSystemFactory(hadoopProperties, credentialManager);
     }
 
     @Test
     void getConfiguration_createsConfigWithCorrectResources() {
-        try (MockedStatic<UserGroupInformation> ugiMock = mockStatic(UserGroupInformation.class)) {
-            ugiMock.when(() -> UserGroupInformation.setConfiguration(any())).thenAnswer(i -> null);
-            ugiMock.when(() -> UserGroupInformation.loginUserFromSubject(null)).thenAnswer(i -> null);
-
-            Configuration conf = factory.getConfiguration("ns1");
-
-            assertThat(conf).isNotNull();
-            assertThat(conf.get("fs.file.impl")).isEqualTo("org.apache.hadoop.fs.LocalFileSystem");
-            assertThat(conf.get("fs.hdfs.impl")).isEqualTo("org.apache.hadoop.hdfs.DistributedFileSystem");
-            assertThat(conf.get("hadoop.security.authentication")).isEqualTo("kerberos");
-            assertThat(conf.getBoolean("fs.hdfs.impl.disable.cache", false)).isTrue();
-        }
+        Configuration conf = factory.getConfiguration("ns1");
+
+        assertThat(conf).isNotNull();
+        assertThat(conf.get("fs.file.impl")).isEqualTo("org.apache.hadoop.fs.LocalFileSystem");
+        assertThat(conf.get("fs.hdfs.impl")).isEqualTo("org.apache.hadoop.hdfs.DistributedFileSystem");
+        assertThat(conf.get("hadoop.security.authentication")).isEqualTo("kerberos");
+        assertThat(conf.getBoolean("fs.hdfs.impl.disable.cache", false)).isTrue();
     }
 
     @Test
     void getConfiguration_cachesPerNamespace() {
-        try (MockedStatic<UserGroupInformation> ugiMock = mockStatic(UserGroupInformation.class)) {
-            ugiMock.when(() -> UserGroupInformation.setConfiguration(any())).thenAnswer(i -> null);
-            ugiMock.when(() -> UserGroupInformation.loginUserFromSubject(null)).thenAnswer(i -> null);
-
-            Configuration conf1 = factory.getConfiguration("ns1");
-            Configuration conf2 = factory.getConfiguration("ns1");
+        Configuration conf1 = factory.getConfiguration("ns1");
+        Configuration conf2 = factory.getConfiguration("ns1");
 
-            assertThat(conf1).isSameAs(conf2);
-        }
+        assertThat(conf1).isSameAs(conf2);
     }
 
     @Test
     void getConfiguration_differentNamespaces_differentConfigs() {
-        try (MockedStatic<UserGroupInformation> ugiMock = mockStatic(UserGroupInformation.class)) {
-            ugiMock.when(() -> UserGroupInformation.setConfiguration(any())).thenAnswer(i -> null);
-            ugiMock.when(() -> UserGroupInformation.loginUserFromSubject(null)).thenAnswer(i -> null);
+        Configuration conf1 = factory.getConfiguration("ns1");
+        Configuration conf2 = factory.getConfiguration("ns2");
+
+        assertThat(conf1).isNotSameAs(conf2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void createFileSystem_createsFileSystemAsNamespaceUser() throws Exception {
+        UserGroupInformation ugi = mock(UserGroupInformation.class);
+        FileSystem fs = mock(FileSystem.class);
+        when(credentialManager.getUgi(eq("ns1"), any(Configuration.class))).thenReturn(ugi);
+        when(ugi.doAs(any(PrivilegedExceptionAction.class))).thenReturn(fs);
 
-            Configuration conf1 = factory.getConfiguration("ns1");
-            Configuration conf2 = factory.getConfiguration("ns2");
+        assertThat(factory.createFileSystem("ns1")).isSameAs(fs);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void warmUp_opensClientsPingsNameNodeAndHandsThemOutFirst() throws Exception {
+        UserGroupInformation ugi = mock(UserGroupInformation.class);
+        FileSystem warm1 = mock(FileSystem.class);
+        FileSystem warm2 = mock(FileSystem.class);
+        FileSystem fresh = mock(FileSystem.class);
+        when(credentialManager.getUgi(eq("ns1"), any(Configuration.class))).thenReturn(ugi);
+        when(ugi.doAs(any(PrivilegedExceptionAction.class))).thenReturn(warm1, warm2, fresh);
+
+        factory.warmUp("ns1", 2);
+
+        verify(warm1).getFileStatus(new Path("/"));
+        assertThat(factory.createFileSystem("ns1")).isSameAs(warm1);
+        assertThat(factory.createFileSystem("ns1")).isSameAs(warm2);
+        assertThat(factory.createFileSystem("ns1")).isSameAs(fresh);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void warmUp_nameNodeUnreachable_closesClientAndThrows() throws Exception {
+        UserGroupInformation ugi = mock(UserGroupInformation.class);
+        FileSystem fs = mock(FileSystem.class);
+        when(credentialManager.getUgi(eq("ns1"), any(Configuration.class))).thenReturn(ugi);
+        when(ugi.doAs(any(PrivilegedExceptionAction.class))).thenReturn(fs);
+        when(fs.getFileStatus(new Path("/"))).thenThrow(new IOException("Connection refused"));
 
-            assertThat(conf1).isNotSameAs(conf2);
-        }
+        assertThatThrownBy(() -> factory.warmUp("ns1", 2))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Connection refused");
+        verify(fs).close();
     }
 }
@@ -0,0 +1,217 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.FileNotFoundException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HdfsMetadataClientTest {
+
+    @Mock
+    private FileSystem fileSystem;
+
+    private final AtomicLong clock = new AtomicLong();
+    private CopyProperties copyProperties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        copyProperties = new CopyProperties();
+        copyProperties.setMetadataCacheTtl(Duration.ofSeconds(5));
+        meterRegistry = new SimpleMeterRegistry();
+        lenient().when(fileSystem.getUri()).thenReturn(URI.create("hdfs://ns1"));
+    }
+
+    private HdfsMetadataClient client() {
+        return new HdfsMetadataClient(copyProperties, meterRegistry, clock::get);
+    }
+
+    @Test
+    void getFileStatus_withinTtl_isServedFromCache() throws Exception {
+        HdfsMetadataClient client = client();
+        Path path = new Path("/data/file.csv");
+        FileStatus status = new FileStatus(10, false, 3, 128, 1, path);
+        when(fileSystem.getFileStatus(path)).thenReturn(status);
+
+        assertThat(client.getFileStatus(fileSystem, path)).isSameAs(status);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(4));
+        assertThat(client.getFileStatus(fileSystem, path)).isSameAs(status);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        client.getFileStatus(fileSystem, path);
+
+        verify(fileSystem, times(2)).getFileStatus(path);
+        assertThat(meterRegistry.get("copy.metadata.cache.requests").tag("result", "hit").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("copy.namenode.calls")
+                .tags("namespace", "ns1", "operation", "getFileStatus").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void getFileStatus_missingPath_isNotCached() throws Exception {
+        HdfsMetadataClient client = client();
+        Path path = new Path("/data/late.csv");
+        when(fileSystem.getFileStatus(path))
+                .thenThrow(new FileNotFoundException("/data/late.csv"))
+                .thenReturn(new FileStatus(1, false, 3, 128, 1, path));
+
+        assertThatThrownBy(() -> client.getFileStatus(fileSystem, path)).isInstanceOf(FileNotFoundException.class);
+        assertThat(client.getFileStatus(fileSystem, path).getLen()).isEqualTo(1);
+        assertThat(client.cacheSize()).isEqualTo(1);
+    }
+
+    @Test
+    void list_withLocations_usesOneLocatedListing() throws Exception {
+        HdfsMetadataClient client = client();
+        Path dir = new Path("/data");
+        LocatedFileStatus file = new LocatedFileStatus(
+                new FileStatus(100, false, 3, 128, 0, new Path("/data/a")),
+                new BlockLocation[]{new BlockLocation(new String[]{"dn1"}, new String[]{"dn1"}, 0, 100)});
+        @SuppressWarnings("unchecked")
+        RemoteIterator<LocatedFileStatus> iterator = mock(RemoteIterator.class);
+        when(iterator.hasNext()).thenReturn(true, false);
+        when(iterator.next()).thenReturn(file);
+        when(fileSystem.listLocatedStatus(dir)).thenReturn(iterator);
+
+        assertThat(client.list(fileSystem, dir, true)).containsExactly(file);
+        assertThat(client.list(fileSystem, dir, true)).containsExactly(file);
+
+        verify(fileSystem, times(1)).listLocatedStatus(dir);
+        verify(fileSystem, never()).listStatus(dir);
+    }
+
+    @Test
+    void cache_boundedByStatusCount_evictsEldestAndSkipsLargeListings() throws Exception {
+        copyProperties.setMetadataCacheMaxStatuses(8);
+        HdfsMetadataClient client = client();
+        Path small = new Path("/data/small");
+        Path other = new Path("/data/other");
+        Path large = new Path("/data/large");
+        when(fileSystem.listStatus(small)).thenReturn(statuses(small, 2));
+        when(fileSystem.listStatus(other)).thenReturn(statuses(other, 2));
+        when(fileSystem.listStatus(large)).thenReturn(statuses(large, 3));
+
+        client.list(fileSystem, small, false);
+        client.list(fileSystem, large, false);
+        client.list(fileSystem, large, false);
+        assertThat(client.cacheSize()).isEqualTo(1);
+
+        for (int i = 0; i < 6; i++) {
+            Path file = new Path("/data/file" + i);
+            when(fileSystem.getFileStatus(file)).thenReturn(new FileStatus(1, false, 3, 128, 1, file));
+            client.getFileStatus(fileSystem, file);
+        }
+        client.list(fileSystem, other, false);
+        client.list(fileSystem, small, false);
+
+        verify(fileSystem, times(2)).listStatus(large);
+        verify(fileSystem, times(2)).listStatus(small);
+        assertThat(client.cacheSize()).isEqualTo(6);
+    }
+
+    @Test
+    void list_pagedListing_chargesOneCallPerPage() throws Exception {
+        Configuration conf = new Configuration(false);
+        conf.setInt("dfs.ls.limit", 2);
+        when(fileSystem.getConf()).thenReturn(conf);
+        Path dir = new Path("/data");
+        when(fileSystem.listStatus(dir)).thenReturn(statuses(dir, 5));
+
+        client().list(fileSystem, dir, false);
+
+        assertThat(meterRegistry.get("copy.namenode.calls")
+                .tags("namespace", "ns1", "operation", "listStatus").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void listFiles_chargesEveryDirectoryTheIteratorMovesTo() throws Exception {
+        Path root = new Path("/data");
+        @SuppressWarnings("unchecked")
+        RemoteIterator<LocatedFileStatus> iterator = mock(RemoteIterator.class);
+        when(iterator.hasNext()).thenReturn(true, true, true, false);
+        when(iterator.next()).thenReturn(located("/data/a"), located("/data/b"), located("/data/sub/c"));
+        when(fileSystem.listFiles(root, true)).thenReturn(iterator);
+
+        RemoteIterator<LocatedFileStatus> files = client().listFiles(fileSystem, root, true);
+        int count = 0;
+        while (files.hasNext()) {
+            files.next();
+            count++;
+        }
+
+        assertThat(count).isEqualTo(3);
+        assertThat(meterRegistry.get("copy.namenode.calls")
+                .tags("namespace", "ns1", "operation", "listFiles").counter().count()).isEqualTo(2);
+    }
+
+    private static FileStatus[] statuses(Path dir, int count) {
+        FileStatus[] statuses = new FileStatus[count];
+        for (int i = 0; i < count; i++) {
+            statuses[i] = new FileStatus(1, false, 3, 128, 1, new Path(dir, "f" + i));
+        }
+        return statuses;
+    }
+
+    private static LocatedFileStatus located(String path) {
+        return new LocatedFileStatus(new FileStatus(1, false, 3, 128, 1, new Path(path)), new BlockLocation[0]);
+    }
+
+    @Test
+    void disabledCache_callsNameNodeEveryTime() throws Exception {
+        copyProperties.setMetadataCacheTtl(Duration.ZERO);
+        HdfsMetadataClient client = client();
+        Path dir = new Path("/data");
+        when(fileSystem.listStatus(dir)).thenReturn(new FileStatus[0]);
+
+        client.list(fileSystem, dir, false);
+        client.list(fileSystem, dir, false);
+
+        verify(fileSystem, times(2)).listStatus(dir);
+        assertThat(client.cacheSize()).isZero();
+    }
+
+    @Test
+    void rpcBudget_overRate_delaysCalls() throws Exception {
+        copyProperties.setMetadataCacheTtl(Duration.ZERO);
+        copyProperties.setNamenodeRpcPerSecond(20);
+        HdfsMetadataClient client = new HdfsMetadataClient(copyProperties, meterRegistry);
+        Path path = new Path("/data/file.csv");
+        when(fileSystem.getFileStatus(path)).thenReturn(new FileStatus(1, false, 3, 128, 1, path));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 30; i++) {
+            client.getFileStatus(fileSystem, path);
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // a burst of 20 goes through at once, the other 10 calls are spread over half a second
+        assertThat(elapsedMs).isGreaterThanOrEqualTo(400);
+        assertThat(meterRegistry.get("copy.namenode.throttle.wait").tag("namespace", "ns1").timer().count())
+                .isEqualTo(10);
+    }
+}
@@ -0,0 +1,287 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import com.github.nlayna.hadoopcopier.model.CopyFilter;
+import com.github.nlayna.hadoopcopier.model.CopyItemTask;
+import com.github.nlayna.hadoopcopier.model.CopyResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32C;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyShort;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HdfsTransferServiceTest {
+
+    @TempDir
+    File tempDir;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    private FileSystem localFs;
+    private CopyProperties copyProperties;
+    private NamespaceGuard namespaceGuard;
+    private HdfsTransferService transferService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        localFs = FileSystem.getLocal(new Configuration()).getRawFileSystem();
+        copyProperties = new CopyProperties();
+        copyProperties.setChecksumEnabled(true);
+        copyProperties.setNamespaceMaxItems(1);
+        namespaceGuard = new NamespaceGuard(copyProperties);
+        HdfsMetadataClient metadataClient = new HdfsMetadataClient(copyProperties, new SimpleMeterRegistry());
+        transferService = new HdfsTransferService(copyProperties,
+                new PriorityLanes(executor, copyProperties, new SimpleMeterRegistry()), namespaceGuard,
+                new DataNodeScheduler(copyProperties, metadataClient),
+                new AdaptiveConcurrencyLimiter(copyProperties, new SimpleMeterRegistry()), metadataClient,
+                new BandwidthCalendar(copyProperties, new SimpleMeterRegistry()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private CopyItemTask item(File source, File target) {
+        CopyItemTask item = new CopyItemTask(source.getAbsolutePath(), null);
+        item.setTargetNamespace("ns2");
+        item.setTargetPath(target.getAbsolutePath());
+        return item;
+    }
+
+    @Test
+    void transfer_directory_streamsFilesAndRenamesIntoPlace() throws Exception {
+        File source = new File(tempDir, "source");
+        Files.createDirectories(new File(source, "sub").toPath());
+        Files.write(new File(source, "a.txt").toPath(), "first".getBytes());
+        Files.write(new File(source, "sub/b.txt").toPath(), "second file".getBytes());
+        Files.write(new File(source, "sub/skip.tmp").toPath(), "skipped".getBytes());
+        File target = new File(tempDir, "target");
+
+        CopyItemTask item = item(source, target);
+        CopyFilter filter = new CopyFilter();
+        filter.setExclude("\\.tmp$");
+        item.setFilter(filter);
+
+        CopyResult result = transferService.transfer(localFs, localFs, item, null);
+
+        assertThat(result.bytesCopied()).isEqualTo("first".length() + "second file".length());
+        assertThat(result.checksumVerified()).isTrue();
+        assertThat(Files.readString(new File(target, "a.txt").toPath())).isEqualTo("first");
+        assertThat(Files.readString(new File(target, "sub/b.txt").toPath())).isEqualTo("second file");
+        assertThat(new File(target, "sub").list()).containsExactly("b.txt");
+    }
+
+    @Test
+    void transfer_singleFile_replacesExistingTarget() throws Exception {
+        File source = new File(tempDir, "source.bin");
+        Files.write(source.toPath(), "new content".getBytes());
+        File target = new File(tempDir, "out/target.bin");
+        Files.createDirectories(target.getParentFile().toPath());
+        Files.write(target.toPath(), "old".getBytes());
+
+        CopyResult result = transferService.transfer(localFs, localFs, item(source, target), 10);
+
+        assertThat(result.bytesCopied()).isEqualTo("new content".length());
+        assertThat(Files.readString(target.toPath())).isEqualTo("new content");
+        assertThat(target.getParentFile().list()).containsExactly("target.bin");
+    }
+
+    @Test
+    void transfer_fileChecksumMismatch_removesTemporaryFile() throws Exception {
+        File source = new File(tempDir, "source.bin");
+        Files.write(source.toPath(), "payload".getBytes());
+        File target = new File(tempDir, "out/target.bin");
+
+        FileSystem sourceFs = spy(localFs);
+        FileSystem targetFs = spy(localFs);
+        doReturn(new TestChecksum(new byte[]{1})).when(sourceFs).getFileChecksum(any(Path.class));
+        doReturn(new TestChecksum(new byte[]{2})).when(targetFs).getFileChecksum(any(Path.class));
+
+        assertThatThrownBy(() -> transferService.transfer(sourceFs, targetFs, item(source, target), null))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Checksum mismatch");
+        assertThat(target.getParentFile().list()).isEmpty();
+    }
+
+    @Test
+    void upload_directory_writesWithRequestedLayout() throws Exception {
+        File source = new File(tempDir, "local");
+        Files.createDirectories(source.toPath());
+        for (int i = 0; i < 5; i++) {
+            Files.write(new File(source, "part-" + i).toPath(), ("content " + i).getBytes());
+        }
+        File target = new File(tempDir, "hdfs/upload");
+        FileSystem targetFs = spy(localFs);
+
+        CopyItemTask item = new CopyItemTask(target.getAbsolutePath(), source.getAbsolutePath());
+        CopyResult result = transferService.upload(targetFs, item, null,
+                new HdfsTransferService.Layout(256L * 1024 * 1024, (short) 2, false));
+
+        assertThat(result.bytesCopied()).isEqualTo(5 * "content 0".length());
+        assertThat(result.checksumVerified()).isTrue();
+        assertThat(target.list()).containsExactlyInAnyOrder("part-0", "part-1", "part-2", "part-3", "part-4");
+        assertThat(Files.readString(new File(target, "part-3").toPath())).isEqualTo("content 3");
+        verify(targetFs, times(5)).create(any(Path.class), eq(true), anyInt(), eq((short) 2), eq(256L * 1024 * 1024));
+    }
+
+    @Test
+    void upload_targetCompositeCrc_verifiesWithoutReadingTargetBack() throws Exception {
+        File source = new File(tempDir, "source.bin");
+        Files.write(source.toPath(), "payload".getBytes());
+        File target = new File(tempDir, "hdfs/target.bin");
+        CRC32C crc = new CRC32C();
+        crc.update("payload".getBytes());
+        FileSystem targetFs = spy(localFs);
+        doReturn(new TestChecksum(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array()))
+                .when(targetFs).getFileChecksum(any(Path.class));
+
+        CopyItemTask item = new CopyItemTask(target.getAbsolutePath(), source.getAbsolutePath());
+        CopyResult result = transferService.upload(targetFs, item, null, new HdfsTransferService.Layout(null, null, false));
+
+        assertThat(result.checksumVerified()).isTrue();
+        assertThat(Files.readString(target.toPath())).isEqualTo("payload");
+        verify(targetFs, never()).open(any(Path.class));
+    }
+
+    @Test
+    void upload_targetCompositeCrcMismatch_removesTemporaryFile() throws Exception {
+        File source = new File(tempDir, "source.bin");
+        Files.write(source.toPath(), "payload".getBytes());
+        File target = new File(tempDir, "hdfs/target.bin");
+        FileSystem targetFs = spy(localFs);
+        doReturn(new TestChecksum(new byte[]{0, 0, 0, 1})).when(targetFs).getFileChecksum(any(Path.class));
+
+        CopyItemTask item = new CopyItemTask(target.getAbsolutePath(), source.getAbsolutePath());
+        assertThatThrownBy(() -> transferService.upload(targetFs, item, null,
+                new HdfsTransferService.Layout(null, null, false)))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Checksum mismatch");
+        assertThat(target.getParentFile().list()).isEmpty();
+    }
+
+    @Test
+    void upload_toHdfs_replacesTargetWithOverwritingRename() throws Exception {
+        File source = new File(tempDir, "source.bin");
+        Files.write(source.toPath(), "payload".getBytes());
+        Path target = new Path("/data/out/target.bin");
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        DistributedFileSystem targetFs = mock(DistributedFileSystem.class);
+        when(targetFs.getUri()).thenReturn(URI.create("hdfs://ns2"));
+        when(targetFs.create(any(Path.class), eq(true), anyInt(), anyShort(), anyLong()))
+                .thenReturn(new FSDataOutputStream(written, null));
+        when(targetFs.open(any(Path.class))).thenAnswer(invocation -> localFs.open(new Path(source.getAbsolutePath())));
+
+        CopyItemTask item = new CopyItemTask(target.toString(), source.getAbsolutePath());
+        transferService.upload(targetFs, item, null, new HdfsTransferService.Layout(null, null, false));
+
+        assertThat(written.toString()).isEqualTo("payload");
+        verify(targetFs).rename(target.suffix(HdfsTransferService.TEMP_SUFFIX), target, Options.Rename.OVERWRITE);
+        verify(targetFs, never()).delete(any(Path.class), anyBoolean());
+    }
+
+    @Test
+    void upload_fullBulkhead_copiesOnTheItemThreadOnly() throws Exception {
+        File source = new File(tempDir, "local");
+        Files.createDirectories(source.toPath());
+        for (int i = 0; i < 5; i++) {
+            Files.write(new File(source, "part-" + i).toPath(), ("content " + i).getBytes());
+        }
+        File target = new File(tempDir, "hdfs/upload");
+        // the item itself holds the only slot of the namespace
+        assertThat(namespaceGuard.tryEnter("file", () -> { })).isEqualTo(NamespaceGuard.Decision.ADMIT);
+        Set<Thread> writers = ConcurrentHashMap.newKeySet();
+        FileSystem targetFs = spy(localFs);
+        doAnswer(invocation -> {
+            writers.add(Thread.currentThread());
+            return invocation.callRealMethod();
+        }).when(targetFs).create(any(Path.class), anyBoolean(), anyInt(), anyShort(), anyLong());
+
+        CopyItemTask item = new CopyItemTask(target.getAbsolutePath(), source.getAbsolutePath());
+        CopyResult result = transferService.upload(targetFs, item, null, new HdfsTransferService.Layout(null, null, false));
+
+        assertThat(result.bytesCopied()).isEqualTo(5 * "content 0".length());
+        assertThat(writers).containsExactly(Thread.currentThread());
+        namespaceGuard.release("file", null);
+        assertThat(namespaceGuard.tryEnterHelper("file")).isTrue();
+    }
+
+    @Test
+    void transfer_missingSource_throwsException() {
+        File source = new File(tempDir, "missing");
+
+        assertThatThrownBy(() -> transferService.transfer(localFs, localFs, item(source, new File(tempDir, "t")), null))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Source path does not exist");
+    }
+
+    private static final class TestChecksum extends FileChecksum {
+        private final byte[] bytes;
+
+        private TestChecksum(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String getAlgorithmName() {
+            return "COMPOSITE-CRC32C";
+        }
+
+        @Override
+        public int getLength() {
+            return bytes.length;
+        }
+
+        @Override
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public void write(DataOutput out) throws IOException {
+            out.write(bytes);
+        }
+
+        @Override
+        public void readFields(DataInput in) {
+        }
+    }
+}
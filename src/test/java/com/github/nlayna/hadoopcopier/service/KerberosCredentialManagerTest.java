@@ -0,0 +1,118 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.HadoopProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.verify;
+
+class KerberosCredentialManagerTest {
+
+    private final Configuration conf = new Configuration(false);
+    private HadoopProperties hadoopProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private KerberosCredentialManager manager;
+    private MockedStatic<UserGroupInformation> ugiMock;
+
+    @BeforeEach
+    void setUp() {
+        hadoopProperties = new HadoopProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        manager = new KerberosCredentialManager(hadoopProperties, meterRegistry);
+        ugiMock = mockStatic(UserGroupInformation.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ugiMock.close();
+    }
+
+    @Test
+    void getUgi_defaultKeytab_logsInOncePerPrincipal() throws Exception {
+        hadoopProperties.setPrincipal("copier@REALM");
+        hadoopProperties.setKeytab("/etc/copier.keytab");
+        UserGroupInformation ugi = mock(UserGroupInformation.class);
+        ugiMock.when(() -> UserGroupInformation.loginUserFromKeytabAndReturnUGI("copier@REALM", "/etc/copier.keytab"))
+                .thenReturn(ugi);
+
+        assertThat(manager.getUgi("ns1", conf)).isSameAs(ugi);
+        assertThat(manager.getUgi("ns2", conf)).isSameAs(ugi);
+
+        ugiMock.verify(() -> UserGroupInformation.loginUserFromKeytabAndReturnUGI(any(), any()));
+        ugiMock.verify(() -> UserGroupInformation.setConfiguration(conf));
+        assertThat(manager.sessionCount()).isEqualTo(1);
+        assertThat(meterRegistry.get("hadoop.kerberos.login").tag("outcome", "success").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void getUgi_namespaceCredentials_overrideDefault() throws Exception {
+        hadoopProperties.setPrincipal("copier@REALM");
+        hadoopProperties.setKeytab("/etc/copier.keytab");
+        HadoopProperties.KerberosCredentials ns2 = new HadoopProperties.KerberosCredentials();
+        ns2.setPrincipal("copier@OTHER");
+        ns2.setKeytab("/etc/other.keytab");
+        hadoopProperties.getCredentials().put("ns2", ns2);
+        UserGroupInformation defaultUgi = mock(UserGroupInformation.class);
+        UserGroupInformation otherUgi = mock(UserGroupInformation.class);
+        ugiMock.when(() -> UserGroupInformation.loginUserFromKeytabAndReturnUGI("copier@REALM", "/etc/copier.keytab"))
+                .thenReturn(defaultUgi);
+        ugiMock.when(() -> UserGroupInformation.loginUserFromKeytabAndReturnUGI("copier@OTHER", "/etc/other.keytab"))
+                .thenReturn(otherUgi);
+
+        assertThat(manager.getUgi("ns1", conf)).isSameAs(defaultUgi);
+        assertThat(manager.getUgi("ns2", conf)).isSameAs(otherUgi);
+        assertThat(manager.sessionCount()).isEqualTo(2);
+    }
+
+    @Test
+    void getUgi_noKeytab_usesLoginUserFromTicketCache() throws Exception {
+        UserGroupInformation loginUser = mock(UserGroupInformation.class);
+        ugiMock.when(UserGroupInformation::getLoginUser).thenReturn(loginUser);
+
+        assertThat(manager.getUgi("ns1", conf)).isSameAs(loginUser);
+
+        ugiMock.verify(() -> UserGroupInformation.loginUserFromSubject(null));
+    }
+
+    @Test
+    void getUgi_loginFails_throwsAndRecordsFailure() {
+        hadoopProperties.setPrincipal("copier@REALM");
+        hadoopProperties.setKeytab("/etc/missing.keytab");
+        ugiMock.when(() -> UserGroupInformation.loginUserFromKeytabAndReturnUGI(any(), any()))
+                .thenThrow(new IOException("keytab not found"));
+
+        assertThatThrownBy(() -> manager.getUgi("ns1", conf))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Kerberos authentication failed for copier@REALM");
+        assertThat(meterRegistry.get("hadoop.kerberos.login").tag("outcome", "failure").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void renewAll_reloginFails_countsFailureAndKeepsSession() throws Exception {
+        hadoopProperties.setPrincipal("copier@REALM");
+        hadoopProperties.setKeytab("/etc/copier.keytab");
+        UserGroupInformation ugi = mock(UserGroupInformation.class);
+        ugiMock.when(() -> UserGroupInformation.loginUserFromKeytabAndReturnUGI(any(), any())).thenReturn(ugi);
+        doThrow(new IOException("KDC unreachable")).when(ugi).checkTGTAndReloginFromKeytab();
+        manager.getUgi("ns1", conf);
+
+        manager.renewAll();
+
+        verify(ugi).checkTGTAndReloginFromKeytab();
+        assertThat(meterRegistry.get("hadoop.kerberos.renewal.failures").counter().count()).isEqualTo(1);
+        assertThat(manager.getUgi("ns1", conf)).isSameAs(ugi);
+    }
+}
@@ -0,0 +1,212 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import com.github.nlayna.hadoopcopier.model.CopyResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LocalContentCacheTest {
+
+    @Mock
+    private FileSystem fileSystem;
+
+    @TempDir
+    File tempDir;
+
+    private CopyProperties copyProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private final AtomicInteger downloads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        copyProperties = new CopyProperties();
+        copyProperties.setCacheDir(new File(tempDir, "cache").getAbsolutePath());
+        meterRegistry = new SimpleMeterRegistry();
+        when(fileSystem.getUri()).thenReturn(URI.create("hdfs://ns1"));
+    }
+
+    private LocalContentCache.Loader loader(String content) {
+        return target -> {
+            downloads.incrementAndGet();
+            Files.writeString(target.toPath(), content);
+            return new CopyResult(content.length(), true);
+        };
+    }
+
+    private static FileStatus status(String path, long length, long mtime) {
+        return new FileStatus(length, false, 1, 128, mtime, new Path(path));
+    }
+
+    @Test
+    void fetch_secondRequest_isServedByHardlink() throws Exception {
+        LocalContentCache cache = new LocalContentCache(copyProperties, meterRegistry);
+        Path source = new Path("/data/popular.csv");
+        File first = new File(tempDir, "team-a.csv");
+        File second = new File(tempDir, "team-b.csv");
+
+        cache.fetch(fileSystem, source, status("/data/popular.csv", 5, 100), first, loader("hello"));
+        CopyResult result = cache.fetch(fileSystem, source, status("/data/popular.csv", 5, 100), second,
+                loader("hello"));
+
+        assertThat(downloads).hasValue(1);
+        assertThat(result).isEqualTo(new CopyResult(5, true));
+        assertThat(second).hasContent("hello");
+        assertThat(Files.isSameFile(first.toPath(), second.toPath())).isTrue();
+        assertThat(meterRegistry.get("copy.cache.requests").tag("result", "hit").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("copy.cache.bytes.saved").counter().count()).isEqualTo(5);
+        assertThat(meterRegistry.get("copy.cache.hit.ratio").gauge().value()).isEqualTo(0.5);
+    }
+
+    @Test
+    void fetch_changedSource_downloadsAgain() throws Exception {
+        LocalContentCache cache = new LocalContentCache(copyProperties, meterRegistry);
+        Path source = new Path("/data/file.csv");
+
+        cache.fetch(fileSystem, source, status("/data/file.csv", 3, 100), new File(tempDir, "a"), loader("old"));
+        cache.fetch(fileSystem, source, status("/data/file.csv", 3, 200), new File(tempDir, "b"), loader("new"));
+
+        assertThat(downloads).hasValue(2);
+        assertThat(new File(tempDir, "a")).hasContent("old");
+        assertThat(new File(tempDir, "b")).hasContent("new");
+    }
+
+    @Test
+    void fetch_concurrentRequests_shareOneDownload() throws Exception {
+        LocalContentCache cache = new LocalContentCache(copyProperties, meterRegistry);
+        Path source = new Path("/data/big.bin");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        LocalContentCache.Loader slowLoader = target -> {
+            downloads.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Files.writeString(target.toPath(), "payload");
+            return new CopyResult(7, true);
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            CompletableFuture<?>[] requests = new CompletableFuture<?>[3];
+            for (int i = 0; i < requests.length; i++) {
+                File localFile = new File(tempDir, "copy-" + i);
+                requests[i] = CompletableFuture.runAsync(() -> {
+                    try {
+                        cache.fetch(fileSystem, source, status("/data/big.bin", 7, 1), localFile, slowLoader);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }, executor);
+            }
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            Thread.sleep(100);
+            release.countDown();
+            CompletableFuture.allOf(requests).get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(downloads).hasValue(1);
+        for (int i = 0; i < 3; i++) {
+            assertThat(new File(tempDir, "copy-" + i)).hasContent("payload");
+        }
+    }
+
+    @Test
+    void fetch_failedDownload_isNotCached() throws Exception {
+        LocalContentCache cache = new LocalContentCache(copyProperties, meterRegistry);
+        Path source = new Path("/data/file.csv");
+        LocalContentCache.Loader failing = target -> {
+            throw new IOException("Connection reset");
+        };
+
+        assertThatThrownBy(() -> cache.fetch(fileSystem, source, status("/data/file.csv", 2, 1),
+                new File(tempDir, "a"), failing))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Connection reset");
+        cache.fetch(fileSystem, source, status("/data/file.csv", 2, 1), new File(tempDir, "a"), loader("ok"));
+
+        assertThat(downloads).hasValue(1);
+        assertThat(cache.entryCount()).isEqualTo(1);
+        assertThat(new File(copyProperties.getCacheDir()).list()).hasSize(1);
+    }
+
+    @Test
+    void fetch_overCapacity_evictsLeastRecentlyUsed() throws Exception {
+        copyProperties.setCacheMaxBytes(10);
+        LocalContentCache cache = new LocalContentCache(copyProperties, meterRegistry);
+
+        cache.fetch(fileSystem, new Path("/a"), status("/a", 4, 1), new File(tempDir, "a"), loader("aaaa"));
+        cache.fetch(fileSystem, new Path("/b"), status("/b", 4, 1), new File(tempDir, "b"), loader("bbbb"));
+        cache.fetch(fileSystem, new Path("/a"), status("/a", 4, 1), new File(tempDir, "a2"), loader("aaaa"));
+        cache.fetch(fileSystem, new Path("/c"), status("/c", 4, 1), new File(tempDir, "c"), loader("cccc"));
+        cache.fetch(fileSystem, new Path("/b"), status("/b", 4, 1), new File(tempDir, "b2"), loader("bbbb"));
+
+        assertThat(downloads).hasValue(4);
+        assertThat(cache.sizeBytes()).isLessThanOrEqualTo(10);
+        assertThat(new File(tempDir, "b")).hasContent("bbbb");
+    }
+
+    @Test
+    void constructor_reloadsExistingEntries() throws Exception {
+        new LocalContentCache(copyProperties, meterRegistry)
+                .fetch(fileSystem, new Path("/a"), status("/a", 4, 1), new File(tempDir, "a"), loader("aaaa"));
+
+        LocalContentCache restarted = new LocalContentCache(copyProperties, new SimpleMeterRegistry());
+        CopyResult result = restarted.fetch(fileSystem, new Path("/a"), status("/a", 4, 1),
+                new File(tempDir, "a2"), loader("aaaa"));
+
+        assertThat(downloads).hasValue(1);
+        assertThat(result).isEqualTo(new CopyResult(4, false));
+        assertThat(restarted.sizeBytes()).isEqualTo(4);
+    }
+
+    @Test
+    void constructor_entryWithStoredDigest_staysVerified() throws Exception {
+        LocalContentCache.Loader verifying = target -> {
+            downloads.incrementAndGet();
+            Files.writeString(target.toPath(), "aaaa");
+            FileDigests.store(target.toPath(), new byte[16]);
+            return new CopyResult(4, true);
+        };
+        new LocalContentCache(copyProperties, meterRegistry)
+                .fetch(fileSystem, new Path("/a"), status("/a", 4, 1), new File(tempDir, "a"), verifying);
+        assumeTrue(FileDigests.load(new File(tempDir, "a").toPath()) != null, "user xattrs not supported here");
+
+        CopyResult result = new LocalContentCache(copyProperties, new SimpleMeterRegistry())
+                .fetch(fileSystem, new Path("/a"), status("/a", 4, 1), new File(tempDir, "a2"), loader("aaaa"));
+
+        assertThat(downloads).hasValue(1);
+        assertThat(result.bytesCopied()).isEqualTo(4);
+        assertThat(result.checksumVerified()).isTrue();
+        assertThat(result.md5()).isEqualTo(new byte[16]);
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LocalDiskSelectorTest {
+
+    @TempDir
+    File tempDir;
+
+    private LocalDiskSelector selector(File... roots) {
+        for (File root : roots) {
+            root.mkdirs();
+        }
+        CopyProperties copyProperties = new CopyProperties();
+        copyProperties.setLocalDataRoots(Arrays.stream(roots).map(File::getAbsolutePath).toList());
+        return new LocalDiskSelector(copyProperties);
+    }
+
+    @Test
+    void place_withoutRoots_writesInPlace() throws Exception {
+        LocalDiskSelector selector = selector();
+        File logical = new File(tempDir, "file.bin");
+
+        try (LocalDiskSelector.Placement placement = selector.place(logical, 10)) {
+            assertThat(placement.getFile()).isEqualTo(logical);
+            placement.link();
+        }
+
+        assertThat(selector.isEnabled()).isFalse();
+        assertThat(Files.exists(logical.toPath())).isFalse();
+    }
+
+    @Test
+    void place_concurrentWrites_spreadAcrossRoots() throws Exception {
+        File disk1 = new File(tempDir, "disk1");
+        File disk2 = new File(tempDir, "disk2");
+        LocalDiskSelector selector = selector(disk1, disk2);
+
+        try (LocalDiskSelector.Placement first = selector.place(new File(tempDir, "out/a"), 1);
+             LocalDiskSelector.Placement second = selector.place(new File(tempDir, "out/b"), 1)) {
+            List<String> roots = List.of(
+                    first.getFile().getAbsolutePath().startsWith(disk1.getAbsolutePath()) ? "disk1" : "disk2",
+                    second.getFile().getAbsolutePath().startsWith(disk1.getAbsolutePath()) ? "disk1" : "disk2");
+            assertThat(roots).containsExactlyInAnyOrder("disk1", "disk2");
+            assertThat(first.getFile().getParentFile()).isDirectory();
+        }
+    }
+
+    @Test
+    void place_releasedRoot_isReusedFirst() throws Exception {
+        File disk1 = new File(tempDir, "disk1");
+        File disk2 = new File(tempDir, "disk2");
+        LocalDiskSelector selector = selector(disk1, disk2);
+
+        File firstRoot;
+        try (LocalDiskSelector.Placement held = selector.place(new File(tempDir, "out/a"), 1)) {
+            firstRoot = held.getFile().getAbsolutePath().startsWith(disk1.getAbsolutePath()) ? disk1 : disk2;
+            try (LocalDiskSelector.Placement other = selector.place(new File(tempDir, "out/b"), 1)) {
+                assertThat(other.getFile().getAbsolutePath()).doesNotStartWith(firstRoot.getAbsolutePath());
+            }
+        }
+        assertThat(selector.getUsableSpace()).isPositive();
+    }
+
+    @Test
+    void place_insufficientSpace_throwsException() {
+        LocalDiskSelector selector = selector(new File(tempDir, "disk1"));
+
+        assertThatThrownBy(() -> selector.place(new File(tempDir, "out/a"), Long.MAX_VALUE))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("No local data root");
+    }
+
+    @Test
+    void link_replacesExistingLogicalFile() throws Exception {
+        File disk1 = new File(tempDir, "disk1");
+        LocalDiskSelector selector = selector(disk1);
+        File logical = new File(tempDir, "out/a");
+        logical.getParentFile().mkdirs();
+        Files.writeString(logical.toPath(), "stale");
+
+        try (LocalDiskSelector.Placement placement = selector.place(logical, 1)) {
+            Files.writeString(placement.getFile().toPath(), "fresh");
+            placement.link();
+        }
+
+        assertThat(Files.isSymbolicLink(logical.toPath())).isTrue();
+        assertThat(Files.readString(logical.toPath())).isEqualTo("fresh");
+    }
+
+    @Test
+    void link_relinkToOtherRoot_deletesPreviousCopy() throws Exception {
+        File disk1 = new File(tempDir, "disk1");
+        File disk2 = new File(tempDir, "disk2");
+        LocalDiskSelector selector = selector(disk1, disk2);
+        File logical = new File(tempDir, "out/a");
+        logical.getParentFile().mkdirs();
+
+        try (LocalDiskSelector.Placement first = selector.place(logical, 1)) {
+            Files.writeString(first.getFile().toPath(), "old");
+            first.link();
+            try (LocalDiskSelector.Placement second = selector.place(logical, 1)) {
+                assertThat(second.getFile()).isNotEqualTo(first.getFile());
+                Files.writeString(second.getFile().toPath(), "new");
+                second.link();
+            }
+            assertThat(first.getFile()).doesNotExist();
+        }
+
+        assertThat(Files.readString(logical.toPath())).isEqualTo("new");
+    }
+}
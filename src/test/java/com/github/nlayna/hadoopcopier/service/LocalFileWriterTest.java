@@ -0,0 +1,96 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalFileWriterTest {
+
+    @TempDir
+    File tempDir;
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(7).nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    void buffered_existingLongerFile_isReplaced() throws Exception {
+        File file = new File(tempDir, "buffered.bin");
+        Files.write(file.toPath(), randomBytes(10_000));
+        byte[] data = randomBytes(1000);
+
+        try (LocalFileWriter writer = LocalFileWriter.buffered(file, false)) {
+            writer.write(data, 0, data.length);
+            assertThat(writer.getBytesWritten()).isEqualTo(1000);
+        }
+
+        assertThat(Files.readAllBytes(file.toPath())).isEqualTo(data);
+    }
+
+    @Test
+    void buffered_hardlinkedFile_leavesOtherLinksUntouched() throws Exception {
+        byte[] cached = randomBytes(1000);
+        File cacheEntry = new File(tempDir, "cache.bin");
+        Files.write(cacheEntry.toPath(), cached);
+        File file = new File(tempDir, "target.bin");
+        Files.createLink(file.toPath(), cacheEntry.toPath());
+        byte[] data = "rewritten".getBytes();
+
+        try (LocalFileWriter writer = LocalFileWriter.buffered(file, false)) {
+            writer.write(data, 0, data.length);
+        }
+
+        assertThat(Files.readAllBytes(file.toPath())).isEqualTo(data);
+        assertThat(Files.readAllBytes(cacheEntry.toPath())).isEqualTo(cached);
+    }
+
+    @Test
+    void direct_unalignedLength_padsAndTrims() throws Exception {
+        File file = new File(tempDir, "direct.bin");
+        byte[] data = randomBytes(3 * 1024 * 1024 + 17);
+
+        try (LocalFileWriter writer = LocalFileWriter.direct(file)) {
+            int offset = 0;
+            while (offset < data.length) {
+                int chunk = Math.min(64 * 1024, data.length - offset);
+                writer.write(data, offset, chunk);
+                offset += chunk;
+            }
+        }
+
+        assertThat(file.length()).isEqualTo(data.length);
+        assertThat(Files.readAllBytes(file.toPath())).isEqualTo(data);
+    }
+
+    @Test
+    void direct_emptyFile_createsEmptyFile() throws Exception {
+        File file = new File(tempDir, "empty.bin");
+
+        try (LocalFileWriter ignored = LocalFileWriter.direct(file)) {
+            // nothing to write
+        }
+
+        assertThat(file).exists();
+        assertThat(file.length()).isZero();
+    }
+
+    @Test
+    void buffered_overwritesExistingFile() throws Exception {
+        File file = new File(tempDir, "existing.bin");
+        Files.write(file.toPath(), randomBytes(5000));
+        byte[] data = "short".getBytes();
+
+        try (LocalFileWriter writer = LocalFileWriter.buffered(file, true)) {
+            writer.write(data, 0, data.length);
+        }
+
+        assertThat(Files.readAllBytes(file.toPath())).isEqualTo(data);
+    }
+}
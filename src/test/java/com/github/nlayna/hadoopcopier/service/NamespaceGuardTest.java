@@ -0,0 +1,128 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NamespaceGuardTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger wakeUps = new AtomicInteger();
+    private CopyProperties copyProperties;
+
+    @BeforeEach
+    void setUp() {
+        copyProperties = new CopyProperties();
+        copyProperties.setBreakerFailureThreshold(3);
+        copyProperties.setBreakerOpenDuration(Duration.ofSeconds(30));
+    }
+
+    private NamespaceGuard guard() {
+        return new NamespaceGuard(copyProperties, clock::get);
+    }
+
+    private NamespaceGuard.Decision enter(NamespaceGuard guard, String namespace) {
+        return guard.tryEnter(namespace, wakeUps::incrementAndGet);
+    }
+
+    @Test
+    void bulkhead_fullNamespace_waitsWithoutBlockingOthers() {
+        copyProperties.setNamespaceMaxItems(2);
+        NamespaceGuard guard = guard();
+
+        assertThat(enter(guard, "ns1")).isEqualTo(NamespaceGuard.Decision.ADMIT);
+        assertThat(enter(guard, "ns1")).isEqualTo(NamespaceGuard.Decision.ADMIT);
+        assertThat(enter(guard, "ns1")).isEqualTo(NamespaceGuard.Decision.WAIT);
+        assertThat(enter(guard, "ns2")).isEqualTo(NamespaceGuard.Decision.ADMIT);
+
+        guard.release("ns1", null);
+
+        assertThat(wakeUps).hasValue(1);
+        assertThat(enter(guard, "ns1")).isEqualTo(NamespaceGuard.Decision.ADMIT);
+    }
+
+    @Test
+    void helpers_takeBulkheadSlotsWithoutWaiting() {
+        copyProperties.setNamespaceMaxItems(2);
+        NamespaceGuard guard = guard();
+
+        assertThat(enter(guard, "ns1")).isEqualTo(NamespaceGuard.Decision.ADMIT);
+        assertThat(guard.tryEnterHelper("ns1")).isTrue();
+        assertThat(guard.tryEnterHelper("ns1")).isFalse();
+        assertThat(enter(guard, "ns1")).isEqualTo(NamespaceGuard.Decision.WAIT);
+
+        guard.leaveHelper("ns1");
+
+        assertThat(wakeUps).hasValue(1);
+        assertThat(enter(guard, "ns1")).isEqualTo(NamespaceGuard.Decision.ADMIT);
+    }
+
+    @Test
+    void breaker_opensAfterConsecutiveConnectivityFailures() {
+        NamespaceGuard guard = guard();
+
+        for (int i = 0; i < 3; i++) {
+            enter(guard, "ns1");
+            guard.release("ns1", new IOException("Call failed", new SocketTimeoutException("read timed out")));
+        }
+
+        assertThat(guard.state("ns1")).isEqualTo(NamespaceGuard.State.OPEN);
+        assertThat(enter(guard, "ns1")).isEqualTo(NamespaceGuard.Decision.REJECT);
+        assertThat(enter(guard, "ns2")).isEqualTo(NamespaceGuard.Decision.ADMIT);
+        assertThat(guard.snapshot().get("ns1")).containsEntry("state", NamespaceGuard.State.OPEN)
+                .containsEntry("consecutiveFailures", 3);
+    }
+
+    @Test
+    void breaker_ignoresPathErrorsAndResetsOnSuccess() {
+        NamespaceGuard guard = guard();
+
+        for (int i = 0; i < 5; i++) {
+            enter(guard, "ns1");
+            guard.release("ns1", new FileNotFoundException("/data/missing"));
+        }
+        enter(guard, "ns1");
+        guard.release("ns1", new ConnectException("Connection refused"));
+        enter(guard, "ns1");
+        guard.release("ns1", null);
+        enter(guard, "ns1");
+        guard.release("ns1", new ConnectException("Connection refused"));
+
+        assertThat(guard.state("ns1")).isEqualTo(NamespaceGuard.State.CLOSED);
+    }
+
+    @Test
+    void halfOpen_probeOutcomeDecidesState() {
+        NamespaceGuard guard = guard();
+        for (int i = 0; i < 3; i++) {
+            enter(guard, "ns1");
+            guard.release("ns1", new ConnectException("Connection refused"));
+        }
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertThat(enter(guard, "ns1")).isEqualTo(NamespaceGuard.Decision.ADMIT);
+        assertThat(guard.state("ns1")).isEqualTo(NamespaceGuard.State.HALF_OPEN);
+        assertThat(enter(guard, "ns1")).isEqualTo(NamespaceGuard.Decision.WAIT);
+
+        guard.release("ns1", new ConnectException("Connection refused"));
+        assertThat(guard.state("ns1")).isEqualTo(NamespaceGuard.State.OPEN);
+        assertThat(wakeUps).hasValue(1);
+        assertThat(enter(guard, "ns1")).isEqualTo(NamespaceGuard.Decision.REJECT);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertThat(enter(guard, "ns1")).isEqualTo(NamespaceGuard.Decision.ADMIT);
+        guard.release("ns1", null);
+        assertThat(guard.state("ns1")).isEqualTo(NamespaceGuard.State.CLOSED);
+    }
+}
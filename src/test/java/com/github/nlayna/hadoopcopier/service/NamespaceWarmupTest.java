@@ -0,0 +1,76 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.HadoopProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class NamespaceWarmupTest {
+
+    @Mock
+    private HdfsFileSystemFactory fileSystemFactory;
+
+    private HadoopProperties hadoopProperties;
+    private ExecutorService executor;
+    private NamespaceWarmup warmup;
+
+    @BeforeEach
+    void setUp() {
+        hadoopProperties = new HadoopProperties();
+        hadoopProperties.setWarmupClients(3);
+        executor = Executors.newFixedThreadPool(2);
+        warmup = new NamespaceWarmup(fileSystemFactory, hadoopProperties, executor);
+    }
+
+    @Test
+    void run_noNamespaces_doesNothing() {
+        warmup.run(null);
+
+        verifyNoInteractions(fileSystemFactory);
+    }
+
+    @Test
+    void run_warmsUpAllNamespacesAndToleratesFailures() throws Exception {
+        hadoopProperties.setWarmupNamespaces(List.of("ns1", "ns2"));
+        doThrow(new IOException("KDC unreachable")).when(fileSystemFactory).warmUp("ns2", 3);
+
+        warmup.run(null);
+
+        verify(fileSystemFactory).warmUp("ns1", 3);
+        verify(fileSystemFactory).warmUp("ns2", 3);
+    }
+
+    @Test
+    void run_slowNamespace_returnsAfterTimeout() throws Exception {
+        hadoopProperties.setWarmupNamespaces(List.of("ns1"));
+        hadoopProperties.setWarmupTimeout(Duration.ofMillis(100));
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(fileSystemFactory).warmUp("ns1", 3);
+
+        long startTime = System.currentTimeMillis();
+        warmup.run(null);
+
+        assertThat(System.currentTimeMillis() - startTime).isLessThan(5_000);
+        release.countDown();
+        executor.shutdown();
+    }
+}
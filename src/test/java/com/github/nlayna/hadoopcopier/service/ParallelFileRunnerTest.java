@@ -0,0 +1,89 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.model.CopyResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ParallelFileRunnerTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void run_jobs_usesHelperThreadsAndSumsResults() throws Exception {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        List<ParallelFileRunner.FileJob> jobs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            jobs.add(() -> {
+                threads.add(Thread.currentThread().getName());
+                LockSupport.parkNanos(10_000_000);
+                return new CopyResult(10, true);
+            });
+        }
+
+        CopyResult result = ParallelFileRunner.run(jobs, executor, 4);
+
+        assertThat(result.bytesCopied()).isEqualTo(200);
+        assertThat(result.checksumVerified()).isTrue();
+        assertThat(threads).hasSizeGreaterThan(1).contains(Thread.currentThread().getName());
+    }
+
+    @Test
+    void run_rejectingExecutor_runsEverythingOnCaller() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        List<ParallelFileRunner.FileJob> jobs = List.of(
+                () -> new CopyResult(runs.incrementAndGet(), true),
+                () -> new CopyResult(runs.incrementAndGet(), false));
+
+        CopyResult result = ParallelFileRunner.run(jobs, command -> {
+            throw new RejectedExecutionException("saturated");
+        }, 4);
+
+        assertThat(runs).hasValue(2);
+        assertThat(result.bytesCopied()).isEqualTo(3);
+        assertThat(result.checksumVerified()).isFalse();
+    }
+
+    @Test
+    void run_failingJob_stopsBatchAndRethrows() {
+        AtomicInteger runs = new AtomicInteger();
+        List<ParallelFileRunner.FileJob> jobs = new ArrayList<>();
+        jobs.add(() -> {
+            throw new IOException("disk full");
+        });
+        for (int i = 0; i < 10; i++) {
+            jobs.add(() -> new CopyResult(runs.incrementAndGet(), true));
+        }
+
+        assertThatThrownBy(() -> ParallelFileRunner.run(jobs, Runnable::run, 1))
+                .isInstanceOf(IOException.class)
+                .hasMessage("disk full");
+        assertThat(runs).hasValue(0);
+    }
+
+    @Test
+    void run_noJobs_isNotVerified() throws Exception {
+        CopyResult result = ParallelFileRunner.run(List.of(), executor, 4);
+
+        assertThat(result.bytesCopied()).isZero();
+        assertThat(result.checksumVerified()).isFalse();
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PipelinedOutputStreamTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void write_manyChunks_arrivesInOrder() throws Exception {
+        byte[] data = new byte[1024 * 1024];
+        new Random(1).nextBytes(data);
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+
+        try (PipelinedOutputStream out = new PipelinedOutputStream(sink, executor, 2)) {
+            for (int offset = 0; offset < data.length; offset += 1000) {
+                out.write(data, offset, Math.min(1000, data.length - offset));
+            }
+        }
+
+        assertThat(sink.toByteArray()).isEqualTo(data);
+    }
+
+    @Test
+    void close_closesDownstream() throws Exception {
+        boolean[] closed = new boolean[1];
+        OutputStream sink = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+
+        new PipelinedOutputStream(sink, executor, 4).close();
+
+        assertThat(closed[0]).isTrue();
+    }
+
+    @Test
+    void write_downstreamFailure_propagatesToWriter() {
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+
+        assertThatThrownBy(() -> {
+            try (PipelinedOutputStream out = new PipelinedOutputStream(failing, executor, 1)) {
+                for (int i = 0; i < 100; i++) {
+                    out.write(new byte[128]);
+                }
+            }
+        }).isInstanceOf(IOException.class).hasMessageContaining("disk full");
+    }
+}
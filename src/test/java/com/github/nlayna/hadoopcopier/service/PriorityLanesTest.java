@@ -0,0 +1,145 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import com.github.nlayna.hadoopcopier.model.CopyPriority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PriorityLanesTest {
+
+    private final Deque<Runnable> executorQueue = new ArrayDeque<>();
+    private final List<String> runs = Collections.synchronizedList(new ArrayList<>());
+    private CopyProperties copyProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private PriorityLanes lanes;
+
+    @BeforeEach
+    void setUp() {
+        copyProperties = new CopyProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        lanes = new PriorityLanes(executorQueue::add, copyProperties, meterRegistry);
+    }
+
+    private void drain() {
+        Runnable token;
+        while ((token = executorQueue.poll()) != null) {
+            token.run();
+        }
+    }
+
+    @Test
+    void execute_runsHigherLanesFirst() {
+        lanes.execute(CopyPriority.BULK, () -> runs.add("bulk-1"));
+        lanes.execute(CopyPriority.NORMAL, () -> runs.add("normal"));
+        lanes.execute(CopyPriority.BULK, () -> runs.add("bulk-2"));
+        lanes.execute(CopyPriority.CRITICAL, () -> runs.add("critical"));
+
+        assertThat(meterRegistry.get("copy.lanes.queued").tag("lane", "BULK").gauge().value()).isEqualTo(2);
+        drain();
+
+        assertThat(runs).containsExactly("critical", "normal", "bulk-1", "bulk-2");
+        assertThat(lanes.queued(CopyPriority.BULK)).isZero();
+    }
+
+    @Test
+    void currentLane_queuesHelpersInTheCallersLane() {
+        lanes.execute(CopyPriority.CRITICAL, () -> lanes.currentLane().execute(() -> runs.add("helper")));
+        lanes.execute(CopyPriority.NORMAL, () -> runs.add("normal"));
+
+        drain();
+
+        assertThat(runs).containsExactly("helper", "normal");
+    }
+
+    @Test
+    void yieldToHigher_runsQueuedCriticalWorkAtFileBoundary() {
+        lanes.execute(CopyPriority.BULK, () -> {
+            runs.add("bulk-file-1");
+            lanes.execute(CopyPriority.CRITICAL, () -> runs.add("critical"));
+            lanes.execute(CopyPriority.BULK, () -> runs.add("other-bulk"));
+            lanes.yieldToHigher();
+            runs.add("bulk-file-2");
+        });
+
+        drain();
+
+        assertThat(runs).containsExactly("bulk-file-1", "critical", "bulk-file-2", "other-bulk");
+        assertThat(meterRegistry.get("copy.lanes.preemptions").tag("lane", "BULK").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void yieldToHigher_sameOrLowerLane_keepsRunning() {
+        lanes.execute(CopyPriority.CRITICAL, () -> {
+            lanes.execute(CopyPriority.CRITICAL, () -> runs.add("second-critical"));
+            lanes.yieldToHigher();
+            runs.add("first-critical");
+        });
+
+        drain();
+        lanes.yieldToHigher();
+
+        assertThat(runs).containsExactly("first-critical", "second-critical");
+        assertThat(meterRegistry.get("copy.lanes.preemptions").tag("lane", "CRITICAL").counter().count())
+                .isZero();
+    }
+
+    @Test
+    void execute_keepsWorkersWithinThreadPoolSize() {
+        copyProperties.setThreadPoolSize(2);
+        lanes = new PriorityLanes(executorQueue::add, copyProperties, meterRegistry);
+        for (int i = 0; i < 5; i++) {
+            int n = i;
+            lanes.execute(CopyPriority.NORMAL, () -> runs.add("item-" + n));
+        }
+
+        assertThat(executorQueue).hasSize(2);
+        assertThat(lanes.queued(CopyPriority.NORMAL)).isEqualTo(5);
+        drain();
+
+        assertThat(runs).containsExactly("item-0", "item-1", "item-2", "item-3", "item-4");
+        assertThat(lanes.workers()).isZero();
+    }
+
+    @Test
+    void execute_rejectedWithoutRunningWorker_throwsAndDropsWork() {
+        lanes = new PriorityLanes(work -> {
+            throw new RejectedExecutionException("queue full");
+        }, copyProperties, meterRegistry);
+
+        assertThatThrownBy(() -> lanes.execute(CopyPriority.NORMAL, () -> runs.add("item")))
+                .isInstanceOf(RejectedExecutionException.class);
+
+        assertThat(lanes.queued(CopyPriority.NORMAL)).isZero();
+        assertThat(lanes.workers()).isZero();
+    }
+
+    @Test
+    void execute_rejectedWhileWorkerRuns_leavesWorkForIt() {
+        List<Runnable> accepted = new ArrayList<>();
+        lanes = new PriorityLanes(work -> {
+            if (!accepted.isEmpty()) {
+                throw new RejectedExecutionException("queue full");
+            }
+            accepted.add(work);
+        }, copyProperties, meterRegistry);
+
+        lanes.execute(CopyPriority.NORMAL, () -> runs.add("first"));
+        lanes.execute(CopyPriority.BULK, () -> runs.add("second"));
+        accepted.get(0).run();
+
+        assertThat(runs).containsExactly("first", "second");
+        assertThat(lanes.workers()).isZero();
+    }
+}
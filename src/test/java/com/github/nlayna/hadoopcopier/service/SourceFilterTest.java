@@ -0,0 +1,69 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.model.CopyFilter;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SourceFilterTest {
+
+    private static FileStatus file(String path, long length, long modificationTime) {
+        return new FileStatus(length, false, 3, 128L * 1024 * 1024, modificationTime, new Path("hdfs://ns1" + path));
+    }
+
+    private static FileStatus directory(String path) {
+        return new FileStatus(0, true, 0, 0, 0, new Path("hdfs://ns1" + path));
+    }
+
+    @Test
+    void of_nullFilter_acceptsEverything() {
+        SourceFilter filter = SourceFilter.of(null);
+
+        assertThat(filter.isEmpty()).isTrue();
+        assertThat(filter.acceptsFile(file("/data/a", 1, 1))).isTrue();
+        assertThat(filter.acceptsDirectory(directory("/data/dir"))).isTrue();
+    }
+
+    @Test
+    void acceptsFile_includeAndExclude_matchPathWithoutAuthority() {
+        CopyFilter copyFilter = new CopyFilter();
+        copyFilter.setInclude("^/data/.*\\.parquet$");
+        copyFilter.setExclude("/_temporary/");
+        SourceFilter filter = SourceFilter.of(copyFilter);
+
+        assertThat(filter.acceptsFile(file("/data/a.parquet", 1, 1))).isTrue();
+        assertThat(filter.acceptsFile(file("/data/a.crc", 1, 1))).isFalse();
+        assertThat(filter.acceptsFile(file("/data/_temporary/a.parquet", 1, 1))).isFalse();
+        assertThat(filter.acceptsDirectory(directory("/data/_temporary/"))).isTrue();
+        assertThat(filter.acceptsDirectory(directory("/data/_temporary/0"))).isFalse();
+    }
+
+    @Test
+    void acceptsFile_sizeAndTimeWindow_boundsAreApplied() {
+        CopyFilter copyFilter = new CopyFilter();
+        copyFilter.setMinSize(10L);
+        copyFilter.setMaxSize(100L);
+        copyFilter.setModifiedAfter(Instant.ofEpochMilli(1000));
+        copyFilter.setModifiedBefore(Instant.ofEpochMilli(2000));
+        SourceFilter filter = SourceFilter.of(copyFilter);
+
+        assertThat(filter.acceptsFile(file("/f", 10, 1000))).isTrue();
+        assertThat(filter.acceptsFile(file("/f", 100, 1999))).isTrue();
+        assertThat(filter.acceptsFile(file("/f", 9, 1500))).isFalse();
+        assertThat(filter.acceptsFile(file("/f", 101, 1500))).isFalse();
+        assertThat(filter.acceptsFile(file("/f", 50, 999))).isFalse();
+        assertThat(filter.acceptsFile(file("/f", 50, 2000))).isFalse();
+    }
+
+    @Test
+    void isGlob_detectsGlobCharacters() {
+        assertThat(SourceFilter.isGlob("/data/2024-*")).isTrue();
+        assertThat(SourceFilter.isGlob("/data/{a,b}")).isTrue();
+        assertThat(SourceFilter.isGlob("/data/file?.txt")).isTrue();
+        assertThat(SourceFilter.isGlob("/data/plain/path")).isFalse();
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import com.github.nlayna.hadoopcopier.config.CopyProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SyncStateStoreTest {
+
+    @TempDir
+    File tempDir;
+
+    private CopyProperties properties(File stateFile) {
+        CopyProperties copyProperties = new CopyProperties();
+        copyProperties.setSyncStateFile(stateFile.getAbsolutePath());
+        return copyProperties;
+    }
+
+    @Test
+    void setLastSnapshot_survivesReload() throws Exception {
+        File stateFile = new File(tempDir, "state/sync-state.properties");
+        String key = SyncStateStore.key("hdfs://ns1/data", "/tmp/data");
+
+        new SyncStateStore(properties(stateFile)).setLastSnapshot(key, "s1");
+        SyncStateStore reloaded = new SyncStateStore(properties(stateFile));
+
+        assertThat(reloaded.getLastSnapshot(key)).isEqualTo("s1");
+        assertThat(reloaded.getLastSnapshot(SyncStateStore.key("hdfs://ns1/data", "/tmp/other"))).isNull();
+        assertThat(new File(tempDir, "state/sync-state.properties.tmp")).doesNotExist();
+    }
+
+    @Test
+    void key_normalizesLocalPath() {
+        assertThat(SyncStateStore.key("hdfs://ns1/data", "/tmp/a/../b"))
+                .isEqualTo(SyncStateStore.key("hdfs://ns1/data", "/tmp/b"));
+    }
+
+    @Test
+    void constructor_unreadableState_startsEmpty() throws Exception {
+        File stateFile = new File(tempDir, "sync-state.properties");
+        Files.createDirectories(stateFile.toPath());
+
+        SyncStateStore store = new SyncStateStore(properties(stateFile));
+
+        assertThat(store.getLastSnapshot("any")).isNull();
+    }
+}
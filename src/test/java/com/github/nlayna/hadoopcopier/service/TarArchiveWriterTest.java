@@ -0,0 +1,85 @@
+package com.github.nlayna.hadoopcopier.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TarArchiveWriterTest {
+
+    private static final int BLOCK = TarArchiveWriter.BLOCK_SIZE;
+
+    @Test
+    void putFile_writesUstarHeaderAndPaddedData() throws Exception {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        TarArchiveWriter tar = new TarArchiveWriter(sink);
+        byte[] data = "hello tar".getBytes();
+
+        long dataOffset = tar.putFile("dir/file.txt", data.length, 1_700_000_000_000L,
+                new ByteArrayInputStream(data), new byte[4]);
+        tar.finish();
+
+        byte[] archive = sink.toByteArray();
+        assertThat(dataOffset).isEqualTo(BLOCK);
+        assertThat(archive).hasSize(4 * BLOCK);
+        assertThat(tar.getOffset()).isEqualTo(archive.length);
+
+        assertThat(field(archive, 0, 100)).isEqualTo("dir/file.txt");
+        assertThat(Long.parseLong(field(archive, 124, 12), 8)).isEqualTo(data.length);
+        assertThat(Long.parseLong(field(archive, 136, 12), 8)).isEqualTo(1_700_000_000L);
+        assertThat((char) archive[156]).isEqualTo('0');
+        assertThat(field(archive, 257, 5)).isEqualTo("ustar");
+        assertThat(Long.parseLong(field(archive, 148, 8).trim(), 8)).isEqualTo(checksum(archive, 0));
+        assertThat(Arrays.copyOfRange(archive, BLOCK, BLOCK + data.length)).isEqualTo(data);
+        assertThat(Arrays.copyOfRange(archive, 2 * BLOCK, 4 * BLOCK)).containsOnly(0);
+    }
+
+    @Test
+    void putFile_longName_usesPaxHeader() throws Exception {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        TarArchiveWriter tar = new TarArchiveWriter(sink);
+        String longName = "a/".repeat(80) + "file.bin";
+
+        long dataOffset = tar.putFile(longName, 1, 0, new ByteArrayInputStream(new byte[]{42}), new byte[16]);
+
+        byte[] archive = sink.toByteArray();
+        assertThat((char) archive[156]).isEqualTo('x');
+        int paxLength = Integer.parseInt(field(archive, 124, 12), 8);
+        String paxRecords = new String(archive, BLOCK, paxLength, StandardCharsets.UTF_8);
+        assertThat(paxRecords).isEqualTo((longName.length() + 10) + " path=" + longName + "\n");
+        assertThat(dataOffset).isEqualTo(3 * BLOCK);
+        assertThat(archive[(int) dataOffset]).isEqualTo((byte) 42);
+    }
+
+    @Test
+    void putFile_sourceShorterThanDeclared_throwsException() {
+        TarArchiveWriter tar = new TarArchiveWriter(new ByteArrayOutputStream());
+
+        assertThatThrownBy(() -> tar.putFile("short", 10, 0, new ByteArrayInputStream(new byte[3]), new byte[8]))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Source ended 7 bytes early");
+    }
+
+    private static String field(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.US_ASCII);
+    }
+
+    private static long checksum(byte[] archive, int headerOffset) {
+        long sum = 0;
+        for (int i = 0; i < BLOCK; i++) {
+            boolean checksumField = i >= 148 && i < 156;
+            sum += checksumField ? ' ' : archive[headerOffset + i] & 0xff;
+        }
+        return sum;
+    }
+}
@@ -74,6 +74,7 @@ class ThrottledInputStreamTest {
                 total += bytesRead;
             }
             assertThat(total).isEqualTo(200);
+            assertThat(tis.getSleptNanos()).isGreaterThan(500_000_000L);
         }
         long elapsedMs = (System.nanoTime() - start) / 1_000_000;
 
@@ -106,9 +107,9 @@ class ThrottledInputStreamTest {
             }).isInstanceOf(IOException.class)
                     .hasMessageContaining("interrupted");
         } finally {
-            interruptor.join();
-            // Clear interrupted status
+            // Clear interrupted status, otherwise join() fails while the interruptor is still alive
             Thread.interrupted();
+            interruptor.join();
         }
     }
 